@@ -0,0 +1,37 @@
+package hackathon.team.configure;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Políticas de gasto de viáticos (app.politicas.reglas[n].*)
+ * Cada regla aplica a los roles, usuarios (email) y métodos de pago indicados (vacío = todos):
+ * - limite-diario / limite-mensual: gasto del usuario en el día o mes calendario, con el ticket
+ * - categoria-prohibida: items de esas categorías (por nombre, incluye subcategorías)
+ * - tope-por-item: subtotal de un item; con categorías, solo los de esas categorías
+ * Conector Semántico - OneCard
+ */
+@ConfigurationProperties(prefix = "app.politicas")
+public record PoliticasProperties(List<Regla> reglas) {
+
+    public PoliticasProperties {
+        reglas = reglas != null ? List.copyOf(reglas) : List.of();
+    }
+
+    public enum Tipo {
+        LIMITE_DIARIO, LIMITE_MENSUAL, CATEGORIA_PROHIBIDA, TOPE_POR_ITEM
+    }
+
+    public record Regla(String nombre, Tipo tipo, BigDecimal monto,
+                        List<String> roles, List<String> usuarios, List<String> categorias, List<String> metodosPago) {
+
+        public Regla {
+            roles = roles != null ? List.copyOf(roles) : List.of();
+            usuarios = usuarios != null ? List.copyOf(usuarios) : List.of();
+            categorias = categorias != null ? List.copyOf(categorias) : List.of();
+            metodosPago = metodosPago != null ? List.copyOf(metodosPago) : List.of();
+        }
+    }
+}
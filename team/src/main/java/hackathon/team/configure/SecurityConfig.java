@@ -34,8 +34,8 @@ public class SecurityConfig {
                     "/favicon.ico",
                     "/error/**"
                 ).permitAll()
-                .requestMatchers("/admin/**").hasRole("ADMINISTRADOR")
-                .requestMatchers("/marketing/**").hasAnyRole("ADMINISTRADOR", "GERENTE_MARKETING")
+                .requestMatchers("/admin/**", "/actuator/**").hasRole("ADMINISTRADOR")
+                .requestMatchers("/marketing/**", "/api/analytics/**", "/recomendaciones/usuarios/**").hasAnyRole("ADMINISTRADOR", "GERENTE_MARKETING")
                 .requestMatchers("/inventario/**").hasAnyRole("ADMINISTRADOR", "INVENTARIO")
                 .requestMatchers("/caja/**").hasAnyRole("ADMINISTRADOR", "CAJERO")
                 .anyRequest().authenticated()
@@ -0,0 +1,80 @@
+package hackathon.team.controller;
+
+import hackathon.team.service.AnaliticaService;
+import hackathon.team.service.HistorialTicketService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * API de analítica de gasto (gerencia)
+ * GET /api/analytics?agrupar=categoria,periodo&periodo=mes&desde=2024-01-01&categoriaId=3
+ * Filtros opcionales: desde, hasta, usuarioId, categoriaId (incluye subcategorías), metodoPago.
+ * Dimensiones de agrupar: usuario, categoria, metodo_pago, periodo (dia, semana, mes, anio).
+ * Conector Semántico - OneCard
+ */
+@Controller
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+@Slf4j
+public class AnaliticaController {
+
+    private static final int LIMITE_MAXIMO = 10_000;
+
+    private final AnaliticaService analiticaService;
+
+    /**
+     * Gasto agrupado según los filtros y dimensiones
+     */
+    @GetMapping
+    @ResponseBody
+    public ResponseEntity<?> consultar(@RequestParam(required = false) List<String> agrupar,
+                                       @RequestParam(required = false) String periodo,
+                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+                                       @RequestParam(required = false) Long usuarioId,
+                                       @RequestParam(required = false) Long categoriaId,
+                                       @RequestParam(required = false) String metodoPago,
+                                       @RequestParam(defaultValue = "1000") int limite) {
+        Set<AnaliticaService.Dimension> dimensiones = EnumSet.noneOf(AnaliticaService.Dimension.class);
+        if (agrupar != null) {
+            for (String valor : agrupar) {
+                Optional<AnaliticaService.Dimension> dimension = AnaliticaService.Dimension.desdeParametro(valor);
+                if (dimension.isEmpty()) {
+                    return ResponseEntity.badRequest().body(Map.of("error", "Dimensión inválida: " + valor));
+                }
+                dimensiones.add(dimension.get());
+            }
+        }
+        Optional<HistorialTicketService.Periodo> agrupacion = HistorialTicketService.Periodo.desdeParametro(periodo);
+        if (agrupacion.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Periodo inválido: " + periodo));
+        }
+        try {
+            AnaliticaService.Resultado resultado = analiticaService.consultar(
+                    new AnaliticaService.Consulta(desde, hasta, usuarioId, categoriaId, metodoPago, dimensiones, agrupacion.get()),
+                    Math.max(0, Math.min(limite, LIMITE_MAXIMO)));
+            log.info("GET /api/analytics - agrupar {} periodo {}: {} grupos en {} µs",
+                    dimensiones, agrupacion.get(), resultado.grupos(), resultado.microsegundos());
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    .body(resultado);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package hackathon.team.controller;
+
+import hackathon.team.service.RegistroBusquedaService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Registro de búsquedas hechas en el navegador y de clics en resultados
+ * POST /busquedas/semantica: la búsqueda semántica consulta la API de IA desde la página,
+ * que informa aquí la consulta, los resultados y la latencia medida.
+ * POST /busquedas/clic: enviado con navigator.sendBeacon al abrir un resultado.
+ * Conector Semántico - OneCard
+ */
+@Controller
+@RequestMapping("/busquedas")
+@RequiredArgsConstructor
+public class BusquedaController {
+
+    private final RegistroBusquedaService registroBusquedaService;
+
+    @PostMapping("/semantica")
+    @ResponseBody
+    public ResponseEntity<?> semantica(@RequestParam String consulta,
+                                       @RequestParam(defaultValue = "0") int resultados,
+                                       @RequestParam(defaultValue = "0") long milisegundos,
+                                       Principal principal) {
+        if (consulta.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "La consulta es obligatoria"));
+        }
+        long busquedaId = registroBusquedaService.registrar(RegistroBusquedaService.Tipo.SEMANTICA,
+                principal != null ? principal.getName() : null, consulta.trim(), Math.max(0, resultados),
+                Duration.ofMillis(Math.max(0, milisegundos)).toNanos());
+        return ResponseEntity.ok(Map.of("busquedaId", busquedaId));
+    }
+
+    @PostMapping("/clic")
+    @ResponseBody
+    public ResponseEntity<Void> clic(@RequestParam long busquedaId,
+                                     @RequestParam long resultadoId,
+                                     Principal principal) {
+        registroBusquedaService.registrarClic(busquedaId, principal != null ? principal.getName() : null, resultadoId);
+        return ResponseEntity.noContent().build();
+    }
+}
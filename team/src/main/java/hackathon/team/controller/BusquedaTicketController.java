@@ -0,0 +1,80 @@
+package hackathon.team.controller;
+
+import hackathon.team.dao.UsuarioRepository;
+import hackathon.team.model.Usuario;
+import hackathon.team.service.BusquedaTicketService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * API de búsqueda de tickets
+ * GET /api/tickets/buscar?desde=&hasta=&totalMin=&totalMax=&usuarioId=&metodoPago=&estado=
+ *                        &producto=&categoriaId=&pagina=0&tamanio=20
+ * Un usuario que no es administrador solo busca entre sus propios tickets.
+ * Conector Semántico - OneCard
+ */
+@Controller
+@RequestMapping("/api/tickets")
+@RequiredArgsConstructor
+@Slf4j
+public class BusquedaTicketController {
+
+    private static final String ROL_ADMINISTRADOR = "ROLE_ADMINISTRADOR";
+
+    private final BusquedaTicketService busquedaTicketService;
+    private final UsuarioRepository usuarioRepository;
+
+    /**
+     * Buscar tickets combinando criterios
+     */
+    @GetMapping("/buscar")
+    @ResponseBody
+    public ResponseEntity<?> buscar(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) BigDecimal totalMin,
+            @RequestParam(required = false) BigDecimal totalMax,
+            @RequestParam(required = false) Long usuarioId,
+            @RequestParam(required = false) String metodoPago,
+            @RequestParam(required = false) String estado,
+            @RequestParam(required = false) String producto,
+            @RequestParam(required = false) Long categoriaId,
+            @RequestParam(defaultValue = "0") int pagina,
+            @RequestParam(defaultValue = "" + BusquedaTicketService.TAMANIO_POR_DEFECTO) int tamanio,
+            Authentication authentication) {
+        BusquedaTicketService.Criterios criterios = new BusquedaTicketService.Criterios(desde, hasta,
+                totalMin, totalMax, usuarioId, metodoPago, estado, producto, categoriaId);
+
+        boolean administrador = authentication.getAuthorities().stream()
+                .anyMatch(a -> ROL_ADMINISTRADOR.equals(a.getAuthority()));
+        if (!administrador) {
+            Long propio = usuarioRepository.findByEmail(authentication.getName()).map(Usuario::getId).orElse(null);
+            if (propio == null || (usuarioId != null && !usuarioId.equals(propio))) {
+                return ResponseEntity.ok(new BusquedaTicketService.Pagina(List.of(), pagina, tamanio, false));
+            }
+            criterios = criterios.conUsuario(propio);
+        }
+
+        try {
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    .body(busquedaTicketService.buscar(criterios, pagina, tamanio));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -2,6 +2,7 @@ package hackathon.team.controller;
 
 import hackathon.team.dtos.CategoriaDTO;
 import hackathon.team.service.CategoriaService;
+import hackathon.team.service.RegistroBusquedaService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -10,6 +11,8 @@ import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.security.Principal;
 import java.util.List;
 
 /**
@@ -23,6 +26,7 @@ import java.util.List;
 public class CategoriaController {
 
     private final CategoriaService categoriaService;
+    private final RegistroBusquedaService registroBusquedaService;
 
     /**
      * Listar todas las categorías
@@ -285,12 +289,17 @@ public class CategoriaController {
      * Buscar categorías
      */
     @GetMapping("/buscar")
-    public String buscar(@RequestParam(required = false) String keyword, Model model) {
+    public String buscar(@RequestParam(required = false) String keyword, Model model, Principal principal) {
         log.info("GET /categorias/buscar - Buscando categorías con keyword: {}", keyword);
         
         try {
             if (keyword != null && !keyword.trim().isEmpty()) {
-                model.addAttribute("categorias", categoriaService.buscar(keyword));
+                long inicio = System.nanoTime();
+                List<CategoriaDTO> categorias = categoriaService.buscar(keyword);
+                model.addAttribute("busquedaId", registroBusquedaService.registrar(RegistroBusquedaService.Tipo.CATEGORIAS,
+                        principal != null ? principal.getName() : null, keyword.trim(), categorias.size(),
+                        System.nanoTime() - inicio));
+                model.addAttribute("categorias", categorias);
                 model.addAttribute("keyword", keyword);
             } else {
                 model.addAttribute("categorias", categoriaService.obtenerTodas());
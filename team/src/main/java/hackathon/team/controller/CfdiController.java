@@ -0,0 +1,83 @@
+package hackathon.team.controller;
+
+import hackathon.team.service.CfdiService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Controller para importar facturas CFDI como tickets
+ * POST /tickets/cfdi (multipart, campo "archivos"): uno o varios XML; los tickets quedan a
+ * nombre de usuarioId o, si no se indica, del usuario en sesión.
+ * POST /admin/cfdi/lote: procesar ya el directorio de entrada; GET devuelve el último resumen.
+ * Conector Semántico - OneCard
+ */
+@Controller
+@RequiredArgsConstructor
+@Slf4j
+public class CfdiController {
+
+    private final CfdiService cfdiService;
+
+    @PostMapping("/tickets/cfdi")
+    @ResponseBody
+    public ResponseEntity<?> importar(@RequestParam("archivos") List<MultipartFile> archivos,
+                                      @RequestParam(required = false) Long usuarioId,
+                                      Principal principal) {
+        Optional<Long> propietario = usuarioId != null ? Optional.of(usuarioId) : cfdiService.usuarioPorEmail(principal.getName());
+        if (propietario.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Usuario no encontrado"));
+        }
+        log.info("POST /tickets/cfdi - {} archivos para el usuario {}", archivos.size(), propietario.get());
+
+        List<CfdiService.Resultado> resultados = new ArrayList<>(archivos.size());
+        for (MultipartFile archivo : archivos) {
+            try (InputStream entrada = archivo.getInputStream()) {
+                resultados.add(cfdiService.importar(archivo.getOriginalFilename(), entrada, propietario.get()));
+            } catch (IOException e) {
+                resultados.add(new CfdiService.Resultado(archivo.getOriginalFilename(), CfdiService.Estado.ERROR,
+                        null, null, "No se pudo leer el archivo"));
+            }
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(resultados);
+    }
+
+    @PostMapping("/admin/cfdi/lote")
+    @ResponseBody
+    public ResponseEntity<?> iniciarLote() {
+        return switch (cfdiService.iniciarLote()) {
+            case INICIADO -> ResponseEntity.accepted().build();
+            case EN_CURSO -> ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "Ya hay un lote en curso"));
+            case SIN_USUARIO -> ResponseEntity.badRequest()
+                    .body(Map.of("error", "app.cfdi.lote.usuario no está configurado o el usuario no existe"));
+            case SIN_DIRECTORIO -> ResponseEntity.badRequest()
+                    .body(Map.of("error", "No existe el directorio de entrada del lote"));
+        };
+    }
+
+    @GetMapping("/admin/cfdi/lote")
+    @ResponseBody
+    public ResponseEntity<?> ultimoLote() {
+        return cfdiService.getUltimoLote()
+                .<ResponseEntity<?>>map(resumen -> ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(resumen))
+                .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+}
@@ -0,0 +1,59 @@
+package hackathon.team.controller;
+
+import hackathon.team.service.ConciliacionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Controller para conciliar estados de cuenta OneCard contra los tickets subidos
+ * POST /admin/conciliacion (multipart, campo "archivo"): CSV con columnas fecha, usuario
+ * (email), monto y referencia opcional. Responde el resumen y las partidas a revisar
+ * (sin ticket, ambiguas e inválidas); incluirConciliadas=true agrega también las conciliadas.
+ * Conector Semántico - OneCard
+ */
+@Controller
+@RequestMapping("/admin/conciliacion")
+@RequiredArgsConstructor
+@Slf4j
+public class ConciliacionController {
+
+    private final ConciliacionService conciliacionService;
+
+    @PostMapping
+    @ResponseBody
+    public ResponseEntity<?> conciliar(@RequestParam("archivo") MultipartFile archivo,
+                                       @RequestParam(defaultValue = "false") boolean incluirConciliadas) {
+        if (archivo.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "El archivo está vacío"));
+        }
+        if (!conciliacionService.reservar()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .build();
+        }
+        log.info("POST /admin/conciliacion - {} ({} bytes)", archivo.getOriginalFilename(), archivo.getSize());
+        try {
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    .body(conciliacionService.conciliar(archivo, incluirConciliadas));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            log.error("Error al leer el estado de cuenta", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "No se pudo leer el archivo"));
+        }
+    }
+}
@@ -4,6 +4,7 @@ import hackathon.team.dao.CategoriaRepository;
 import hackathon.team.dao.ProductoRepository;
 import hackathon.team.dao.TicketRepository;
 import hackathon.team.model.Ticket;
+import hackathon.team.util.Dinero;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Controller;
@@ -11,7 +12,6 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.List;
 
 /**
@@ -50,13 +50,12 @@ public class DashboardController {
             // Calcular estadísticas de tickets
             long totalTickets = tickets.size();
             
-            BigDecimal totalGastado = tickets.stream()
-                    .map(Ticket::getTotal)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            BigDecimal promedioTicket = totalTickets > 0 
-                    ? totalGastado.divide(BigDecimal.valueOf(totalTickets), 2, RoundingMode.HALF_UP)
-                    : BigDecimal.ZERO;
+            long totalCentavos = tickets.stream()
+                    .mapToLong(t -> Dinero.centavos(t.getTotal()))
+                    .reduce(0L, Math::addExact);
+
+            BigDecimal totalGastado = Dinero.aBigDecimal(totalCentavos);
+            BigDecimal promedioTicket = Dinero.promedio(totalCentavos, totalTickets);
             
             // Contar productos y categorías
             long totalProductos = productoRepository.count();
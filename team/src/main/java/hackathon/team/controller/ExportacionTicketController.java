@@ -0,0 +1,84 @@
+package hackathon.team.controller;
+
+import hackathon.team.service.ExportacionTicketService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+/**
+ * Controller para exportar tickets con sus items
+ * GET /tickets/export?formato=csv|ndjson&desde=2024-01-01&hasta=2024-01-31&usuarioId=&metodoPago=
+ * La respuesta se escribe en streaming mientras se recorre el resultado.
+ * Conector Semántico - OneCard
+ */
+@Controller
+@RequestMapping("/tickets/export")
+@RequiredArgsConstructor
+@Slf4j
+public class ExportacionTicketController {
+
+    private final ExportacionTicketService exportacionTicketService;
+
+    /**
+     * Exportar tickets filtrados por rango de fechas, usuario o método de pago
+     */
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> exportar(
+            @RequestParam(required = false) String formato,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) Long usuarioId,
+            @RequestParam(required = false) String metodoPago,
+            HttpServletRequest request) {
+        Optional<ExportacionTicketService.Formato> formatoSalida = ExportacionTicketService.Formato.desdeParametro(formato);
+        if (formatoSalida.isEmpty() || (desde != null && hasta != null && hasta.isBefore(desde))) {
+            return ResponseEntity.badRequest().build();
+        }
+        Optional<ExportacionTicketService.Turno> turno = exportacionTicketService.reservar();
+        if (turno.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .build();
+        }
+        // Si el cuerpo nunca llega a ejecutarse (desconexión, timeout, error), el turno se libera al terminar
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(ExportacionTicketService.Turno.class,
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void afterCompletion(NativeWebRequest peticion, Callable<T> tarea) {
+                        turno.get().close();
+                    }
+                });
+
+        ExportacionTicketService.Formato formatoElegido = formatoSalida.get();
+        ExportacionTicketService.Filtro filtro = new ExportacionTicketService.Filtro(desde, hasta, usuarioId, metodoPago);
+        String nombre = "tickets" + (desde != null ? "_" + desde : "") + (hasta != null ? "_" + hasta : "")
+                + "." + formatoElegido.getExtension();
+        log.info("GET /tickets/export - {} {}", formatoElegido, filtro);
+
+        StreamingResponseBody cuerpo = salida -> exportacionTicketService.exportar(filtro, formatoElegido, salida, turno.get());
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(formatoElegido.getContentType() + ";charset=UTF-8"))
+                .cacheControl(CacheControl.noStore())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(nombre).build().toString())
+                .body(cuerpo);
+    }
+}
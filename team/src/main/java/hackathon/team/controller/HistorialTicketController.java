@@ -0,0 +1,101 @@
+package hackathon.team.controller;
+
+import hackathon.team.dao.UsuarioRepository;
+import hackathon.team.model.Usuario;
+import hackathon.team.service.HistorialTicketService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * API del historial de tickets de un usuario
+ * GET /api/usuarios/{id}/tickets?limite=20&cursor=&estado=&metodoPago=
+ * GET /api/usuarios/{id}/tickets/totales?periodo=dia|semana|mes|anio&desde=&hasta=
+ * Cada usuario consulta su propio historial; el administrador, el de cualquiera.
+ * Conector Semántico - OneCard
+ */
+@Controller
+@RequestMapping("/api/usuarios/{usuarioId}/tickets")
+@RequiredArgsConstructor
+@Slf4j
+public class HistorialTicketController {
+
+    private static final String ROL_ADMINISTRADOR = "ROLE_ADMINISTRADOR";
+
+    private final HistorialTicketService historialTicketService;
+    private final UsuarioRepository usuarioRepository;
+
+    /**
+     * Página del historial, más recientes primero
+     */
+    @GetMapping
+    @ResponseBody
+    public ResponseEntity<?> listar(@PathVariable Long usuarioId,
+                                    @RequestParam(required = false) String cursor,
+                                    @RequestParam(defaultValue = "" + HistorialTicketService.LIMITE_POR_DEFECTO) int limite,
+                                    @RequestParam(required = false) String estado,
+                                    @RequestParam(required = false) String metodoPago,
+                                    Authentication authentication) {
+        if (!puedeConsultar(usuarioId, authentication)) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            HistorialTicketService.Pagina pagina = historialTicketService.obtenerPagina(usuarioId,
+                    new HistorialTicketService.Filtro(estado, metodoPago), cursor, limite);
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    .body(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Número de tickets y monto por periodo
+     */
+    @GetMapping("/totales")
+    @ResponseBody
+    public ResponseEntity<?> totales(@PathVariable Long usuarioId,
+                                     @RequestParam(required = false) String periodo,
+                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+                                     @RequestParam(required = false) String estado,
+                                     @RequestParam(required = false) String metodoPago,
+                                     Authentication authentication) {
+        if (!puedeConsultar(usuarioId, authentication)) {
+            return ResponseEntity.notFound().build();
+        }
+        Optional<HistorialTicketService.Periodo> agrupacion = HistorialTicketService.Periodo.desdeParametro(periodo);
+        if (agrupacion.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Periodo inválido: " + periodo));
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(historialTicketService.obtenerTotales(usuarioId,
+                        new HistorialTicketService.Filtro(estado, metodoPago), agrupacion.get(), desde, hasta));
+    }
+
+    /**
+     * Un historial ajeno responde 404 para no revelar qué usuarios existen
+     */
+    private boolean puedeConsultar(Long usuarioId, Authentication authentication) {
+        boolean administrador = authentication.getAuthorities().stream()
+                .anyMatch(a -> ROL_ADMINISTRADOR.equals(a.getAuthority()));
+        if (administrador) {
+            return true;
+        }
+        return usuarioRepository.findByEmail(authentication.getName())
+                .map(Usuario::getId)
+                .filter(usuarioId::equals)
+                .isPresent();
+    }
+}
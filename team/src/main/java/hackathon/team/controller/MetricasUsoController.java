@@ -0,0 +1,50 @@
+package hackathon.team.controller;
+
+import hackathon.team.service.MetricasUsoService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * API de métricas de uso aproximadas
+ * GET /marketing/uso?desde=2024-05-01&hasta=2024-05-31&limite=20
+ * Sin fechas devuelve los últimos 7 días.
+ * Conector Semántico - OneCard
+ */
+@Controller
+@RequestMapping("/marketing/uso")
+@RequiredArgsConstructor
+public class MetricasUsoController {
+
+    private static final int LIMITE_MAXIMO = 500;
+
+    private final MetricasUsoService metricasUsoService;
+
+    /**
+     * Usuarios activos, productos distintos por categoría, búsquedas y productos más frecuentes
+     */
+    @GetMapping
+    @ResponseBody
+    public ResponseEntity<?> resumir(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+                                     @RequestParam(defaultValue = "20") int limite) {
+        LocalDate fin = hasta != null ? hasta : LocalDate.now();
+        LocalDate inicio = desde != null ? desde : fin.minusDays(6);
+        try {
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    .body(metricasUsoService.resumir(inicio, fin, Math.max(0, Math.min(limite, LIMITE_MAXIMO))));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -2,8 +2,14 @@ package hackathon.team.controller;
 
 import hackathon.team.dao.CategoriaRepository;
 import hackathon.team.model.Producto;
+import hackathon.team.service.CompraConjuntaService;
+import hackathon.team.service.HistorialPrecioService;
+import hackathon.team.service.MetricasUsoService;
 import hackathon.team.service.ProductoService;
+import hackathon.team.service.RegistroBusquedaService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -11,7 +17,12 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import jakarta.validation.Valid;
+import java.security.Principal;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 /**
  * Controlador de Productos
@@ -27,6 +38,18 @@ public class ProductoController {
     @Autowired
     private CategoriaRepository categoriaRepository;
 
+    @Autowired
+    private CompraConjuntaService compraConjuntaService;
+
+    @Autowired
+    private HistorialPrecioService historialPrecioService;
+
+    @Autowired
+    private MetricasUsoService metricasUsoService;
+
+    @Autowired
+    private RegistroBusquedaService registroBusquedaService;
+
     /**
      * Listar todos los productos
      */
@@ -90,10 +113,44 @@ public class ProductoController {
 
         model.addAttribute("producto", producto);
         model.addAttribute("categorias", categoriaRepository.findByActivaTrue());
+        model.addAttribute("compradosJuntos", compraConjuntaService.recomendarPara(Set.of(id), 5));
         model.addAttribute("titulo", "Editar Producto");
         return "productos/formulario";
     }
 
+    /**
+     * API: productos comprados frecuentemente junto con este (JSON)
+     */
+    @GetMapping("/{id}/comprados-juntos")
+    @ResponseBody
+    public List<CompraConjuntaService.Relacion> compradosJuntos(@PathVariable Long id,
+                                                                @RequestParam(defaultValue = "10") int limite) {
+        return compraConjuntaService.relacionados(id, Math.max(1, Math.min(limite, 50)));
+    }
+
+    /**
+     * API: precio mínimo, promedio y máximo del producto por día, semana o mes (JSON)
+     * Sin fechas devuelve el último año.
+     */
+    @GetMapping("/{id}/historial-precios")
+    @ResponseBody
+    public ResponseEntity<?> historialPrecios(@PathVariable Long id,
+                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+                                              @RequestParam(required = false) String resolucion) {
+        Optional<HistorialPrecioService.Resolucion> agrupacion = HistorialPrecioService.Resolucion.desdeParametro(resolucion);
+        if (agrupacion.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Resolución inválida: " + resolucion));
+        }
+        LocalDate fin = hasta != null ? hasta : LocalDate.now();
+        LocalDate inicio = desde != null ? desde : fin.minusYears(1);
+        try {
+            return ResponseEntity.ok(historialPrecioService.resumir(id, inicio, fin, agrupacion.get()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * Eliminar producto (desactivar)
      */
@@ -113,11 +170,16 @@ public class ProductoController {
      * Buscar productos (búsqueda semántica)
      */
     @GetMapping("/buscar")
-    public String buscar(@RequestParam(required = false) String q, Model model) {
+    public String buscar(@RequestParam(required = false) String q, Model model, Principal principal) {
         List<Producto> productos;
         
         if (q != null && !q.trim().isEmpty()) {
+            long inicio = System.nanoTime();
             productos = productoService.buscarSemantico(q);
+            String usuario = principal != null ? principal.getName() : null;
+            metricasUsoService.registrarBusqueda(usuario, q);
+            model.addAttribute("busquedaId", registroBusquedaService.registrar(RegistroBusquedaService.Tipo.PRODUCTOS,
+                    usuario, q.trim(), productos.size(), System.nanoTime() - inicio));
             model.addAttribute("busqueda", q);
         } else {
             productos = productoService.findAll();
@@ -0,0 +1,64 @@
+package hackathon.team.controller;
+
+import hackathon.team.dao.UsuarioRepository;
+import hackathon.team.model.Usuario;
+import hackathon.team.service.RecomendacionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * API de recomendaciones por historial de compras
+ * GET /recomendaciones?limite=10: las del usuario en sesión
+ * GET /recomendaciones/usuarios/{usuarioId}: las de cualquier usuario (gerencia)
+ * Conector Semántico - OneCard
+ */
+@Controller
+@RequestMapping("/recomendaciones")
+@RequiredArgsConstructor
+public class RecomendacionController {
+
+    private static final int LIMITE_MAXIMO = 100;
+
+    private final RecomendacionService recomendacionService;
+    private final UsuarioRepository usuarioRepository;
+
+    /**
+     * Productos y categorías recomendados para el usuario en sesión
+     */
+    @GetMapping
+    @ResponseBody
+    public ResponseEntity<?> propias(@RequestParam(defaultValue = "10") int limite, Principal principal) {
+        Optional<Long> usuarioId = recomendacionService.usuarioPorEmail(principal.getName())
+                .or(() -> usuarioRepository.findByEmail(principal.getName()).map(Usuario::getId));
+        if (usuarioId.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Usuario no encontrado"));
+        }
+        return responder(usuarioId.get(), limite);
+    }
+
+    /**
+     * Productos y categorías recomendados para un usuario
+     */
+    @GetMapping("/usuarios/{usuarioId}")
+    @ResponseBody
+    public ResponseEntity<?> deUsuario(@PathVariable Long usuarioId, @RequestParam(defaultValue = "10") int limite) {
+        return responder(usuarioId, limite);
+    }
+
+    private ResponseEntity<?> responder(long usuarioId, int limite) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(recomendacionService.recomendar(usuarioId, Math.max(0, Math.min(limite, LIMITE_MAXIMO))));
+    }
+}
@@ -0,0 +1,57 @@
+package hackathon.team.controller;
+
+import hackathon.team.service.SegmentacionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * API de segmentos de marketing
+ * GET /marketing/segmentos?todas=1,4&alguna=&ninguna=7&dias=30&limite=1000
+ * "Compraron en las categorías 1 y 4 pero no en la 7 en los últimos 30 días";
+ * cada categoría incluye sus subcategorías.
+ * Conector Semántico - OneCard
+ */
+@Controller
+@RequestMapping("/marketing/segmentos")
+@RequiredArgsConstructor
+@Slf4j
+public class SegmentacionController {
+
+    private static final int LIMITE_MAXIMO = 10_000;
+
+    private final SegmentacionService segmentacionService;
+
+    /**
+     * Evaluar un segmento
+     */
+    @GetMapping
+    @ResponseBody
+    public ResponseEntity<?> evaluar(@RequestParam(required = false) List<Long> todas,
+                                     @RequestParam(required = false) List<Long> alguna,
+                                     @RequestParam(required = false) List<Long> ninguna,
+                                     @RequestParam(required = false) Integer dias,
+                                     @RequestParam(defaultValue = "1000") int limite) {
+        try {
+            SegmentacionService.Segmento segmento = segmentacionService.evaluar(
+                    new SegmentacionService.Consulta(todas, alguna, ninguna, dias),
+                    Math.max(0, Math.min(limite, LIMITE_MAXIMO)));
+            log.info("GET /marketing/segmentos - todas {} alguna {} ninguna {} dias {}: {} usuarios en {} µs",
+                    todas, alguna, ninguna, dias, segmento.usuarios(), segmento.microsegundos());
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    .body(segmento);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
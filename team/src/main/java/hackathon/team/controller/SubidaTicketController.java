@@ -0,0 +1,119 @@
+package hackathon.team.controller;
+
+import hackathon.team.service.SubidaReanudableService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.Principal;
+import java.util.Map;
+
+/**
+ * Controller para subidas reanudables de imágenes de tickets
+ * 1. POST /tickets/subidas (Upload-Length) crea la subida
+ * 2. PUT /tickets/subidas/{id} (Upload-Offset) envía un fragmento desde ese offset
+ * 3. GET/HEAD /tickets/subidas/{id} devuelve el offset confirmado para reanudar
+ * Al completarse, el id se envía como subidaId en el formulario del ticket.
+ * Conector Semántico - OneCard
+ */
+@Controller
+@RequestMapping("/tickets/subidas")
+@RequiredArgsConstructor
+@Slf4j
+public class SubidaTicketController {
+
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+
+    private final SubidaReanudableService subidaReanudableService;
+
+    /**
+     * Crear una subida
+     */
+    @PostMapping
+    @ResponseBody
+    public ResponseEntity<?> crear(@RequestHeader(UPLOAD_LENGTH) long tamanio,
+                                   @RequestParam(required = false) String nombre,
+                                   Principal principal) {
+        try {
+            SubidaReanudableService.EstadoSubida estado = subidaReanudableService.crear(principal.getName(), tamanio, nombre);
+            return ResponseEntity.created(URI.create("/tickets/subidas/" + estado.id()))
+                    .header(UPLOAD_OFFSET, String.valueOf(estado.offset()))
+                    .body(estado);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            log.error("Error al crear subida reanudable", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "No se pudo crear la subida"));
+        }
+    }
+
+    /**
+     * Offset confirmado de una subida (también responde a HEAD)
+     */
+    @GetMapping("/{id}")
+    @ResponseBody
+    public ResponseEntity<?> estado(@PathVariable String id, Principal principal) {
+        try {
+            SubidaReanudableService.EstadoSubida estado = subidaReanudableService.estado(id, principal.getName());
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    .header(UPLOAD_OFFSET, String.valueOf(estado.offset()))
+                    .header(UPLOAD_LENGTH, String.valueOf(estado.tamanio()))
+                    .body(estado);
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Escribir un fragmento; el cuerpo se lee en streaming, sin multipart
+     */
+    @PutMapping("/{id}")
+    @ResponseBody
+    public ResponseEntity<?> escribir(@PathVariable String id,
+                                      @RequestHeader(UPLOAD_OFFSET) long offset,
+                                      HttpServletRequest request,
+                                      Principal principal) {
+        try {
+            SubidaReanudableService.EstadoSubida estado = subidaReanudableService.escribir(
+                    id, principal.getName(), offset, request.getInputStream());
+            return ResponseEntity.ok()
+                    .header(UPLOAD_OFFSET, String.valueOf(estado.offset()))
+                    .body(estado);
+        } catch (SubidaReanudableService.OffsetInvalidoException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(UPLOAD_OFFSET, String.valueOf(e.getOffsetActual()))
+                    .body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            // Conexión cortada: el cliente consulta el offset y reanuda
+            log.warn("Fragmento incompleto en la subida {}: {}", id, e.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of("error", "Fragmento incompleto"));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Cancelar una subida
+     */
+    @DeleteMapping("/{id}")
+    @ResponseBody
+    public ResponseEntity<Void> cancelar(@PathVariable String id, Principal principal) {
+        try {
+            subidaReanudableService.cancelar(id, principal.getName());
+            return ResponseEntity.noContent().build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
@@ -5,15 +5,18 @@ import hackathon.team.model.Ticket;
 import hackathon.team.model.TicketItem;
 import hackathon.team.dao.UsuarioRepository;
 import hackathon.team.service.CategoriaService;
+import hackathon.team.service.CompraConjuntaService;
+import hackathon.team.service.PoliticaGastoService;
+import hackathon.team.service.TicketImageStore;
 import hackathon.team.service.TicketUploadService;
+import hackathon.team.service.VarianteImagenService;
+import hackathon.team.util.Dinero;
+import hackathon.team.util.RespuestaArchivoHttp;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -21,12 +24,14 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.nio.file.Path;
+import java.nio.file.NoSuchFileException;
+import java.security.Principal;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Controller para subir tickets con imagen
@@ -41,6 +46,12 @@ public class TicketUploadController {
     private final TicketUploadService ticketUploadService;
     private final UsuarioRepository usuarioRepository;
     private final CategoriaService categoriaService;
+    private final CompraConjuntaService compraConjuntaService;
+    private final PoliticaGastoService politicaGastoService;
+
+    // Las imágenes requieren sesión: solo el navegador del usuario puede guardarlas en cache
+    private static final String CACHE_INMUTABLE = "private, max-age=31536000, immutable";
+    private static final String CACHE_REVALIDAR = "private, no-cache";
 
     /**
      * Mostrar lista de todos los tickets
@@ -50,12 +61,12 @@ public class TicketUploadController {
         List<Ticket> tickets = ticketUploadService.obtenerTodosLosTickets();
         
         // Calcular estadísticas
-        BigDecimal totalGastado = tickets.stream()
-                .map(Ticket::getTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        BigDecimal promedioTicket = tickets.isEmpty() ? BigDecimal.ZERO :
-                totalGastado.divide(BigDecimal.valueOf(tickets.size()), 2, RoundingMode.HALF_UP);
+        long totalCentavos = tickets.stream()
+                .mapToLong(t -> Dinero.centavos(t.getTotal()))
+                .reduce(0L, Math::addExact);
+
+        BigDecimal totalGastado = Dinero.aBigDecimal(totalCentavos);
+        BigDecimal promedioTicket = Dinero.promedio(totalCentavos, tickets.size());
         
         Optional<Ticket> ticketMayor = tickets.stream()
                 .max(Comparator.comparing(Ticket::getTotal));
@@ -90,6 +101,9 @@ public class TicketUploadController {
                 .orElseThrow(() -> new RuntimeException("Ticket no encontrado"));
         
         model.addAttribute("ticket", ticket);
+        model.addAttribute("compradosJuntos", compraConjuntaService.recomendarPara(
+                ticket.getItems().stream().map(item -> item.getProducto().getId()).collect(Collectors.toSet()), 5));
+        model.addAttribute("violaciones", politicaGastoService.violacionesDe(id));
         return "tickets/detalle :: detalle";
     }
 
@@ -125,12 +139,15 @@ public class TicketUploadController {
     public String guardarTicket(@Valid @ModelAttribute("ticketDTO") TicketUploadDTO ticketDTO,
                                BindingResult result,
                                Model model,
+                               Principal principal,
                                RedirectAttributes redirectAttributes) {
         log.info("POST /tickets/guardar - Procesando subida de ticket");
 
-        // Validar imagen
+        // Validar imagen (la subida reanudable ya se validó al completarse)
         MultipartFile imagen = ticketDTO.getImagenTicket();
-        if (imagen == null || imagen.isEmpty()) {
+        if (ticketUploadService.tieneSubida(ticketDTO)) {
+            log.info("Ticket con subida reanudable: {}", ticketDTO.getSubidaId());
+        } else if (imagen == null || imagen.isEmpty()) {
             result.rejectValue("imagenTicket", "error.imagenTicket", "Debe subir una imagen del ticket");
         } else {
             // Validar tipo de archivo
@@ -161,7 +178,7 @@ public class TicketUploadController {
 
         try {
             // Guardar ticket
-            Ticket ticket = ticketUploadService.guardarTicket(ticketDTO);
+            Ticket ticket = ticketUploadService.guardarTicket(ticketDTO, principal.getName());
             log.info("Ticket guardado exitosamente: {}", ticket.getNumeroTicket());
             
             redirectAttributes.addFlashAttribute("mensaje", 
@@ -171,6 +188,8 @@ public class TicketUploadController {
             return "redirect:/tickets/lista";
         } catch (Exception e) {
             log.error("Error al guardar ticket", e);
+            // La subida reanudable ya se consumió: hay que volver a seleccionar la imagen
+            ticketDTO.setSubidaId(null);
             model.addAttribute("error", "Error al guardar el ticket: " + e.getMessage());
             model.addAttribute("usuarios", usuarioRepository.findAll());
             model.addAttribute("categorias", categoriaService.obtenerActivas());
@@ -181,35 +200,38 @@ public class TicketUploadController {
 
     /**
      * Ver imagen del ticket
+     * Las imágenes del almacén son inmutables: ETag = SHA-256 y cache de larga duración
+     * Con ?size=thumb o ?size=medium se sirve una variante redimensionada
      */
     @GetMapping("/imagen/{nombreArchivo:.+}")
-    @ResponseBody
-    public ResponseEntity<Resource> verImagen(@PathVariable String nombreArchivo) {
+    public void verImagen(@PathVariable String nombreArchivo,
+                          @RequestParam(name = "size", required = false) String size,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        if (nombreArchivo.contains("..") || nombreArchivo.contains("/") || nombreArchivo.contains("\\")) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        Optional<VarianteImagenService.Tamanio> tamanio = VarianteImagenService.Tamanio.desdeParametro(size);
+        Optional<TicketImageStore.ImagenAlmacenada> imagen = tamanio.isPresent()
+                ? ticketUploadService.obtenerVariante(nombreArchivo, tamanio.get())
+                : ticketUploadService.obtenerImagen(nombreArchivo);
+        if (imagen.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        TicketImageStore.ImagenAlmacenada almacenada = imagen.get();
+        String cacheControl = almacenada.sha256() != null ? CACHE_INMUTABLE : CACHE_REVALIDAR;
         try {
-            Path rutaArchivo = ticketUploadService.obtenerRutaImagen(nombreArchivo);
-            Resource resource = new UrlResource(rutaArchivo.toUri());
-
-            if (resource.exists() && resource.isReadable()) {
-                // Determinar el tipo de contenido
-                String contentType = "image/jpeg";
-                if (nombreArchivo.endsWith(".png")) {
-                    contentType = "image/png";
-                } else if (nombreArchivo.endsWith(".gif")) {
-                    contentType = "image/gif";
-                } else if (nombreArchivo.endsWith(".webp")) {
-                    contentType = "image/webp";
-                }
-
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType(contentType))
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + nombreArchivo + "\"")
-                        .body(resource);
-            } else {
-                return ResponseEntity.notFound().build();
-            }
-        } catch (Exception e) {
+            RespuestaArchivoHttp.enviar(request, response, almacenada.ruta(), almacenada.contentType(),
+                    almacenada.sha256(), cacheControl, nombreArchivo);
+        } catch (NoSuchFileException e) {
             log.error("Error al cargar imagen: {}", nombreArchivo, e);
-            return ResponseEntity.notFound().build();
+            if (!response.isCommitted()) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
         }
     }
 }
\ No newline at end of file
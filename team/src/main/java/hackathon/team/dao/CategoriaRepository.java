@@ -1,6 +1,7 @@
 package hackathon.team.dao;
 
 import hackathon.team.model.Categoria;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -21,6 +22,12 @@ public interface CategoriaRepository extends JpaRepository<Categoria, Long> {
      */
     Optional<Categoria> findByNombreIgnoreCase(String nombre);
 
+    /**
+     * Buscar categoría por ID junto con su categoría padre
+     */
+    @EntityGraph(attributePaths = "categoriaPadre")
+    Optional<Categoria> findConPadreById(Long id);
+
     /**
      * Verificar si existe una categoría con ese nombre
      */
@@ -35,11 +42,13 @@ public interface CategoriaRepository extends JpaRepository<Categoria, Long> {
     /**
      * Obtener todas las categorías activas
      */
+    @EntityGraph(attributePaths = "categoriaPadre")
     List<Categoria> findByActivaTrue();
 
     /**
      * Obtener todas las categorías ordenadas por nombre
      */
+    @EntityGraph(attributePaths = "categoriaPadre")
     List<Categoria> findAllByOrderByNombreAsc();
 
     /**
@@ -57,6 +66,7 @@ public interface CategoriaRepository extends JpaRepository<Categoria, Long> {
     /**
      * Obtener subcategorías de una categoría padre
      */
+    @EntityGraph(attributePaths = "categoriaPadre")
     @Query("SELECT c FROM Categoria c WHERE c.categoriaPadre.id = :padreId ORDER BY c.nombre ASC")
     List<Categoria> findSubcategoriasByPadreId(@Param("padreId") Long padreId);
 
@@ -73,6 +83,7 @@ public interface CategoriaRepository extends JpaRepository<Categoria, Long> {
     /**
      * Buscar categorías por palabra clave (búsqueda en nombre, descripción y palabras clave)
      */
+    @EntityGraph(attributePaths = "categoriaPadre")
     @Query("SELECT c FROM Categoria c WHERE " +
            "LOWER(c.nombre) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
            "LOWER(c.descripcion) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
@@ -91,6 +102,18 @@ public interface CategoriaRepository extends JpaRepository<Categoria, Long> {
     @Query("SELECT COUNT(c) FROM Categoria c WHERE c.categoriaPadre.id = :padreId")
     Long contarSubcategorias(@Param("padreId") Long padreId);
 
+    /**
+     * Cantidad de productos de cada categoría: [categoriaId, cantidad]
+     */
+    @Query("SELECT p.categoria.id, COUNT(p) FROM Producto p GROUP BY p.categoria.id")
+    List<Object[]> contarProductosAgrupados();
+
+    /**
+     * Cantidad de subcategorías de cada categoría padre: [categoriaPadreId, cantidad]
+     */
+    @Query("SELECT c.categoriaPadre.id, COUNT(c) FROM Categoria c WHERE c.categoriaPadre IS NOT NULL GROUP BY c.categoriaPadre.id")
+    List<Object[]> contarSubcategoriasAgrupadas();
+
     /**
      * Obtener categorías con sus contadores de productos
      */
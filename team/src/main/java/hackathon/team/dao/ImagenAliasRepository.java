@@ -0,0 +1,13 @@
+package hackathon.team.dao;
+
+import hackathon.team.model.ImagenAlias;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repositorio para ImagenAlias
+ * Conector Semántico - OneCard
+ */
+@Repository
+public interface ImagenAliasRepository extends JpaRepository<ImagenAlias, String> {
+}
@@ -0,0 +1,41 @@
+package hackathon.team.dao;
+
+import hackathon.team.model.ImagenBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repositorio para ImagenBlob
+ * Conector Semántico - OneCard
+ */
+@Repository
+public interface ImagenBlobRepository extends JpaRepository<ImagenBlob, String> {
+
+    /**
+     * Registrar una referencia al contenido (crea el registro si no existe)
+     */
+    @Modifying
+    @Query(value = "INSERT INTO imagen_blob (sha256, tamanio, content_type, referencias, fecha_creacion) " +
+                   "VALUES (:sha256, :tamanio, :contentType, 1, CURRENT_TIMESTAMP) " +
+                   "ON CONFLICT (sha256) DO UPDATE SET referencias = imagen_blob.referencias + 1", nativeQuery = true)
+    int agregarReferencia(@Param("sha256") String sha256,
+                          @Param("tamanio") Long tamanio,
+                          @Param("contentType") String contentType);
+
+    /**
+     * Quitar una referencia al contenido
+     */
+    @Modifying
+    @Query("UPDATE ImagenBlob b SET b.referencias = b.referencias - 1 WHERE b.sha256 = :sha256")
+    int quitarReferencia(@Param("sha256") String sha256);
+
+    /**
+     * Eliminar el registro si ya no tiene referencias
+     */
+    @Modifying
+    @Query("DELETE FROM ImagenBlob b WHERE b.sha256 = :sha256 AND b.referencias <= 0")
+    int eliminarSinReferencias(@Param("sha256") String sha256);
+}
@@ -0,0 +1,50 @@
+package hackathon.team.dao;
+
+import hackathon.team.model.ProductoPrecioEstadistica;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repositorio para ProductoPrecioEstadistica
+ * Conector Semántico - OneCard
+ */
+@Repository
+public interface ProductoPrecioEstadisticaRepository extends JpaRepository<ProductoPrecioEstadistica, Long> {
+
+    /**
+     * Estadísticas bloqueadas para actualizar (en orden de id para no cruzar bloqueos
+     * entre tickets con los mismos productos)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM ProductoPrecioEstadistica e WHERE e.productoId IN :ids ORDER BY e.productoId")
+    List<ProductoPrecioEstadistica> findParaActualizar(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Crear las filas vacías de los productos que no tengan (dos tickets pueden traer el
+     * mismo producto nuevo); se insertan en orden de id, igual que se bloquean
+     */
+    @Modifying
+    @Query(value = "INSERT INTO producto_precio_stats (producto_id, cantidad, media, m2, ewma, minimo, maximo) " +
+                   "SELECT p.id, 0, 0, 0, 0, 0, 0 FROM productos p WHERE p.id IN (:ids) ORDER BY p.id " +
+                   "ON CONFLICT (producto_id) DO NOTHING", nativeQuery = true)
+    int crearFaltantes(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Calcular las estadísticas iniciales desde el historial de items
+     * El promedio exponencial arranca en la media: el orden de los precios anteriores no se conserva.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO producto_precio_stats (producto_id, cantidad, media, m2, ewma, minimo, maximo, fecha_actualizacion) " +
+                   "SELECT producto_id, COUNT(*), AVG(precio_unitario), COALESCE(VAR_POP(precio_unitario) * COUNT(*), 0), " +
+                   "AVG(precio_unitario), MIN(precio_unitario), MAX(precio_unitario), CURRENT_TIMESTAMP " +
+                   "FROM ticket_items GROUP BY producto_id ON CONFLICT (producto_id) DO NOTHING", nativeQuery = true)
+    int calcularDesdeHistorial();
+}
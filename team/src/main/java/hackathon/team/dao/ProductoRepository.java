@@ -1,11 +1,15 @@
 package hackathon.team.dao;
 
 import hackathon.team.model.Producto;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -17,11 +21,13 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
     /**
      * Buscar productos activos
      */
+    @EntityGraph(attributePaths = "categoria")
     List<Producto> findByActivoTrue();
 
     /**
      * Buscar productos por categoría
      */
+    @EntityGraph(attributePaths = "categoria")
     @Query("SELECT p FROM Producto p WHERE p.categoria.id = :categoriaId AND p.activo = true")
     List<Producto> findByCategoria(@Param("categoriaId") Long categoriaId);
 
@@ -29,6 +35,7 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
      * Búsqueda semántica de productos
      * Busca en: nombre, marca, categoría y palabras clave
      */
+    @EntityGraph(attributePaths = "categoria")
     @Query("SELECT DISTINCT p FROM Producto p " +
            "LEFT JOIN p.categoria c " +
            "WHERE p.activo = true AND (" +
@@ -43,4 +50,40 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
      */
     @Query("SELECT p FROM Producto p WHERE LOWER(p.nombre) = LOWER(:nombre) AND p.activo = true")
     List<Producto> findByNombreIgnoreCase(@Param("nombre") String nombre);
-}
\ No newline at end of file
+
+    /**
+     * Buscar productos por clave normalizada (una sola consulta IN)
+     */
+    List<Producto> findByClaveNormalizadaIn(Collection<String> claves);
+
+    /**
+     * Productos activos sin clave normalizada (cargados fuera de JPA)
+     */
+    List<Producto> findByClaveNormalizadaIsNullAndActivoTrueOrderByIdAsc();
+
+    /**
+     * Claves normalizadas ya asignadas
+     */
+    @Query("SELECT p.claveNormalizada FROM Producto p WHERE p.claveNormalizada IS NOT NULL")
+    List<String> findClavesNormalizadas();
+
+    /**
+     * Asignar clave normalizada sin disparar el ciclo de vida de la entidad
+     */
+    @Modifying
+    @Query(value = "UPDATE productos SET clave_normalizada = :clave WHERE id = :id", nativeQuery = true)
+    int asignarClaveNormalizada(@Param("id") Long id, @Param("clave") String clave);
+
+    /**
+     * Insertar producto si no existe otro con la misma clave normalizada
+     */
+    @Modifying
+    @Query(value = "INSERT INTO productos (nombre, marca, precio_referencia, categoria_id, activo, fecha_creacion, clave_normalizada) " +
+                   "VALUES (:nombre, :marca, :precio, :categoriaId, true, CURRENT_TIMESTAMP, :clave) " +
+                   "ON CONFLICT (clave_normalizada) DO NOTHING", nativeQuery = true)
+    int insertarSiNoExiste(@Param("nombre") String nombre,
+                           @Param("marca") String marca,
+                           @Param("precio") BigDecimal precio,
+                           @Param("categoriaId") Long categoriaId,
+                           @Param("clave") String clave);
+}
@@ -1,7 +1,9 @@
 package hackathon.team.dao;
 
 import hackathon.team.model.Ticket;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -19,13 +21,51 @@ import java.util.Optional;
 @Repository
 public interface TicketRepository extends JpaRepository<Ticket, Long> {
 
+    /**
+     * Tickets para la vista de lista (más recientes primero)
+     */
+    @EntityGraph(Ticket.GRAFO_LISTA)
+    @Query("SELECT t FROM Ticket t ORDER BY t.fechaHora DESC")
+    List<Ticket> findParaLista();
+
+    /**
+     * Ticket con items, productos y categorías para la vista de detalle
+     */
+    @EntityGraph(Ticket.GRAFO_DETALLE)
+    Optional<Ticket> findDetalleById(Long id);
+
     /**
      * Buscar ticket por número
      */
     Optional<Ticket> findByNumeroTicket(String numeroTicket);
 
+    /**
+     * Verificar si algún ticket referencia una imagen
+     */
+    boolean existsByImagenTicket(String imagenTicket);
+
+    /**
+     * Ticket creado a partir de la factura CFDI con este UUID
+     */
+    Optional<Ticket> findByCfdiUuid(String cfdiUuid);
+
+    /**
+     * Guardar el hash perceptual de la imagen y el posible duplicado detectado
+     */
+    @Modifying
+    @Query("UPDATE Ticket t SET t.hashPerceptual = :hash, t.posibleDuplicadoId = :duplicadoId WHERE t.id = :id")
+    int asignarHashPerceptual(@Param("id") Long id, @Param("hash") long hash, @Param("duplicadoId") Long duplicadoId);
+
+    /**
+     * Quitar la marca de duplicado que apunta a un ticket eliminado
+     */
+    @Modifying
+    @Query("UPDATE Ticket t SET t.posibleDuplicadoId = NULL WHERE t.posibleDuplicadoId = :id")
+    int limpiarPosibleDuplicado(@Param("id") Long id);
+
     /**
      * Buscar tickets por usuario
+     * Devuelve todo el historial: para paginar usar HistorialTicketService
      */
     @Query("SELECT t FROM Ticket t WHERE t.usuario.id = :usuarioId ORDER BY t.fechaHora DESC")
     List<Ticket> findByUsuario(@Param("usuarioId") Long usuarioId);
@@ -78,23 +118,4 @@ public interface TicketRepository extends JpaRepository<Ticket, Long> {
      */
     @Query("SELECT t FROM Ticket t WHERE t.metodoPago = :metodoPago AND t.estado = 'completado'")
     List<Ticket> findByMetodoPago(@Param("metodoPago") String metodoPago);
-
-    /**
-     * Usuarios que compraron productos de una categoría
-     */
-    @Query("SELECT DISTINCT t.usuario FROM Ticket t " +
-           "JOIN t.items ti " +
-           "JOIN ti.producto p " +
-           "JOIN p.categoria c " +
-           "WHERE LOWER(c.nombre) LIKE LOWER(CONCAT('%', :categoria, '%')) " +
-           "AND t.estado = 'completado'")
-    List<Object[]> findUsuariosPorCategoria(@Param("categoria") String categoria);
-
-    /**
-     * Obtener los últimos números de ticket
-     */
-    @Query("SELECT t.numeroTicket FROM Ticket t " +
-           "WHERE t.numeroTicket LIKE :prefijo " +
-           "ORDER BY t.id DESC")
-    List<String> findTicketsPorPrefijo(@Param("prefijo") String prefijo);
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+package hackathon.team.dao;
+
+import hackathon.team.model.Producto;
+import hackathon.team.model.Ticket;
+import hackathon.team.model.TicketItem;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Criterios de búsqueda de tickets combinables
+ * Cada criterio con valor nulo o vacío no filtra (devuelve null, que Specification ignora).
+ * Conector Semántico - OneCard
+ */
+public final class TicketSpecifications {
+
+    private TicketSpecifications() {
+    }
+
+    /**
+     * Desde el inicio del día indicado
+     */
+    public static Specification<Ticket> fechaDesde(LocalDate desde) {
+        return desde == null ? null
+                : (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("fechaHora"), desde.atStartOfDay());
+    }
+
+    /**
+     * Hasta el final del día indicado
+     */
+    public static Specification<Ticket> fechaHasta(LocalDate hasta) {
+        return hasta == null ? null
+                : (root, query, cb) -> cb.lessThan(root.get("fechaHora"), hasta.plusDays(1).atStartOfDay());
+    }
+
+    public static Specification<Ticket> totalMinimo(BigDecimal minimo) {
+        return minimo == null ? null
+                : (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("total"), minimo);
+    }
+
+    public static Specification<Ticket> totalMaximo(BigDecimal maximo) {
+        return maximo == null ? null
+                : (root, query, cb) -> cb.lessThanOrEqualTo(root.get("total"), maximo);
+    }
+
+    public static Specification<Ticket> deUsuario(Long usuarioId) {
+        return usuarioId == null ? null
+                : (root, query, cb) -> cb.equal(root.get("usuario").get("id"), usuarioId);
+    }
+
+    public static Specification<Ticket> conMetodoPago(String metodoPago) {
+        return metodoPago == null || metodoPago.isBlank() ? null
+                : (root, query, cb) -> cb.equal(root.get("metodoPago"), metodoPago.trim());
+    }
+
+    public static Specification<Ticket> conEstado(String estado) {
+        return estado == null || estado.isBlank() ? null
+                : (root, query, cb) -> cb.equal(root.get("estado"), estado.trim());
+    }
+
+    /**
+     * Tickets con al menos un item cuyo producto contiene el texto y/o es de la categoría
+     * Ambas condiciones se aplican al mismo item (EXISTS, sin duplicar tickets)
+     */
+    public static Specification<Ticket> conProducto(String texto, Long categoriaId) {
+        boolean conTexto = texto != null && !texto.isBlank();
+        if (!conTexto && categoriaId == null) {
+            return null;
+        }
+        return (root, query, cb) -> {
+            Subquery<Long> items = query.subquery(Long.class);
+            Root<TicketItem> item = items.from(TicketItem.class);
+            Join<TicketItem, Producto> producto = item.join("producto");
+
+            List<Predicate> condiciones = new ArrayList<>();
+            condiciones.add(cb.equal(item.get("ticket"), root));
+            if (conTexto) {
+                // lower(nombre) LIKE '%texto%' usa el índice de trigramas de productos
+                condiciones.add(cb.like(cb.lower(producto.get("nombre")),
+                        "%" + escaparLike(texto.trim().toLowerCase(Locale.ROOT)) + "%", '\\'));
+            }
+            if (categoriaId != null) {
+                condiciones.add(cb.equal(producto.get("categoria").get("id"), categoriaId));
+            }
+            items.select(item.get("id")).where(condiciones.toArray(Predicate[]::new));
+            return cb.exists(items);
+        };
+    }
+
+    private static String escaparLike(String texto) {
+        return texto.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,20 @@
+package hackathon.team.dao;
+
+import hackathon.team.model.ViolacionPolitica;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repositorio para ViolacionPolitica
+ * Conector Semántico - OneCard
+ */
+@Repository
+public interface ViolacionPoliticaRepository extends JpaRepository<ViolacionPolitica, Long> {
+
+    List<ViolacionPolitica> findByTicketIdOrderById(Long ticketId);
+
+    List<ViolacionPolitica> findByTicketIdIn(Collection<Long> ticketIds);
+}
@@ -1,5 +1,6 @@
 package hackathon.team.dtos;
 
+import hackathon.team.util.Dinero;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -44,10 +45,11 @@ public class TicketUploadDTO {
     @Size(max = 2000, message = "Las observaciones no pueden exceder 2000 caracteres")
     private String observaciones;
 
-    // Imagen del ticket
-    @NotNull(message = "Debe subir una imagen del ticket")
+    // Imagen del ticket: archivo del formulario o id de una subida reanudable ya completa
     private MultipartFile imagenTicket;
 
+    private String subidaId;
+
     private String rutaImagen;
 
     // Lista de productos del ticket
@@ -88,11 +90,7 @@ public class TicketUploadDTO {
             if (precioUnitario == null || cantidad == null) {
                 return BigDecimal.ZERO;
             }
-            BigDecimal subtotalBase = precioUnitario.multiply(new BigDecimal(cantidad));
-            if (descuento != null) {
-                return subtotalBase.subtract(descuento);
-            }
-            return subtotalBase;
+            return Dinero.de(precioUnitario).por(cantidad).menos(Dinero.de(descuento)).aBigDecimal();
         }
     }
 
@@ -116,12 +114,14 @@ public class TicketUploadDTO {
             return;
         }
 
-        this.subtotal = productos.stream()
-                .map(ProductoTicketDTO::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        long subtotalCentavos = productos.stream()
+                .mapToLong(producto -> Dinero.centavos(producto.getSubtotal()))
+                .reduce(0L, Math::addExact);
 
-        this.total = this.subtotal
-                .add(this.impuestos != null ? this.impuestos : BigDecimal.ZERO)
-                .subtract(this.descuentos != null ? this.descuentos : BigDecimal.ZERO);
+        this.subtotal = Dinero.aBigDecimal(subtotalCentavos);
+        this.total = new Dinero(subtotalCentavos)
+                .mas(Dinero.de(this.impuestos))
+                .menos(Dinero.de(this.descuentos))
+                .aBigDecimal();
     }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package hackathon.team.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidad ImagenAlias (nombre de archivo público -> contenido almacenado)
+ * Mantiene válidas las URLs /tickets/imagen/{nombreArchivo}
+ * Conector Semántico - OneCard
+ */
+@Entity
+@Table(name = "imagen_alias", indexes = {
+        @Index(name = "idx_imagen_alias_sha256", columnList = "sha256")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImagenAlias {
+
+    @Id
+    @Column(name = "nombre_archivo", length = 255)
+    private String nombreArchivo;
+
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    @CreationTimestamp
+    @Column(name = "fecha_creacion", nullable = false, updatable = false)
+    private LocalDateTime fechaCreacion;
+
+    /**
+     * Constructor con los campos principales
+     */
+    public ImagenAlias(String nombreArchivo, String sha256) {
+        this.nombreArchivo = nombreArchivo;
+        this.sha256 = sha256;
+    }
+}
@@ -0,0 +1,39 @@
+package hackathon.team.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidad ImagenBlob (contenido único de una imagen, identificado por su SHA-256)
+ * Conector Semántico - OneCard
+ */
+@Entity
+@Table(name = "imagen_blob")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImagenBlob {
+
+    @Id
+    @Column(length = 64)
+    private String sha256;
+
+    @Column(nullable = false)
+    private Long tamanio;
+
+    @Column(name = "content_type", nullable = false, length = 50)
+    private String contentType;
+
+    // Número de nombres de archivo (tickets) que apuntan a este contenido
+    @Column(nullable = false)
+    private Integer referencias = 0;
+
+    @CreationTimestamp
+    @Column(name = "fecha_creacion", nullable = false, updatable = false)
+    private LocalDateTime fechaCreacion;
+}
@@ -1,5 +1,6 @@
 package hackathon.team.model;
 
+import hackathon.team.util.NormalizadorTexto;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -14,7 +15,10 @@ import java.time.LocalDateTime;
  * Solo campos esenciales para clasificación
  */
 @Entity
-@Table(name = "productos")
+@Table(name = "productos", indexes = {
+        @Index(name = "ux_productos_clave_normalizada", columnList = "clave_normalizada", unique = true),
+        @Index(name = "ix_productos_categoria", columnList = "categoria_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -33,7 +37,7 @@ public class Producto {
     @Column(name = "precio_referencia", precision = 10, scale = 2)
     private BigDecimal precioReferencia;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "categoria_id", nullable = false)
     private Categoria categoria;
 
@@ -44,6 +48,25 @@ public class Producto {
     @Column(name = "fecha_creacion", nullable = false, updatable = false)
     private LocalDateTime fechaCreacion;
 
+    // Nombre + marca normalizados; null en productos inactivos para liberar la clave
+    @Column(name = "clave_normalizada", length = 710)
+    private String claveNormalizada;
+
+    // Duplicado histórico que quedó sin clave al crear el índice único: la conserva nula
+    @Transient
+    private boolean duplicadoSinClave;
+
+    /**
+     * Mantener la clave normalizada sincronizada con nombre y marca
+     */
+    @PrePersist
+    @PreUpdate
+    void actualizarClaveNormalizada() {
+        this.claveNormalizada = Boolean.TRUE.equals(activo) && !duplicadoSinClave
+                ? NormalizadorTexto.claveProducto(nombre, marca)
+                : null;
+    }
+
     /**
      * Método helper para obtener el nombre completo
      */
@@ -0,0 +1,89 @@
+package hackathon.team.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidad ProductoPrecioEstadistica (estadísticas acumuladas del precio unitario de un producto)
+ * Una fila por producto con media y varianza de Welford (m2 = suma de cuadrados de las
+ * diferencias), promedio exponencial, mínimo y máximo: se actualiza en O(1) por item.
+ * Conector Semántico - OneCard
+ */
+@Entity
+@Table(name = "producto_precio_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductoPrecioEstadistica {
+
+    @Id
+    @Column(name = "producto_id")
+    private Long productoId;
+
+    @Column(nullable = false)
+    private Long cantidad = 0L;
+
+    @Column(nullable = false)
+    private Double media = 0.0;
+
+    @Column(nullable = false)
+    private Double m2 = 0.0;
+
+    @Column(nullable = false)
+    private Double ewma = 0.0;
+
+    @Column(nullable = false)
+    private Double minimo = 0.0;
+
+    @Column(nullable = false)
+    private Double maximo = 0.0;
+
+    @UpdateTimestamp
+    @Column(name = "fecha_actualizacion")
+    private LocalDateTime fechaActualizacion;
+
+    /**
+     * Desviación estándar muestral (0 con menos de dos precios)
+     */
+    @Transient
+    public double getDesviacionEstandar() {
+        return cantidad > 1 ? Math.sqrt(m2 / (cantidad - 1)) : 0.0;
+    }
+
+    /**
+     * Indica si el precio se aleja de la media más de 'sigmas' desviaciones
+     * La tolerancia relativa evita marcar cambios de centavos en productos de precio fijo
+     * (desviación casi cero).
+     */
+    public boolean esAtipico(double precio, double sigmas, long minMuestras, double toleranciaRelativa) {
+        if (cantidad < minMuestras) {
+            return false;
+        }
+        double diferencia = Math.abs(precio - media);
+        return diferencia > sigmas * getDesviacionEstandar() && diferencia > toleranciaRelativa * Math.abs(media);
+    }
+
+    /**
+     * Sumar un precio (Welford y promedio exponencial con peso 'alfa' para el nuevo valor)
+     */
+    public void agregar(double precio, double alfa) {
+        cantidad++;
+        double delta = precio - media;
+        media += delta / cantidad;
+        m2 += delta * (precio - media);
+        if (cantidad == 1) {
+            ewma = precio;
+            minimo = precio;
+            maximo = precio;
+        } else {
+            ewma = alfa * precio + (1 - alfa) * ewma;
+            minimo = Math.min(minimo, precio);
+            maximo = Math.max(maximo, precio);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package hackathon.team.model;
 
+import hackathon.team.util.Dinero;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -16,12 +17,35 @@ import java.util.List;
  * Conector Semántico - OneCard
  */
 @Entity
-@Table(name = "ticket")
+@NamedEntityGraph(name = Ticket.GRAFO_LISTA, attributeNodes = {
+        @NamedAttributeNode("usuario"),
+        @NamedAttributeNode("items")
+})
+@NamedEntityGraph(name = Ticket.GRAFO_DETALLE, attributeNodes = {
+        @NamedAttributeNode("usuario"),
+        @NamedAttributeNode(value = "items", subgraph = "items")
+}, subgraphs = {
+        @NamedSubgraph(name = "items", attributeNodes = @NamedAttributeNode(value = "producto", subgraph = "producto")),
+        @NamedSubgraph(name = "producto", attributeNodes = @NamedAttributeNode("categoria"))
+})
+@Table(name = "ticket", indexes = {
+        @Index(name = "ix_ticket_estado_id", columnList = "estado, id"),
+        // Búsqueda de tickets: cada filtro frecuente con el orden del resultado
+        @Index(name = "ix_ticket_fecha_id", columnList = "fecha_hora DESC, id DESC"),
+        @Index(name = "ix_ticket_metodo_pago_fecha", columnList = "metodo_pago, fecha_hora DESC"),
+        @Index(name = "ix_ticket_estado_fecha", columnList = "estado, fecha_hora DESC"),
+        @Index(name = "ix_ticket_total", columnList = "total")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Ticket {
 
+    // Planes de carga por vista: la lista muestra usuario y cantidad de items,
+    // el detalle además el producto y la categoría de cada item
+    public static final String GRAFO_LISTA = "Ticket.lista";
+    public static final String GRAFO_DETALLE = "Ticket.detalle";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -29,7 +53,7 @@ public class Ticket {
     @Column(name = "numero_ticket", nullable = false, unique = true, length = 50)
     private String numeroTicket;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "usuario_id", nullable = false)
     private Usuario usuario;
 
@@ -56,6 +80,10 @@ public class Ticket {
     @Column(length = 50)
     private String estado = "completado";
 
+    // Momento en que el worker de clasificación tomó el ticket (o lo intentó por última vez)
+    @Column(name = "fecha_reclamo")
+    private LocalDateTime fechaReclamo;
+
     @Column(columnDefinition = "TEXT")
     private String observaciones;
 
@@ -63,6 +91,18 @@ public class Ticket {
     @Column(name = "imagen_ticket", length = 255)
     private String imagenTicket;
 
+    // dHash de 64 bits de la imagen, para detectar tickets subidos dos veces
+    @Column(name = "hash_perceptual")
+    private Long hashPerceptual;
+
+    // Ticket anterior con imagen casi igual, mismo total y fecha cercana (a revisar)
+    @Column(name = "posible_duplicado_id")
+    private Long posibleDuplicadoId;
+
+    // UUID del timbre fiscal cuando el ticket viene de una factura CFDI (una sola vez por factura)
+    @Column(name = "cfdi_uuid", unique = true, length = 36)
+    private String cfdiUuid;
+
     @OneToMany(mappedBy = "ticket", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<TicketItem> items = new ArrayList<>();
 
@@ -86,13 +126,15 @@ public class Ticket {
      * Método helper para calcular el total del ticket
      */
     public void calcularTotal() {
-        this.subtotal = items.stream()
-                .map(TicketItem::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        this.total = this.subtotal
-                .add(this.impuestos != null ? this.impuestos : BigDecimal.ZERO)
-                .subtract(this.descuentos != null ? this.descuentos : BigDecimal.ZERO);
+        long subtotalCentavos = items.stream()
+                .mapToLong(item -> Dinero.centavos(item.getSubtotal()))
+                .reduce(0L, Math::addExact);
+
+        this.subtotal = Dinero.aBigDecimal(subtotalCentavos);
+        this.total = new Dinero(subtotalCentavos)
+                .mas(Dinero.de(this.impuestos))
+                .menos(Dinero.de(this.descuentos))
+                .aBigDecimal();
     }
 
     /**
@@ -1,5 +1,6 @@
 package hackathon.team.model;
 
+import hackathon.team.util.Dinero;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -12,7 +13,10 @@ import java.math.BigDecimal;
  * Conector Semántico - OneCard
  */
 @Entity
-@Table(name = "ticket_items")
+@Table(name = "ticket_items", indexes = {
+        @Index(name = "ix_ticket_items_ticket", columnList = "ticket_id"),
+        @Index(name = "ix_ticket_items_producto_ticket", columnList = "producto_id, ticket_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -26,7 +30,7 @@ public class TicketItem {
     @JoinColumn(name = "ticket_id", nullable = false)
     private Ticket ticket;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "producto_id", nullable = false)
     private Producto producto;
 
@@ -42,6 +46,10 @@ public class TicketItem {
     @Column(precision = 10, scale = 2)
     private BigDecimal descuento = BigDecimal.ZERO;
 
+    // Precio unitario fuera del rango habitual del producto al momento de subir el ticket
+    @Column(name = "precio_atipico", nullable = false, columnDefinition = "boolean default false")
+    private Boolean precioAtipico = false;
+
     /**
      * Constructor con los campos principales
      */
@@ -53,11 +61,11 @@ public class TicketItem {
     }
 
     /**
-     * Método para calcular el subtotal
+     * Método para calcular el subtotal (en centavos, como se guarda)
      */
     public void calcularSubtotal() {
-        BigDecimal subtotalBase = this.precioUnitario.multiply(new BigDecimal(this.cantidad));
-        this.subtotal = subtotalBase.subtract(this.descuento != null ? this.descuento : BigDecimal.ZERO);
+        Dinero subtotalBase = Dinero.de(this.precioUnitario).por(this.cantidad);
+        this.subtotal = subtotalBase.menos(Dinero.de(this.descuento)).aBigDecimal();
     }
 
     /**
@@ -0,0 +1,59 @@
+package hackathon.team.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Entidad ViolacionPolitica (incumplimiento de una política de gasto por un ticket)
+ * Las de límite diario o mensual no tienen item; las de categoría o tope indican el item.
+ * Conector Semántico - OneCard
+ */
+@Entity
+@Table(name = "violacion_politica", indexes = {
+        @Index(name = "ix_violacion_ticket", columnList = "ticket_id"),
+        @Index(name = "ix_violacion_usuario_fecha", columnList = "usuario_id, fecha_registro DESC")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ViolacionPolitica {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "ticket_id", nullable = false)
+    private Long ticketId;
+
+    @Column(name = "ticket_item_id")
+    private Long ticketItemId;
+
+    @Column(name = "usuario_id", nullable = false)
+    private Long usuarioId;
+
+    @Column(nullable = false, length = 100)
+    private String regla;
+
+    @Column(nullable = false, length = 30)
+    private String tipo;
+
+    // Gasto acumulado o subtotal del item que incumple
+    @Column(precision = 12, scale = 2)
+    private BigDecimal monto;
+
+    @Column(precision = 12, scale = 2)
+    private BigDecimal limite;
+
+    @Column(length = 255)
+    private String detalle;
+
+    @CreationTimestamp
+    @Column(name = "fecha_registro", nullable = false, updatable = false)
+    private LocalDateTime fechaRegistro;
+}
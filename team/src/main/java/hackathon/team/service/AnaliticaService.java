@@ -0,0 +1,479 @@
+package hackathon.team.service;
+
+import hackathon.team.util.CuboGasto;
+import hackathon.team.util.Dinero;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Analítica de gasto por usuario, categoría, método de pago y periodo (cubo en memoria)
+ * El cubo guarda el gasto de los tickets completados por (día, usuario, categoría del
+ * producto, método de pago). La jerarquía de categorías se aplica al consultar: filtrar
+ * una categoría incluye su subárbol y agrupar por categoría acumula en sus hijas directas
+ * (o en las raíces sin filtro). Los tickets completados se agregan al llegar; la carga
+ * completa se repite cada noche para reflejar tickets eliminados y productos reclasificados.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class AnaliticaService {
+
+    private static final String SQL_CELDAS =
+            "SELECT (t.fecha_hora::date - DATE '1970-01-01') AS dia, t.usuario_id, p.categoria_id, t.metodo_pago, " +
+            "SUM(i.subtotal) AS gasto, SUM(i.cantidad) AS cantidad, COUNT(*) AS lineas " +
+            "FROM ticket t JOIN ticket_items i ON i.ticket_id = t.id JOIN productos p ON p.id = i.producto_id " +
+            "WHERE t.estado = 'completado' GROUP BY 1, 2, 3, 4 ORDER BY 1";
+
+    private static final String SQL_CELDAS_TICKETS =
+            "SELECT (t.fecha_hora::date - DATE '1970-01-01') AS dia, t.usuario_id, p.categoria_id, t.metodo_pago, " +
+            "SUM(i.subtotal) AS gasto, SUM(i.cantidad) AS cantidad, COUNT(*) AS lineas " +
+            "FROM ticket t JOIN ticket_items i ON i.ticket_id = t.id JOIN productos p ON p.id = i.producto_id " +
+            "WHERE t.id IN (:ids) AND t.estado = 'completado' GROUP BY 1, 2, 3, 4";
+
+    private static final String SQL_COMPLETADOS = "SELECT id FROM ticket WHERE id IN (:ids) AND estado = 'completado'";
+
+    private static final String SQL_CATEGORIAS = "SELECT id, nombre, categoria_padre_id FROM categoria";
+
+    private final NamedParameterJdbcTemplate cursor;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ForkJoinPool pool;
+
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+    private Estado estado = new Estado(new CuboGasto(16));
+    // Tickets completados durante la carga completa, para agregar al cubo nuevo los que no vio
+    private List<List<Long>> durante;
+
+    public AnaliticaService(DataSource dataSource,
+                            NamedParameterJdbcTemplate namedJdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.analitica.paralelismo:0}") int paralelismo) {
+        JdbcTemplate jdbcCursor = new JdbcTemplate(dataSource);
+        jdbcCursor.setFetchSize(10_000);
+        this.cursor = new NamedParameterJdbcTemplate(jdbcCursor);
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        // Categorías, celdas y tickets ya vistos salen de la misma instantánea
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.pool = new ForkJoinPool(paralelismo > 0 ? paralelismo : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Dimensiones por las que se puede agrupar
+     */
+    public enum Dimension {
+        USUARIO, CATEGORIA, METODO_PAGO, PERIODO;
+
+        public static Optional<Dimension> desdeParametro(String valor) {
+            try {
+                return Optional.of(valueOf(valor.trim().toUpperCase(Locale.ROOT).replace('-', '_')));
+            } catch (IllegalArgumentException e) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Consulta: filtros opcionales (null = todos) y dimensiones de agrupación
+     */
+    public record Consulta(LocalDate desde, LocalDate hasta, Long usuarioId, Long categoriaId, String metodoPago,
+                           Set<Dimension> agrupar, HistorialTicketService.Periodo periodo) {
+    }
+
+    /**
+     * Grupo del resultado; las dimensiones que no se agrupan van en null
+     */
+    public record Celda(LocalDate periodo, Long usuarioId, Long categoriaId, String categoria, String metodoPago,
+                        BigDecimal gasto, long cantidad, long lineas) {
+    }
+
+    /**
+     * Resultado de la consulta: grupos (hasta el límite) y total de grupos encontrados
+     */
+    public record Resultado(List<Celda> celdas, int grupos, long microsegundos) {
+    }
+
+    /**
+     * Celda leída de la base de datos, antes de pasar a índices densos
+     */
+    private record Fila(int dia, long usuarioId, long categoriaId, String metodoPago, BigDecimal gasto,
+                        long cantidad, int lineas) {
+    }
+
+    /**
+     * Cubo y diccionarios de índices densos
+     */
+    private static final class Estado {
+        private final CuboGasto cubo;
+        private final Map<Long, Integer> usuarios = new HashMap<>();
+        private final List<Long> usuarioIds = new ArrayList<>();
+        private final Map<Long, Integer> categorias = new HashMap<>();
+        private final List<Long> categoriaIds = new ArrayList<>();
+        private final List<String> categoriaNombres = new ArrayList<>();
+        private final List<Integer> padres = new ArrayList<>();
+        private final Map<String, Integer> metodos = new HashMap<>();
+        private final List<String> metodoNombres = new ArrayList<>();
+        private int diaMin = Integer.MAX_VALUE;
+        private int diaMax = Integer.MIN_VALUE;
+
+        private Estado(CuboGasto cubo) {
+            this.cubo = cubo;
+        }
+
+        private int usuario(long id) {
+            return usuarios.computeIfAbsent(id, k -> {
+                usuarioIds.add(k);
+                return usuarioIds.size() - 1;
+            });
+        }
+
+        private int metodo(String nombre) {
+            return metodos.computeIfAbsent(nombre, k -> {
+                metodoNombres.add(k);
+                return metodoNombres.size() - 1;
+            });
+        }
+
+        /**
+         * Cargar (o refrescar) las categorías: las nuevas reciben índice y se actualizan los padres
+         */
+        private void cargarCategorias(List<Object[]> filas) {
+            Map<Long, Long> padrePorId = new HashMap<>();
+            for (Object[] fila : filas) {
+                long id = (Long) fila[0];
+                Integer indice = categorias.get(id);
+                if (indice == null) {
+                    categorias.put(id, categoriaIds.size());
+                    categoriaIds.add(id);
+                    categoriaNombres.add((String) fila[1]);
+                    padres.add(-1);
+                } else {
+                    categoriaNombres.set(indice, (String) fila[1]);
+                }
+                padrePorId.put(id, (Long) fila[2]);
+            }
+            padrePorId.forEach((id, padre) -> padres.set(categorias.get(id),
+                    padre != null && categorias.containsKey(padre) ? categorias.get(padre) : -1));
+        }
+    }
+
+    /**
+     * Cargar en segundo plano al arrancar
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        Thread.ofVirtual().name("analitica-carga").start(this::reconstruir);
+    }
+
+    /**
+     * Carga completa del cubo desde la base de datos
+     */
+    @Scheduled(cron = "${app.analitica.reconstruccion-cron:0 15 4 * * *}")
+    public synchronized void reconstruir() {
+        long inicio = System.nanoTime();
+        candado.writeLock().lock();
+        try {
+            durante = new ArrayList<>();
+        } finally {
+            candado.writeLock().unlock();
+        }
+
+        try {
+            Estado nuevo = new Estado(new CuboGasto(1 << 16));
+            Set<Long> vistos = new HashSet<>();
+            int[] revisados = {0};
+            transactionTemplate.executeWithoutResult(status -> {
+                nuevo.cargarCategorias(leerCategorias());
+                cursor.query(SQL_CELDAS, new MapSqlParameterSource(), rs -> {
+                    agregarCeldaSinPublicar(nuevo, fila(rs));
+                });
+                // Tickets avisados mientras se leía que la instantánea ya cuenta como completados
+                List<Long> avisados = avisadosDesde(revisados);
+                if (!avisados.isEmpty()) {
+                    vistos.addAll(namedJdbcTemplate.queryForList(SQL_COMPLETADOS,
+                            new MapSqlParameterSource("ids", avisados), Long.class));
+                }
+            });
+            nuevo.cubo.marcarOrdenadas();
+
+            // Agregar los que no vio (los avisados después de la lectura ya no están en la instantánea);
+            // las consultas van sin el candado y el cambio de cubo con él
+            while (true) {
+                List<Long> pendientes;
+                candado.writeLock().lock();
+                try {
+                    if (revisados[0] == durante.size()) {
+                        estado = nuevo;
+                        durante = null;
+                        break;
+                    }
+                    pendientes = avisadosDesde(revisados);
+                } finally {
+                    candado.writeLock().unlock();
+                }
+                pendientes.removeIf(vistos::contains);
+                if (!pendientes.isEmpty()) {
+                    leerTickets(pendientes).forEach(fila -> agregarCeldaSinPublicar(nuevo, fila));
+                }
+            }
+            log.info("Cubo de analítica: {} celdas, {} usuarios, {} categorías en {} ms",
+                    nuevo.cubo.tamanio(), nuevo.usuarioIds.size(), nuevo.categoriaIds.size(),
+                    (System.nanoTime() - inicio) / 1_000_000);
+        } catch (RuntimeException e) {
+            candado.writeLock().lock();
+            try {
+                durante = null;
+            } finally {
+                candado.writeLock().unlock();
+            }
+            log.error("No se pudo cargar el cubo de analítica", e);
+        }
+    }
+
+    /**
+     * Agregar al cubo los tickets recién completados
+     */
+    @EventListener
+    public void alCompletarTickets(TicketsCompletadosEvent evento) {
+        try {
+            List<Fila> filas = leerTickets(evento.ticketIds());
+            // Las categorías nuevas se leen antes de tomar el candado de escritura
+            boolean nuevas;
+            candado.readLock().lock();
+            try {
+                Estado actual = estado;
+                nuevas = filas.stream().anyMatch(fila -> !actual.categorias.containsKey(fila.categoriaId()));
+            } finally {
+                candado.readLock().unlock();
+            }
+            List<Object[]> categorias = nuevas ? leerCategorias() : null;
+            candado.writeLock().lock();
+            try {
+                Estado actual = estado;
+                if (categorias != null) {
+                    actual.cargarCategorias(categorias);
+                }
+                filas.forEach(fila -> agregarCelda(actual, fila));
+                if (durante != null) {
+                    durante.add(evento.ticketIds());
+                }
+            } finally {
+                candado.writeLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            log.error("No se pudieron agregar los tickets completados a el cubo de analítica", e);
+        }
+    }
+
+    /**
+     * Agrupar el gasto según la consulta
+     *
+     * @param limite grupos devueltos (ordenados por periodo y después por gasto)
+     */
+    public Resultado consultar(Consulta consulta, int limite) {
+        long inicio = System.nanoTime();
+        if (consulta.desde() != null && consulta.hasta() != null && consulta.desde().isAfter(consulta.hasta())) {
+            throw new IllegalArgumentException("La fecha inicial es posterior a la final");
+        }
+        Set<Dimension> agrupar = consulta.agrupar() == null || consulta.agrupar().isEmpty()
+                ? EnumSet.noneOf(Dimension.class) : EnumSet.copyOf(consulta.agrupar());
+
+        candado.readLock().lock();
+        try {
+            Estado actual = estado;
+            int diaDesde = consulta.desde() != null
+                    ? (int) Math.max(consulta.desde().toEpochDay(), actual.diaMin) : actual.diaMin;
+            int diaHasta = consulta.hasta() != null
+                    ? (int) Math.min(consulta.hasta().toEpochDay(), actual.diaMax) : actual.diaMax;
+
+            Integer usuario = consulta.usuarioId() != null ? actual.usuarios.get(consulta.usuarioId()) : Integer.valueOf(-1);
+            Integer metodo = consulta.metodoPago() != null ? actual.metodos.get(consulta.metodoPago()) : Integer.valueOf(-1);
+            Integer categoria = consulta.categoriaId() != null ? actual.categorias.get(consulta.categoriaId()) : Integer.valueOf(-1);
+            if (diaDesde > diaHasta || usuario == null || metodo == null || categoria == null) {
+                return new Resultado(List.of(), 0, (System.nanoTime() - inicio) / 1000);
+            }
+
+            int categoriasTotales = actual.categoriaIds.size();
+            boolean[] incluida = null;
+            int[] destino = null;
+            if (categoria >= 0 || agrupar.contains(Dimension.CATEGORIA)) {
+                incluida = new boolean[categoriasTotales];
+                destino = new int[categoriasTotales];
+                for (int c = 0; c < categoriasTotales; c++) {
+                    int[] ruta = rutaHastaRaiz(actual, c);
+                    int posicion = categoria >= 0 ? indiceEn(ruta, categoria) : ruta.length - 1;
+                    if (posicion >= 0) {
+                        incluida[c] = true;
+                        // Sin filtro: la raíz; con filtro: la hija directa del filtro (o el filtro mismo)
+                        destino[c] = ruta[categoria >= 0 ? Math.max(0, posicion - 1) : posicion];
+                    }
+                }
+                if (categoria < 0) {
+                    incluida = null;
+                }
+            }
+
+            int[] periodoDeDia = null;
+            if (agrupar.contains(Dimension.PERIODO)) {
+                HistorialTicketService.Periodo periodo = consulta.periodo() != null
+                        ? consulta.periodo() : HistorialTicketService.Periodo.MES;
+                periodoDeDia = new int[diaHasta - diaDesde + 1];
+                for (int d = diaDesde; d <= diaHasta; d++) {
+                    periodoDeDia[d - diaDesde] = (int) inicioPeriodo(LocalDate.ofEpochDay(d), periodo).toEpochDay();
+                }
+            }
+
+            CuboGasto.Resultado grupos = actual.cubo.consultar(new CuboGasto.Consulta(diaDesde, diaHasta, usuario, metodo,
+                    incluida, agrupar.contains(Dimension.USUARIO),
+                    agrupar.contains(Dimension.CATEGORIA) ? destino : null,
+                    agrupar.contains(Dimension.METODO_PAGO), periodoDeDia), pool);
+
+            List<Celda> celdas = new ArrayList<>(grupos.tamanio());
+            for (int i = 0; i < grupos.tamanio(); i++) {
+                int c = grupos.categoria(i);
+                celdas.add(new Celda(
+                        periodoDeDia != null ? LocalDate.ofEpochDay(grupos.periodo(i)) : null,
+                        agrupar.contains(Dimension.USUARIO) ? actual.usuarioIds.get(grupos.usuario(i)) : null,
+                        agrupar.contains(Dimension.CATEGORIA) ? actual.categoriaIds.get(c) : null,
+                        agrupar.contains(Dimension.CATEGORIA) ? actual.categoriaNombres.get(c) : null,
+                        agrupar.contains(Dimension.METODO_PAGO) ? actual.metodoNombres.get(grupos.metodo(i)) : null,
+                        Dinero.aBigDecimal(grupos.gasto(i)), grupos.cantidad(i), grupos.lineas(i)));
+            }
+            celdas.sort(Comparator.comparing(Celda::periodo, Comparator.nullsFirst(Comparator.naturalOrder()))
+                    .thenComparing(Celda::gasto, Comparator.reverseOrder()));
+            List<Celda> pagina = celdas.size() > limite ? new ArrayList<>(celdas.subList(0, limite)) : celdas;
+            return new Resultado(pagina, celdas.size(), (System.nanoTime() - inicio) / 1000);
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Celdas de los tickets completados
+     */
+    private List<Fila> leerTickets(List<Long> ticketIds) {
+        return namedJdbcTemplate.query(SQL_CELDAS_TICKETS, new MapSqlParameterSource("ids", ticketIds),
+                (rs, i) -> fila(rs));
+    }
+
+    /**
+     * Ids avisados desde la posición revisada de la lista durante; la posición avanza al final
+     */
+    private List<Long> avisadosDesde(int[] revisados) {
+        List<Long> ids = new ArrayList<>();
+        candado.writeLock().lock();
+        try {
+            for (List<Long> ticketIds : durante.subList(revisados[0], durante.size())) {
+                ids.addAll(ticketIds);
+            }
+            revisados[0] = durante.size();
+        } finally {
+            candado.writeLock().unlock();
+        }
+        return ids;
+    }
+
+    private static Fila fila(ResultSet rs) throws SQLException {
+        return new Fila(rs.getInt("dia"), rs.getLong("usuario_id"), rs.getLong("categoria_id"),
+                rs.getString("metodo_pago"), rs.getBigDecimal("gasto"), rs.getLong("cantidad"), rs.getInt("lineas"));
+    }
+
+    /**
+     * Agregar una celda a un cubo que aún no se publica; si la categoría es nueva se vuelve
+     * a leer la jerarquía
+     */
+    private void agregarCeldaSinPublicar(Estado destino, Fila fila) {
+        if (!destino.categorias.containsKey(fila.categoriaId())) {
+            destino.cargarCategorias(leerCategorias());
+        }
+        agregarCelda(destino, fila);
+    }
+
+    /**
+     * Agregar una celda con las categorías ya cargadas (sin consultas: puede ir bajo el candado)
+     */
+    private static void agregarCelda(Estado destino, Fila fila) {
+        Integer categoria = destino.categorias.get(fila.categoriaId());
+        if (categoria == null) {
+            throw new IllegalStateException("Categoría desconocida: " + fila.categoriaId());
+        }
+        destino.cubo.agregar(fila.dia(), destino.usuario(fila.usuarioId()), categoria, destino.metodo(fila.metodoPago()),
+                Dinero.centavos(fila.gasto()), fila.cantidad(), fila.lineas());
+        destino.diaMin = Math.min(destino.diaMin, fila.dia());
+        destino.diaMax = Math.max(destino.diaMax, fila.dia());
+    }
+
+    private List<Object[]> leerCategorias() {
+        return namedJdbcTemplate.getJdbcTemplate().query(SQL_CATEGORIAS, (rs, i) -> new Object[]{
+                rs.getLong("id"), rs.getString("nombre"), (Long) rs.getObject("categoria_padre_id", Long.class)});
+    }
+
+    /**
+     * Índices de la categoría y sus ancestros, de la categoría a la raíz
+     */
+    private static int[] rutaHastaRaiz(Estado estado, int categoria) {
+        int[] ruta = new int[8];
+        int tamanio = 0;
+        for (int actual = categoria; actual >= 0 && tamanio <= estado.padres.size(); actual = estado.padres.get(actual)) {
+            if (tamanio == ruta.length) {
+                ruta = Arrays.copyOf(ruta, tamanio * 2);
+            }
+            ruta[tamanio++] = actual;
+        }
+        return Arrays.copyOf(ruta, tamanio);
+    }
+
+    private static int indiceEn(int[] ruta, int valor) {
+        for (int i = 0; i < ruta.length; i++) {
+            if (ruta[i] == valor) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static LocalDate inicioPeriodo(LocalDate fecha, HistorialTicketService.Periodo periodo) {
+        return switch (periodo) {
+            case DIA -> fecha;
+            case SEMANA -> fecha.minusDays(fecha.getDayOfWeek().getValue() - 1);
+            case MES -> fecha.withDayOfMonth(1);
+            case ANIO -> fecha.withDayOfYear(1);
+        };
+    }
+}
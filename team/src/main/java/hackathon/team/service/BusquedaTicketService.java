@@ -0,0 +1,144 @@
+package hackathon.team.service;
+
+import hackathon.team.model.Ticket;
+import hackathon.team.model.Usuario;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static hackathon.team.dao.TicketSpecifications.*;
+
+/**
+ * Búsqueda de tickets combinando criterios opcionales
+ * La consulta se arma con Criteria a partir de TicketSpecifications, proyecta solo las
+ * columnas del resultado y ordena por (fecha_hora, id) descendente, que es el orden de
+ * los índices compuestos de ticket. La paginación no cuenta el total: se pide una fila
+ * de más para saber si hay página siguiente.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class BusquedaTicketService {
+
+    public static final int TAMANIO_POR_DEFECTO = 20;
+    public static final int TAMANIO_MAXIMO = 100;
+    // Más allá el OFFSET recorre demasiadas filas: se debe acotar con filtros
+    public static final int PAGINA_MAXIMA = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public BusquedaTicketService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Criterios de búsqueda; los nulos no filtran
+     *
+     * @param hasta    fecha final incluida
+     * @param producto texto contenido en el nombre de algún producto del ticket
+     */
+    @Builder(toBuilder = true)
+    public record Criterios(LocalDate desde, LocalDate hasta, BigDecimal totalMinimo, BigDecimal totalMaximo,
+                            Long usuarioId, String metodoPago, String estado, String producto, Long categoriaId) {
+
+        public Criterios conUsuario(Long usuario) {
+            return toBuilder().usuarioId(usuario).build();
+        }
+    }
+
+    /**
+     * Ticket encontrado
+     */
+    public record ResultadoBusqueda(Long id, String numeroTicket, LocalDateTime fechaHora, BigDecimal total,
+                                    String estado, String metodoPago, Long usuarioId, String usuarioNombre) {
+    }
+
+    /**
+     * Página de resultados
+     */
+    public record Pagina(List<ResultadoBusqueda> tickets, int pagina, int tamanio, boolean haySiguiente) {
+    }
+
+    /**
+     * Índice de trigramas para buscar texto dentro del nombre de producto
+     * Requiere la extensión pg_trgm; sin ella la búsqueda por producto funciona igual, más lenta.
+     * CONCURRENTLY no admite transacción: este método no debe ser transaccional.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void crearIndiceTrigramas() {
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_productos_nombre_trgm " +
+                    "ON productos USING gin (lower(nombre) gin_trgm_ops)");
+        } catch (RuntimeException e) {
+            log.warn("No se pudo crear el índice de trigramas de productos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Buscar tickets, más recientes primero
+     *
+     * @param pagina número de página desde 0
+     */
+    @Transactional(readOnly = true)
+    public Pagina buscar(Criterios criterios, int pagina, int tamanio) {
+        if (pagina < 0 || pagina > PAGINA_MAXIMA) {
+            throw new IllegalArgumentException("La página debe estar entre 0 y " + PAGINA_MAXIMA);
+        }
+        if (criterios.desde() != null && criterios.hasta() != null && criterios.hasta().isBefore(criterios.desde())) {
+            throw new IllegalArgumentException("La fecha final es anterior a la inicial");
+        }
+        int limite = Math.max(1, Math.min(tamanio, TAMANIO_MAXIMO));
+
+        Specification<Ticket> especificacion = Specification.allOf(
+                fechaDesde(criterios.desde()),
+                fechaHasta(criterios.hasta()),
+                totalMinimo(criterios.totalMinimo()),
+                totalMaximo(criterios.totalMaximo()),
+                deUsuario(criterios.usuarioId()),
+                conMetodoPago(criterios.metodoPago()),
+                conEstado(criterios.estado()),
+                conProducto(criterios.producto(), criterios.categoriaId()));
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ResultadoBusqueda> query = cb.createQuery(ResultadoBusqueda.class);
+        Root<Ticket> ticket = query.from(Ticket.class);
+        Join<Ticket, Usuario> usuario = ticket.join("usuario");
+        query.select(cb.construct(ResultadoBusqueda.class,
+                ticket.get("id"), ticket.get("numeroTicket"), ticket.get("fechaHora"), ticket.get("total"),
+                ticket.get("estado"), ticket.get("metodoPago"), usuario.get("id"), usuario.get("nombre")));
+        Predicate filtro = especificacion.toPredicate(ticket, query, cb);
+        if (filtro != null) {
+            query.where(filtro);
+        }
+        query.orderBy(cb.desc(ticket.get("fechaHora")), cb.desc(ticket.get("id")));
+
+        List<ResultadoBusqueda> resultados = entityManager.createQuery(query)
+                .setFirstResult(pagina * limite)
+                .setMaxResults(limite + 1)
+                .getResultList();
+
+        boolean haySiguiente = resultados.size() > limite;
+        return new Pagina(haySiguiente ? resultados.subList(0, limite) : resultados, pagina, limite, haySiguiente);
+    }
+}
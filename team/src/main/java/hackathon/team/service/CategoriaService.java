@@ -9,7 +9,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -30,10 +33,7 @@ public class CategoriaService {
     @Transactional(readOnly = true)
     public List<CategoriaDTO> obtenerTodas() {
         log.info("Obteniendo todas las categorías");
-        return categoriaRepository.findAllByOrderByNombreAsc()
-                .stream()
-                .map(this::convertirADTO)
-                .collect(Collectors.toList());
+        return convertirLista(categoriaRepository.findAllByOrderByNombreAsc());
     }
 
     /**
@@ -42,10 +42,7 @@ public class CategoriaService {
     @Transactional(readOnly = true)
     public List<CategoriaDTO> obtenerActivas() {
         log.info("Obteniendo categorías activas");
-        return categoriaRepository.findByActivaTrue()
-                .stream()
-                .map(this::convertirADTO)
-                .collect(Collectors.toList());
+        return convertirLista(categoriaRepository.findByActivaTrue());
     }
 
     /**
@@ -54,10 +51,7 @@ public class CategoriaService {
     @Transactional(readOnly = true)
     public List<CategoriaDTO> obtenerCategoriasRaiz() {
         log.info("Obteniendo categorías raíz");
-        return categoriaRepository.findCategoriasRaiz()
-                .stream()
-                .map(this::convertirADTO)
-                .collect(Collectors.toList());
+        return convertirLista(categoriaRepository.findCategoriasRaiz());
     }
 
     /**
@@ -66,10 +60,7 @@ public class CategoriaService {
     @Transactional(readOnly = true)
     public List<CategoriaDTO> obtenerCategoriasRaizActivas() {
         log.info("Obteniendo categorías raíz activas");
-        return categoriaRepository.findCategoriasRaizActivas()
-                .stream()
-                .map(this::convertirADTO)
-                .collect(Collectors.toList());
+        return convertirLista(categoriaRepository.findCategoriasRaizActivas());
     }
 
     /**
@@ -78,10 +69,7 @@ public class CategoriaService {
     @Transactional(readOnly = true)
     public List<CategoriaDTO> obtenerSubcategorias(Long padreId) {
         log.info("Obteniendo subcategorías de la categoría ID: {}", padreId);
-        return categoriaRepository.findSubcategoriasByPadreId(padreId)
-                .stream()
-                .map(this::convertirADTO)
-                .collect(Collectors.toList());
+        return convertirLista(categoriaRepository.findSubcategoriasByPadreId(padreId));
     }
 
     /**
@@ -90,7 +78,7 @@ public class CategoriaService {
     @Transactional(readOnly = true)
     public CategoriaDTO obtenerPorId(Long id) {
         log.info("Obteniendo categoría por ID: {}", id);
-        return categoriaRepository.findById(id)
+        return categoriaRepository.findConPadreById(id)
                 .map(this::convertirADTO)
                 .orElseThrow(() -> new RuntimeException("Categoría no encontrada con ID: " + id));
     }
@@ -232,10 +220,7 @@ public class CategoriaService {
     @Transactional(readOnly = true)
     public List<CategoriaDTO> buscar(String keyword) {
         log.info("Buscando categorías con keyword: {}", keyword);
-        return categoriaRepository.searchByKeyword(keyword)
-                .stream()
-                .map(this::convertirADTO)
-                .collect(Collectors.toList());
+        return convertirLista(categoriaRepository.searchByKeyword(keyword));
     }
 
     /**
@@ -244,11 +229,8 @@ public class CategoriaService {
     @Transactional(readOnly = true)
     public List<CategoriaDTO> obtenerMasUtilizadas() {
         log.info("Obteniendo categorías más utilizadas");
-        return categoriaRepository.findMostUsedCategories()
-                .stream()
-                .map(this::convertirADTO)
-                .limit(10)
-                .collect(Collectors.toList());
+        List<Categoria> masUtilizadas = categoriaRepository.findMostUsedCategories();
+        return convertirLista(masUtilizadas.subList(0, Math.min(10, masUtilizadas.size())));
     }
 
     /**
@@ -269,10 +251,42 @@ public class CategoriaService {
 
     // ==================== MÉTODOS DE CONVERSIÓN ====================
 
+    /**
+     * Convertir una lista de entidades a DTO
+     * Los contadores se obtienen con dos consultas agrupadas para toda la lista,
+     * en lugar de cargar las colecciones de cada categoría
+     */
+    private List<CategoriaDTO> convertirLista(List<Categoria> entidades) {
+        if (entidades.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Long> productos = agrupar(categoriaRepository.contarProductosAgrupados());
+        Map<Long, Long> subcategorias = agrupar(categoriaRepository.contarSubcategoriasAgrupadas());
+        return entidades.stream()
+                .map(entidad -> convertirADTO(entidad,
+                        productos.getOrDefault(entidad.getId(), 0L),
+                        subcategorias.getOrDefault(entidad.getId(), 0L)))
+                .collect(Collectors.toList());
+    }
+
+    private static Map<Long, Long> agrupar(List<Object[]> filas) {
+        Map<Long, Long> conteos = new HashMap<>();
+        for (Object[] fila : filas) {
+            conteos.put((Long) fila[0], (Long) fila[1]);
+        }
+        return conteos;
+    }
+
     /**
      * Convertir entidad a DTO
      */
     private CategoriaDTO convertirADTO(Categoria entidad) {
+        return convertirADTO(entidad,
+                categoriaRepository.contarProductosPorCategoria(entidad.getId()),
+                categoriaRepository.contarSubcategorias(entidad.getId()));
+    }
+
+    private CategoriaDTO convertirADTO(Categoria entidad, long cantidadProductos, long cantidadSubcategorias) {
         CategoriaDTO dto = new CategoriaDTO();
         dto.setId(entidad.getId());
         dto.setNombre(entidad.getNombre());
@@ -290,11 +304,8 @@ public class CategoriaService {
             dto.setFechaCreacion(entidad.getFechaCreacion().format(FORMATTER));
         }
 
-        // Contar subcategorías y productos
-        dto.setCantidadSubcategorias(entidad.getSubcategorias() != null ? 
-                                    entidad.getSubcategorias().size() : 0);
-        dto.setCantidadProductos(entidad.getProductos() != null ? 
-                                entidad.getProductos().size() : 0);
+        dto.setCantidadSubcategorias(Math.toIntExact(cantidadSubcategorias));
+        dto.setCantidadProductos(Math.toIntExact(cantidadProductos));
 
         return dto;
     }
@@ -0,0 +1,354 @@
+package hackathon.team.service;
+
+import hackathon.team.dao.TicketRepository;
+import hackathon.team.dao.UsuarioRepository;
+import hackathon.team.dtos.TicketUploadDTO;
+import hackathon.team.model.Ticket;
+import hackathon.team.model.Usuario;
+import hackathon.team.util.LectorCfdi;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ingesta de facturas CFDI como tickets
+ * Cada XML se lee en streaming (LectorCfdi): los Conceptos pasan a items, SubTotal,
+ * Descuento, Impuestos y Total al ticket, y los productos se resuelven con el resolver
+ * masivo al guardar. El UUID del timbre es único por ticket, así una factura repetida se
+ * reporta como duplicada. Solo se importan comprobantes de ingreso (compras); egresos,
+ * nómina, pagos y traslados se rechazan. El lote recorre el directorio de entrada sin listarlo completo y
+ * procesa los archivos en hilos virtuales con a lo más 'paralelismo' en curso; cada archivo
+ * termina en procesados/ o errores/.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class CfdiService {
+
+    private static final int MAX_NOMBRE_PRODUCTO = 500;
+    private static final int MAX_ERRORES_RESUMEN = 100;
+    private static final String TIPO_INGRESO = "I";
+
+    // Claves de FormaPago del SAT a los métodos de pago del formulario de tickets
+    private static final Map<String, String> FORMAS_PAGO = Map.of(
+            "01", "Efectivo",
+            "02", "Otro",
+            "03", "Transferencia",
+            "04", "Tarjeta de Crédito",
+            "28", "Tarjeta de Débito");
+
+    private final TicketUploadService ticketUploadService;
+    private final TicketRepository ticketRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final Path directorio;
+    private final int paralelismo;
+    private final String usuarioLote;
+    private final AtomicBoolean loteEnCurso = new AtomicBoolean();
+    private final Counter importados;
+    private final Counter duplicados;
+    private final Counter rechazados;
+
+    private volatile ResumenLote ultimoLote;
+
+    public CfdiService(TicketUploadService ticketUploadService,
+                       TicketRepository ticketRepository,
+                       UsuarioRepository usuarioRepository,
+                       MeterRegistry meterRegistry,
+                       @Value("${app.cfdi.lote.directorio:cfdi}") String directorio,
+                       @Value("${app.cfdi.lote.paralelismo:4}") int paralelismo,
+                       @Value("${app.cfdi.lote.usuario:}") String usuarioLote) {
+        this.ticketUploadService = ticketUploadService;
+        this.ticketRepository = ticketRepository;
+        this.usuarioRepository = usuarioRepository;
+        this.directorio = Paths.get(directorio);
+        this.paralelismo = Math.max(1, paralelismo);
+        this.usuarioLote = usuarioLote.trim();
+        this.importados = Counter.builder("cfdi.ingesta").tag("resultado", "importado")
+                .description("Facturas CFDI procesadas").register(meterRegistry);
+        this.duplicados = Counter.builder("cfdi.ingesta").tag("resultado", "duplicado")
+                .description("Facturas CFDI procesadas").register(meterRegistry);
+        this.rechazados = Counter.builder("cfdi.ingesta").tag("resultado", "error")
+                .description("Facturas CFDI procesadas").register(meterRegistry);
+    }
+
+    public enum Estado {
+        IMPORTADO, DUPLICADO, ERROR
+    }
+
+    /**
+     * Resultado de una factura
+     *
+     * @param ticketId ticket creado, o el que ya tenía ese UUID si es duplicada
+     */
+    public record Resultado(String archivo, Estado estado, String uuid, Long ticketId, String mensaje) {
+    }
+
+    /**
+     * Resultado de pedir un lote: solo INICIADO deja un lote corriendo
+     */
+    public enum InicioLote {
+        INICIADO, EN_CURSO, SIN_USUARIO, SIN_DIRECTORIO
+    }
+
+    public record ResumenLote(LocalDateTime inicio, LocalDateTime fin, int importados, int duplicados,
+                              int errores, List<Resultado> primerosErrores) {
+    }
+
+    /**
+     * Importar una factura como ticket del usuario
+     */
+    public Resultado importar(String archivo, InputStream entrada, Long usuarioId) {
+        LectorCfdi.Comprobante comprobante;
+        try {
+            comprobante = LectorCfdi.leer(entrada);
+            validar(comprobante);
+        } catch (IllegalArgumentException e) {
+            rechazados.increment();
+            return new Resultado(archivo, Estado.ERROR, null, null, e.getMessage());
+        }
+
+        Optional<Ticket> existente = ticketRepository.findByCfdiUuid(comprobante.uuid());
+        if (existente.isPresent()) {
+            duplicados.increment();
+            return new Resultado(archivo, Estado.DUPLICADO, comprobante.uuid(), existente.get().getId(),
+                    "La factura ya fue importada");
+        }
+        try {
+            Ticket ticket = ticketUploadService.guardarTicketCfdi(aTicket(comprobante, usuarioId), comprobante.uuid());
+            importados.increment();
+            log.info("CFDI {} importado como ticket {} ({} conceptos)", comprobante.uuid(), ticket.getId(),
+                    ticket.getItems().size());
+            return new Resultado(archivo, Estado.IMPORTADO, comprobante.uuid(), ticket.getId(), null);
+        } catch (DataIntegrityViolationException e) {
+            // Otra importación de la misma factura se confirmó primero
+            Optional<Ticket> ganador = ticketRepository.findByCfdiUuid(comprobante.uuid());
+            if (ganador.isPresent()) {
+                duplicados.increment();
+                return new Resultado(archivo, Estado.DUPLICADO, comprobante.uuid(), ganador.get().getId(),
+                        "La factura ya fue importada");
+            }
+            rechazados.increment();
+            log.warn("No se pudo importar el CFDI {}: {}", comprobante.uuid(), e.getMessage());
+            return new Resultado(archivo, Estado.ERROR, comprobante.uuid(), null, "No se pudo guardar el ticket");
+        } catch (RuntimeException e) {
+            rechazados.increment();
+            log.warn("No se pudo importar el CFDI {}: {}", comprobante.uuid(), e.getMessage());
+            return new Resultado(archivo, Estado.ERROR, comprobante.uuid(), null, e.getMessage());
+        }
+    }
+
+    /**
+     * Id del usuario con este email
+     */
+    public Optional<Long> usuarioPorEmail(String email) {
+        return usuarioRepository.findByEmail(email).map(Usuario::getId);
+    }
+
+    /**
+     * Resumen del último lote terminado (vacío si no se ha corrido)
+     */
+    public Optional<ResumenLote> getUltimoLote() {
+        return Optional.ofNullable(ultimoLote);
+    }
+
+    /**
+     * Iniciar el lote en segundo plano si está configurado y no hay otro en curso
+     */
+    public InicioLote iniciarLote() {
+        Optional<Long> usuarioId = usuarioLote.isEmpty() ? Optional.empty() : usuarioPorEmail(usuarioLote);
+        if (usuarioId.isEmpty()) {
+            return InicioLote.SIN_USUARIO;
+        }
+        if (!Files.isDirectory(directorio)) {
+            return InicioLote.SIN_DIRECTORIO;
+        }
+        if (!loteEnCurso.compareAndSet(false, true)) {
+            return InicioLote.EN_CURSO;
+        }
+        try {
+            Thread.ofVirtual().name("cfdi-lote").start(() -> procesarDirectorio(usuarioId.get()));
+        } catch (RuntimeException e) {
+            loteEnCurso.set(false);
+            throw e;
+        }
+        return InicioLote.INICIADO;
+    }
+
+    /**
+     * Lote programado: solo lo inicia, el hilo del scheduler no espera a que termine
+     */
+    @Scheduled(cron = "${app.cfdi.lote.cron:0 */15 * * * *}")
+    public void programarLote() {
+        InicioLote inicio = iniciarLote();
+        if (inicio == InicioLote.SIN_USUARIO && !usuarioLote.isEmpty()) {
+            log.warn("Lote CFDI: no existe el usuario {}", usuarioLote);
+        }
+    }
+
+    /**
+     * Importar todos los XML del directorio de entrada a nombre del usuario del lote
+     */
+    private void procesarDirectorio(Long usuarioId) {
+        try {
+            ultimoLote = procesar(usuarioId);
+            log.info("Lote CFDI: {} importadas, {} duplicadas, {} con error",
+                    ultimoLote.importados(), ultimoLote.duplicados(), ultimoLote.errores());
+        } catch (IOException e) {
+            log.error("Lote CFDI: no se pudo recorrer {}", directorio, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            loteEnCurso.set(false);
+        }
+    }
+
+    private ResumenLote procesar(Long usuarioId) throws IOException, InterruptedException {
+        LocalDateTime inicio = LocalDateTime.now();
+        Path procesados = Files.createDirectories(directorio.resolve("procesados"));
+        Path errores = Files.createDirectories(directorio.resolve("errores"));
+        AtomicInteger importadas = new AtomicInteger();
+        AtomicInteger repetidas = new AtomicInteger();
+        AtomicInteger fallidas = new AtomicInteger();
+        List<Resultado> primerosErrores = Collections.synchronizedList(new ArrayList<>());
+
+        // El semáforo limita los archivos abiertos y las transacciones en curso
+        Semaphore enCurso = new Semaphore(paralelismo);
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor();
+             DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, "*.{xml,XML}")) {
+            for (Path archivo : archivos) {
+                enCurso.acquire();
+                hilos.submit(() -> {
+                    try {
+                        Resultado resultado = procesarArchivo(archivo, usuarioId);
+                        switch (resultado.estado()) {
+                            case IMPORTADO -> importadas.incrementAndGet();
+                            case DUPLICADO -> repetidas.incrementAndGet();
+                            case ERROR -> {
+                                fallidas.incrementAndGet();
+                                if (primerosErrores.size() < MAX_ERRORES_RESUMEN) {
+                                    primerosErrores.add(resultado);
+                                }
+                            }
+                        }
+                        mover(archivo, resultado.estado() == Estado.ERROR ? errores : procesados);
+                    } finally {
+                        enCurso.release();
+                    }
+                });
+            }
+        }
+        return new ResumenLote(inicio, LocalDateTime.now(), importadas.get(), repetidas.get(), fallidas.get(),
+                List.copyOf(primerosErrores));
+    }
+
+    private Resultado procesarArchivo(Path archivo, Long usuarioId) {
+        String nombre = archivo.getFileName().toString();
+        try (InputStream entrada = new BufferedInputStream(Files.newInputStream(archivo))) {
+            return importar(nombre, entrada, usuarioId);
+        } catch (IOException e) {
+            rechazados.increment();
+            return new Resultado(nombre, Estado.ERROR, null, null, "No se pudo leer el archivo: " + e.getMessage());
+        }
+    }
+
+    private void mover(Path archivo, Path destino) {
+        try {
+            Files.move(archivo, destino.resolve(archivo.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Lote CFDI: no se pudo mover {} a {}", archivo, destino, e);
+        }
+    }
+
+    private static void validar(LectorCfdi.Comprobante comprobante) {
+        if (comprobante.uuid() == null) {
+            throw new IllegalArgumentException("El CFDI no está timbrado (falta el TimbreFiscalDigital)");
+        }
+        // Notas de crédito, nómina, pagos y traslados no son compras
+        if (!TIPO_INGRESO.equals(comprobante.tipo())) {
+            throw new IllegalArgumentException("Solo se importan facturas de ingreso (TipoDeComprobante I), no "
+                    + comprobante.tipo());
+        }
+        if (comprobante.moneda() != null && !"MXN".equals(comprobante.moneda())) {
+            throw new IllegalArgumentException("Moneda no soportada: " + comprobante.moneda());
+        }
+        if (comprobante.total().signum() <= 0) {
+            throw new IllegalArgumentException("El total debe ser mayor a 0");
+        }
+    }
+
+    /**
+     * Ticket equivalente: un concepto con cantidad entera conserva cantidad y valor unitario;
+     * con cantidad fraccionaria (kg, litros) o valor unitario de más de dos decimales que no
+     * cuadra con el importe, pasa como una unidad por el importe
+     */
+    private static TicketUploadDTO aTicket(LectorCfdi.Comprobante comprobante, Long usuarioId) {
+        TicketUploadDTO dto = new TicketUploadDTO();
+        dto.setUsuarioId(usuarioId);
+        dto.setTotal(comprobante.total());
+        dto.setSubtotal(comprobante.subTotal());
+        dto.setImpuestos(comprobante.impuestosTrasladados().subtract(comprobante.impuestosRetenidos()));
+        dto.setDescuentos(comprobante.descuento());
+        dto.setMetodoPago(comprobante.formaPago() != null ? FORMAS_PAGO.getOrDefault(comprobante.formaPago(), "Otro") : null);
+        dto.setObservaciones(observaciones(comprobante));
+
+        for (LectorCfdi.Concepto concepto : comprobante.conceptos()) {
+            BigDecimal importe = concepto.importe().setScale(2, RoundingMode.HALF_UP);
+            if (importe.signum() <= 0) {
+                continue;
+            }
+            BigDecimal valorUnitario = concepto.valorUnitario().setScale(2, RoundingMode.HALF_UP);
+            int cantidad = 1;
+            BigDecimal precio = importe;
+            if (concepto.cantidad().stripTrailingZeros().scale() <= 0 && concepto.cantidad().signum() > 0) {
+                int entera = concepto.cantidad().intValueExact();
+                if (valorUnitario.multiply(BigDecimal.valueOf(entera)).compareTo(importe) == 0) {
+                    cantidad = entera;
+                    precio = valorUnitario;
+                }
+            }
+            String descripcion = concepto.descripcion();
+            dto.agregarProducto(new TicketUploadDTO.ProductoTicketDTO(
+                    descripcion.length() > MAX_NOMBRE_PRODUCTO ? descripcion.substring(0, MAX_NOMBRE_PRODUCTO) : descripcion,
+                    null, cantidad, precio, concepto.descuento().setScale(2, RoundingMode.HALF_UP), null));
+        }
+        if (dto.getProductos().isEmpty()) {
+            throw new IllegalArgumentException("El CFDI no tiene conceptos con importe");
+        }
+        return dto;
+    }
+
+    private static String observaciones(LectorCfdi.Comprobante comprobante) {
+        String folio = (comprobante.serie() != null ? comprobante.serie() : "")
+                + (comprobante.folio() != null ? comprobante.folio() : "");
+        return "Factura CFDI " + comprobante.version() + (folio.isEmpty() ? "" : " " + folio)
+                + " de " + (comprobante.emisorNombre() != null ? comprobante.emisorNombre() + " " : "")
+                + "(" + comprobante.emisorRfc() + "), emitida " + comprobante.fecha()
+                + ". UUID " + comprobante.uuid();
+    }
+}
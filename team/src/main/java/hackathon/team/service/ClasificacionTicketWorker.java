@@ -0,0 +1,267 @@
+package hackathon.team.service;
+
+import hackathon.team.dao.CategoriaRepository;
+import hackathon.team.model.Categoria;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Worker de clasificación de tickets en pendiente_clasificacion
+ * 1. reclamo: un lote de tickets pasa a 'clasificando' con FOR UPDATE SKIP LOCKED,
+ *    así varios nodos pueden trabajar sin tomar los mismos tickets
+ * 2. predicción: los productos "Sin Clasificar" del lote se consultan al predictor
+ *    de categorías, fuera de cualquier transacción
+ * 3. cierre: en una transacción corta se reclasifican los productos con confianza
+ *    suficiente y el ticket pasa a 'completado' si ya no le queda ninguno sin clasificar;
+ *    si no, vuelve a pendiente y se reintenta más tarde
+ * Un reclamo que no se cierra (nodo caído) vence y el ticket se vuelve a reclamar.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class ClasificacionTicketWorker {
+
+    static final String ESTADO_PENDIENTE = "pendiente_clasificacion";
+    static final String ESTADO_CLASIFICANDO = "clasificando";
+    static final String ESTADO_COMPLETADO = "completado";
+
+    private static final String SQL_RECLAMAR =
+            "UPDATE ticket SET estado = 'clasificando', fecha_reclamo = CURRENT_TIMESTAMP " +
+            "WHERE id IN (" +
+            "  SELECT id FROM ticket " +
+            "  WHERE (estado = 'pendiente_clasificacion' AND (fecha_reclamo IS NULL OR fecha_reclamo < :reintentoDesde)) " +
+            "     OR (estado = 'clasificando' AND fecha_reclamo < :vencidoDesde) " +
+            "  ORDER BY id LIMIT :lote " +
+            "  FOR UPDATE SKIP LOCKED) " +
+            "RETURNING id";
+
+    private static final String SQL_PRODUCTOS_SIN_CLASIFICAR =
+            "SELECT DISTINCT p.id, p.nombre, p.marca FROM ticket_items i " +
+            "JOIN productos p ON p.id = i.producto_id " +
+            "WHERE i.ticket_id IN (:ids) AND p.categoria_id = :sinClasificar";
+
+    private static final String SQL_RECLASIFICAR_PRODUCTO =
+            "UPDATE productos SET categoria_id = :categoriaId " +
+            "WHERE id = :id AND categoria_id = :sinClasificar";
+
+    private static final String SQL_CERRAR =
+            "UPDATE ticket t SET estado = CASE WHEN EXISTS (" +
+            "    SELECT 1 FROM ticket_items i JOIN productos p ON p.id = i.producto_id " +
+            "    WHERE i.ticket_id = t.id AND p.categoria_id = :sinClasificar) " +
+            "  THEN 'pendiente_clasificacion' ELSE 'completado' END " +
+            "WHERE t.id IN (:ids) AND t.estado = 'clasificando' " +
+            "RETURNING t.id, t.estado";
+
+    private static final String SQL_BACKLOG =
+            "SELECT COUNT(*) AS pendientes, MIN(fecha_hora) AS mas_antiguo FROM ticket " +
+            "WHERE estado IN ('pendiente_clasificacion', 'clasificando')";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CategoriaRepository categoriaRepository;
+    private final PredictorCategoriaService predictorCategoriaService;
+    private final ProductoResolverService productoResolverService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final boolean habilitado;
+    private final int tamanioLote;
+    private final double confianzaMinima;
+    private final Duration reintento;
+    private final Duration vencimientoReclamo;
+
+    private final MeterRegistry meterRegistry;
+    private final Timer duracionLote;
+    private final Counter productosReclasificados;
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong antiguedadBacklogSegundos = new AtomicLong();
+
+    public ClasificacionTicketWorker(NamedParameterJdbcTemplate jdbcTemplate,
+                                     TransactionTemplate transactionTemplate,
+                                     CategoriaRepository categoriaRepository,
+                                     PredictorCategoriaService predictorCategoriaService,
+                                     ProductoResolverService productoResolverService,
+                                     ApplicationEventPublisher eventPublisher,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${app.clasificacion.habilitada:true}") boolean habilitado,
+                                     @Value("${app.clasificacion.tamanio-lote:20}") int tamanioLote,
+                                     @Value("${app.clasificacion.confianza-minima:0.6}") double confianzaMinima,
+                                     @Value("${app.clasificacion.reintento:1h}") Duration reintento,
+                                     @Value("${app.clasificacion.vencimiento-reclamo:10m}") Duration vencimientoReclamo) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.categoriaRepository = categoriaRepository;
+        this.predictorCategoriaService = predictorCategoriaService;
+        this.productoResolverService = productoResolverService;
+        this.eventPublisher = eventPublisher;
+        this.habilitado = habilitado;
+        this.tamanioLote = tamanioLote;
+        this.confianzaMinima = confianzaMinima;
+        this.reintento = reintento;
+        this.vencimientoReclamo = vencimientoReclamo;
+        this.meterRegistry = meterRegistry;
+        this.duracionLote = Timer.builder("tickets.clasificacion.lote")
+                .description("Duración de cada lote de clasificación")
+                .register(meterRegistry);
+        this.productosReclasificados = Counter.builder("tickets.clasificacion.productos")
+                .description("Productos movidos de Sin Clasificar a una categoría")
+                .register(meterRegistry);
+        meterRegistry.gauge("tickets.clasificacion.backlog", backlog);
+        meterRegistry.gauge("tickets.clasificacion.backlog.antiguedad.segundos", antiguedadBacklogSegundos);
+    }
+
+    /**
+     * Producto sin clasificar de un lote
+     */
+    private record ProductoPendiente(Long id, String nombre, String marca) {
+    }
+
+    /**
+     * Procesar lotes mientras haya tickets reclamables
+     */
+    @Scheduled(initialDelayString = "${app.clasificacion.retraso-inicial-ms:30000}",
+               fixedDelayString = "${app.clasificacion.intervalo-ms:30000}")
+    public void procesarPendientes() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            Optional<Long> sinClasificar = categoriaRepository.findByNombreIgnoreCase(ProductoResolverService.CATEGORIA_DEFAULT)
+                    .map(Categoria::getId);
+            if (sinClasificar.isPresent()) {
+                int procesados;
+                do {
+                    procesados = duracionLote.record(() -> procesarLote(sinClasificar.get()));
+                } while (procesados == tamanioLote);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error en el worker de clasificación de tickets", e);
+        } finally {
+            actualizarBacklog();
+        }
+    }
+
+    /**
+     * Reclamar, clasificar y cerrar un lote
+     *
+     * @return tickets reclamados
+     */
+    private int procesarLote(Long sinClasificar) {
+        List<Long> ids = reclamar();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        List<ProductoPendiente> productos = jdbcTemplate.query(SQL_PRODUCTOS_SIN_CLASIFICAR,
+                new MapSqlParameterSource("ids", ids).addValue("sinClasificar", sinClasificar),
+                (rs, i) -> new ProductoPendiente(rs.getLong("id"), rs.getString("nombre"), rs.getString("marca")));
+
+        Map<ProductoPendiente, Long> categorias = predecir(productos, sinClasificar);
+
+        List<Long> completados = new ArrayList<>();
+        Map<String, Integer> resultado = transactionTemplate.execute(status -> {
+            for (Map.Entry<ProductoPendiente, Long> entrada : categorias.entrySet()) {
+                jdbcTemplate.update(SQL_RECLASIFICAR_PRODUCTO, new MapSqlParameterSource("id", entrada.getKey().id())
+                        .addValue("categoriaId", entrada.getValue())
+                        .addValue("sinClasificar", sinClasificar));
+            }
+            Map<String, Integer> porEstado = new HashMap<>();
+            jdbcTemplate.query(SQL_CERRAR,
+                    new MapSqlParameterSource("ids", ids).addValue("sinClasificar", sinClasificar),
+                    rs -> {
+                        String estado = rs.getString("estado");
+                        porEstado.merge(estado, 1, Integer::sum);
+                        if (ESTADO_COMPLETADO.equals(estado)) {
+                            completados.add(rs.getLong("id"));
+                        }
+                    });
+            return porEstado;
+        });
+
+        // La cache del resolver guarda la categoría: se invalida tras confirmar
+        categorias.keySet().forEach(p -> productoResolverService.invalidar(p.nombre(), p.marca()));
+        productosReclasificados.increment(categorias.size());
+        resultado.forEach((estado, cantidad) -> Counter.builder("tickets.clasificacion.procesados")
+                .description("Tickets procesados por el worker de clasificación")
+                .tag("resultado", estado)
+                .register(meterRegistry)
+                .increment(cantidad));
+        log.info("Lote de clasificación: {} tickets, {} productos reclasificados de {}, resultado {}",
+                ids.size(), categorias.size(), productos.size(), resultado);
+
+        // El lote ya está confirmado: un listener que falla no debe detener el worker
+        if (!completados.isEmpty()) {
+            try {
+                eventPublisher.publishEvent(new TicketsCompletadosEvent(completados));
+            } catch (RuntimeException e) {
+                log.error("Error al avisar {} tickets completados", completados.size(), e);
+            }
+        }
+        return ids.size();
+    }
+
+    private List<Long> reclamar() {
+        LocalDateTime ahora = LocalDateTime.now();
+        return transactionTemplate.execute(status -> jdbcTemplate.queryForList(SQL_RECLAMAR,
+                new MapSqlParameterSource("lote", tamanioLote)
+                        .addValue("reintentoDesde", Timestamp.valueOf(ahora.minus(reintento)))
+                        .addValue("vencidoDesde", Timestamp.valueOf(ahora.minus(vencimientoReclamo))),
+                Long.class));
+    }
+
+    /**
+     * Consultar el predictor por cada producto; solo se devuelven las predicciones confiables
+     */
+    private Map<ProductoPendiente, Long> predecir(List<ProductoPendiente> productos, Long sinClasificar) {
+        Map<ProductoPendiente, Long> categorias = new HashMap<>();
+        for (ProductoPendiente producto : productos) {
+            String texto = producto.marca() != null ? producto.nombre() + " " + producto.marca() : producto.nombre();
+            try {
+                predictorCategoriaService.predecir(texto, sinClasificar)
+                        .filter(prediccion -> prediccion.confianza() >= confianzaMinima)
+                        .ifPresent(prediccion -> categorias.put(producto, prediccion.categoriaId()));
+            } catch (IOException e) {
+                // Sin predictor el lote se cierra igual: los tickets vuelven a pendiente
+                log.warn("Predictor de categorías no disponible: {}", e.getMessage());
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return categorias;
+    }
+
+    private void actualizarBacklog() {
+        try {
+            jdbcTemplate.query(SQL_BACKLOG, new MapSqlParameterSource(), rs -> {
+                backlog.set(rs.getLong("pendientes"));
+                Timestamp masAntiguo = rs.getTimestamp("mas_antiguo");
+                antiguedadBacklogSegundos.set(masAntiguo == null ? 0
+                        : Duration.between(masAntiguo.toInstant(), Instant.now()).toSeconds());
+            });
+        } catch (RuntimeException e) {
+            log.warn("No se pudo medir el backlog de clasificación", e);
+        }
+    }
+}
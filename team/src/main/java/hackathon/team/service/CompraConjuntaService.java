@@ -0,0 +1,418 @@
+package hackathon.team.service;
+
+import hackathon.team.dao.ProductoRepository;
+import hackathon.team.model.Producto;
+import hackathon.team.util.ConteoCoocurrencias;
+import hackathon.team.util.MapaLongEntero;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * "Comprados frecuentemente juntos" a partir de los items de tickets completados
+ * El conteo completo lee (ticket, producto) con un cursor a un arreglo compacto y cuenta
+ * los pares en paralelo (ConteoCoocurrencias). De cada producto se guardan los mejores
+ * socios por lift; soporte, confianza y lift se calculan al consultar con los conteos
+ * vigentes. Los pares con al menos min-tickets forman una lista de adyacencia por producto,
+ * así los tickets completados se suman al llegar y solo se reordenan los socios de sus
+ * productos, recorriendo sus adyacentes y no todos los pares; el conteo completo se
+ * repite cada noche.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class CompraConjuntaService {
+
+    private static final String SQL_ITEMS =
+            "SELECT DISTINCT i.ticket_id, i.producto_id FROM ticket_items i " +
+            "JOIN ticket t ON t.id = i.ticket_id WHERE t.estado = 'completado' " +
+            "ORDER BY i.ticket_id, i.producto_id";
+
+    private static final String SQL_ITEMS_TICKETS =
+            "SELECT DISTINCT i.ticket_id, i.producto_id FROM ticket_items i " +
+            "JOIN ticket t ON t.id = i.ticket_id WHERE t.id IN (:ids) AND t.estado = 'completado' " +
+            "ORDER BY i.ticket_id, i.producto_id";
+
+    private final NamedParameterJdbcTemplate cursor;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductoRepository productoRepository;
+    private final int minTickets;
+    private final int maxSocios;
+    private final int maxProductosPorTicket;
+    private final ForkJoinPool pool;
+
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+    private Estado estado = new Estado(new MapaLongEntero(), new MapaLongEntero(), 0, new HashMap<>(), new HashMap<>());
+    // Tickets recibidos durante el conteo completo, para sumar al resultado nuevo los que no leyó
+    private List<TicketNuevo> durante;
+
+    public CompraConjuntaService(DataSource dataSource,
+                                 NamedParameterJdbcTemplate namedJdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 ProductoRepository productoRepository,
+                                 @Value("${app.productos.compras-conjuntas.min-tickets:3}") int minTickets,
+                                 @Value("${app.productos.compras-conjuntas.max-socios:10}") int maxSocios,
+                                 @Value("${app.productos.compras-conjuntas.max-productos-por-ticket:50}") int maxProductosPorTicket,
+                                 @Value("${app.productos.compras-conjuntas.paralelismo:0}") int paralelismo) {
+        JdbcTemplate jdbcCursor = new JdbcTemplate(dataSource);
+        jdbcCursor.setFetchSize(10_000);
+        this.cursor = new NamedParameterJdbcTemplate(jdbcCursor);
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.productoRepository = productoRepository;
+        this.minTickets = minTickets;
+        this.maxSocios = maxSocios;
+        this.maxProductosPorTicket = maxProductosPorTicket;
+        this.pool = new ForkJoinPool(paralelismo > 0 ? paralelismo : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Producto relacionado con sus métricas
+     *
+     * @param tickets    tickets que tienen ambos productos
+     * @param soporte    fracción de tickets con ambos productos
+     * @param confianza  fracción de los tickets del producto consultado que también tienen este
+     * @param lift       confianza dividida entre la frecuencia de este producto (1 = independientes)
+     */
+    public record Relacion(long productoId, int tickets, double soporte, double confianza, double lift) {
+    }
+
+    /**
+     * Recomendación con los datos del producto para mostrar
+     */
+    public record Recomendacion(Long productoId, String nombre, String marca, double confianza, double lift) {
+    }
+
+    /**
+     * Conteos vigentes, adyacencia (pares con al menos min-tickets) y tabla de mejores socios por producto
+     */
+    private record Estado(MapaLongEntero pares, MapaLongEntero productos, int tickets,
+                          Map<Integer, Adyacentes> adyacencia, Map<Integer, int[]> socios) {
+    }
+
+    /**
+     * Productos distintos de un ticket completado, ordenados
+     */
+    private record TicketNuevo(long id, int[] productos) {
+    }
+
+    /**
+     * Socios de un producto en la adyacencia (arreglo que crece)
+     */
+    private static final class Adyacentes {
+        private int[] socios = new int[4];
+        private int cuantos;
+
+        private void agregar(int socio) {
+            if (cuantos == socios.length) {
+                socios = Arrays.copyOf(socios, cuantos * 2);
+            }
+            socios[cuantos++] = socio;
+        }
+    }
+
+    /**
+     * Calcular en segundo plano al arrancar: el conteo completo puede tardar
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        Thread.ofVirtual().name("compras-conjuntas-carga").start(this::recalcular);
+    }
+
+    /**
+     * Conteo completo sobre todos los tickets completados
+     */
+    @Scheduled(cron = "${app.productos.compras-conjuntas.recalculo-cron:0 0 4 * * *}")
+    public synchronized void recalcular() {
+        long inicio = System.nanoTime();
+        candado.writeLock().lock();
+        try {
+            durante = new ArrayList<>();
+        } finally {
+            candado.writeLock().unlock();
+        }
+
+        try {
+            Compacto compacto = new Compacto();
+            transactionTemplate.executeWithoutResult(status -> cursor.query(SQL_ITEMS, new MapSqlParameterSource(),
+                    rs -> {
+                        compacto.agregar(rs.getLong("ticket_id"), Math.toIntExact(rs.getLong("producto_id")));
+                    }));
+            int[] inicios = compacto.inicios();
+            ConteoCoocurrencias.Resultado conteo = ConteoCoocurrencias.contar(
+                    inicios, compacto.productos, compacto.tickets, maxProductosPorTicket, pool);
+            Map<Integer, Adyacentes> adyacencia = adyacencia(conteo.pares());
+
+            candado.writeLock().lock();
+            try {
+                // Solo los tickets que el cursor no leyó: el evento puede llegar después de la lectura
+                // aunque el ticket se haya confirmado antes
+                int tickets = conteo.tickets();
+                for (TicketNuevo ticket : durante) {
+                    if (Arrays.binarySearch(compacto.ids, 0, compacto.tickets, ticket.id()) < 0) {
+                        sumarTicket(ticket.productos(), conteo.pares(), conteo.productos(), adyacencia);
+                        tickets++;
+                    }
+                }
+                Estado nuevo = new Estado(conteo.pares(), conteo.productos(), tickets, adyacencia, new HashMap<>());
+                nuevo.socios().putAll(calcularSocios(nuevo, adyacencia.keySet()));
+                estado = nuevo;
+            } finally {
+                durante = null;
+                candado.writeLock().unlock();
+            }
+            log.info("Compras conjuntas: {} tickets, {} pares, {} productos con socios en {} ms",
+                    compacto.tickets, conteo.pares().tamanio(), estado.socios().size(),
+                    (System.nanoTime() - inicio) / 1_000_000);
+        } catch (RuntimeException e) {
+            candado.writeLock().lock();
+            try {
+                durante = null;
+            } finally {
+                candado.writeLock().unlock();
+            }
+            log.error("No se pudo calcular compras conjuntas", e);
+        }
+    }
+
+    /**
+     * Sumar los tickets recién completados y reordenar los socios de sus productos
+     */
+    @EventListener
+    public void alCompletarTickets(TicketsCompletadosEvent evento) {
+        try {
+            Map<Long, List<Integer>> porTicket = new LinkedHashMap<>();
+            namedJdbcTemplate.query(SQL_ITEMS_TICKETS, new MapSqlParameterSource("ids", evento.ticketIds()), rs -> {
+                porTicket.computeIfAbsent(rs.getLong("ticket_id"), k -> new ArrayList<>())
+                        .add(Math.toIntExact(rs.getLong("producto_id")));
+            });
+            if (porTicket.isEmpty()) {
+                return;
+            }
+
+            candado.writeLock().lock();
+            try {
+                Estado actual = estado;
+                Set<Integer> afectados = new HashSet<>();
+                int tickets = actual.tickets();
+                for (Map.Entry<Long, List<Integer>> entrada : porTicket.entrySet()) {
+                    int[] ticket = entrada.getValue().stream().mapToInt(Integer::intValue).toArray();
+                    sumarTicket(ticket, actual.pares(), actual.productos(), actual.adyacencia());
+                    tickets++;
+                    entrada.getValue().forEach(afectados::add);
+                    if (durante != null) {
+                        durante.add(new TicketNuevo(entrada.getKey(), ticket));
+                    }
+                }
+                // Los lectores toman el candado de lectura: la tabla de socios se actualiza en su lugar
+                Estado nuevo = new Estado(actual.pares(), actual.productos(), tickets, actual.adyacencia(), actual.socios());
+                nuevo.socios().putAll(calcularSocios(nuevo, afectados));
+                estado = nuevo;
+            } finally {
+                candado.writeLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            log.error("No se pudieron agregar los tickets completados a las compras conjuntas", e);
+        }
+    }
+
+    /**
+     * Productos comprados junto con el indicado, mejor lift primero
+     */
+    public List<Relacion> relacionados(long productoId, int limite) {
+        candado.readLock().lock();
+        try {
+            Estado actual = estado;
+            int[] socios = actual.socios().get(Math.toIntExact(productoId));
+            if (socios == null) {
+                return List.of();
+            }
+            int producto = Math.toIntExact(productoId);
+            List<Relacion> relaciones = new ArrayList<>(Math.min(limite, socios.length));
+            for (int i = 0; i < socios.length && relaciones.size() < limite; i++) {
+                relaciones.add(relacion(actual, producto, socios[i]));
+            }
+            return relaciones;
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    /**
+     * Recomendaciones para un conjunto de productos (los de un ticket), sin repetirlos
+     */
+    public List<Recomendacion> recomendarPara(Collection<Long> productoIds, int limite) {
+        Map<Long, Relacion> mejores = new HashMap<>();
+        for (Long productoId : productoIds) {
+            for (Relacion relacion : relacionados(productoId, maxSocios)) {
+                if (!productoIds.contains(relacion.productoId())) {
+                    mejores.merge(relacion.productoId(), relacion,
+                            (a, b) -> a.lift() >= b.lift() ? a : b);
+                }
+            }
+        }
+        List<Relacion> ordenadas = mejores.values().stream()
+                .sorted(Comparator.comparingDouble(Relacion::lift).reversed())
+                .limit(limite)
+                .toList();
+        if (ordenadas.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Producto> productos = productoRepository.findAllById(
+                        ordenadas.stream().map(Relacion::productoId).toList()).stream()
+                .collect(Collectors.toMap(Producto::getId, Function.identity()));
+        List<Recomendacion> recomendaciones = new ArrayList<>();
+        for (Relacion relacion : ordenadas) {
+            Producto producto = productos.get(relacion.productoId());
+            if (producto != null && Boolean.TRUE.equals(producto.getActivo())) {
+                recomendaciones.add(new Recomendacion(producto.getId(), producto.getNombre(), producto.getMarca(),
+                        relacion.confianza(), relacion.lift()));
+            }
+        }
+        return recomendaciones;
+    }
+
+    private static Relacion relacion(Estado estado, int producto, int socio) {
+        int juntos = estado.pares().get(ConteoCoocurrencias.clavePar(producto, socio));
+        int deProducto = Math.max(1, estado.productos().get(producto));
+        int deSocio = Math.max(1, estado.productos().get(socio));
+        double total = Math.max(1, estado.tickets());
+        return new Relacion(socio, juntos, juntos / total, (double) juntos / deProducto,
+                juntos * total / ((double) deProducto * deSocio));
+    }
+
+    /**
+     * Sumar un ticket a los conteos; los pares que llegan a min-tickets entran a la adyacencia
+     */
+    private void sumarTicket(int[] ticket, MapaLongEntero pares, MapaLongEntero productos,
+                             Map<Integer, Adyacentes> adyacencia) {
+        ConteoCoocurrencias.contarTicket(ticket, 0, ticket.length, maxProductosPorTicket, pares, productos);
+        if (ticket.length > maxProductosPorTicket) {
+            return;
+        }
+        int umbral = Math.max(1, minTickets);
+        for (int i = 0; i < ticket.length; i++) {
+            for (int j = i + 1; j < ticket.length; j++) {
+                // Los conteos suben de uno en uno: igual al umbral es la primera vez que lo alcanza
+                if (pares.get(ConteoCoocurrencias.clavePar(ticket[i], ticket[j])) == umbral) {
+                    adyacencia.computeIfAbsent(ticket[i], k -> new Adyacentes()).agregar(ticket[j]);
+                    adyacencia.computeIfAbsent(ticket[j], k -> new Adyacentes()).agregar(ticket[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adyacencia de los pares con al menos min-tickets (una pasada por todos los pares)
+     */
+    private Map<Integer, Adyacentes> adyacencia(MapaLongEntero pares) {
+        Map<Integer, Adyacentes> adyacencia = new HashMap<>();
+        int umbral = Math.max(1, minTickets);
+        pares.recorrer((clave, juntos) -> {
+            if (juntos >= umbral) {
+                int a = ConteoCoocurrencias.primero(clave);
+                int b = ConteoCoocurrencias.segundo(clave);
+                adyacencia.computeIfAbsent(a, k -> new Adyacentes()).agregar(b);
+                adyacencia.computeIfAbsent(b, k -> new Adyacentes()).agregar(a);
+            }
+        });
+        return adyacencia;
+    }
+
+    /**
+     * Mejores socios por lift de los productos indicados, recorriendo solo sus adyacentes
+     */
+    private Map<Integer, int[]> calcularSocios(Estado estado, Collection<Integer> productos) {
+        Map<Integer, int[]> socios = new HashMap<>(productos.size() * 2);
+        double total = Math.max(1, estado.tickets());
+        for (Integer producto : productos) {
+            Adyacentes adyacentes = estado.adyacencia().get(producto);
+            if (adyacentes == null) {
+                continue;
+            }
+            double deProducto = estado.productos().get(producto);
+            double[] lifts = new double[adyacentes.cuantos];
+            Integer[] orden = new Integer[adyacentes.cuantos];
+            for (int i = 0; i < adyacentes.cuantos; i++) {
+                int socio = adyacentes.socios[i];
+                int juntos = estado.pares().get(ConteoCoocurrencias.clavePar(producto, socio));
+                lifts[i] = juntos * total / (deProducto * estado.productos().get(socio));
+                orden[i] = i;
+            }
+            Arrays.sort(orden, (x, y) -> Double.compare(lifts[y], lifts[x]));
+            int[] mejores = new int[Math.min(maxSocios, orden.length)];
+            for (int i = 0; i < mejores.length; i++) {
+                mejores[i] = adyacentes.socios[orden[i]];
+            }
+            socios.put(producto, mejores);
+        }
+        return socios;
+    }
+
+    /**
+     * Tickets en formato compacto (CSR) mientras se leen en orden de ticket
+     */
+    private static final class Compacto {
+        private int[] productos = new int[1024];
+        private int[] inicios = new int[256];
+        // Ids de los tickets leídos, en orden (el cursor los entrega ordenados)
+        private long[] ids = new long[256];
+        private int items;
+        private int tickets;
+        private long ticketActual = -1;
+
+        private void agregar(long ticketId, int productoId) {
+            if (ticketId != ticketActual) {
+                if (tickets == inicios.length - 1) {
+                    inicios = Arrays.copyOf(inicios, inicios.length * 2);
+                    ids = Arrays.copyOf(ids, inicios.length);
+                }
+                ids[tickets] = ticketId;
+                inicios[tickets++] = items;
+                ticketActual = ticketId;
+            }
+            if (items == productos.length) {
+                productos = Arrays.copyOf(productos, productos.length * 2);
+            }
+            productos[items++] = productoId;
+        }
+
+        private int[] inicios() {
+            inicios[tickets] = items;
+            return inicios;
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        pool.shutdownNow();
+    }
+}
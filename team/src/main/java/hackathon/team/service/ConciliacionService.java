@@ -0,0 +1,551 @@
+package hackathon.team.service;
+
+import hackathon.team.util.Dinero;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Conciliación de estados de cuenta OneCard contra los tickets subidos
+ * El archivo (CSV con encabezado: fecha, usuario (email), monto y referencia opcional)
+ * se lee en una pasada a arreglos primitivos y se ordena por (usuario, monto, fecha). Los
+ * tickets candidatos llegan de un cursor en el mismo orden, así que el cruce es un
+ * merge-join por (usuario, monto) y, dentro de cada grupo, una búsqueda por ventana de
+ * tiempo: el ticket se sube entre dias-antes antes y dias-despues después del cargo.
+ * Un cargo con un solo ticket libre en su ventana se concilia (repitiendo hasta que no
+ * haya cambios); con varios queda ambiguo y con ninguno, sin ticket.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class ConciliacionService {
+
+    private static final String SQL_TICKETS =
+            "SELECT id, usuario_id, total, fecha_hora FROM ticket " +
+            "WHERE fecha_hora >= :desde AND fecha_hora <= :hasta AND estado <> 'cancelado' ";
+    private static final String SQL_FILTRO_USUARIOS = "AND usuario_id IN (:usuarios) ";
+    private static final String SQL_ORDEN = "ORDER BY usuario_id, total, fecha_hora, id";
+    // Con más usuarios la lista IN se omite (el límite de parámetros del driver es 32767) y se filtra al leer
+    private static final int MAX_USUARIOS_FILTRO = 10_000;
+
+    private static final String SQL_USUARIOS = "SELECT id, email FROM usuarios";
+
+    private static final int MAX_CANDIDATOS_REPORTADOS = 5;
+    private static final BigDecimal MONTO_MAXIMO = BigDecimal.valueOf(1_000_000_000L);
+    private static final Pattern MONTO_PUNTO_DECIMAL = Pattern.compile("[-+]?(\\d+|\\d{1,3}(,\\d{3})+)(\\.\\d+)?");
+    private static final Pattern MONTO_COMA_DECIMAL = Pattern.compile("[-+]?(\\d+|\\d{1,3}(\\.\\d{3})+)(,\\d+)?");
+    private static final DateTimeFormatter FORMATO_DIA_MES = DateTimeFormatter.ofPattern("dd/MM/uuuu[ HH:mm[:ss]]");
+    private static final DateTimeFormatter FORMATO_ISO = DateTimeFormatter.ofPattern("uuuu-MM-dd[ HH:mm[:ss]]");
+
+    private final NamedParameterJdbcTemplate cursor;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long segundosAntes;
+    private final long segundosDespues;
+    private final int maxLineas;
+    private final Semaphore conciliaciones;
+    private final Counter lineasProcesadas;
+
+    public ConciliacionService(DataSource dataSource,
+                               JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.conciliacion.dias-antes:1}") int diasAntes,
+                               @Value("${app.conciliacion.dias-despues:7}") int diasDespues,
+                               @Value("${app.conciliacion.max-lineas:500000}") int maxLineas,
+                               @Value("${app.conciliacion.max-simultaneas:2}") int maxSimultaneas) {
+        JdbcTemplate jdbcCursor = new JdbcTemplate(dataSource);
+        jdbcCursor.setFetchSize(10_000);
+        this.cursor = new NamedParameterJdbcTemplate(jdbcCursor);
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.segundosAntes = diasAntes * 86_400L;
+        this.segundosDespues = diasDespues * 86_400L;
+        this.maxLineas = maxLineas;
+        this.conciliaciones = new Semaphore(maxSimultaneas);
+        this.lineasProcesadas = Counter.builder("conciliacion.lineas")
+                .description("Líneas de estados de cuenta conciliadas")
+                .register(meterRegistry);
+    }
+
+    public enum EstadoPartida {
+        CONCILIADA, SIN_TICKET, AMBIGUA, INVALIDA
+    }
+
+    /**
+     * Resultado de una línea del estado de cuenta
+     *
+     * @param candidatos tickets posibles de una partida ambigua (los primeros)
+     */
+    public record Partida(int linea, String referencia, String usuario, BigDecimal monto, LocalDateTime fecha,
+                          EstadoPartida estado, Long ticketId, List<Long> candidatos, String motivo) {
+    }
+
+    /**
+     * @param ticketsSinCargo tickets de los usuarios del estado de cuenta, dentro de su
+     *                        periodo, que ningún cargo reclamó
+     */
+    public record Resultado(int lineas, int conciliadas, int sinTicket, int ambiguas, int invalidas,
+                            List<Partida> partidas, List<Long> ticketsSinCargo, long milisegundos) {
+    }
+
+    /**
+     * Reservar un turno (la conciliación ocupa CPU y un cursor); false si no hay
+     */
+    public boolean reservar() {
+        return conciliaciones.tryAcquire();
+    }
+
+    /**
+     * Conciliar un estado de cuenta y liberar el turno reservado
+     *
+     * @param incluirConciliadas si false, partidas solo trae las que requieren revisión
+     */
+    public Resultado conciliar(InputStreamSource archivo, boolean incluirConciliadas) throws IOException {
+        try (InputStream entrada = archivo.getInputStream()) {
+            long inicio = System.nanoTime();
+            Map<String, Long> usuarios = new HashMap<>();
+            jdbcTemplate.query(SQL_USUARIOS, rs -> {
+                usuarios.put(rs.getString("email").trim().toLowerCase(Locale.ROOT), rs.getLong("id"));
+            });
+            Cargos cargos = leer(entrada, usuarios);
+            Tickets tickets = cargarTickets(cargos);
+            cruzar(cargos, tickets);
+            Resultado resultado = resultado(cargos, tickets, incluirConciliadas, (System.nanoTime() - inicio) / 1_000_000);
+            lineasProcesadas.increment(resultado.lineas());
+            log.info("Conciliación: {} líneas, {} conciliadas, {} sin ticket, {} ambiguas, {} inválidas en {} ms",
+                    resultado.lineas(), resultado.conciliadas(), resultado.sinTicket(), resultado.ambiguas(),
+                    resultado.invalidas(), resultado.milisegundos());
+            return resultado;
+        } finally {
+            conciliaciones.release();
+        }
+    }
+
+    /**
+     * Cargos del archivo en arreglos paralelos; las líneas inválidas quedan con su motivo
+     */
+    private static final class Cargos {
+        private int n;
+        private int[] linea = new int[1024];
+        private long[] usuario = new long[1024];
+        private long[] centavos = new long[1024];
+        private long[] segundos = new long[1024];
+        private String[] usuarioTexto = new String[1024];
+        private String[] referencia = new String[1024];
+        private final List<Partida> invalidas = new ArrayList<>();
+        // Resultado del cruce por cargo
+        private EstadoPartida[] estado;
+        private long[] ticket;
+        private List<Long>[] candidatos;
+
+        private void agregar(int numeroLinea, long usuarioId, String email, long monto, long segundo, String ref) {
+            if (n == linea.length) {
+                int capacidad = n * 2;
+                linea = Arrays.copyOf(linea, capacidad);
+                usuario = Arrays.copyOf(usuario, capacidad);
+                centavos = Arrays.copyOf(centavos, capacidad);
+                segundos = Arrays.copyOf(segundos, capacidad);
+                usuarioTexto = Arrays.copyOf(usuarioTexto, capacidad);
+                referencia = Arrays.copyOf(referencia, capacidad);
+            }
+            linea[n] = numeroLinea;
+            usuario[n] = usuarioId;
+            centavos[n] = monto;
+            segundos[n] = segundo;
+            usuarioTexto[n] = email;
+            referencia[n++] = ref;
+        }
+
+        private int comparar(int a, int b) {
+            int c = Long.compare(usuario[a], usuario[b]);
+            if (c == 0) {
+                c = Long.compare(centavos[a], centavos[b]);
+            }
+            return c != 0 ? c : Long.compare(segundos[a], segundos[b]);
+        }
+    }
+
+    /**
+     * Tickets candidatos ordenados por (usuario, total, fecha)
+     */
+    private static final class Tickets {
+        private int n;
+        private long[] id = new long[1024];
+        private long[] usuario = new long[1024];
+        private long[] centavos = new long[1024];
+        private long[] segundos = new long[1024];
+        private boolean[] usado;
+        private long desde;
+        private long hasta;
+
+        private void agregar(long ticketId, long usuarioId, long monto, long segundo) {
+            if (n == id.length) {
+                int capacidad = n * 2;
+                id = Arrays.copyOf(id, capacidad);
+                usuario = Arrays.copyOf(usuario, capacidad);
+                centavos = Arrays.copyOf(centavos, capacidad);
+                segundos = Arrays.copyOf(segundos, capacidad);
+            }
+            id[n] = ticketId;
+            usuario[n] = usuarioId;
+            centavos[n] = monto;
+            segundos[n++] = segundo;
+        }
+    }
+
+    private Cargos leer(InputStream archivo, Map<String, Long> usuarios) throws IOException {
+        Cargos cargos = new Cargos();
+        BufferedReader lector = new BufferedReader(new InputStreamReader(archivo, StandardCharsets.UTF_8), 1 << 16);
+        String encabezado = lector.readLine();
+        if (encabezado == null) {
+            throw new IllegalArgumentException("El archivo está vacío");
+        }
+        if (encabezado.startsWith("﻿")) {
+            encabezado = encabezado.substring(1);
+        }
+        char separador = encabezado.indexOf(';') >= 0 && encabezado.indexOf(',') < 0 ? ';' : ',';
+        List<String> columnas = campos(encabezado, separador).stream()
+                .map(c -> c.trim().toLowerCase(Locale.ROOT)).toList();
+        int colFecha = columna(columnas, "fecha");
+        int colUsuario = columna(columnas, "usuario", "email");
+        int colMonto = columna(columnas, "monto", "importe");
+        int colReferencia = columnas.indexOf("referencia");
+
+        String texto;
+        int numero = 1;
+        while ((texto = lector.readLine()) != null) {
+            numero++;
+            if (texto.isBlank()) {
+                continue;
+            }
+            if (cargos.n + cargos.invalidas.size() >= maxLineas) {
+                throw new IllegalArgumentException("El archivo supera " + maxLineas + " líneas");
+            }
+            List<String> valores = campos(texto, separador);
+            String referencia = colReferencia >= 0 && colReferencia < valores.size() ? valores.get(colReferencia).trim() : null;
+            if (valores.size() <= Math.max(colFecha, Math.max(colUsuario, colMonto))) {
+                cargos.invalidas.add(invalida(numero, referencia, null, "Faltan columnas"));
+                continue;
+            }
+            String email = valores.get(colUsuario).trim().toLowerCase(Locale.ROOT);
+            Long usuarioId = usuarios.get(email);
+            LocalDateTime fecha = fecha(valores.get(colFecha).trim());
+            BigDecimal monto = monto(valores.get(colMonto), separador);
+            String motivo = usuarioId == null ? "Usuario desconocido"
+                    : fecha == null ? "Fecha inválida"
+                    : monto == null ? "Monto inválido"
+                    : monto.signum() <= 0 ? "Abono o monto no positivo"
+                    : null;
+            if (motivo != null) {
+                cargos.invalidas.add(new Partida(numero, referencia, email, monto, fecha, EstadoPartida.INVALIDA,
+                        null, List.of(), motivo));
+                continue;
+            }
+            cargos.agregar(numero, usuarioId, email, Dinero.centavos(monto), fecha.toEpochSecond(ZoneOffset.UTC), referencia);
+        }
+        return cargos;
+    }
+
+    /**
+     * Tickets de los usuarios del archivo en su periodo ampliado por la tolerancia
+     */
+    private Tickets cargarTickets(Cargos cargos) {
+        Tickets tickets = new Tickets();
+        if (cargos.n == 0) {
+            tickets.usado = new boolean[0];
+            return tickets;
+        }
+        long minimo = Long.MAX_VALUE;
+        long maximo = Long.MIN_VALUE;
+        Set<Long> usuarios = new HashSet<>();
+        for (int i = 0; i < cargos.n; i++) {
+            minimo = Math.min(minimo, cargos.segundos[i]);
+            maximo = Math.max(maximo, cargos.segundos[i]);
+            usuarios.add(cargos.usuario[i]);
+        }
+        tickets.desde = minimo;
+        tickets.hasta = maximo;
+        MapSqlParameterSource parametros = new MapSqlParameterSource()
+                .addValue("desde", Timestamp.valueOf(LocalDateTime.ofEpochSecond(minimo - segundosAntes, 0, ZoneOffset.UTC)))
+                .addValue("hasta", Timestamp.valueOf(LocalDateTime.ofEpochSecond(maximo + segundosDespues, 0, ZoneOffset.UTC)))
+                .addValue("usuarios", usuarios);
+        boolean filtroEnSql = usuarios.size() <= MAX_USUARIOS_FILTRO;
+        String sql = SQL_TICKETS + (filtroEnSql ? SQL_FILTRO_USUARIOS : "") + SQL_ORDEN;
+        transactionTemplate.executeWithoutResult(status -> cursor.query(sql, parametros, rs -> {
+            long usuarioId = rs.getLong("usuario_id");
+            // Sin la lista IN llegan tickets de todos los usuarios: solo cuentan los del archivo
+            if (filtroEnSql || usuarios.contains(usuarioId)) {
+                tickets.agregar(rs.getLong("id"), usuarioId, Dinero.centavos(rs.getBigDecimal("total")),
+                        rs.getTimestamp("fecha_hora").toLocalDateTime().toEpochSecond(ZoneOffset.UTC));
+            }
+        }));
+        tickets.usado = new boolean[tickets.n];
+        return tickets;
+    }
+
+    /**
+     * Merge-join por (usuario, monto) y asignación por ventana de tiempo dentro del grupo
+     */
+    @SuppressWarnings("unchecked")
+    private void cruzar(Cargos cargos, Tickets tickets) {
+        int[] orden = IntStream.range(0, cargos.n).boxed()
+                .sorted(cargos::comparar)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        cargos.estado = new EstadoPartida[cargos.n];
+        cargos.ticket = new long[cargos.n];
+        cargos.candidatos = new List[cargos.n];
+
+        int j = 0;
+        for (int i = 0; i < orden.length; ) {
+            int primero = orden[i];
+            long usuario = cargos.usuario[primero];
+            long monto = cargos.centavos[primero];
+            int finGrupo = i;
+            while (finGrupo < orden.length && cargos.usuario[orden[finGrupo]] == usuario
+                    && cargos.centavos[orden[finGrupo]] == monto) {
+                finGrupo++;
+            }
+            while (j < tickets.n && (tickets.usuario[j] < usuario
+                    || (tickets.usuario[j] == usuario && tickets.centavos[j] < monto))) {
+                j++;
+            }
+            int finTickets = j;
+            while (finTickets < tickets.n && tickets.usuario[finTickets] == usuario && tickets.centavos[finTickets] == monto) {
+                finTickets++;
+            }
+            asignarGrupo(cargos, tickets, orden, i, finGrupo, j, finTickets);
+            i = finGrupo;
+            j = finTickets;
+        }
+    }
+
+    /**
+     * Cargos orden[desde..hasta) y tickets [ticketDesde, ticketHasta) del mismo (usuario, monto),
+     * ambos por fecha
+     */
+    private void asignarGrupo(Cargos cargos, Tickets tickets, int[] orden, int desde, int hasta,
+                              int ticketDesde, int ticketHasta) {
+        int tamanio = hasta - desde;
+        // Ventana de tickets de cada cargo: [inicio, fin)
+        int[] inicio = new int[tamanio];
+        int[] fin = new int[tamanio];
+        int bajo = ticketDesde;
+        int alto = ticketDesde;
+        for (int k = 0; k < tamanio; k++) {
+            long segundo = cargos.segundos[orden[desde + k]];
+            while (bajo < ticketHasta && tickets.segundos[bajo] < segundo - segundosAntes) {
+                bajo++;
+            }
+            alto = Math.max(alto, bajo);
+            while (alto < ticketHasta && tickets.segundos[alto] <= segundo + segundosDespues) {
+                alto++;
+            }
+            inicio[k] = bajo;
+            fin[k] = alto;
+        }
+
+        boolean[] resuelto = new boolean[tamanio];
+        boolean cambio = true;
+        while (cambio) {
+            cambio = false;
+            for (int k = 0; k < tamanio; k++) {
+                if (resuelto[k]) {
+                    continue;
+                }
+                int libre = -1;
+                int libres = 0;
+                for (int t = inicio[k]; t < fin[k] && libres < 2; t++) {
+                    if (!tickets.usado[t]) {
+                        libre = t;
+                        libres++;
+                    }
+                }
+                int cargo = orden[desde + k];
+                if (libres == 0) {
+                    cargos.estado[cargo] = EstadoPartida.SIN_TICKET;
+                    resuelto[k] = true;
+                } else if (libres == 1) {
+                    tickets.usado[libre] = true;
+                    cargos.estado[cargo] = EstadoPartida.CONCILIADA;
+                    cargos.ticket[cargo] = tickets.id[libre];
+                    resuelto[k] = true;
+                    cambio = true;
+                }
+            }
+        }
+        for (int k = 0; k < tamanio; k++) {
+            if (!resuelto[k]) {
+                int cargo = orden[desde + k];
+                List<Long> candidatos = new ArrayList<>();
+                for (int t = inicio[k]; t < fin[k] && candidatos.size() < MAX_CANDIDATOS_REPORTADOS; t++) {
+                    if (!tickets.usado[t]) {
+                        candidatos.add(tickets.id[t]);
+                    }
+                }
+                cargos.estado[cargo] = EstadoPartida.AMBIGUA;
+                cargos.candidatos[cargo] = candidatos;
+            }
+        }
+    }
+
+    private static Resultado resultado(Cargos cargos, Tickets tickets, boolean incluirConciliadas, long milisegundos) {
+        int conciliadas = 0;
+        int sinTicket = 0;
+        int ambiguas = 0;
+        List<Partida> partidas = new ArrayList<>(cargos.invalidas);
+        for (int i = 0; i < cargos.n; i++) {
+            EstadoPartida estado = cargos.estado[i];
+            switch (estado) {
+                case CONCILIADA -> conciliadas++;
+                case SIN_TICKET -> sinTicket++;
+                case AMBIGUA -> ambiguas++;
+                case INVALIDA -> {
+                }
+            }
+            if (estado != EstadoPartida.CONCILIADA || incluirConciliadas) {
+                partidas.add(new Partida(cargos.linea[i], cargos.referencia[i], cargos.usuarioTexto[i],
+                        Dinero.aBigDecimal(cargos.centavos[i]), LocalDateTime.ofEpochSecond(cargos.segundos[i], 0, ZoneOffset.UTC),
+                        estado, estado == EstadoPartida.CONCILIADA ? cargos.ticket[i] : null,
+                        cargos.candidatos[i] != null ? cargos.candidatos[i] : List.of(), null));
+            }
+        }
+        partidas.sort(Comparator.comparingInt(Partida::linea));
+
+        List<Long> sinCargo = new ArrayList<>();
+        for (int t = 0; t < tickets.n; t++) {
+            if (!tickets.usado[t] && tickets.segundos[t] >= tickets.desde && tickets.segundos[t] <= tickets.hasta) {
+                sinCargo.add(tickets.id[t]);
+            }
+        }
+        return new Resultado(cargos.n + cargos.invalidas.size(), conciliadas, sinTicket, ambiguas,
+                cargos.invalidas.size(), partidas, sinCargo, milisegundos);
+    }
+
+    private static Partida invalida(int linea, String referencia, String usuario, String motivo) {
+        return new Partida(linea, referencia, usuario, null, null, EstadoPartida.INVALIDA, null, List.of(), motivo);
+    }
+
+    private static int columna(List<String> columnas, String... nombres) {
+        for (String nombre : nombres) {
+            int indice = columnas.indexOf(nombre);
+            if (indice >= 0) {
+                return indice;
+            }
+        }
+        throw new IllegalArgumentException("Falta la columna '" + nombres[0] + "' en el encabezado");
+    }
+
+    /**
+     * Campos de una línea CSV (comillas dobles para campos con separador; "" es una comilla)
+     */
+    static List<String> campos(String linea, char separador) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+
+    /**
+     * Fecha dd/MM/yyyy o ISO, con hora opcional; el formato se elige por la forma del texto
+     * (probar formatos a base de excepciones domina el tiempo en archivos grandes)
+     */
+    static LocalDateTime fecha(String texto) {
+        DateTimeFormatter formato = texto.length() > 2 && texto.charAt(2) == '/' ? FORMATO_DIA_MES
+                : texto.indexOf('T') >= 0 ? DateTimeFormatter.ISO_LOCAL_DATE_TIME
+                : FORMATO_ISO;
+        try {
+            TemporalAccessor leido = formato.parse(texto);
+            LocalDate dia = LocalDate.from(leido);
+            return leido.isSupported(ChronoField.HOUR_OF_DAY) ? dia.atTime(LocalTime.from(leido)) : dia.atStartOfDay();
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Monto con "$" y separador de miles opcionales
+     * Con "," como separador de campos el punto es decimal y la coma agrupa miles. Con ";"
+     * se aceptan las dos convenciones (1.234,56 y 1,234.56) mientras no haya duda: un texto
+     * que vale distinto en cada una (1.234) es inválido.
+     */
+    static BigDecimal monto(String texto, char separador) {
+        String limpio = texto.replace("$", "").replace(" ", "").trim();
+        BigDecimal monto = leerMonto(limpio, MONTO_PUNTO_DECIMAL, ',', '.');
+        if (separador == ';') {
+            BigDecimal comaDecimal = leerMonto(limpio, MONTO_COMA_DECIMAL, '.', ',');
+            if (monto != null && comaDecimal != null && monto.compareTo(comaDecimal) != 0) {
+                return null;
+            }
+            monto = comaDecimal != null ? comaDecimal : monto;
+        }
+        return monto != null && monto.abs().compareTo(MONTO_MAXIMO) <= 0 ? monto : null;
+    }
+
+    private static BigDecimal leerMonto(String texto, Pattern formato, char miles, char decimal) {
+        if (!formato.matcher(texto).matches()) {
+            return null;
+        }
+        return new BigDecimal(texto.replace(String.valueOf(miles), "").replace(decimal, '.'));
+    }
+}
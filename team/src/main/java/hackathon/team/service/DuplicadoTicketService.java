@@ -0,0 +1,267 @@
+package hackathon.team.service;
+
+import hackathon.team.dao.TicketRepository;
+import hackathon.team.model.Ticket;
+import hackathon.team.util.DecodificadorImagen;
+import hackathon.team.util.HashPerceptual;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detección de tickets posiblemente duplicados (el mismo ticket subido dos veces,
+ * aunque sea con otra foto)
+ * Cada imagen recibe un dHash de 64 bits. El índice en memoria agrupa los hashes por
+ * total exacto, que debe coincidir de todos modos, y dentro del grupo se compara la
+ * distancia de Hamming y la cercanía de fechaHora. Así una búsqueda solo toca los
+ * tickets con el mismo total, sin recorrer la tabla.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class DuplicadoTicketService {
+
+    private static final int LADO_DECODIFICACION = 64;
+
+    private final TicketRepository ticketRepository;
+    private final IngestaImagenService ingestaImagenService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int distanciaMaxima;
+    private final long ventanaSegundos;
+    private final Counter duplicadosDetectados;
+    private final ThreadPoolExecutor executor;
+
+    // total en centavos -> hashes de los tickets con ese total
+    private final Map<Long, Grupo> grupos = new HashMap<>();
+
+    public DuplicadoTicketService(TicketRepository ticketRepository,
+                                  IngestaImagenService ingestaImagenService,
+                                  JdbcTemplate jdbcTemplate,
+                                  TransactionTemplate transactionTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.tickets.duplicados.distancia-maxima:10}") int distanciaMaxima,
+                                  @Value("${app.tickets.duplicados.ventana:72h}") Duration ventana,
+                                  @Value("${app.tickets.duplicados.cola:500}") int tamanioCola) {
+        this.ticketRepository = ticketRepository;
+        this.ingestaImagenService = ingestaImagenService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.distanciaMaxima = distanciaMaxima;
+        this.ventanaSegundos = ventana.toSeconds();
+        this.duplicadosDetectados = Counter.builder("tickets.duplicados.detectados")
+                .description("Tickets marcados como posible duplicado")
+                .register(meterRegistry);
+        // Si la cola se llena el ticket queda sin hash y se analiza en el siguiente arranque
+        this.executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(tamanioCola),
+                runnable -> {
+                    Thread hilo = new Thread(runnable, "duplicados-ticket");
+                    hilo.setDaemon(true);
+                    return hilo;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Hashes de los tickets con un mismo total
+     * Arreglos paralelos para no crear un objeto por ticket
+     */
+    private static final class Grupo {
+        private long[] ids = new long[2];
+        private long[] hashes = new long[2];
+        private long[] fechas = new long[2];
+        private int tamanio;
+
+        private void agregar(long id, long hash, long fecha) {
+            if (tamanio == ids.length) {
+                ids = Arrays.copyOf(ids, tamanio * 2);
+                hashes = Arrays.copyOf(hashes, tamanio * 2);
+                fechas = Arrays.copyOf(fechas, tamanio * 2);
+            }
+            ids[tamanio] = id;
+            hashes[tamanio] = hash;
+            fechas[tamanio] = fecha;
+            tamanio++;
+        }
+
+        private void quitar(long id) {
+            for (int i = 0; i < tamanio; i++) {
+                if (ids[i] == id) {
+                    tamanio--;
+                    ids[i] = ids[tamanio];
+                    hashes[i] = hashes[tamanio];
+                    fechas[i] = fechas[tamanio];
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Ticket a analizar (datos mínimos, sin la entidad)
+     */
+    private record TicketPendiente(long id, String imagen, BigDecimal total, LocalDateTime fechaHora) {
+    }
+
+    /**
+     * Cargar los hashes existentes y analizar en segundo plano los tickets que aún no tienen
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarIndice() {
+        int[] cargados = {0};
+        jdbcTemplate.query(
+                "SELECT id, hash_perceptual, total, fecha_hora FROM ticket WHERE hash_perceptual IS NOT NULL",
+                rs -> {
+                    indexar(rs.getLong("id"), rs.getLong("hash_perceptual"),
+                            rs.getBigDecimal("total"), rs.getTimestamp("fecha_hora").toLocalDateTime());
+                    cargados[0]++;
+                });
+        log.info("Índice de duplicados cargado: {} tickets", cargados[0]);
+
+        List<TicketPendiente> pendientes = new ArrayList<>();
+        jdbcTemplate.query(
+                "SELECT id, imagen_ticket, total, fecha_hora FROM ticket " +
+                "WHERE hash_perceptual IS NULL AND imagen_ticket IS NOT NULL ORDER BY id",
+                rs -> {
+                    pendientes.add(new TicketPendiente(rs.getLong("id"), rs.getString("imagen_ticket"),
+                            rs.getBigDecimal("total"), rs.getTimestamp("fecha_hora").toLocalDateTime()));
+                });
+        if (!pendientes.isEmpty()) {
+            log.info("Tickets sin hash perceptual: {}; se analizan en segundo plano", pendientes.size());
+            // Se procesan en orden de id: el ticket más nuevo es el que se marca como duplicado
+            Thread.ofVirtual().name("duplicados-ticket-carga").start(() -> pendientes.forEach(this::analizar));
+        }
+    }
+
+    /**
+     * Analizar un ticket recién guardado sin bloquear la subida
+     */
+    public void analizarEnSegundoPlano(Ticket ticket) {
+        if (ticket.getImagenTicket() == null) {
+            return;
+        }
+        TicketPendiente pendiente = new TicketPendiente(ticket.getId(), ticket.getImagenTicket(),
+                ticket.getTotal(), ticket.getFechaHora());
+        executor.execute(() -> analizar(pendiente));
+    }
+
+    /**
+     * Quitar un ticket eliminado del índice y de las marcas de duplicado
+     * Debe llamarse dentro de la transacción que elimina el ticket
+     */
+    public void quitar(Ticket ticket) {
+        if (ticket.getHashPerceptual() != null) {
+            synchronized (grupos) {
+                Grupo grupo = grupos.get(centavos(ticket.getTotal()));
+                if (grupo != null) {
+                    grupo.quitar(ticket.getId());
+                }
+            }
+        }
+        ticketRepository.limpiarPosibleDuplicado(ticket.getId());
+    }
+
+    private void analizar(TicketPendiente ticket) {
+        try {
+            long hash = calcularHash(ticket.imagen());
+            Long duplicadoId = registrar(ticket.id(), hash, ticket.total(), ticket.fechaHora());
+            transactionTemplate.executeWithoutResult(status ->
+                    ticketRepository.asignarHashPerceptual(ticket.id(), hash, duplicadoId));
+            if (duplicadoId != null) {
+                duplicadosDetectados.increment();
+                log.warn("Ticket {} es posible duplicado del ticket {}", ticket.id(), duplicadoId);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("No se pudo calcular el hash perceptual del ticket {}", ticket.id(), e);
+        }
+    }
+
+    /**
+     * La imagen puede estar pasando del área temporal al almacén: si desaparece
+     * entre que se resuelve la ruta y se abre, se vuelve a resolver
+     */
+    private long calcularHash(String nombreImagen) throws IOException {
+        for (int intento = 0; ; intento++) {
+            Path ruta = ingestaImagenService.obtenerRutaImagen(nombreImagen);
+            try {
+                BufferedImage imagen = DecodificadorImagen.leer(ruta, LADO_DECODIFICACION);
+                if (imagen == null) {
+                    throw new IOException("Formato de imagen no soportado: " + nombreImagen);
+                }
+                return HashPerceptual.dHash(imagen);
+            } catch (NoSuchFileException e) {
+                if (intento > 0) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Buscar el candidato más parecido y agregar el ticket al índice
+     *
+     * @return id del posible duplicado o null
+     */
+    private Long registrar(long id, long hash, BigDecimal total, LocalDateTime fechaHora) {
+        long fecha = fechaHora.toEpochSecond(ZoneOffset.UTC);
+        synchronized (grupos) {
+            Grupo grupo = grupos.computeIfAbsent(centavos(total), k -> new Grupo());
+            Long candidato = null;
+            int mejorDistancia = Integer.MAX_VALUE;
+            for (int i = 0; i < grupo.tamanio; i++) {
+                if (grupo.ids[i] == id || Math.abs(grupo.fechas[i] - fecha) > ventanaSegundos) {
+                    continue;
+                }
+                int distancia = HashPerceptual.distancia(grupo.hashes[i], hash);
+                if (distancia <= distanciaMaxima && distancia < mejorDistancia) {
+                    mejorDistancia = distancia;
+                    candidato = grupo.ids[i];
+                }
+            }
+            grupo.agregar(id, hash, fecha);
+            return candidato;
+        }
+    }
+
+    private void indexar(long id, long hash, BigDecimal total, LocalDateTime fechaHora) {
+        synchronized (grupos) {
+            grupos.computeIfAbsent(centavos(total), k -> new Grupo())
+                    .agregar(id, hash, fechaHora.toEpochSecond(ZoneOffset.UTC));
+        }
+    }
+
+    private static long centavos(BigDecimal total) {
+        return total.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    @PreDestroy
+    public void detener() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,353 @@
+package hackathon.team.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Exportación de tickets con sus items en CSV o NDJSON (una fila por item)
+ * Las filas se leen con un cursor de PostgreSQL (fetch size dentro de una transacción
+ * de solo lectura) y se escriben directo en la respuesta, así la memoria no depende
+ * del tamaño del rango. Cada exportación ocupa una conexión mientras dura, por eso
+ * se limitan las exportaciones simultáneas.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class ExportacionTicketService {
+
+    private static final String SQL_EXPORTAR =
+            "SELECT t.id AS ticket_id, t.numero_ticket, t.fecha_hora, t.usuario_id, u.email, " +
+            "       t.metodo_pago, t.estado, t.total, i.id AS item_id, p.id AS producto_id, " +
+            "       p.nombre AS producto, p.marca, c.nombre AS categoria, " +
+            "       i.cantidad, i.precio_unitario, i.subtotal " +
+            "FROM ticket t " +
+            "JOIN usuarios u ON u.id = t.usuario_id " +
+            "LEFT JOIN ticket_items i ON i.ticket_id = t.id " +
+            "LEFT JOIN productos p ON p.id = i.producto_id " +
+            "LEFT JOIN categoria c ON c.id = p.categoria_id " +
+            "WHERE 1 = 1";
+
+    private static final String[] COLUMNAS = {
+            "ticket_id", "numero_ticket", "fecha_hora", "usuario_id", "email", "metodo_pago", "estado",
+            "total", "item_id", "producto_id", "producto", "marca", "categoria",
+            "cantidad", "precio_unitario", "subtotal"
+    };
+
+    // Vaciar el buffer cada tantas filas para que el cliente reciba datos de forma continua
+    private static final int FILAS_POR_ENVIO = 1000;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Semaphore exportaciones;
+    private final Counter filasExportadas;
+
+    public ExportacionTicketService(DataSource dataSource,
+                                    PlatformTransactionManager transactionManager,
+                                    ObjectMapper objectMapper,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.tickets.exportacion.fetch-size:1000}") int fetchSize,
+                                    @Value("${app.tickets.exportacion.max-simultaneas:2}") int maxSimultaneas) {
+        // JdbcTemplate propio: el fetch size no debe afectar al resto de la aplicación
+        JdbcTemplate cursor = new JdbcTemplate(dataSource);
+        cursor.setFetchSize(fetchSize);
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(cursor);
+        // PostgreSQL solo usa el cursor con autocommit desactivado
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.exportaciones = new Semaphore(maxSimultaneas);
+        this.filasExportadas = Counter.builder("tickets.exportacion.filas")
+                .description("Filas escritas por la exportación de tickets")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Formato de salida
+     */
+    public enum Formato {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Formato(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Optional<Formato> desdeParametro(String valor) {
+            if (valor == null || valor.isBlank()) {
+                return Optional.of(CSV);
+            }
+            try {
+                return Optional.of(valueOf(valor.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Filtros de la exportación; los nulos no filtran
+     *
+     * @param hasta fecha final incluida
+     */
+    public record Filtro(LocalDate desde, LocalDate hasta, Long usuarioId, String metodoPago) {
+    }
+
+    /**
+     * Turno de exportación reservado; liberarlo más de una vez no tiene efecto, así lo
+     * puede cerrar tanto la escritura como el fin de la petición asíncrona (desconexión,
+     * timeout o error antes de que el cuerpo se ejecute)
+     */
+    public final class Turno implements AutoCloseable {
+
+        private final AtomicBoolean liberado = new AtomicBoolean();
+
+        private Turno() {
+        }
+
+        @Override
+        public void close() {
+            if (liberado.compareAndSet(false, true)) {
+                exportaciones.release();
+            }
+        }
+    }
+
+    /**
+     * Reservar un turno de exportación
+     *
+     * @return vacío si ya hay demasiadas exportaciones en curso
+     */
+    public Optional<Turno> reservar() {
+        return exportaciones.tryAcquire() ? Optional.of(new Turno()) : Optional.empty();
+    }
+
+    /**
+     * Escribir la exportación y liberar el turno reservado
+     */
+    public void exportar(Filtro filtro, Formato formato, OutputStream salida, Turno turno) throws IOException {
+        try (turno) {
+            StringBuilder sql = new StringBuilder(SQL_EXPORTAR);
+            MapSqlParameterSource parametros = new MapSqlParameterSource();
+            if (filtro.desde() != null) {
+                sql.append(" AND t.fecha_hora >= :desde");
+                parametros.addValue("desde", Timestamp.valueOf(filtro.desde().atStartOfDay()));
+            }
+            if (filtro.hasta() != null) {
+                sql.append(" AND t.fecha_hora < :hasta");
+                parametros.addValue("hasta", Timestamp.valueOf(filtro.hasta().plusDays(1).atStartOfDay()));
+            }
+            if (filtro.usuarioId() != null) {
+                sql.append(" AND t.usuario_id = :usuarioId");
+                parametros.addValue("usuarioId", filtro.usuarioId());
+            }
+            if (filtro.metodoPago() != null && !filtro.metodoPago().isBlank()) {
+                sql.append(" AND t.metodo_pago = :metodoPago");
+                parametros.addValue("metodoPago", filtro.metodoPago().trim());
+            }
+            sql.append(" ORDER BY t.fecha_hora, t.id, i.id");
+
+            try (EscritorFilas escritor = formato == Formato.CSV
+                    ? new EscritorCsv(salida)
+                    : new EscritorNdjson(objectMapper.getFactory().createGenerator(salida))) {
+                escritor.encabezado();
+                escritor.enviar();
+                long[] filas = {0};
+                transactionTemplate.executeWithoutResult(status ->
+                        jdbcTemplate.query(sql.toString(), parametros, rs -> {
+                            try {
+                                escritor.fila(rs);
+                                if (++filas[0] % FILAS_POR_ENVIO == 0) {
+                                    escritor.enviar();
+                                    filasExportadas.increment(FILAS_POR_ENVIO);
+                                }
+                            } catch (IOException e) {
+                                // Cliente desconectado: se corta la consulta y se libera la conexión
+                                throw new UncheckedIOException(e);
+                            }
+                        }));
+                filasExportadas.increment(filas[0] % FILAS_POR_ENVIO);
+                log.info("Exportación {} de tickets: {} filas, filtro {}", formato, filas[0], filtro);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Escritura de filas en un formato
+     */
+    private interface EscritorFilas extends AutoCloseable {
+
+        void encabezado() throws IOException;
+
+        void fila(ResultSet rs) throws SQLException, IOException;
+
+        void enviar() throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * CSV (RFC 4180) en UTF-8 con BOM para que Excel respete los acentos
+     */
+    private static final class EscritorCsv implements EscritorFilas {
+
+        private final Writer writer;
+
+        private EscritorCsv(OutputStream salida) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), 64 * 1024);
+        }
+
+        @Override
+        public void encabezado() throws IOException {
+            writer.write('\uFEFF');
+            writer.write(String.join(",", COLUMNAS));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void fila(ResultSet rs) throws SQLException, IOException {
+            for (int i = 0; i < COLUMNAS.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Object valor = rs.getObject(i + 1);
+                if (valor == null) {
+                    continue;
+                }
+                if (valor instanceof Timestamp fecha) {
+                    writer.write(fecha.toLocalDateTime().toString());
+                } else if (valor instanceof BigDecimal importe) {
+                    writer.write(importe.toPlainString());
+                } else if (valor instanceof Number) {
+                    writer.write(valor.toString());
+                } else {
+                    escribirTexto(valor.toString());
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        /**
+         * Comillas si hace falta; un texto que empieza como fórmula se antepone con '
+         * para que la hoja de cálculo no lo evalúe
+         */
+        private void escribirTexto(String texto) throws IOException {
+            if (!texto.isEmpty() && "=+-@".indexOf(texto.charAt(0)) >= 0) {
+                texto = "'" + texto;
+            }
+            boolean comillas = texto.indexOf(',') >= 0 || texto.indexOf('"') >= 0
+                    || texto.indexOf('\n') >= 0 || texto.indexOf('\r') >= 0;
+            if (!comillas) {
+                writer.write(texto);
+                return;
+            }
+            writer.write('"');
+            writer.write(texto.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void enviar() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    /**
+     * Un objeto JSON por línea
+     */
+    private static final class EscritorNdjson implements EscritorFilas {
+
+        private final JsonGenerator generator;
+
+        private EscritorNdjson(JsonGenerator generator) {
+            this.generator = generator;
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void encabezado() {
+        }
+
+        @Override
+        public void fila(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < COLUMNAS.length; i++) {
+                Object valor = rs.getObject(i + 1);
+                generator.writeFieldName(COLUMNAS[i]);
+                if (valor == null) {
+                    generator.writeNull();
+                } else if (valor instanceof Timestamp fecha) {
+                    generator.writeString(fecha.toLocalDateTime().toString());
+                } else if (valor instanceof BigDecimal importe) {
+                    generator.writeNumber(importe);
+                } else if (valor instanceof Long numero) {
+                    generator.writeNumber(numero);
+                } else if (valor instanceof Integer numero) {
+                    generator.writeNumber(numero);
+                } else {
+                    generator.writeString(valor.toString());
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void enviar() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+}
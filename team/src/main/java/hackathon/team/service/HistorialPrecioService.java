@@ -0,0 +1,391 @@
+package hackathon.team.service;
+
+import hackathon.team.model.Ticket;
+import hackathon.team.model.TicketItem;
+import hackathon.team.util.AlmacenSeriePrecios;
+import hackathon.team.util.Dinero;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Historial de precios por producto fuera de PostgreSQL (AlmacenSeriePrecios)
+ * Los items de cada ticket guardado se acumulan por producto y se escriben como bloque
+ * al llenarse o al envejecer; un bloque nunca parte las líneas de un ticket. Cada
+ * confirmación guarda desde qué ticket hay que volver a leer la base de datos: al arrancar
+ * se leen solo esos items y se descartan los de tickets que ya están en bloques del
+ * producto. Los tickets eliminados después de registrarse siguen en
+ * el historial (el archivo solo crece); borrar el archivo lo reconstruye completo.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class HistorialPrecioService {
+
+    private static final String SQL_ITEMS =
+            "SELECT i.ticket_id, i.producto_id, t.fecha_hora, i.precio_unitario, i.cantidad " +
+            "FROM ticket_items i JOIN ticket t ON t.id = i.ticket_id " +
+            "WHERE i.ticket_id > ? ORDER BY i.ticket_id, i.id";
+
+    private static final int MAX_DIAS_CONSULTA = 3660;
+
+    private final JdbcTemplate cursor;
+    private final TransactionTemplate transactionTemplate;
+    private final Path archivo;
+    private final int tamanioSegmento;
+    private final int puntosPorBloque;
+    private final int maxDiasAbierto;
+
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+    private AlmacenSeriePrecios almacen;
+    // Puntos de cada producto que todavía no están en un bloque
+    private final Map<Long, Pendiente> pendientes = new HashMap<>();
+    private long maxTicket;
+    // Puntos recibidos mientras se lee la base de datos al arrancar
+    private List<PuntoNuevo> durante = new ArrayList<>();
+
+    public HistorialPrecioService(DataSource dataSource,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${app.productos.historial-precios.archivo:historial-precios/precios.dat}") String archivo,
+                                  @Value("${app.productos.historial-precios.tamanio-segmento-mb:64}") int tamanioSegmentoMb,
+                                  @Value("${app.productos.historial-precios.puntos-por-bloque:256}") int puntosPorBloque,
+                                  @Value("${app.productos.historial-precios.max-dias-abierto:7}") int maxDiasAbierto) {
+        if (puntosPorBloque < 1 || puntosPorBloque > AlmacenSeriePrecios.MAX_PUNTOS_POR_BLOQUE) {
+            throw new IllegalArgumentException("app.productos.historial-precios.puntos-por-bloque debe estar entre 1 y "
+                    + AlmacenSeriePrecios.MAX_PUNTOS_POR_BLOQUE);
+        }
+        this.cursor = new JdbcTemplate(dataSource);
+        this.cursor.setFetchSize(10_000);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.archivo = Path.of(archivo);
+        this.tamanioSegmento = tamanioSegmentoMb * 1024 * 1024;
+        this.puntosPorBloque = puntosPorBloque;
+        this.maxDiasAbierto = maxDiasAbierto;
+    }
+
+    /**
+     * Agrupación de los puntos al consultar
+     */
+    public enum Resolucion {
+        DIA, SEMANA, MES;
+
+        public static Optional<Resolucion> desdeParametro(String valor) {
+            if (valor == null || valor.isBlank()) {
+                return Optional.of(DIA);
+            }
+            try {
+                return Optional.of(valueOf(valor.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                return Optional.empty();
+            }
+        }
+
+        private LocalDate inicio(LocalDate fecha) {
+            return switch (this) {
+                case DIA -> fecha;
+                case SEMANA -> fecha.minusDays(fecha.getDayOfWeek().getValue() - 1);
+                case MES -> fecha.withDayOfMonth(1);
+            };
+        }
+    }
+
+    /**
+     * Precios de un periodo: el promedio está ponderado por cantidad
+     *
+     * @param compras items (líneas de ticket) del periodo
+     */
+    public record Resumen(LocalDate inicio, BigDecimal minimo, BigDecimal promedio, BigDecimal maximo,
+                          long cantidad, int compras) {
+    }
+
+    private record PuntoNuevo(long ticketId, long productoId, int dia, long centavos, int cantidad) {
+    }
+
+    /**
+     * Puntos de un producto pendientes de escribir
+     */
+    private static final class Pendiente {
+        private int[] dias = new int[8];
+        private long[] centavos = new long[8];
+        private int[] cantidades = new int[8];
+        private int tamanio;
+        private long primerTicket;
+        private long ultimoTicket;
+
+        private void agregar(PuntoNuevo punto) {
+            if (tamanio == dias.length) {
+                dias = Arrays.copyOf(dias, tamanio * 2);
+                centavos = Arrays.copyOf(centavos, tamanio * 2);
+                cantidades = Arrays.copyOf(cantidades, tamanio * 2);
+            }
+            if (tamanio == 0) {
+                primerTicket = punto.ticketId();
+            }
+            dias[tamanio] = punto.dia();
+            centavos[tamanio] = punto.centavos();
+            cantidades[tamanio] = punto.cantidad();
+            tamanio++;
+            ultimoTicket = Math.max(ultimoTicket, punto.ticketId());
+        }
+    }
+
+    /**
+     * Abrir el archivo y leer en segundo plano los tickets que faltan
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() throws IOException {
+        abrir();
+        Thread.ofVirtual().name("historial-precios-carga").start(this::leerFaltantes);
+    }
+
+    void abrir() throws IOException {
+        candado.writeLock().lock();
+        try {
+            almacen = AlmacenSeriePrecios.abrir(archivo, tamanioSegmento);
+            maxTicket = almacen.getDesdeTicket();
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Registrar los items de un ticket ya confirmado en la base de datos
+     */
+    public void registrar(Ticket ticket) {
+        int dia = (int) ticket.getFechaHora().toLocalDate().toEpochDay();
+        candado.writeLock().lock();
+        try {
+            for (TicketItem item : ticket.getItems()) {
+                PuntoNuevo punto = new PuntoNuevo(ticket.getId(), item.getProducto().getId(), dia,
+                        Dinero.centavos(item.getPrecioUnitario()), item.getCantidad());
+                if (durante != null) {
+                    durante.add(punto);
+                } else {
+                    agregar(punto);
+                }
+            }
+        } catch (IOException e) {
+            log.error("No se pudo registrar el ticket {} en el historial de precios", ticket.getId(), e);
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Resumen de precios del producto entre dos fechas (inclusive)
+     */
+    public List<Resumen> resumir(Long productoId, LocalDate desde, LocalDate hasta, Resolucion resolucion) {
+        if (desde.isAfter(hasta)) {
+            throw new IllegalArgumentException("La fecha inicial es posterior a la final");
+        }
+        if (ChronoUnit.DAYS.between(desde, hasta) > MAX_DIAS_CONSULTA) {
+            throw new IllegalArgumentException("El rango máximo es de " + MAX_DIAS_CONSULTA + " días");
+        }
+        int diaDesde = (int) desde.toEpochDay();
+        int diaHasta = (int) hasta.toEpochDay();
+
+        // Por día: mínimo, máximo, suma de precio * cantidad, cantidad y compras
+        TreeMap<Integer, long[]> porDia = new TreeMap<>();
+        AlmacenSeriePrecios.Consumidor acumular = (dia, precio, cantidad) -> {
+            long[] a = porDia.computeIfAbsent(dia, d -> new long[]{Long.MAX_VALUE, Long.MIN_VALUE, 0, 0, 0});
+            a[0] = Math.min(a[0], precio);
+            a[1] = Math.max(a[1], precio);
+            a[2] = Math.addExact(a[2], Math.multiplyExact(precio, cantidad));
+            a[3] += cantidad;
+            a[4]++;
+        };
+        candado.readLock().lock();
+        try {
+            if (almacen != null) {
+                almacen.recorrer(productoId, diaDesde, diaHasta, acumular);
+            }
+            Pendiente pendiente = pendientes.get(productoId);
+            if (pendiente != null) {
+                for (int i = 0; i < pendiente.tamanio; i++) {
+                    if (pendiente.dias[i] >= diaDesde && pendiente.dias[i] <= diaHasta) {
+                        acumular.aceptar(pendiente.dias[i], pendiente.centavos[i], pendiente.cantidades[i]);
+                    }
+                }
+            }
+        } finally {
+            candado.readLock().unlock();
+        }
+
+        TreeMap<LocalDate, long[]> periodos = new TreeMap<>();
+        porDia.forEach((dia, a) -> {
+            long[] p = periodos.computeIfAbsent(resolucion.inicio(LocalDate.ofEpochDay(dia)),
+                    f -> new long[]{Long.MAX_VALUE, Long.MIN_VALUE, 0, 0, 0});
+            p[0] = Math.min(p[0], a[0]);
+            p[1] = Math.max(p[1], a[1]);
+            p[2] = Math.addExact(p[2], a[2]);
+            p[3] += a[3];
+            p[4] += a[4];
+        });
+        List<Resumen> resumen = new ArrayList<>(periodos.size());
+        periodos.forEach((inicio, p) -> resumen.add(new Resumen(inicio,
+                Dinero.aBigDecimal(p[0]),
+                p[3] > 0 ? Dinero.promedio(p[2], p[3]) : null,
+                Dinero.aBigDecimal(p[1]),
+                p[3], (int) p[4])));
+        return resumen;
+    }
+
+    /**
+     * Escribir los bloques que llevan demasiado tiempo abiertos y confirmar el archivo
+     */
+    @Scheduled(fixedDelayString = "${app.productos.historial-precios.confirmacion-ms:300000}")
+    public void confirmar() {
+        candado.writeLock().lock();
+        try {
+            if (almacen == null || durante != null) {
+                return;
+            }
+            int limite = (int) LocalDate.now().toEpochDay() - maxDiasAbierto;
+            Iterator<Map.Entry<Long, Pendiente>> iterador = pendientes.entrySet().iterator();
+            while (iterador.hasNext()) {
+                Map.Entry<Long, Pendiente> entrada = iterador.next();
+                if (entrada.getValue().dias[0] < limite) {
+                    escribir(entrada.getKey(), entrada.getValue());
+                    iterador.remove();
+                }
+            }
+            long desde = maxTicket;
+            for (Pendiente pendiente : pendientes.values()) {
+                desde = Math.min(desde, pendiente.primerTicket - 1);
+            }
+            almacen.confirmar(desde);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() throws IOException {
+        confirmar();
+        candado.writeLock().lock();
+        try {
+            if (almacen != null) {
+                almacen.close();
+                almacen = null;
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Leer los items posteriores a la última confirmación y después los recibidos mientras tanto
+     * Un item leído se descarta si su ticket ya está en los bloques del producto; uno recibido
+     * mientras tanto, si el cursor ya leyó su ticket.
+     */
+    void leerFaltantes() {
+        long inicio = System.nanoTime();
+        long desde;
+        candado.readLock().lock();
+        try {
+            desde = almacen.getDesdeTicket();
+        } finally {
+            candado.readLock().unlock();
+        }
+        long[] leidos = {0};
+        // Tickets leídos por el cursor, en orden
+        long[][] tickets = {new long[1024]};
+        int[] cuantosTickets = {0};
+        try {
+            transactionTemplate.executeWithoutResult(status -> cursor.query(SQL_ITEMS, rs -> {
+                PuntoNuevo punto = new PuntoNuevo(rs.getLong(1), rs.getLong(2),
+                        (int) rs.getTimestamp(3).toLocalDateTime().toLocalDate().toEpochDay(),
+                        Dinero.centavos(rs.getBigDecimal(4)), rs.getInt(5));
+                if (cuantosTickets[0] == 0 || tickets[0][cuantosTickets[0] - 1] != punto.ticketId()) {
+                    if (cuantosTickets[0] == tickets[0].length) {
+                        tickets[0] = Arrays.copyOf(tickets[0], cuantosTickets[0] * 2);
+                    }
+                    tickets[0][cuantosTickets[0]++] = punto.ticketId();
+                }
+                candado.writeLock().lock();
+                try {
+                    if (punto.ticketId() > almacen.ultimoTicket(punto.productoId())) {
+                        agregar(punto);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    candado.writeLock().unlock();
+                }
+                leidos[0]++;
+            }, desde));
+
+            candado.writeLock().lock();
+            try {
+                for (PuntoNuevo punto : durante) {
+                    if (Arrays.binarySearch(tickets[0], 0, cuantosTickets[0], punto.ticketId()) < 0) {
+                        agregar(punto);
+                    }
+                }
+                durante = null;
+            } finally {
+                candado.writeLock().unlock();
+            }
+            confirmar();
+            log.info("Historial de precios: {} items leídos de la base de datos; {} puntos en {} bloques ({} bytes) en {} ms",
+                    leidos[0], almacen.getPuntos(), almacen.getBloques(), almacen.getBytesUsados(),
+                    (System.nanoTime() - inicio) / 1_000_000);
+        } catch (RuntimeException | IOException e) {
+            log.error("No se pudo cargar el historial de precios", e);
+        }
+    }
+
+    /**
+     * Agregar un punto a los pendientes de su producto (debe tener el candado de escritura)
+     * El bloque lleno se escribe al llegar el primer punto de otro ticket, así las líneas de
+     * un ticket quedan juntas y al arrancar basta comparar contra el último ticket del bloque.
+     */
+    private void agregar(PuntoNuevo punto) throws IOException {
+        Pendiente pendiente = pendientes.get(punto.productoId());
+        if (pendiente != null && (pendiente.tamanio >= AlmacenSeriePrecios.MAX_PUNTOS_POR_BLOQUE
+                || (pendiente.tamanio >= puntosPorBloque && punto.ticketId() != pendiente.ultimoTicket))) {
+            escribir(punto.productoId(), pendiente);
+            pendientes.remove(punto.productoId());
+            pendiente = null;
+        }
+        if (pendiente == null) {
+            pendiente = new Pendiente();
+            pendientes.put(punto.productoId(), pendiente);
+        }
+        pendiente.agregar(punto);
+        maxTicket = Math.max(maxTicket, punto.ticketId());
+    }
+
+    private void escribir(long productoId, Pendiente pendiente) throws IOException {
+        almacen.agregarBloque(productoId, pendiente.ultimoTicket,
+                pendiente.dias, pendiente.centavos, pendiente.cantidades, pendiente.tamanio);
+    }
+}
@@ -0,0 +1,213 @@
+package hackathon.team.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Historial de tickets por usuario con paginación por cursor (keyset)
+ * La página siguiente empieza después de la última (fecha_hora, id) devuelta, así el
+ * costo no crece con el número de página y no se repiten ni se saltan tickets si
+ * llegan nuevos mientras se pagina. Lista y totales por periodo se resuelven con el
+ * índice (usuario_id, fecha_hora DESC, id DESC) que incluye total, estado y método
+ * de pago, sin leer la tabla.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class HistorialTicketService {
+
+    public static final int LIMITE_POR_DEFECTO = 20;
+    public static final int LIMITE_MAXIMO = 100;
+
+    // INCLUDE no se puede declarar con @Index: se crea aquí, sin bloquear escrituras
+    private static final String SQL_INDICE =
+            "CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_ticket_usuario_fecha_id " +
+            "ON ticket (usuario_id, fecha_hora DESC, id DESC) INCLUDE (total, estado, metodo_pago)";
+
+    private static final String SQL_PAGINA =
+            "SELECT id, numero_ticket, fecha_hora, total, estado, metodo_pago FROM ticket " +
+            "WHERE usuario_id = :usuarioId";
+
+    private static final String SQL_TOTALES =
+            "SELECT date_trunc('%s', fecha_hora) AS inicio, COUNT(*) AS tickets, SUM(total) AS total FROM ticket " +
+            "WHERE usuario_id = :usuarioId";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public HistorialTicketService(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+    }
+
+    /**
+     * Ticket del historial (solo columnas del índice)
+     */
+    public record TicketResumen(Long id, String numeroTicket, LocalDateTime fechaHora,
+                                BigDecimal total, String estado, String metodoPago) {
+    }
+
+    /**
+     * Página del historial; siguienteCursor es null en la última página
+     */
+    public record Pagina(List<TicketResumen> tickets, String siguienteCursor) {
+    }
+
+    /**
+     * Tickets y monto de un periodo
+     */
+    public record TotalPeriodo(LocalDate inicio, long tickets, BigDecimal total) {
+    }
+
+    /**
+     * Filtros opcionales del historial
+     */
+    public record Filtro(String estado, String metodoPago) {
+    }
+
+    /**
+     * Agrupación de los totales (valor de date_trunc)
+     */
+    public enum Periodo {
+        DIA("day"),
+        SEMANA("week"),
+        MES("month"),
+        ANIO("year");
+
+        private final String unidad;
+
+        Periodo(String unidad) {
+            this.unidad = unidad;
+        }
+
+        public static Optional<Periodo> desdeParametro(String valor) {
+            if (valor == null || valor.isBlank()) {
+                return Optional.of(MES);
+            }
+            try {
+                return Optional.of(valueOf(valor.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Crear el índice del historial si no existe
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void crearIndice() {
+        try {
+            jdbcTemplate.execute(SQL_INDICE);
+        } catch (RuntimeException e) {
+            log.warn("No se pudo crear el índice del historial de tickets", e);
+        }
+    }
+
+    /**
+     * Página de tickets de un usuario, más recientes primero
+     *
+     * @param cursor valor de siguienteCursor de la página anterior, o null para la primera
+     */
+    public Pagina obtenerPagina(Long usuarioId, Filtro filtro, String cursor, int limite) {
+        int tamanio = Math.max(1, Math.min(limite, LIMITE_MAXIMO));
+        StringBuilder sql = new StringBuilder(SQL_PAGINA);
+        MapSqlParameterSource parametros = new MapSqlParameterSource("usuarioId", usuarioId);
+        agregarFiltro(sql, parametros, filtro);
+        if (cursor != null && !cursor.isBlank()) {
+            Posicion posicion = Posicion.decodificar(cursor);
+            // Comparación de filas: PostgreSQL la resuelve como un rango del índice
+            sql.append(" AND (fecha_hora, id) < (:fechaCursor, :idCursor)");
+            parametros.addValue("fechaCursor", Timestamp.valueOf(posicion.fechaHora()));
+            parametros.addValue("idCursor", posicion.id());
+        }
+        sql.append(" ORDER BY fecha_hora DESC, id DESC LIMIT :limite");
+        // Una fila de más indica si hay página siguiente
+        parametros.addValue("limite", tamanio + 1);
+
+        List<TicketResumen> tickets = namedJdbcTemplate.query(sql.toString(), parametros, (rs, i) ->
+                new TicketResumen(rs.getLong("id"), rs.getString("numero_ticket"),
+                        rs.getTimestamp("fecha_hora").toLocalDateTime(), rs.getBigDecimal("total"),
+                        rs.getString("estado"), rs.getString("metodo_pago")));
+
+        if (tickets.size() <= tamanio) {
+            return new Pagina(tickets, null);
+        }
+        List<TicketResumen> pagina = tickets.subList(0, tamanio);
+        TicketResumen ultimo = pagina.get(tamanio - 1);
+        return new Pagina(pagina, new Posicion(ultimo.fechaHora(), ultimo.id()).codificar());
+    }
+
+    /**
+     * Totales de un usuario por periodo, más recientes primero
+     *
+     * @param hasta fecha final incluida
+     */
+    public List<TotalPeriodo> obtenerTotales(Long usuarioId, Filtro filtro, Periodo periodo,
+                                             LocalDate desde, LocalDate hasta) {
+        StringBuilder sql = new StringBuilder(String.format(SQL_TOTALES, periodo.unidad));
+        MapSqlParameterSource parametros = new MapSqlParameterSource("usuarioId", usuarioId);
+        agregarFiltro(sql, parametros, filtro);
+        if (desde != null) {
+            sql.append(" AND fecha_hora >= :desde");
+            parametros.addValue("desde", Timestamp.valueOf(desde.atStartOfDay()));
+        }
+        if (hasta != null) {
+            sql.append(" AND fecha_hora < :hasta");
+            parametros.addValue("hasta", Timestamp.valueOf(hasta.plusDays(1).atStartOfDay()));
+        }
+        sql.append(" GROUP BY 1 ORDER BY 1 DESC");
+
+        return namedJdbcTemplate.query(sql.toString(), parametros, (rs, i) ->
+                new TotalPeriodo(rs.getTimestamp("inicio").toLocalDateTime().toLocalDate(),
+                        rs.getLong("tickets"), rs.getBigDecimal("total")));
+    }
+
+    private static void agregarFiltro(StringBuilder sql, MapSqlParameterSource parametros, Filtro filtro) {
+        if (filtro.estado() != null && !filtro.estado().isBlank()) {
+            sql.append(" AND estado = :estado");
+            parametros.addValue("estado", filtro.estado().trim());
+        }
+        if (filtro.metodoPago() != null && !filtro.metodoPago().isBlank()) {
+            sql.append(" AND metodo_pago = :metodoPago");
+            parametros.addValue("metodoPago", filtro.metodoPago().trim());
+        }
+    }
+
+    /**
+     * Posición del cursor: último (fecha_hora, id) entregado, en Base64 URL
+     */
+    private record Posicion(LocalDateTime fechaHora, long id) {
+
+        private String codificar() {
+            String valor = fechaHora + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static Posicion decodificar(String cursor) {
+            try {
+                String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separador = valor.indexOf('|');
+                return new Posicion(LocalDateTime.parse(valor.substring(0, separador)),
+                        Long.parseLong(valor.substring(separador + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+        }
+    }
+}
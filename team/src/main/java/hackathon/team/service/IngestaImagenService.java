@@ -0,0 +1,318 @@
+package hackathon.team.service;
+
+import hackathon.team.dao.TicketRepository;
+import hackathon.team.util.TipoImagen;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingesta de imágenes de tickets por etapas
+ * 1. almacenamiento: la imagen se copia a un área temporal (fuera de cualquier transacción)
+ * 2. persistencia: el ticket se guarda en la base de datos (ver TicketUploadService)
+ * 3. finalizacion: la imagen pasa al TicketImageStore en un hilo virtual y se
+ *    encargan sus variantes redimensionadas (ver VarianteImagenService)
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class IngestaImagenService {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final String DIRECTORIO_TEMPORAL = ".staging";
+    private static final String EXTENSION_TEMPORAL = ".part";
+    private static final Duration ANTIGUEDAD_HUERFANOS = Duration.ofHours(1);
+
+    private final TicketRepository ticketRepository;
+    private final TicketImageStore ticketImageStore;
+    private final VarianteImagenService varianteImagenService;
+    private final MeterRegistry meterRegistry;
+    private final Path uploadPath;
+    private final Path stagingPath;
+    private final int maxFinalizacionesEnCurso;
+    private final Semaphore permisos;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter finalizacionesSincronas;
+
+    public IngestaImagenService(TicketRepository ticketRepository,
+                                TicketImageStore ticketImageStore,
+                                VarianteImagenService varianteImagenService,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.upload.dir:uploads}") String uploadDir,
+                                @Value("${app.upload.finalizacion.max-en-curso:32}") int maxFinalizacionesEnCurso) {
+        this.ticketRepository = ticketRepository;
+        this.ticketImageStore = ticketImageStore;
+        this.varianteImagenService = varianteImagenService;
+        this.meterRegistry = meterRegistry;
+        this.uploadPath = Paths.get(uploadDir);
+        this.stagingPath = uploadPath.resolve(DIRECTORIO_TEMPORAL);
+        this.maxFinalizacionesEnCurso = maxFinalizacionesEnCurso;
+        this.permisos = new Semaphore(maxFinalizacionesEnCurso);
+        this.finalizacionesSincronas = Counter.builder("tickets.subida.finalizacion.sincrona")
+                .description("Finalizaciones ejecutadas en el hilo de la petición por cola llena")
+                .register(meterRegistry);
+        meterRegistry.gauge("tickets.subida.cola", permisos,
+                p -> this.maxFinalizacionesEnCurso - p.availablePermits());
+    }
+
+    /**
+     * Imagen copiada al área temporal, pendiente de finalizar
+     * El SHA-256 se calcula durante la copia (null si se desconoce)
+     */
+    public record ImagenPreparada(String nombreArchivo, Path rutaTemporal, long tamanio, String sha256) {
+    }
+
+    /**
+     * Verificar y crear directorios de uploads si no existen
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            Files.createDirectories(stagingPath);
+            log.info("Directorio de uploads: {}", uploadPath.toAbsolutePath());
+        } catch (IOException e) {
+            log.error("Error al crear directorio de uploads", e);
+            throw new RuntimeException("No se pudo inicializar el directorio de uploads", e);
+        }
+    }
+
+    /**
+     * Etapa 1: copiar la imagen al área temporal
+     * No debe llamarse dentro de una transacción: la copia puede tardar
+     */
+    public ImagenPreparada prepararImagen(MultipartFile archivo) throws IOException {
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        try {
+            String nombreArchivo = nuevoNombreArchivo(obtenerExtension(archivo.getOriginalFilename()));
+
+            Path rutaTemporal = stagingPath.resolve(nombreArchivo + EXTENSION_TEMPORAL);
+            MessageDigest digest = ShardedTicketImageStore.nuevoDigest();
+            long tamanio;
+            try (InputStream entrada = new DigestInputStream(archivo.getInputStream(), digest)) {
+                tamanio = Files.copy(entrada, rutaTemporal, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            log.info("Imagen recibida: {} (tamaño: {} bytes, sha256: {})", nombreArchivo, tamanio, sha256);
+            return new ImagenPreparada(nombreArchivo, rutaTemporal, tamanio, sha256);
+        } finally {
+            muestra.stop(timerEtapa("almacenamiento"));
+        }
+    }
+
+    /**
+     * Etapa 1 para subidas reanudables: el archivo ya está completo en disco y solo se mueve
+     * al área temporal (mismo sistema de archivos, sin copiar bytes)
+     */
+    public ImagenPreparada prepararSubida(SubidaReanudableService.SubidaCompleta subida) throws IOException {
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        try {
+            String nombreArchivo = nuevoNombreArchivo(subida.extension());
+            Path rutaTemporal = stagingPath.resolve(nombreArchivo + EXTENSION_TEMPORAL);
+            Files.move(subida.ruta(), rutaTemporal, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Imagen recibida por subida reanudable: {} (tamaño: {} bytes, sha256: {})",
+                    nombreArchivo, subida.tamanio(), subida.sha256());
+            return new ImagenPreparada(nombreArchivo, rutaTemporal, subida.tamanio(), subida.sha256());
+        } finally {
+            muestra.stop(timerEtapa("almacenamiento"));
+        }
+    }
+
+    /**
+     * Etapa 3: mover la imagen a su ubicación definitiva en segundo plano
+     * Si hay demasiadas finalizaciones en curso se ejecuta en el hilo actual (backpressure)
+     */
+    public void finalizar(ImagenPreparada imagen) {
+        if (!permisos.tryAcquire()) {
+            finalizacionesSincronas.increment();
+            finalizarAhora(imagen);
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    finalizarAhora(imagen);
+                } finally {
+                    permisos.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permisos.release();
+            finalizarAhora(imagen);
+        }
+    }
+
+    /**
+     * Descartar una imagen preparada (el ticket no se guardó)
+     */
+    public void descartar(ImagenPreparada imagen) {
+        try {
+            Files.deleteIfExists(imagen.rutaTemporal());
+        } catch (IOException e) {
+            log.warn("No se pudo eliminar la imagen temporal: {}", imagen.rutaTemporal(), e);
+        }
+    }
+
+    /**
+     * Ruta de una imagen: en el almacén, temporal si aún no termina de finalizarse,
+     * o en el directorio plano si es anterior al almacén por contenido
+     */
+    public Path obtenerRutaImagen(String nombreArchivo) {
+        Optional<TicketImageStore.ImagenAlmacenada> almacenada = ticketImageStore.buscar(nombreArchivo);
+        if (almacenada.isPresent()) {
+            return almacenada.get().ruta();
+        }
+        Path temporal = stagingPath.resolve(nombreArchivo + EXTENSION_TEMPORAL);
+        if (Files.exists(temporal)) {
+            return temporal;
+        }
+        return uploadPath.resolve(nombreArchivo);
+    }
+
+    /**
+     * Imagen lista para servirse
+     * Las imágenes que aún no están en el almacén se devuelven sin SHA-256
+     */
+    public Optional<TicketImageStore.ImagenAlmacenada> obtenerImagen(String nombreArchivo) {
+        Optional<TicketImageStore.ImagenAlmacenada> almacenada = ticketImageStore.buscar(nombreArchivo);
+        if (almacenada.isPresent()) {
+            return almacenada;
+        }
+        Path ruta = obtenerRutaImagen(nombreArchivo);
+        if (!Files.isRegularFile(ruta) || !Files.isReadable(ruta)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new TicketImageStore.ImagenAlmacenada(
+                    null, ruta, TipoImagen.detectar(ruta), Files.size(ruta)));
+        } catch (IOException e) {
+            log.warn("No se pudo leer la imagen: {}", ruta, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Variante redimensionada de una imagen, generándola si aún no existe
+     * Mientras la imagen está en el área temporal se sirve el original
+     */
+    public Optional<TicketImageStore.ImagenAlmacenada> obtenerVariante(String nombreArchivo,
+                                                                       VarianteImagenService.Tamanio tamanio) {
+        Optional<TicketImageStore.ImagenAlmacenada> imagen = obtenerImagen(nombreArchivo);
+        if (imagen.isEmpty() || imagen.get().ruta().startsWith(stagingPath)) {
+            return imagen;
+        }
+        TicketImageStore.ImagenAlmacenada original = imagen.get();
+        try {
+            Path variante = varianteImagenService.obtenerVariante(original.ruta(), tamanio);
+            if (variante.equals(original.ruta())) {
+                return imagen;
+            }
+            String etag = original.sha256() != null
+                    ? original.sha256() + "-" + tamanio.name().toLowerCase(Locale.ROOT)
+                    : null;
+            return Optional.of(new TicketImageStore.ImagenAlmacenada(etag, variante, "image/jpeg", Files.size(variante)));
+        } catch (IOException | RuntimeException e) {
+            log.warn("No se pudo generar la variante {} de {}; se sirve el original", tamanio, nombreArchivo, e);
+            return imagen;
+        }
+    }
+
+    /**
+     * Recuperar imágenes temporales que quedaron sin finalizar (p. ej. por un reinicio)
+     * Se finalizan si algún ticket las referencia; si no, se eliminan cuando son antiguas
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recuperarPendientes() {
+        Instant limite = Instant.now().minus(ANTIGUEDAD_HUERFANOS);
+        try (DirectoryStream<Path> temporales = Files.newDirectoryStream(stagingPath, "*" + EXTENSION_TEMPORAL)) {
+            for (Path temporal : temporales) {
+                String archivo = temporal.getFileName().toString();
+                String nombreArchivo = archivo.substring(0, archivo.length() - EXTENSION_TEMPORAL.length());
+                if (ticketRepository.existsByImagenTicket(nombreArchivo)) {
+                    finalizar(new ImagenPreparada(nombreArchivo, temporal, Files.size(temporal), null));
+                } else if (Files.getLastModifiedTime(temporal).toInstant().isBefore(limite)) {
+                    Files.deleteIfExists(temporal);
+                    log.info("Imagen temporal huérfana eliminada: {}", archivo);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error al recuperar imágenes temporales", e);
+        }
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Finalizaciones de imágenes pendientes al detener; se recuperarán al reiniciar");
+        }
+    }
+
+    /**
+     * Timer de una etapa de la subida (almacenamiento, persistencia, finalizacion)
+     */
+    public Timer timerEtapa(String etapa) {
+        return Timer.builder("tickets.subida.etapa")
+                .description("Duración de cada etapa de la subida de tickets")
+                .tag("etapa", etapa)
+                .register(meterRegistry);
+    }
+
+    private void finalizarAhora(ImagenPreparada imagen) {
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        try {
+            ticketImageStore.guardar(imagen.nombreArchivo(), imagen.rutaTemporal(), imagen.sha256());
+            log.info("Imagen finalizada: {}", imagen.nombreArchivo());
+            ticketImageStore.buscar(imagen.nombreArchivo())
+                    .ifPresent(almacenada -> varianteImagenService.generarEnSegundoPlano(almacenada.ruta()));
+        } catch (IOException | RuntimeException e) {
+            log.error("Error al finalizar la imagen: {}", imagen.nombreArchivo(), e);
+        } finally {
+            muestra.stop(timerEtapa("finalizacion"));
+        }
+    }
+
+    private String nuevoNombreArchivo(String extension) {
+        String timestamp = LocalDateTime.now().format(FORMATTER);
+        return "ticket_" + timestamp + "_" + UUID.randomUUID().toString().substring(0, 8) + extension;
+    }
+
+    /**
+     * Obtener extensión del archivo
+     */
+    private String obtenerExtension(String nombreArchivo) {
+        if (nombreArchivo == null || !nombreArchivo.contains(".")) {
+            return ".jpg";
+        }
+        return nombreArchivo.substring(nombreArchivo.lastIndexOf("."));
+    }
+}
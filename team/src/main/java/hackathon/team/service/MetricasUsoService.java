@@ -0,0 +1,249 @@
+package hackathon.team.service;
+
+import hackathon.team.model.Ticket;
+import hackathon.team.model.TicketItem;
+import hackathon.team.util.HyperLogLog;
+import hackathon.team.util.MasFrecuentes;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Métricas de uso aproximadas con memoria constante por día
+ * Por cada día: usuarios activos distintos (HyperLogLog), productos distintos comprados
+ * por categoría (un HyperLogLog por categoría), búsquedas y productos más frecuentes
+ * (Space-Saving). Las consultas de un rango unen los resúmenes de sus días. Al arrancar
+ * se llenan los días retenidos desde los tickets; las búsquedas solo desde el arranque.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class MetricasUsoService {
+
+    private static final String SQL_TICKETS =
+            "SELECT t.fecha_hora, u.email, t.estado, i.producto_id, i.cantidad, p.categoria_id " +
+            "FROM ticket t JOIN usuarios u ON u.id = t.usuario_id " +
+            "JOIN ticket_items i ON i.ticket_id = t.id JOIN productos p ON p.id = i.producto_id " +
+            "WHERE t.fecha_hora >= ? AND t.fecha_hora < ?";
+
+    private static final String SQL_COMPLETADOS =
+            "SELECT t.fecha_hora, i.producto_id, p.categoria_id " +
+            "FROM ticket t JOIN ticket_items i ON i.ticket_id = t.id JOIN productos p ON p.id = i.producto_id " +
+            "WHERE t.id IN (:ids) AND t.estado = 'completado'";
+
+    private static final int MAX_LONGITUD_BUSQUEDA = 100;
+
+    private final JdbcTemplate cursor;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int diasRetencion;
+    private final int precisionUsuarios;
+    private final int precisionCategorias;
+    private final int capacidadFrecuentes;
+    // Los tickets creados desde aquí se registran al guardarse; los anteriores, en la carga
+    private final LocalDateTime inicio = LocalDateTime.now();
+
+    private final TreeMap<Long, Cubeta> cubetas = new TreeMap<>();
+
+    public MetricasUsoService(DataSource dataSource,
+                              NamedParameterJdbcTemplate namedJdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.analitica.uso.dias-retencion:31}") int diasRetencion,
+                              @Value("${app.analitica.uso.precision-usuarios:14}") int precisionUsuarios,
+                              @Value("${app.analitica.uso.precision-categorias:10}") int precisionCategorias,
+                              @Value("${app.analitica.uso.capacidad-frecuentes:500}") int capacidadFrecuentes) {
+        this.cursor = new JdbcTemplate(dataSource);
+        this.cursor.setFetchSize(10_000);
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.diasRetencion = diasRetencion;
+        this.precisionUsuarios = precisionUsuarios;
+        this.precisionCategorias = precisionCategorias;
+        this.capacidadFrecuentes = capacidadFrecuentes;
+    }
+
+    /**
+     * Resumen de un rango de días
+     *
+     * @param usuariosActivos usuarios distintos en todo el rango (no la suma de los días)
+     */
+    public record Resumen(LocalDate desde, LocalDate hasta, long usuariosActivos, List<UsuariosDia> usuariosPorDia,
+                          List<ProductosCategoria> productosPorCategoria,
+                          List<MasFrecuentes.Frecuencia<String>> busquedas,
+                          List<MasFrecuentes.Frecuencia<Long>> productos) {
+    }
+
+    public record UsuariosDia(LocalDate fecha, long usuarios) {
+    }
+
+    public record ProductosCategoria(Long categoriaId, long productosDistintos) {
+    }
+
+    /**
+     * Resúmenes de un día
+     */
+    private final class Cubeta {
+        private final HyperLogLog usuarios = new HyperLogLog(precisionUsuarios);
+        private final Map<Long, HyperLogLog> productosPorCategoria = new HashMap<>();
+        private final MasFrecuentes<String> busquedas = new MasFrecuentes<>(capacidadFrecuentes);
+        private final MasFrecuentes<Long> productos = new MasFrecuentes<>(capacidadFrecuentes);
+
+        private void agregarProductoCategoria(long categoriaId, long productoId) {
+            productosPorCategoria.computeIfAbsent(categoriaId, id -> new HyperLogLog(precisionCategorias))
+                    .agregar(HyperLogLog.hash(productoId));
+        }
+    }
+
+    /**
+     * Llenar en segundo plano los días retenidos con los tickets anteriores al arranque
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        Thread.ofVirtual().name("metricas-uso-carga").start(() -> {
+            long comienzo = System.nanoTime();
+            long[] filas = {0};
+            try {
+                LocalDateTime desde = LocalDate.now().minusDays(diasRetencion - 1L).atStartOfDay();
+                transactionTemplate.executeWithoutResult(status -> cursor.query(SQL_TICKETS, rs -> {
+                    LocalDate fecha = rs.getTimestamp("fecha_hora").toLocalDateTime().toLocalDate();
+                    long productoId = rs.getLong("producto_id");
+                    synchronized (this) {
+                        Cubeta cubeta = cubeta(fecha);
+                        if (cubeta != null) {
+                            cubeta.usuarios.agregar(HyperLogLog.hash(normalizar(rs.getString("email"))));
+                            cubeta.productos.agregar(productoId, rs.getInt("cantidad"));
+                            if ("completado".equals(rs.getString("estado"))) {
+                                cubeta.agregarProductoCategoria(rs.getLong("categoria_id"), productoId);
+                            }
+                        }
+                    }
+                    filas[0]++;
+                }, Timestamp.valueOf(desde), Timestamp.valueOf(inicio)));
+                log.info("Métricas de uso: {} items de {} días cargados en {} ms", filas[0], diasRetencion,
+                        (System.nanoTime() - comienzo) / 1_000_000);
+            } catch (RuntimeException e) {
+                log.error("No se pudieron cargar las métricas de uso", e);
+            }
+        });
+    }
+
+    /**
+     * Registrar una búsqueda de productos del usuario (hoy)
+     */
+    public synchronized void registrarBusqueda(String usuario, String consulta) {
+        Cubeta cubeta = cubeta(LocalDate.now());
+        if (usuario != null) {
+            cubeta.usuarios.agregar(HyperLogLog.hash(normalizar(usuario)));
+        }
+        String texto = normalizar(consulta).replaceAll("\\s+", " ");
+        if (!texto.isEmpty()) {
+            cubeta.busquedas.agregar(texto.length() > MAX_LONGITUD_BUSQUEDA
+                    ? texto.substring(0, MAX_LONGITUD_BUSQUEDA) : texto, 1);
+        }
+    }
+
+    /**
+     * Registrar un ticket guardado: su usuario está activo y sus productos suman compras
+     */
+    public synchronized void registrarTicket(Ticket ticket) {
+        Cubeta cubeta = cubeta(ticket.getFechaHora().toLocalDate());
+        if (cubeta == null) {
+            return;
+        }
+        cubeta.usuarios.agregar(HyperLogLog.hash(normalizar(ticket.getUsuario().getEmail())));
+        for (TicketItem item : ticket.getItems()) {
+            cubeta.productos.agregar(item.getProducto().getId(), item.getCantidad());
+        }
+    }
+
+    /**
+     * Productos distintos por categoría: se cuentan al completarse el ticket, cuando la
+     * categoría del producto ya es la clasificada
+     */
+    @EventListener
+    public void alCompletarTickets(TicketsCompletadosEvent evento) {
+        try {
+            List<Object[]> filas = namedJdbcTemplate.query(SQL_COMPLETADOS, new MapSqlParameterSource("ids", evento.ticketIds()),
+                    (rs, i) -> new Object[]{rs.getTimestamp("fecha_hora").toLocalDateTime().toLocalDate(),
+                            rs.getLong("producto_id"), rs.getLong("categoria_id")});
+            synchronized (this) {
+                for (Object[] fila : filas) {
+                    Cubeta cubeta = cubeta((LocalDate) fila[0]);
+                    if (cubeta != null) {
+                        cubeta.agregarProductoCategoria((Long) fila[2], (Long) fila[1]);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("No se pudieron agregar los tickets completados a las métricas de uso", e);
+        }
+    }
+
+    /**
+     * Unir los días del rango (dentro de los días retenidos)
+     *
+     * @param limite búsquedas y productos más frecuentes devueltos
+     */
+    public synchronized Resumen resumir(LocalDate desde, LocalDate hasta, int limite) {
+        if (desde.isAfter(hasta)) {
+            throw new IllegalArgumentException("La fecha inicial es posterior a la final");
+        }
+        HyperLogLog usuarios = new HyperLogLog(precisionUsuarios);
+        List<UsuariosDia> porDia = new ArrayList<>();
+        Map<Long, HyperLogLog> porCategoria = new HashMap<>();
+        MasFrecuentes<String> busquedas = new MasFrecuentes<>(capacidadFrecuentes);
+        MasFrecuentes<Long> productos = new MasFrecuentes<>(capacidadFrecuentes);
+
+        cubetas.subMap(desde.toEpochDay(), true, hasta.toEpochDay(), true).forEach((dia, cubeta) -> {
+            usuarios.unir(cubeta.usuarios);
+            porDia.add(new UsuariosDia(LocalDate.ofEpochDay(dia), cubeta.usuarios.estimar()));
+            cubeta.productosPorCategoria.forEach((categoriaId, conteo) -> porCategoria
+                    .computeIfAbsent(categoriaId, id -> new HyperLogLog(precisionCategorias)).unir(conteo));
+            busquedas.unir(cubeta.busquedas);
+            productos.unir(cubeta.productos);
+        });
+
+        List<ProductosCategoria> categorias = new ArrayList<>(porCategoria.size());
+        porCategoria.forEach((categoriaId, conteo) -> categorias.add(new ProductosCategoria(categoriaId, conteo.estimar())));
+        categorias.sort(Comparator.comparingLong(ProductosCategoria::productosDistintos).reversed());
+        return new Resumen(desde, hasta, usuarios.estimar(), porDia, categorias,
+                busquedas.mayores(limite), productos.mayores(limite));
+    }
+
+    /**
+     * Cubeta del día, creándola; null si el día ya está fuera de la retención
+     * Descarta los días vencidos (debe llamarse sincronizado)
+     */
+    private Cubeta cubeta(LocalDate fecha) {
+        long primerDia = LocalDate.now().toEpochDay() - diasRetencion + 1;
+        while (!cubetas.isEmpty() && cubetas.firstKey() < primerDia) {
+            cubetas.pollFirstEntry();
+        }
+        long dia = fecha.toEpochDay();
+        return dia < primerDia ? null : cubetas.computeIfAbsent(dia, d -> new Cubeta());
+    }
+
+    private static String normalizar(String texto) {
+        return texto == null ? "" : texto.trim().toLowerCase(Locale.ROOT);
+    }
+}
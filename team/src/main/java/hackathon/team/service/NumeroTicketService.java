@@ -0,0 +1,137 @@
+package hackathon.team.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Year;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asignación de números de ticket
+ * Formato: TICKET-2024-000001
+ *
+ * Usa una secuencia de PostgreSQL por año con INCREMENT BY = tamaño de bloque (hi/lo):
+ * cada nextval reserva un bloque completo para esta instancia y los números del bloque
+ * se entregan desde memoria con un AtomicLong. Los bloques de distintas instancias
+ * nunca se solapan, por lo que no hay colisiones ni consultas por ticket.
+ * La secuencia se crea y se avanza en una transacción propia: si la subida que pidió el
+ * número se revierte, el CREATE SEQUENCE no se deshace con ella mientras el bloque sigue
+ * en memoria.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class NumeroTicketService {
+
+    private static final String PREFIJO = "TICKET-";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaccionPropia;
+    private final int tamanioBloque;
+
+    private volatile Bloque bloque;
+
+    public NumeroTicketService(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.tickets.numero.tamanio-bloque:50}") int tamanioBloque) {
+        if (tamanioBloque < 1) {
+            throw new IllegalArgumentException("El tamaño de bloque debe ser al menos 1");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaccionPropia = new TransactionTemplate(transactionManager);
+        this.transaccionPropia.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.tamanioBloque = tamanioBloque;
+    }
+
+    /**
+     * Bloque de números reservado: [siguiente, limite] del año indicado
+     */
+    private record Bloque(int anio, AtomicLong siguiente, long limite) {
+    }
+
+    /**
+     * Obtener el siguiente número de ticket
+     */
+    public String siguienteNumero() {
+        int anio = Year.now().getValue();
+        while (true) {
+            Bloque actual = bloque;
+            if (actual != null && actual.anio() == anio) {
+                long numero = actual.siguiente().getAndIncrement();
+                if (numero <= actual.limite()) {
+                    return PREFIJO + anio + "-" + String.format("%06d", numero);
+                }
+            }
+            reservarBloque(anio, actual);
+        }
+    }
+
+    /**
+     * Reservar un bloque nuevo (solo un hilo a la vez consulta la secuencia)
+     */
+    private synchronized void reservarBloque(int anio, Bloque agotado) {
+        if (bloque != agotado) {
+            // Otro hilo ya reservó un bloque nuevo
+            return;
+        }
+        String secuencia = nombreSecuencia(anio);
+        Bloque nuevo = transaccionPropia.execute(status -> {
+            long incremento = asegurarSecuencia(secuencia, anio);
+            Long inicio = jdbcTemplate.queryForObject("SELECT nextval(CAST(? AS regclass))", Long.class, secuencia);
+            return new Bloque(anio, new AtomicLong(inicio), inicio + incremento - 1);
+        });
+        bloque = nuevo;
+        log.info("Bloque de números de ticket reservado: {} a {}", nuevo.siguiente().get(), nuevo.limite());
+    }
+
+    /**
+     * Crear la secuencia del año si no existe y devolver su incremento real
+     * (puede diferir del configurado si se creó con otro tamaño de bloque)
+     */
+    private long asegurarSecuencia(String secuencia, int anio) {
+        List<Long> incrementos = jdbcTemplate.queryForList(
+                "SELECT increment_by FROM pg_sequences WHERE schemaname = current_schema() AND sequencename = ?",
+                Long.class, secuencia);
+        if (!incrementos.isEmpty()) {
+            return incrementos.get(0);
+        }
+
+        // Continuar después del último número existente del año (tickets anteriores a la secuencia)
+        long inicio = ultimoNumeroExistente(anio) + 1;
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + secuencia +
+                " START WITH " + inicio + " INCREMENT BY " + tamanioBloque);
+        log.info("Secuencia {} creada iniciando en {}", secuencia, inicio);
+
+        // Releer por si otra instancia la creó primero con otro incremento
+        return jdbcTemplate.queryForObject(
+                "SELECT increment_by FROM pg_sequences WHERE schemaname = current_schema() AND sequencename = ?",
+                Long.class, secuencia);
+    }
+
+    private long ultimoNumeroExistente(int anio) {
+        List<String> ultimos = jdbcTemplate.queryForList(
+                "SELECT numero_ticket FROM ticket WHERE numero_ticket LIKE ? " +
+                "ORDER BY length(numero_ticket) DESC, numero_ticket DESC LIMIT 1",
+                String.class, PREFIJO + anio + "-%");
+        if (ultimos.isEmpty()) {
+            return 0;
+        }
+        String ultimo = ultimos.get(0);
+        try {
+            return Long.parseLong(ultimo.substring(ultimo.lastIndexOf('-') + 1));
+        } catch (NumberFormatException e) {
+            log.warn("Número de ticket con formato inesperado: {}", ultimo);
+            return 0;
+        }
+    }
+
+    private static String nombreSecuencia(int anio) {
+        return "ticket_numero_" + anio + "_seq";
+    }
+}
@@ -0,0 +1,498 @@
+package hackathon.team.service;
+
+import hackathon.team.configure.PoliticasProperties;
+import hackathon.team.dao.ViolacionPoliticaRepository;
+import hackathon.team.model.Ticket;
+import hackathon.team.model.TicketItem;
+import hackathon.team.model.ViolacionPolitica;
+import hackathon.team.util.Dinero;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Políticas de gasto evaluadas al guardar cada ticket
+ * Las reglas de PoliticasProperties se compilan una vez en árboles de condiciones (con las
+ * categorías prohibidas resueltas a un conjunto de ids con sus subcategorías). El gasto
+ * del día y del mes de cada usuario vive en memoria: se reconstruye del resumen diario
+ * de tickets al arrancar y cada madrugada, y cada ticket lo suma al evaluarse (se resta
+ * si su transacción no se confirma). Las violaciones se guardan con el ticket; al
+ * completarse la clasificación se revisan otra vez las categorías de sus items.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class PoliticaGastoService {
+
+    private static final String SQL_CATEGORIAS = "SELECT id, nombre, categoria_padre_id FROM categoria";
+
+    private static final String SQL_GASTO_DIARIO =
+            "SELECT usuario_id, CAST(fecha_hora AS DATE) AS dia, SUM(total) AS total FROM ticket " +
+            "WHERE fecha_hora >= ? AND id <= ? AND estado <> 'cancelado' " +
+            "GROUP BY usuario_id, CAST(fecha_hora AS DATE)";
+
+    private static final String SQL_ITEMS_COMPLETADOS =
+            "SELECT i.id, i.ticket_id, t.usuario_id, u.email, t.metodo_pago, r.nombre AS rol, p.categoria_id, i.subtotal " +
+            "FROM ticket_items i JOIN ticket t ON t.id = i.ticket_id JOIN usuarios u ON u.id = t.usuario_id " +
+            "JOIN rol r ON r.id = u.rol_id JOIN productos p ON p.id = i.producto_id " +
+            "WHERE t.id IN (:ids) AND t.estado = 'completado'";
+
+    private final PoliticasProperties properties;
+    private final ViolacionPoliticaRepository violacionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final Timer evaluacion;
+    private final MeterRegistry meterRegistry;
+
+    private volatile List<ReglaCompilada> reglasTicket = List.of();
+    private volatile List<ReglaCompilada> reglasItem = List.of();
+    private volatile Map<Long, Acumulado> acumulados = new ConcurrentHashMap<>();
+    // Tickets sumados mientras se reconstruye (id, usuario, centavos, día)
+    private List<long[]> durante;
+
+    public PoliticaGastoService(PoliticasProperties properties,
+                                ViolacionPoliticaRepository violacionRepository,
+                                JdbcTemplate jdbcTemplate,
+                                NamedParameterJdbcTemplate namedJdbcTemplate,
+                                MeterRegistry meterRegistry) {
+        for (PoliticasProperties.Regla regla : properties.reglas()) {
+            validar(regla);
+        }
+        this.properties = properties;
+        this.violacionRepository = violacionRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.evaluacion = Timer.builder("politicas.evaluacion")
+                .description("Evaluación de las políticas de gasto de un ticket")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Datos de la evaluación en curso; las condiciones solo leen
+     */
+    private static final class Contexto {
+        private String usuario;
+        private String rol;
+        private String metodoPago;
+        private long gastoDia;
+        private long gastoMes;
+        private long categoriaId;
+        private long subtotalItem;
+    }
+
+    /**
+     * Nodo del árbol de condiciones de una regla
+     */
+    @FunctionalInterface
+    private interface Condicion {
+
+        Condicion SIEMPRE = c -> true;
+
+        boolean cumple(Contexto c);
+
+        /**
+         * Conjunción sin los nodos SIEMPRE (un solo hijo queda sin envolver)
+         */
+        static Condicion todas(List<Condicion> hijas) {
+            Condicion[] partes = hijas.stream().filter(h -> h != SIEMPRE).toArray(Condicion[]::new);
+            if (partes.length == 0) {
+                return SIEMPRE;
+            }
+            if (partes.length == 1) {
+                return partes[0];
+            }
+            return c -> {
+                for (Condicion parte : partes) {
+                    if (!parte.cumple(c)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+
+        static Condicion textoEn(List<String> valores, Function<Contexto, String> campo) {
+            if (valores.isEmpty()) {
+                return SIEMPRE;
+            }
+            Set<String> conjunto = valores.stream().map(v -> v.trim().toUpperCase(Locale.ROOT)).collect(Collectors.toSet());
+            return c -> {
+                String valor = campo.apply(c);
+                return valor != null && conjunto.contains(valor.toUpperCase(Locale.ROOT));
+            };
+        }
+    }
+
+    /**
+     * Regla lista para evaluar
+     *
+     * @param limite       centavos del límite o tope (0 en categorías prohibidas)
+     * @param porCategoria la condición depende de la categoría del producto
+     */
+    private record ReglaCompilada(String nombre, PoliticasProperties.Tipo tipo, Condicion condicion, long limite,
+                                  boolean porCategoria) {
+    }
+
+    /**
+     * Gasto del usuario en el día y en el mes calendario vigentes
+     */
+    private static final class Acumulado {
+        private long dia;
+        private long centavosDia;
+        private long mes;
+        private long centavosMes;
+
+        /**
+         * Sumar en la fecha: un día o mes posterior reinicia su total, uno anterior solo
+         * cuenta para el mes si es el mismo
+         */
+        private void sumar(LocalDate fecha, long centavos) {
+            long d = fecha.toEpochDay();
+            long m = fecha.getYear() * 12L + fecha.getMonthValue();
+            if (m > mes) {
+                mes = m;
+                centavosMes = 0;
+            }
+            if (d > dia) {
+                dia = d;
+                centavosDia = 0;
+            }
+            if (m == mes) {
+                centavosMes += centavos;
+            }
+            if (d == dia) {
+                centavosDia += centavos;
+            }
+        }
+    }
+
+    /**
+     * Compilar las reglas y reconstruir los acumulados al arrancar
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        compilar();
+        reconstruir();
+    }
+
+    /**
+     * Volver a compilar (categorías nuevas o renombradas) y releer el gasto del mes
+     * Corrige los tickets cancelados o eliminados desde la última reconstrucción.
+     */
+    @Scheduled(cron = "${app.politicas.reconstruccion-cron:0 5 0 * * *}")
+    public void recargar() {
+        compilar();
+        reconstruir();
+    }
+
+    /**
+     * Evaluar un ticket recién guardado, sumarlo al gasto del usuario y guardar las
+     * violaciones (dentro de la transacción del ticket)
+     */
+    public List<ViolacionPolitica> evaluar(Ticket ticket) {
+        long inicio = System.nanoTime();
+        List<ReglaCompilada> deTicket = reglasTicket;
+        List<ReglaCompilada> deItem = reglasItem;
+        Long usuarioId = ticket.getUsuario().getId();
+        LocalDate fecha = ticket.getFechaHora() != null ? ticket.getFechaHora().toLocalDate() : LocalDate.now();
+        long total = Dinero.centavos(ticket.getTotal());
+
+        Contexto contexto = new Contexto();
+        contexto.usuario = ticket.getUsuario().getEmail();
+        contexto.rol = ticket.getUsuario().getRol() != null ? ticket.getUsuario().getRol().getNombre() : null;
+        contexto.metodoPago = ticket.getMetodoPago();
+        Acumulado acumulado = acumulados.computeIfAbsent(usuarioId, id -> new Acumulado());
+        synchronized (acumulado) {
+            acumulado.sumar(fecha, total);
+            contexto.gastoDia = acumulado.centavosDia;
+            contexto.gastoMes = acumulado.centavosMes;
+        }
+        registrarSuma(ticket.getId(), usuarioId, fecha, total);
+
+        List<ViolacionPolitica> violaciones = new ArrayList<>();
+        for (ReglaCompilada regla : deTicket) {
+            if (regla.condicion().cumple(contexto)) {
+                long gasto = regla.tipo() == PoliticasProperties.Tipo.LIMITE_DIARIO ? contexto.gastoDia : contexto.gastoMes;
+                violaciones.add(violacion(regla, ticket.getId(), null, usuarioId, gasto,
+                        regla.tipo() == PoliticasProperties.Tipo.LIMITE_DIARIO ? "Gasto del día" : "Gasto del mes"));
+            }
+        }
+        if (!deItem.isEmpty()) {
+            for (TicketItem item : ticket.getItems()) {
+                contexto.categoriaId = item.getProducto().getCategoria() != null ? item.getProducto().getCategoria().getId() : 0;
+                contexto.subtotalItem = Dinero.centavos(item.getSubtotal());
+                for (ReglaCompilada regla : deItem) {
+                    if (regla.condicion().cumple(contexto)) {
+                        violaciones.add(violacion(regla, ticket.getId(), item.getId(), usuarioId, contexto.subtotalItem,
+                                item.getProducto().getNombre()));
+                    }
+                }
+            }
+        }
+        evaluacion.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+
+        if (!violaciones.isEmpty()) {
+            violacionRepository.saveAll(violaciones);
+            contar(violaciones);
+            log.info("Ticket {}: {} violaciones de política", ticket.getId(), violaciones.size());
+        }
+        return violaciones;
+    }
+
+    /**
+     * Violaciones registradas de un ticket
+     */
+    public List<ViolacionPolitica> violacionesDe(Long ticketId) {
+        return violacionRepository.findByTicketIdOrderById(ticketId);
+    }
+
+    /**
+     * Al guardarse, los productos nuevos aún no tienen su categoría: revisar las reglas de
+     * item con condición de categoría (prohibidas y topes por categoría) con la clasificación final
+     */
+    @EventListener
+    public void alCompletarTickets(TicketsCompletadosEvent evento) {
+        try {
+            List<ReglaCompilada> deCategoria = reglasItem.stream()
+                    .filter(ReglaCompilada::porCategoria)
+                    .toList();
+            if (deCategoria.isEmpty()) {
+                return;
+            }
+            Set<String> existentes = new HashSet<>();
+            for (ViolacionPolitica v : violacionRepository.findByTicketIdIn(evento.ticketIds())) {
+                existentes.add(v.getRegla() + "|" + v.getTicketItemId());
+            }
+            List<ViolacionPolitica> nuevas = new ArrayList<>();
+            Contexto contexto = new Contexto();
+            namedJdbcTemplate.query(SQL_ITEMS_COMPLETADOS, new MapSqlParameterSource("ids", evento.ticketIds()), rs -> {
+                contexto.usuario = rs.getString("email");
+                contexto.rol = rs.getString("rol");
+                contexto.metodoPago = rs.getString("metodo_pago");
+                contexto.categoriaId = rs.getLong("categoria_id");
+                contexto.subtotalItem = Dinero.centavos(rs.getBigDecimal("subtotal"));
+                long itemId = rs.getLong("id");
+                for (ReglaCompilada regla : deCategoria) {
+                    if (regla.condicion().cumple(contexto) && existentes.add(regla.nombre() + "|" + itemId)) {
+                        nuevas.add(violacion(regla, rs.getLong("ticket_id"), itemId, rs.getLong("usuario_id"),
+                                contexto.subtotalItem, "Categoría asignada al clasificar"));
+                    }
+                }
+            });
+            if (!nuevas.isEmpty()) {
+                violacionRepository.saveAll(nuevas);
+                contar(nuevas);
+                log.info("{} violaciones de categoría tras clasificar {} tickets", nuevas.size(), evento.ticketIds().size());
+            }
+        } catch (RuntimeException e) {
+            log.error("No se pudieron agregar los tickets completados a la revisión de políticas", e);
+        }
+    }
+
+    /**
+     * Compilar las reglas con las categorías actuales
+     */
+    private void compilar() {
+        Map<String, Long> porNombre = new HashMap<>();
+        Map<Long, List<Long>> hijas = new HashMap<>();
+        jdbcTemplate.query(SQL_CATEGORIAS, rs -> {
+            long id = rs.getLong("id");
+            porNombre.put(rs.getString("nombre").trim().toLowerCase(Locale.ROOT), id);
+            long padre = rs.getLong("categoria_padre_id");
+            if (!rs.wasNull()) {
+                hijas.computeIfAbsent(padre, k -> new ArrayList<>()).add(id);
+            }
+        });
+
+        List<ReglaCompilada> deTicket = new ArrayList<>();
+        List<ReglaCompilada> deItem = new ArrayList<>();
+        for (PoliticasProperties.Regla regla : properties.reglas()) {
+            List<Condicion> partes = new ArrayList<>();
+            partes.add(Condicion.textoEn(regla.roles(), c -> c.rol));
+            partes.add(Condicion.textoEn(regla.usuarios(), c -> c.usuario));
+            partes.add(Condicion.textoEn(regla.metodosPago(), c -> c.metodoPago));
+            if (!regla.categorias().isEmpty()) {
+                BitSet categorias = subarbol(regla, porNombre, hijas);
+                partes.add(c -> c.categoriaId > 0 && c.categoriaId <= Integer.MAX_VALUE && categorias.get((int) c.categoriaId));
+            }
+            long limite = regla.monto() != null ? Dinero.centavos(regla.monto()) : 0;
+            switch (regla.tipo()) {
+                case LIMITE_DIARIO -> partes.add(c -> c.gastoDia > limite);
+                case LIMITE_MENSUAL -> partes.add(c -> c.gastoMes > limite);
+                case TOPE_POR_ITEM -> partes.add(c -> c.subtotalItem > limite);
+                case CATEGORIA_PROHIBIDA -> {
+                }
+            }
+            ReglaCompilada compilada = new ReglaCompilada(regla.nombre(), regla.tipo(), Condicion.todas(partes), limite,
+                    !regla.categorias().isEmpty());
+            boolean porTicket = regla.tipo() == PoliticasProperties.Tipo.LIMITE_DIARIO
+                    || regla.tipo() == PoliticasProperties.Tipo.LIMITE_MENSUAL;
+            (porTicket ? deTicket : deItem).add(compilada);
+        }
+        reglasTicket = List.copyOf(deTicket);
+        reglasItem = List.copyOf(deItem);
+        log.info("Políticas de gasto: {} reglas de ticket, {} de item", deTicket.size(), deItem.size());
+    }
+
+    /**
+     * Ids de las categorías nombradas y todas sus subcategorías
+     */
+    private static BitSet subarbol(PoliticasProperties.Regla regla, Map<String, Long> porNombre, Map<Long, List<Long>> hijas) {
+        BitSet ids = new BitSet();
+        List<Long> pendientes = new ArrayList<>();
+        for (String nombre : regla.categorias()) {
+            Long id = porNombre.get(nombre.trim().toLowerCase(Locale.ROOT));
+            if (id == null) {
+                log.warn("Política '{}': la categoría '{}' no existe", regla.nombre(), nombre);
+            } else {
+                pendientes.add(id);
+            }
+        }
+        while (!pendientes.isEmpty()) {
+            long id = pendientes.remove(pendientes.size() - 1);
+            if (!ids.get(Math.toIntExact(id))) {
+                ids.set(Math.toIntExact(id));
+                pendientes.addAll(hijas.getOrDefault(id, List.of()));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Gasto del mes en curso por usuario y día desde los tickets
+     */
+    private void reconstruir() {
+        long inicio = System.nanoTime();
+        synchronized (this) {
+            durante = new ArrayList<>();
+        }
+        try {
+            LocalDate hoy = LocalDate.now();
+            Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM ticket", Long.class);
+            Map<Long, Acumulado> nuevos = new ConcurrentHashMap<>();
+            jdbcTemplate.query(SQL_GASTO_DIARIO, rs -> {
+                LocalDate dia = rs.getDate("dia").toLocalDate();
+                if (!dia.isAfter(hoy)) {
+                    // Los días llegan en cualquier orden: el día acumulado solo avanza
+                    nuevos.computeIfAbsent(rs.getLong("usuario_id"), id -> new Acumulado())
+                            .sumar(dia, Dinero.centavos(rs.getBigDecimal("total")));
+                }
+            }, Timestamp.valueOf(hoy.withDayOfMonth(1).atStartOfDay()), maxId);
+            synchronized (this) {
+                // Tickets guardados después de leer el máximo id
+                for (long[] suma : durante) {
+                    if (suma[0] > maxId) {
+                        nuevos.computeIfAbsent(suma[1], id -> new Acumulado()).sumar(LocalDate.ofEpochDay(suma[3]), suma[2]);
+                    }
+                }
+                acumulados = nuevos;
+                durante = null;
+            }
+            log.info("Políticas de gasto: acumulados de {} usuarios en {} ms", nuevos.size(),
+                    (System.nanoTime() - inicio) / 1_000_000);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                durante = null;
+            }
+            log.error("No se pudo reconstruir el gasto por usuario", e);
+        }
+    }
+
+    /**
+     * Anotar la suma para la reconstrucción en curso y deshacerla si la transacción no se confirma
+     */
+    private void registrarSuma(Long ticketId, Long usuarioId, LocalDate fecha, long centavos) {
+        synchronized (this) {
+            if (durante != null && ticketId != null) {
+                durante.add(new long[]{ticketId, usuarioId, centavos, fecha.toEpochDay()});
+            }
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Map<Long, Acumulado> mapa = acumulados;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int estado) {
+                    if (estado != STATUS_COMMITTED) {
+                        Acumulado acumulado = mapa.get(usuarioId);
+                        if (acumulado != null) {
+                            synchronized (acumulado) {
+                                acumulado.sumar(fecha, -centavos);
+                            }
+                        }
+                        synchronized (PoliticaGastoService.this) {
+                            if (durante != null) {
+                                durante.removeIf(suma -> ticketId != null && suma[0] == ticketId);
+                            }
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private static ViolacionPolitica violacion(ReglaCompilada regla, Long ticketId, Long itemId, Long usuarioId,
+                                               long centavos, String detalle) {
+        ViolacionPolitica violacion = new ViolacionPolitica();
+        violacion.setTicketId(ticketId);
+        violacion.setTicketItemId(itemId);
+        violacion.setUsuarioId(usuarioId);
+        violacion.setRegla(regla.nombre());
+        violacion.setTipo(regla.tipo().name());
+        violacion.setMonto(Dinero.aBigDecimal(centavos));
+        violacion.setLimite(regla.limite() > 0 ? Dinero.aBigDecimal(regla.limite()) : null);
+        violacion.setDetalle(detalle != null && detalle.length() > 255 ? detalle.substring(0, 255) : detalle);
+        return violacion;
+    }
+
+    private void contar(List<ViolacionPolitica> violaciones) {
+        for (ViolacionPolitica violacion : violaciones) {
+            Counter.builder("politicas.violaciones")
+                    .description("Violaciones de políticas de gasto registradas")
+                    .tag("tipo", violacion.getTipo())
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    private static void validar(PoliticasProperties.Regla regla) {
+        if (regla.nombre() == null || regla.nombre().isBlank() || regla.tipo() == null) {
+            throw new IllegalArgumentException("Cada política necesita nombre y tipo");
+        }
+        if (regla.nombre().length() > 100) {
+            throw new IllegalArgumentException("Política '" + regla.nombre() + "': el nombre supera 100 caracteres");
+        }
+        boolean conMonto = regla.tipo() != PoliticasProperties.Tipo.CATEGORIA_PROHIBIDA;
+        if (conMonto && (regla.monto() == null || regla.monto().signum() <= 0)) {
+            throw new IllegalArgumentException("Política '" + regla.nombre() + "': el monto debe ser positivo");
+        }
+        if (!conMonto && regla.categorias().isEmpty()) {
+            throw new IllegalArgumentException("Política '" + regla.nombre() + "': indicar las categorías prohibidas");
+        }
+    }
+}
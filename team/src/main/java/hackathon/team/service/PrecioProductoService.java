@@ -0,0 +1,145 @@
+package hackathon.team.service;
+
+import hackathon.team.dao.ProductoPrecioEstadisticaRepository;
+import hackathon.team.model.ProductoPrecioEstadistica;
+import hackathon.team.model.TicketItem;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Estadísticas de precio por producto y detección de precios atípicos al subir tickets
+ * Cada item se compara contra la media y desviación acumuladas de su producto (una fila
+ * por producto, sin consultar el historial) y después se suma a ellas. El precio de
+ * referencia del producto sigue al promedio exponencial de los precios recibidos.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class PrecioProductoService {
+
+    private static final String SQL_PRECIO_REFERENCIA = "UPDATE productos SET precio_referencia = ? WHERE id = ?";
+
+    private final ProductoPrecioEstadisticaRepository estadisticaRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final double sigmas;
+    private final long minMuestras;
+    private final double toleranciaRelativa;
+    private final double alfa;
+    private final Counter preciosAtipicos;
+
+    public PrecioProductoService(ProductoPrecioEstadisticaRepository estadisticaRepository,
+                                 JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.productos.precios.sigmas:3}") double sigmas,
+                                 @Value("${app.productos.precios.min-muestras:5}") long minMuestras,
+                                 @Value("${app.productos.precios.tolerancia-relativa:0.10}") double toleranciaRelativa,
+                                 @Value("${app.productos.precios.alfa:0.2}") double alfa) {
+        if (alfa <= 0 || alfa > 1) {
+            throw new IllegalArgumentException("app.productos.precios.alfa debe estar en (0, 1]");
+        }
+        this.estadisticaRepository = estadisticaRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.sigmas = sigmas;
+        this.minMuestras = minMuestras;
+        this.toleranciaRelativa = toleranciaRelativa;
+        this.alfa = alfa;
+        this.preciosAtipicos = Counter.builder("tickets.items.precio_atipico")
+                .description("Items con precio unitario fuera del rango habitual del producto")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Calcular las estadísticas desde los items existentes si la tabla está vacía
+     * (primer arranque con esta versión)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        if (estadisticaRepository.count() > 0) {
+            return;
+        }
+        Integer productos = transactionTemplate.execute(status -> estadisticaRepository.calcularDesdeHistorial());
+        log.info("Estadísticas de precio calculadas desde el historial para {} productos", productos);
+    }
+
+    /**
+     * Marcar los items atípicos y sumar sus precios a las estadísticas
+     * Debe ejecutarse dentro de la transacción que guarda el ticket: las filas de los
+     * productos quedan bloqueadas hasta el commit.
+     */
+    public void registrar(List<TicketItem> items) {
+        TreeSet<Long> productoIds = new TreeSet<>();
+        for (TicketItem item : items) {
+            productoIds.add(item.getProducto().getId());
+        }
+        Map<Long, ProductoPrecioEstadistica> estadisticas = bloquear(productoIds);
+
+        Map<Long, BigDecimal> referenciasAnteriores = new HashMap<>();
+        for (TicketItem item : items) {
+            ProductoPrecioEstadistica estadistica = estadisticas.get(item.getProducto().getId());
+            referenciasAnteriores.putIfAbsent(estadistica.getProductoId(), precioReferencia(estadistica));
+
+            double precio = item.getPrecioUnitario().doubleValue();
+            boolean atipico = estadistica.esAtipico(precio, sigmas, minMuestras, toleranciaRelativa);
+            item.setPrecioAtipico(atipico);
+            if (atipico) {
+                preciosAtipicos.increment();
+                log.info("Precio atípico para producto {}: {} (media {}, desviación {})",
+                        estadistica.getProductoId(), precio,
+                        String.format("%.2f", estadistica.getMedia()),
+                        String.format("%.2f", estadistica.getDesviacionEstandar()));
+            }
+            estadistica.agregar(precio, alfa);
+        }
+
+        // Solo se escriben los precios de referencia que cambian al redondear
+        List<Object[]> cambios = new ArrayList<>();
+        referenciasAnteriores.forEach((productoId, anterior) -> {
+            BigDecimal nuevo = precioReferencia(estadisticas.get(productoId));
+            if (!nuevo.equals(anterior)) {
+                cambios.add(new Object[]{nuevo, productoId});
+            }
+        });
+        if (!cambios.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_PRECIO_REFERENCIA, cambios);
+        }
+    }
+
+    /**
+     * Bloquear las filas de los productos, creando antes las que falten
+     * Primero se insertan y después se bloquean todas en una sola consulta, ambas en orden
+     * de id: dos tickets con productos en común nunca toman los bloqueos cruzados.
+     */
+    private Map<Long, ProductoPrecioEstadistica> bloquear(TreeSet<Long> productoIds) {
+        estadisticaRepository.crearFaltantes(productoIds);
+        Map<Long, ProductoPrecioEstadistica> estadisticas = new HashMap<>();
+        estadisticaRepository.findParaActualizar(productoIds).forEach(e -> estadisticas.put(e.getProductoId(), e));
+        return estadisticas;
+    }
+
+    /**
+     * Precio de referencia: promedio exponencial redondeado a centavos (null sin precios)
+     */
+    private static BigDecimal precioReferencia(ProductoPrecioEstadistica estadistica) {
+        return estadistica.getCantidad() > 0
+                ? BigDecimal.valueOf(estadistica.getEwma()).setScale(2, RoundingMode.HALF_UP)
+                : null;
+    }
+}
@@ -0,0 +1,88 @@
+package hackathon.team.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cliente del predictor de categorías por similitud (API semántica en Python)
+ * POST /api/predict-category devuelve las categorías de los productos más
+ * parecidos con su puntaje acumulado; la confianza es la parte del puntaje
+ * total que se lleva la mejor categoría.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class PredictorCategoriaService {
+
+    private final ObjectMapper objectMapper;
+    private final URI uriPrediccion;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+
+    public PredictorCategoriaService(ObjectMapper objectMapper,
+                                     @Value("${app.semantica.url:http://localhost:5000}") String urlBase,
+                                     @Value("${app.semantica.timeout:5s}") Duration timeout) {
+        this.objectMapper = objectMapper;
+        this.uriPrediccion = URI.create(urlBase.replaceAll("/+$", "") + "/api/predict-category");
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    /**
+     * Categoría predicha
+     *
+     * @param confianza parte del puntaje total (0 a 1) que obtuvo la categoría
+     */
+    public record Prediccion(Long categoriaId, String categoriaNombre, double puntaje, double confianza) {
+    }
+
+    /**
+     * Predecir la categoría de un producto, ignorando la categoría excluida
+     * (los productos "Sin Clasificar" también votan en el predictor)
+     */
+    public Optional<Prediccion> predecir(String texto, Long categoriaExcluida) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uriPrediccion)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(Map.of("q", texto))))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("El predictor de categorías respondió " + response.statusCode());
+        }
+
+        JsonNode categorias = objectMapper.readTree(response.body()).path("todas_categorias");
+        JsonNode mejor = null;
+        double total = 0;
+        for (JsonNode categoria : categorias) {
+            if (categoriaExcluida != null && categoria.path("categoria_id").asLong() == categoriaExcluida) {
+                continue;
+            }
+            double puntaje = categoria.path("score").asDouble();
+            total += puntaje;
+            if (mejor == null || puntaje > mejor.path("score").asDouble()) {
+                mejor = categoria;
+            }
+        }
+        if (mejor == null || total <= 0) {
+            return Optional.empty();
+        }
+        double puntaje = mejor.path("score").asDouble();
+        return Optional.of(new Prediccion(mejor.path("categoria_id").asLong(),
+                mejor.path("categoria_nombre").asText(), puntaje, puntaje / total));
+    }
+}
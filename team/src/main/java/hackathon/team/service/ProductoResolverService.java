@@ -0,0 +1,242 @@
+package hackathon.team.service;
+
+import hackathon.team.dao.CategoriaRepository;
+import hackathon.team.dao.ProductoRepository;
+import hackathon.team.dtos.TicketUploadDTO;
+import hackathon.team.model.Categoria;
+import hackathon.team.model.Producto;
+import hackathon.team.util.CacheLruConcurrente;
+import hackathon.team.util.NormalizadorTexto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Resolución masiva de productos de un ticket
+ * Todas las líneas se resuelven en una pasada: cache en memoria por clave
+ * normalizada (nombre + marca), una consulta IN para los faltantes y un
+ * insert-or-get para los productos nuevos.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class ProductoResolverService {
+
+    static final String CATEGORIA_DEFAULT = "Sin Clasificar";
+
+    private final ProductoRepository productoRepository;
+    private final CategoriaRepository categoriaRepository;
+    private final CacheLruConcurrente<String, ProductoResuelto> cache;
+
+    private volatile Long categoriaDefaultId;
+
+    public ProductoResolverService(ProductoRepository productoRepository,
+                                   CategoriaRepository categoriaRepository,
+                                   @Value("${app.productos.cache.max-entradas:10000}") int maxEntradas) {
+        this.productoRepository = productoRepository;
+        this.categoriaRepository = categoriaRepository;
+        this.cache = new CacheLruConcurrente<>(maxEntradas);
+    }
+
+    /**
+     * Producto resuelto guardado en cache
+     */
+    public record ProductoResuelto(Long id, Long categoriaId) {
+    }
+
+    /**
+     * Resolver (o crear) los productos de un ticket
+     * Devuelve una lista alineada con la lista de entrada
+     */
+    @Transactional
+    public List<Producto> resolver(List<TicketUploadDTO.ProductoTicketDTO> productosDTO) {
+        // Agrupar líneas por clave: el mismo producto puede repetirse en el ticket
+        Map<String, TicketUploadDTO.ProductoTicketDTO> porClave = new LinkedHashMap<>();
+        List<String> clavesPorLinea = new ArrayList<>(productosDTO.size());
+        for (TicketUploadDTO.ProductoTicketDTO dto : productosDTO) {
+            String clave = NormalizadorTexto.claveProducto(dto.getNombreProducto(), dto.getMarca());
+            clavesPorLinea.add(clave);
+            porClave.putIfAbsent(clave, dto);
+        }
+
+        Map<String, Producto> resueltos = new HashMap<>();
+        Set<String> faltantes = new HashSet<>();
+
+        // 1. Cache: sin consultas a la base de datos
+        for (String clave : porClave.keySet()) {
+            ProductoResuelto enCache = cache.get(clave);
+            if (enCache != null) {
+                resueltos.put(clave, productoRepository.getReferenceById(enCache.id()));
+            } else {
+                faltantes.add(clave);
+            }
+        }
+
+        // 2. Una sola consulta IN para todos los faltantes
+        Map<String, ProductoResuelto> paraCache = new HashMap<>();
+        if (!faltantes.isEmpty()) {
+            cargarExistentes(faltantes, resueltos, paraCache);
+        }
+
+        // 3. Insert-or-get para los productos nuevos
+        if (!faltantes.isEmpty()) {
+            crearFaltantes(faltantes, porClave);
+            cargarExistentes(faltantes, resueltos, paraCache);
+            if (!faltantes.isEmpty()) {
+                throw new RuntimeException("No se pudieron resolver los productos: " + faltantes);
+            }
+        }
+        guardarEnCacheAlConfirmar(paraCache);
+
+        log.info("Productos resueltos: {} líneas, {} claves distintas", productosDTO.size(), porClave.size());
+
+        List<Producto> resultado = new ArrayList<>(clavesPorLinea.size());
+        for (String clave : clavesPorLinea) {
+            resultado.add(resueltos.get(clave));
+        }
+        return resultado;
+    }
+
+    /**
+     * Quitar un producto de la cache (al editarlo, desactivarlo o reclasificarlo)
+     */
+    public void invalidar(Producto producto) {
+        invalidar(producto.getNombre(), producto.getMarca());
+        if (producto.getClaveNormalizada() != null) {
+            cache.remove(producto.getClaveNormalizada());
+        }
+    }
+
+    /**
+     * Invalidar la entrada de un producto por nombre y marca
+     */
+    public void invalidar(String nombre, String marca) {
+        if (nombre != null) {
+            cache.remove(NormalizadorTexto.claveProducto(nombre, marca));
+        }
+    }
+
+    /**
+     * Vaciar la cache completa
+     */
+    public void invalidarTodo() {
+        cache.clear();
+        categoriaDefaultId = null;
+    }
+
+    /**
+     * Asignar clave normalizada a productos existentes que no la tengan
+     * (datos históricos o cargados por el script de Python).
+     * Si hay duplicados se conserva la clave en el producto más antiguo; los demás quedan
+     * sin clave (no se fusionan: sus tickets y estadísticas siguen apuntando a ellos) y
+     * ProductoService permite editarlos sin chocar con el índice único.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void completarClavesNormalizadas() {
+        List<Producto> sinClave = productoRepository.findByClaveNormalizadaIsNullAndActivoTrueOrderByIdAsc();
+        if (sinClave.isEmpty()) {
+            return;
+        }
+
+        Set<String> usadas = new HashSet<>(productoRepository.findClavesNormalizadas());
+        int asignadas = 0;
+        for (Producto producto : sinClave) {
+            String clave = NormalizadorTexto.claveProducto(producto.getNombre(), producto.getMarca());
+            if (usadas.add(clave)) {
+                productoRepository.asignarClaveNormalizada(producto.getId(), clave);
+                asignadas++;
+            }
+        }
+        log.info("Claves normalizadas asignadas: {} de {} productos ({} duplicados quedan sin clave)",
+                asignadas, sinClave.size(), sinClave.size() - asignadas);
+    }
+
+    private void cargarExistentes(Set<String> faltantes, Map<String, Producto> resueltos,
+                                  Map<String, ProductoResuelto> paraCache) {
+        for (Producto producto : productoRepository.findByClaveNormalizadaIn(faltantes)) {
+            String clave = producto.getClaveNormalizada();
+            resueltos.put(clave, producto);
+            faltantes.remove(clave);
+            paraCache.put(clave, new ProductoResuelto(producto.getId(), producto.getCategoria().getId()));
+        }
+    }
+
+    /**
+     * Los productos recién insertados solo entran a la cache si la transacción se confirma
+     */
+    private void guardarEnCacheAlConfirmar(Map<String, ProductoResuelto> paraCache) {
+        if (paraCache.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            paraCache.forEach(cache::put);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                paraCache.forEach(cache::put);
+            }
+        });
+    }
+
+    private void crearFaltantes(Set<String> faltantes, Map<String, TicketUploadDTO.ProductoTicketDTO> porClave) {
+        // Validar todas las categorías indicadas con una sola consulta
+        Set<Long> categoriaIds = new HashSet<>();
+        for (String clave : faltantes) {
+            Long categoriaId = porClave.get(clave).getCategoriaId();
+            if (categoriaId != null) {
+                categoriaIds.add(categoriaId);
+            }
+        }
+        Set<Long> existentes = new HashSet<>();
+        if (!categoriaIds.isEmpty()) {
+            categoriaRepository.findAllById(categoriaIds).forEach(c -> existentes.add(c.getId()));
+            if (existentes.size() != categoriaIds.size()) {
+                throw new RuntimeException("Categoría no encontrada");
+            }
+        }
+
+        for (String clave : faltantes) {
+            TicketUploadDTO.ProductoTicketDTO dto = porClave.get(clave);
+            Long categoriaId = dto.getCategoriaId() != null ? dto.getCategoriaId() : obtenerCategoriaDefaultId();
+            int insertados = productoRepository.insertarSiNoExiste(
+                    dto.getNombreProducto(), dto.getMarca(), dto.getPrecioUnitario(), categoriaId, clave);
+            if (insertados > 0) {
+                log.info("Producto nuevo creado: {}", clave);
+            }
+        }
+    }
+
+    /**
+     * Id de la categoría "Sin Clasificar" (se consulta o crea una sola vez)
+     */
+    private Long obtenerCategoriaDefaultId() {
+        Long id = categoriaDefaultId;
+        if (id != null) {
+            return id;
+        }
+        Optional<Categoria> existente = categoriaRepository.findByNombreIgnoreCase(CATEGORIA_DEFAULT);
+        if (existente.isPresent()) {
+            // Solo se guarda en memoria si ya estaba confirmada en la base de datos
+            categoriaDefaultId = existente.get().getId();
+            return categoriaDefaultId;
+        }
+        return categoriaRepository.save(new Categoria(CATEGORIA_DEFAULT, "sin clasificar, general, otros")).getId();
+    }
+}
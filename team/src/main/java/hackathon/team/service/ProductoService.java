@@ -2,7 +2,9 @@ package hackathon.team.service;
 
 import hackathon.team.dao.ProductoRepository;
 import hackathon.team.model.Producto;
+import hackathon.team.util.NormalizadorTexto;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,6 +20,9 @@ public class ProductoService {
     @Autowired
     private ProductoRepository productoRepository;
 
+    @Autowired
+    private ProductoResolverService productoResolverService;
+
     /**
      * Obtener todos los productos activos
      */
@@ -46,11 +51,51 @@ public class ProductoService {
         }
 
         // Si es nuevo producto, asegurar que esté activo
+        Producto anterior = null;
         if (producto.getId() == null) {
             producto.setActivo(true);
+        } else {
+            anterior = productoRepository.findById(producto.getId()).orElse(null);
+            if (anterior != null) {
+                productoResolverService.invalidar(anterior);
+            }
         }
+        validarClaveUnica(producto, anterior);
+
+        try {
+            return productoRepository.saveAndFlush(producto);
+        } catch (DataIntegrityViolationException e) {
+            // Otro guardado con el mismo nombre y marca se confirmó primero
+            throw new IllegalArgumentException("Ya existe un producto activo con el nombre \""
+                    + producto.getNombreCompleto() + "\"");
+        }
+    }
 
-        return productoRepository.save(producto);
+    /**
+     * Rechazar nombre y marca de otro producto activo; los duplicados históricos que
+     * quedaron sin clave se pueden editar mientras no cambien nombre ni marca
+     */
+    private void validarClaveUnica(Producto producto, Producto anterior) {
+        if (!Boolean.TRUE.equals(producto.getActivo())) {
+            return;
+        }
+        String clave = NormalizadorTexto.claveProducto(producto.getNombre(), producto.getMarca());
+        Producto otro = productoRepository.findByClaveNormalizadaIn(List.of(clave)).stream()
+                .filter(p -> !p.getId().equals(producto.getId()))
+                .findFirst()
+                .orElse(null);
+        if (otro == null) {
+            return;
+        }
+        boolean duplicadoHistorico = anterior != null && anterior.getClaveNormalizada() == null
+                && Boolean.TRUE.equals(anterior.getActivo())
+                && clave.equals(NormalizadorTexto.claveProducto(anterior.getNombre(), anterior.getMarca()));
+        if (!duplicadoHistorico) {
+            throw new IllegalArgumentException("Ya existe un producto activo con el nombre \""
+                    + otro.getNombreCompleto() + "\" (id " + otro.getId() + ")");
+        }
+        // save() combina el formulario sobre la instancia administrada: la marca va en ella
+        anterior.setDuplicadoSinClave(true);
     }
 
     /**
@@ -59,6 +104,7 @@ public class ProductoService {
     public void eliminar(Long id) {
         Producto producto = findById(id);
         if (producto != null) {
+            productoResolverService.invalidar(producto);
             producto.setActivo(false);
             productoRepository.save(producto);
         }
@@ -0,0 +1,449 @@
+package hackathon.team.service;
+
+import hackathon.team.util.MapaLongEntero;
+import hackathon.team.util.SimilitudProductos;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Recomendaciones por usuario con filtrado colaborativo producto-producto
+ * Retroalimentación implícita: el peso de (usuario, producto) es 1 + ln(tickets
+ * completados del usuario con el producto). Cada noche se calculan los vecinos por
+ * similitud coseno (SimilitudProductos) y la tabla de recomendaciones de todos los
+ * usuarios; al completarse tickets se recalcula solo la fila de sus usuarios con los
+ * vecinos vigentes. Consultar es leer la tabla en memoria.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class RecomendacionService {
+
+    private static final String SQL_PRODUCTOS =
+            "SELECT p.id, p.nombre, p.activo, p.categoria_id, c.nombre AS categoria " +
+            "FROM productos p LEFT JOIN categoria c ON c.id = p.categoria_id";
+
+    private static final String SQL_HISTORIAL =
+            "SELECT t.usuario_id, i.producto_id, COUNT(DISTINCT t.id) AS tickets " +
+            "FROM ticket t JOIN ticket_items i ON i.ticket_id = t.id WHERE t.estado = 'completado' " +
+            "GROUP BY t.usuario_id, i.producto_id ORDER BY t.usuario_id, i.producto_id";
+
+    private static final String SQL_HISTORIAL_USUARIOS =
+            "SELECT t.usuario_id, i.producto_id, COUNT(DISTINCT t.id) AS tickets " +
+            "FROM ticket t JOIN ticket_items i ON i.ticket_id = t.id " +
+            "WHERE t.estado = 'completado' AND t.usuario_id IN (:ids) " +
+            "GROUP BY t.usuario_id, i.producto_id ORDER BY t.usuario_id, i.producto_id";
+
+    private static final String SQL_USUARIOS_TICKETS = "SELECT DISTINCT usuario_id FROM ticket WHERE id IN (:ids)";
+
+    private static final String SQL_USUARIOS = "SELECT id, email FROM usuarios";
+
+    // Usuarios por hoja al llenar la tabla
+    private static final int UMBRAL_USUARIOS = 512;
+
+    private final NamedParameterJdbcTemplate cursor;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxVecinos;
+    private final int maxProductosPorUsuario;
+    private final int minUsuariosComunes;
+    private final int maxProductos;
+    private final int maxCategorias;
+    private final ForkJoinPool pool;
+
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+    private volatile Estado estado;
+    // Usuarios con tickets completados durante el cálculo completo, para recalcularlos al final
+    private Set<Long> durante;
+
+    public RecomendacionService(DataSource dataSource,
+                                NamedParameterJdbcTemplate namedJdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.recomendaciones.vecinos:50}") int maxVecinos,
+                                @Value("${app.recomendaciones.max-productos-por-usuario:500}") int maxProductosPorUsuario,
+                                @Value("${app.recomendaciones.min-usuarios-comunes:2}") int minUsuariosComunes,
+                                @Value("${app.recomendaciones.productos:20}") int maxProductos,
+                                @Value("${app.recomendaciones.categorias:5}") int maxCategorias,
+                                @Value("${app.recomendaciones.paralelismo:0}") int paralelismo) {
+        JdbcTemplate jdbcCursor = new JdbcTemplate(dataSource);
+        jdbcCursor.setFetchSize(10_000);
+        this.cursor = new NamedParameterJdbcTemplate(jdbcCursor);
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.maxVecinos = maxVecinos;
+        this.maxProductosPorUsuario = maxProductosPorUsuario;
+        this.minUsuariosComunes = minUsuariosComunes;
+        this.maxProductos = maxProductos;
+        this.maxCategorias = maxCategorias;
+        this.pool = new ForkJoinPool(paralelismo > 0 ? paralelismo : Runtime.getRuntime().availableProcessors());
+    }
+
+    public record ProductoRecomendado(Long productoId, String nombre, double puntaje) {
+    }
+
+    public record CategoriaRecomendada(Long categoriaId, String nombre, double puntaje) {
+    }
+
+    /**
+     * Recomendaciones precalculadas de un usuario, mayor puntaje primero
+     */
+    public record Recomendaciones(Long usuarioId, List<ProductoRecomendado> productos,
+                                  List<CategoriaRecomendada> categorias, LocalDateTime calculadas) {
+
+        private Recomendaciones limitar(int limite) {
+            return new Recomendaciones(usuarioId, productos.subList(0, Math.min(limite, productos.size())),
+                    categorias.subList(0, Math.min(limite, categorias.size())), calculadas);
+        }
+    }
+
+    /**
+     * Catálogo indexado (producto -> índice denso), vecinos y tabla vigentes
+     */
+    private record Estado(MapaLongEntero indice, long[] productoIds, String[] nombres, long[] categoriaDe,
+                          boolean[] recomendable, Map<Long, String> categorias, SimilitudProductos.Vecinos vecinos,
+                          Map<Long, Recomendaciones> tabla, Map<String, Long> usuarios) {
+
+        /**
+         * Índice denso del producto, -1 si no está en el catálogo del cálculo
+         */
+        private int indiceDe(long productoId) {
+            return indice.get(productoId) - 1;
+        }
+    }
+
+    /**
+     * Calcular en segundo plano al arrancar: puede tardar con muchos usuarios
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        Thread.ofVirtual().name("recomendaciones-carga").start(this::recalcular);
+    }
+
+    /**
+     * Vecinos y tabla completos desde todos los tickets completados
+     */
+    @Scheduled(cron = "${app.recomendaciones.recalculo-cron:0 30 4 * * *}")
+    public synchronized void recalcular() {
+        long inicio = System.nanoTime();
+        candado.writeLock().lock();
+        try {
+            durante = new HashSet<>();
+        } finally {
+            candado.writeLock().unlock();
+        }
+
+        try {
+            Estado nuevo = transactionTemplate.execute(status -> leer());
+            Set<Long> pendientes;
+            candado.writeLock().lock();
+            try {
+                estado = nuevo;
+                pendientes = durante;
+                durante = null;
+            } finally {
+                candado.writeLock().unlock();
+            }
+            actualizarUsuarios(pendientes);
+            log.info("Recomendaciones: {} productos, {} vecinos, {} usuarios en {} ms",
+                    nuevo.productoIds().length, nuevo.vecinos().pares(), nuevo.tabla().size(),
+                    (System.nanoTime() - inicio) / 1_000_000);
+        } catch (RuntimeException e) {
+            candado.writeLock().lock();
+            try {
+                durante = null;
+            } finally {
+                candado.writeLock().unlock();
+            }
+            log.error("No se pudieron calcular las recomendaciones", e);
+        }
+    }
+
+    /**
+     * Recalcular las filas de los usuarios de los tickets recién completados
+     */
+    @EventListener
+    public void alCompletarTickets(TicketsCompletadosEvent evento) {
+        try {
+            List<Long> usuarios = namedJdbcTemplate.queryForList(SQL_USUARIOS_TICKETS,
+                    new MapSqlParameterSource("ids", evento.ticketIds()), Long.class);
+            candado.writeLock().lock();
+            try {
+                if (durante != null) {
+                    durante.addAll(usuarios);
+                }
+            } finally {
+                candado.writeLock().unlock();
+            }
+            actualizarUsuarios(usuarios);
+        } catch (RuntimeException e) {
+            log.error("No se pudieron agregar los tickets completados a las recomendaciones", e);
+        }
+    }
+
+    /**
+     * Recomendaciones del usuario; vacías si no tiene compras o aún no se calculan
+     */
+    public Recomendaciones recomendar(long usuarioId, int limite) {
+        candado.readLock().lock();
+        try {
+            Estado actual = estado;
+            Recomendaciones recomendaciones = actual != null ? actual.tabla().get(usuarioId) : null;
+            return recomendaciones != null ? recomendaciones.limitar(limite)
+                    : new Recomendaciones(usuarioId, List.of(), List.of(), null);
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    /**
+     * Id del usuario por email sin consultar la base de datos (los registrados después del
+     * cálculo completo no están)
+     */
+    public Optional<Long> usuarioPorEmail(String email) {
+        Estado actual = estado;
+        return actual == null || email == null ? Optional.empty()
+                : Optional.ofNullable(actual.usuarios().get(email.toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Leer catálogo e historial, calcular vecinos y llenar la tabla (dentro de una transacción)
+     */
+    private Estado leer() {
+        MapaLongEntero indice = new MapaLongEntero();
+        List<Long> ids = new ArrayList<>();
+        List<String> nombres = new ArrayList<>();
+        List<Long> categoriaDe = new ArrayList<>();
+        List<Boolean> activos = new ArrayList<>();
+        Map<Long, String> categorias = new HashMap<>();
+        cursor.query(SQL_PRODUCTOS, new MapSqlParameterSource(), rs -> {
+            long id = rs.getLong("id");
+            indice.sumar(id, ids.size() + 1);
+            ids.add(id);
+            nombres.add(rs.getString("nombre"));
+            long categoriaId = rs.getLong("categoria_id");
+            categoriaDe.add(categoriaId);
+            activos.add(rs.getBoolean("activo"));
+            if (categoriaId != 0) {
+                categorias.putIfAbsent(categoriaId, rs.getString("categoria"));
+            }
+        });
+        int totalProductos = ids.size();
+        long[] productoIds = ids.stream().mapToLong(Long::longValue).toArray();
+        long[] categoriaPorProducto = categoriaDe.stream().mapToLong(Long::longValue).toArray();
+        boolean[] recomendable = new boolean[totalProductos];
+        for (int p = 0; p < totalProductos; p++) {
+            recomendable[p] = activos.get(p);
+        }
+
+        Map<String, Long> usuarios = new HashMap<>();
+        cursor.query(SQL_USUARIOS, new MapSqlParameterSource(), rs -> {
+            usuarios.put(rs.getString("email").toLowerCase(Locale.ROOT), rs.getLong("id"));
+        });
+
+        Matriz matriz = new Matriz();
+        cursor.query(SQL_HISTORIAL, new MapSqlParameterSource(), rs -> {
+            int p = indice.get(rs.getLong("producto_id")) - 1;
+            if (p >= 0) {
+                matriz.agregar(rs.getLong("usuario_id"), p, peso(rs.getInt("tickets")));
+            }
+        });
+        int[] inicios = matriz.inicios();
+
+        SimilitudProductos.Vecinos vecinos = SimilitudProductos.calcular(inicios, matriz.productos, matriz.pesos,
+                matriz.usuarios, totalProductos, maxVecinos, maxProductosPorUsuario, minUsuariosComunes, pool);
+        Estado parcial = new Estado(indice, productoIds, nombres.toArray(String[]::new), categoriaPorProducto,
+                recomendable, categorias, vecinos, Map.of(), usuarios);
+
+        Recomendaciones[] filas = new Recomendaciones[matriz.usuarios];
+        LocalDateTime ahora = LocalDateTime.now();
+        pool.invoke(new TareaTabla(this, parcial, matriz, inicios, filas, ahora, 0, matriz.usuarios));
+        Map<Long, Recomendaciones> tabla = new ConcurrentHashMap<>(Math.max(16, matriz.usuarios * 2));
+        for (Recomendaciones fila : filas) {
+            tabla.put(fila.usuarioId(), fila);
+        }
+        return new Estado(indice, productoIds, parcial.nombres(), categoriaPorProducto, recomendable, categorias,
+                vecinos, tabla, usuarios);
+    }
+
+    /**
+     * Releer el historial de los usuarios y reemplazar su fila con los vecinos vigentes
+     */
+    private void actualizarUsuarios(Iterable<Long> usuarioIds) {
+        Estado actual = estado;
+        Set<Long> ids = new HashSet<>();
+        usuarioIds.forEach(ids::add);
+        if (actual == null || ids.isEmpty()) {
+            return;
+        }
+        Matriz matriz = new Matriz();
+        namedJdbcTemplate.query(SQL_HISTORIAL_USUARIOS, new MapSqlParameterSource("ids", ids), rs -> {
+            int p = actual.indiceDe(rs.getLong("producto_id"));
+            if (p >= 0) {
+                matriz.agregar(rs.getLong("usuario_id"), p, peso(rs.getInt("tickets")));
+            }
+        });
+        int[] inicios = matriz.inicios();
+        SimilitudProductos.Acumulador acumulador = new SimilitudProductos.Acumulador(actual.productoIds().length);
+        LocalDateTime ahora = LocalDateTime.now();
+        List<Recomendaciones> filas = new ArrayList<>(matriz.usuarios);
+        for (int u = 0; u < matriz.usuarios; u++) {
+            filas.add(calcularFila(actual, acumulador, matriz.usuarioIds[u], matriz.productos, matriz.pesos,
+                    inicios[u], inicios[u + 1], ahora));
+        }
+        candado.writeLock().lock();
+        try {
+            // Si mientras tanto terminó un cálculo completo, esos usuarios se recalculan al final de él
+            if (estado == actual) {
+                filas.forEach(fila -> actual.tabla().put(fila.usuarioId(), fila));
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Productos y categorías recomendados de un usuario (sus productos en [desde, hasta))
+     */
+    private Recomendaciones calcularFila(Estado estado, SimilitudProductos.Acumulador acumulador, long usuarioId,
+                                         int[] productos, float[] pesos, int desde, int hasta, LocalDateTime ahora) {
+        acumulador.acumular(estado.vecinos(), productos, pesos, desde, hasta);
+
+        int[] mejores = new int[maxProductos];
+        float[] puntajes = new float[maxProductos];
+        int cuantos = acumulador.mejores(maxProductos, estado.recomendable(), mejores, puntajes);
+        List<ProductoRecomendado> recomendados = new ArrayList<>(cuantos);
+        for (int i = 0; i < cuantos; i++) {
+            recomendados.add(new ProductoRecomendado(estado.productoIds()[mejores[i]], estado.nombres()[mejores[i]],
+                    puntajes[i]));
+        }
+
+        // Categorías: suma de los puntajes de todos los candidatos de cada una
+        Map<Long, Double> porCategoria = new HashMap<>();
+        for (int t = 0; t < acumulador.candidatos(); t++) {
+            int p = acumulador.candidato(t);
+            long categoriaId = estado.categoriaDe()[p];
+            if (categoriaId != 0 && estado.recomendable()[p]) {
+                porCategoria.merge(categoriaId, (double) acumulador.puntaje(p), Double::sum);
+            }
+        }
+        List<CategoriaRecomendada> categorias = porCategoria.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .limit(maxCategorias)
+                .map(e -> new CategoriaRecomendada(e.getKey(), estado.categorias().get(e.getKey()), e.getValue()))
+                .toList();
+        return new Recomendaciones(usuarioId, List.copyOf(recomendados), categorias, ahora);
+    }
+
+    private static float peso(int tickets) {
+        return (float) (1 + Math.log(Math.max(1, tickets)));
+    }
+
+    /**
+     * Filas de la tabla en paralelo, un acumulador por hoja
+     */
+    private static final class TareaTabla extends RecursiveAction {
+
+        private final RecomendacionService servicio;
+        private final Estado estado;
+        private final Matriz matriz;
+        private final int[] inicios;
+        private final Recomendaciones[] filas;
+        private final LocalDateTime ahora;
+        private final int desde;
+        private final int hasta;
+
+        private TareaTabla(RecomendacionService servicio, Estado estado, Matriz matriz, int[] inicios,
+                           Recomendaciones[] filas, LocalDateTime ahora, int desde, int hasta) {
+            this.servicio = servicio;
+            this.estado = estado;
+            this.matriz = matriz;
+            this.inicios = inicios;
+            this.filas = filas;
+            this.ahora = ahora;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected void compute() {
+            if (hasta - desde > UMBRAL_USUARIOS) {
+                int medio = (desde + hasta) >>> 1;
+                invokeAll(new TareaTabla(servicio, estado, matriz, inicios, filas, ahora, desde, medio),
+                        new TareaTabla(servicio, estado, matriz, inicios, filas, ahora, medio, hasta));
+                return;
+            }
+            SimilitudProductos.Acumulador acumulador = new SimilitudProductos.Acumulador(estado.productoIds().length);
+            for (int u = desde; u < hasta; u++) {
+                filas[u] = servicio.calcularFila(estado, acumulador, matriz.usuarioIds[u], matriz.productos,
+                        matriz.pesos, inicios[u], inicios[u + 1], ahora);
+            }
+        }
+    }
+
+    /**
+     * Matriz usuario x producto en formato compacto (CSR) mientras se lee en orden de usuario
+     */
+    private static final class Matriz {
+        private int[] productos = new int[1024];
+        private float[] pesos = new float[1024];
+        private long[] usuarioIds = new long[256];
+        private int[] inicios = new int[257];
+        private int items;
+        private int usuarios;
+        private long usuarioActual = -1;
+
+        private void agregar(long usuarioId, int producto, float peso) {
+            if (usuarioId != usuarioActual) {
+                if (usuarios == usuarioIds.length) {
+                    usuarioIds = Arrays.copyOf(usuarioIds, usuarioIds.length * 2);
+                    inicios = Arrays.copyOf(inicios, usuarioIds.length + 1);
+                }
+                inicios[usuarios] = items;
+                usuarioIds[usuarios++] = usuarioId;
+                usuarioActual = usuarioId;
+            }
+            if (items == productos.length) {
+                productos = Arrays.copyOf(productos, productos.length * 2);
+                pesos = Arrays.copyOf(pesos, pesos.length * 2);
+            }
+            productos[items] = producto;
+            pesos[items++] = peso;
+        }
+
+        private int[] inicios() {
+            inicios[usuarios] = items;
+            return inicios;
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        pool.shutdownNow();
+    }
+}
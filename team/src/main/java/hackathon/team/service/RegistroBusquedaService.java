@@ -0,0 +1,356 @@
+package hackathon.team.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import hackathon.team.util.AnilloEventos;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Registro de búsquedas (consulta, resultados, latencia y clic) en archivos comprimidos
+ * Los hilos de las peticiones solo copian la entrada a una ranura del AnilloEventos, sin
+ * bloqueos ni E/S; si el anillo está lleno la entrada se descarta y se cuenta
+ * (busquedas.registro.descartadas). Un único hilo consumidor escribe lotes como JSON por
+ * línea en busquedas-AAAA-MM-DD-NNN.jsonl.gz y cambia de archivo por día o por tamaño.
+ * Los clics son entradas aparte que apuntan al id de su búsqueda.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class RegistroBusquedaService {
+
+    private static final String PREFIJO = "busquedas-";
+    private static final String EXTENSION = ".jsonl.gz";
+    private static final int MAX_LONGITUD_CONSULTA = 200;
+    private static final int LOTE = 512;
+
+    private final AnilloEventos<Entrada> anillo;
+    private final Path carpeta;
+    private final long maxBytesArchivo;
+    private final int diasRetencion;
+    private final long intervaloEscrituraNanos;
+    private final ZoneId zona = ZoneId.systemDefault();
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final Counter escritas;
+    // Ids únicos entre reinicios y representables en JavaScript (< 2^53)
+    private final AtomicLong siguienteId = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    private volatile boolean activo;
+    private Thread consumidor;
+
+    // Estado del hilo consumidor
+    private Archivo actual;
+    private long ultimaEscritura;
+
+    public RegistroBusquedaService(MeterRegistry meterRegistry,
+                                   @Value("${app.busquedas.registro.carpeta:registro-busquedas}") String carpeta,
+                                   @Value("${app.busquedas.registro.capacidad:8192}") int capacidad,
+                                   @Value("${app.busquedas.registro.max-mb-archivo:64}") int maxMbArchivo,
+                                   @Value("${app.busquedas.registro.dias-retencion:90}") int diasRetencion,
+                                   @Value("${app.busquedas.registro.escritura-ms:2000}") long escrituraMs) {
+        this.anillo = new AnilloEventos<>(capacidad, Entrada::new);
+        this.carpeta = Path.of(carpeta);
+        this.maxBytesArchivo = maxMbArchivo * 1024L * 1024L;
+        this.diasRetencion = diasRetencion;
+        this.intervaloEscrituraNanos = TimeUnit.MILLISECONDS.toNanos(escrituraMs);
+        this.escritas = Counter.builder("busquedas.registro.escritas")
+                .description("Entradas del registro de búsquedas escritas a disco")
+                .register(meterRegistry);
+        FunctionCounter.builder("busquedas.registro.descartadas", anillo, AnilloEventos::getDescartados)
+                .description("Entradas del registro de búsquedas descartadas con el anillo lleno")
+                .register(meterRegistry);
+        Gauge.builder("busquedas.registro.pendientes", anillo, AnilloEventos::pendientes)
+                .description("Entradas en el anillo sin escribir")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Origen de la búsqueda
+     */
+    public enum Tipo {
+        PRODUCTOS, CATEGORIAS, SEMANTICA, CLIC;
+
+        private final String nombre = name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Ranura del anillo: se reutiliza, sus campos se sobrescriben en cada vuelta
+     */
+    private static final class Entrada {
+        private Tipo tipo;
+        private long busquedaId;
+        private long instante;
+        private String usuario;
+        private String consulta;
+        private int resultados;
+        private long microsegundos;
+        private long resultadoId;
+    }
+
+    /**
+     * Registrar una búsqueda
+     *
+     * @param nanos duración de la búsqueda (System.nanoTime)
+     * @return id de la búsqueda, para asociarle el clic en un resultado
+     */
+    public long registrar(Tipo tipo, String usuario, String consulta, int resultados, long nanos) {
+        long busquedaId = siguienteId.incrementAndGet();
+        long secuencia = anillo.reclamar();
+        if (secuencia >= 0) {
+            Entrada entrada = anillo.ranura(secuencia);
+            entrada.tipo = tipo;
+            entrada.busquedaId = busquedaId;
+            entrada.instante = System.currentTimeMillis();
+            entrada.usuario = usuario;
+            entrada.consulta = consulta != null && consulta.length() > MAX_LONGITUD_CONSULTA
+                    ? consulta.substring(0, MAX_LONGITUD_CONSULTA) : consulta;
+            entrada.resultados = resultados;
+            entrada.microsegundos = nanos / 1000;
+            entrada.resultadoId = 0;
+            anillo.publicar(secuencia);
+        }
+        return busquedaId;
+    }
+
+    /**
+     * Registrar el clic en un resultado de una búsqueda registrada
+     */
+    public void registrarClic(long busquedaId, String usuario, long resultadoId) {
+        long secuencia = anillo.reclamar();
+        if (secuencia >= 0) {
+            Entrada entrada = anillo.ranura(secuencia);
+            entrada.tipo = Tipo.CLIC;
+            entrada.busquedaId = busquedaId;
+            entrada.instante = System.currentTimeMillis();
+            entrada.usuario = usuario;
+            entrada.consulta = null;
+            entrada.resultados = 0;
+            entrada.microsegundos = 0;
+            entrada.resultadoId = resultadoId;
+            anillo.publicar(secuencia);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void iniciar() {
+        if (consumidor != null) {
+            return;
+        }
+        activo = true;
+        consumidor = Thread.ofPlatform().daemon().name("registro-busquedas").start(this::consumir);
+        log.info("Registro de búsquedas en {} (anillo de {} entradas)", carpeta.toAbsolutePath(), anillo.getCapacidad());
+    }
+
+    /**
+     * Escribir lo pendiente y cerrar el archivo
+     */
+    @PreDestroy
+    public synchronized void detener() throws InterruptedException {
+        if (consumidor == null) {
+            return;
+        }
+        activo = false;
+        LockSupport.unpark(consumidor);
+        consumidor.join(TimeUnit.SECONDS.toMillis(10));
+        consumidor = null;
+    }
+
+    private void consumir() {
+        long esperaNanos = Math.min(intervaloEscrituraNanos, TimeUnit.MILLISECONDS.toNanos(100));
+        ultimaEscritura = System.nanoTime();
+        while (true) {
+            boolean seguir = activo;
+            int procesadas = 0;
+            try {
+                procesadas = anillo.drenar(this::escribir, LOTE);
+                escritas.increment(procesadas);
+                if (procesadas < LOTE && (!seguir || System.nanoTime() - ultimaEscritura >= intervaloEscrituraNanos)) {
+                    volcar();
+                }
+            } catch (RuntimeException e) {
+                log.error("No se pudo escribir el registro de búsquedas", e);
+                cerrarArchivo();
+                // Reintentar con otro archivo tras una pausa; mientras, el anillo descarta si se llena
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+            }
+            if (!seguir && anillo.pendientes() == 0) {
+                cerrarArchivo();
+                return;
+            }
+            if (procesadas == 0) {
+                LockSupport.parkNanos(esperaNanos);
+            }
+        }
+    }
+
+    private void escribir(Entrada entrada) {
+        try {
+            JsonGenerator json = archivoPara(entrada.instante).json;
+            json.writeStartObject();
+            json.writeStringField("ts", Instant.ofEpochMilli(entrada.instante).toString());
+            json.writeStringField("tipo", entrada.tipo.nombre);
+            json.writeNumberField("id", entrada.busquedaId);
+            if (entrada.usuario != null) {
+                json.writeStringField("usuario", entrada.usuario);
+            }
+            if (entrada.tipo == Tipo.CLIC) {
+                json.writeNumberField("resultado", entrada.resultadoId);
+            } else {
+                json.writeStringField("q", entrada.consulta);
+                json.writeNumberField("resultados", entrada.resultados);
+                json.writeNumberField("us", entrada.microsegundos);
+            }
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            // No retener textos de la ranura hasta la siguiente vuelta
+            entrada.usuario = null;
+            entrada.consulta = null;
+        }
+    }
+
+    /**
+     * Archivo del día de la entrada; abre otro si cambió el día o se llenó
+     */
+    private Archivo archivoPara(long instante) throws IOException {
+        LocalDate dia = Instant.ofEpochMilli(instante).atZone(zona).toLocalDate();
+        if (actual != null && (!actual.dia.equals(dia) || actual.bytes.escritos >= maxBytesArchivo)) {
+            cerrarArchivo();
+        }
+        if (actual == null) {
+            Files.createDirectories(carpeta);
+            actual = new Archivo(dia, carpeta.resolve(PREFIJO + dia + "-" + String.format("%03d", siguienteIndice(dia)) + EXTENSION));
+            borrarVencidos(dia);
+        }
+        return actual;
+    }
+
+    private void volcar() {
+        ultimaEscritura = System.nanoTime();
+        if (actual != null) {
+            try {
+                actual.json.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void cerrarArchivo() {
+        if (actual == null) {
+            return;
+        }
+        try {
+            actual.json.close();
+        } catch (IOException e) {
+            log.warn("No se pudo cerrar {}: {}", actual.ruta, e.getMessage());
+        }
+        actual = null;
+    }
+
+    /**
+     * Siguiente número de archivo del día (no se agrega a archivos de un arranque anterior)
+     */
+    private int siguienteIndice(LocalDate dia) throws IOException {
+        int mayor = 0;
+        String inicio = PREFIJO + dia + "-";
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(carpeta, inicio + "*" + EXTENSION)) {
+            for (Path ruta : archivos) {
+                String nombre = ruta.getFileName().toString();
+                try {
+                    mayor = Math.max(mayor, Integer.parseInt(nombre.substring(inicio.length(), nombre.length() - EXTENSION.length())));
+                } catch (NumberFormatException e) {
+                    // Archivo ajeno con el mismo prefijo
+                }
+            }
+        }
+        return mayor + 1;
+    }
+
+    private void borrarVencidos(LocalDate hoy) {
+        LocalDate limite = hoy.minusDays(diasRetencion);
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(carpeta, PREFIJO + "*" + EXTENSION)) {
+            for (Path ruta : archivos) {
+                String nombre = ruta.getFileName().toString();
+                try {
+                    LocalDate dia = LocalDate.parse(nombre.substring(PREFIJO.length(), PREFIJO.length() + 10));
+                    if (dia.isBefore(limite)) {
+                        Files.deleteIfExists(ruta);
+                    }
+                } catch (DateTimeParseException | IndexOutOfBoundsException e) {
+                    // Archivo ajeno con el mismo prefijo
+                }
+            }
+        } catch (IOException e) {
+            log.warn("No se pudieron borrar registros de búsquedas vencidos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Archivo abierto: JSON -> gzip (con vaciado sincronizado) -> conteo de bytes -> disco
+     */
+    private final class Archivo {
+        private final LocalDate dia;
+        private final Path ruta;
+        private final ContadorBytes bytes;
+        private final JsonGenerator json;
+
+        private Archivo(LocalDate dia, Path ruta) throws IOException {
+            this.dia = dia;
+            this.ruta = ruta;
+            this.bytes = new ContadorBytes(Files.newOutputStream(ruta));
+            this.json = jsonFactory.createGenerator(new GZIPOutputStream(bytes, 64 * 1024, true));
+            this.json.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        }
+    }
+
+    /**
+     * Bytes comprimidos escritos, para cambiar de archivo por tamaño
+     */
+    private static final class ContadorBytes extends FilterOutputStream {
+        private long escritos;
+
+        private ContadorBytes(OutputStream salida) {
+            super(salida);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            escritos++;
+        }
+
+        @Override
+        public void write(byte[] b, int desde, int longitud) throws IOException {
+            out.write(b, desde, longitud);
+            escritos += longitud;
+        }
+    }
+}
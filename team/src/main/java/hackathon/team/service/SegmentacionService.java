@@ -0,0 +1,341 @@
+package hackathon.team.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Segmentación de usuarios por categorías compradas
+ * Por cada categoría se guarda un bitmap (BitSet indexado por id de usuario) con los
+ * compradores de cada día de la ventana de retención y otro con los compradores de
+ * siempre. Una compra marca la categoría y todas sus ancestras, así el bitmap de una
+ * categoría cubre su subárbol. Una consulta como "Alimentos Y Combustibles pero no
+ * Tabaco en los últimos 30 días" se resuelve con OR de los días y AND/ANDNOT entre
+ * categorías, sin tocar la base de datos.
+ * El índice se carga al arrancar, se actualiza con cada TicketsCompletadosEvent y se
+ * reconstruye cada noche (tickets eliminados, cambios de jerarquía, días vencidos).
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class SegmentacionService {
+
+    private static final String SQL_CATEGORIAS = "SELECT id, categoria_padre_id FROM categoria";
+
+    private static final String SQL_HISTORICO =
+            "SELECT DISTINCT t.usuario_id, p.categoria_id FROM ticket t " +
+            "JOIN ticket_items i ON i.ticket_id = t.id " +
+            "JOIN productos p ON p.id = i.producto_id " +
+            "WHERE t.estado = 'completado'";
+
+    private static final String SQL_POR_DIA =
+            "SELECT DISTINCT t.usuario_id, CAST(t.fecha_hora AS date) AS dia, p.categoria_id FROM ticket t " +
+            "JOIN ticket_items i ON i.ticket_id = t.id " +
+            "JOIN productos p ON p.id = i.producto_id " +
+            "WHERE t.estado = 'completado' AND t.fecha_hora >= :desde";
+
+    private static final String SQL_TICKETS =
+            "SELECT DISTINCT t.usuario_id, CAST(t.fecha_hora AS date) AS dia, p.categoria_id FROM ticket t " +
+            "JOIN ticket_items i ON i.ticket_id = t.id " +
+            "JOIN productos p ON p.id = i.producto_id " +
+            "WHERE t.id IN (:ids) AND t.estado = 'completado'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final int diasRetencion;
+
+    // Lecturas concurrentes; las escrituras (eventos y cambio de índice) son exclusivas
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+    private Indice indice = new Indice(new HashMap<>());
+    // Compras recibidas mientras se reconstruye el índice, para aplicarlas al nuevo
+    private List<Compra> durante;
+
+    public SegmentacionService(JdbcTemplate jdbcTemplate,
+                               NamedParameterJdbcTemplate namedJdbcTemplate,
+                               @Value("${app.marketing.segmentos.dias-retencion:90}") int diasRetencion) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.diasRetencion = diasRetencion;
+    }
+
+    /**
+     * Consulta de segmento
+     *
+     * @param todas   categorías compradas todas (AND)
+     * @param alguna  al menos una de estas categorías (OR)
+     * @param ninguna ninguna de estas categorías (ANDNOT)
+     * @param dias    ventana en días hasta hoy; null para todo el historial
+     */
+    public record Consulta(List<Long> todas, List<Long> alguna, List<Long> ninguna, Integer dias) {
+    }
+
+    /**
+     * Resultado: total de usuarios y los primeros ids en orden ascendente
+     */
+    public record Segmento(int usuarios, List<Long> usuarioIds, long microsegundos) {
+    }
+
+    /**
+     * Usuario que compró en una categoría un día (dia null: fuera de la ventana)
+     */
+    private record Compra(long usuarioId, long categoriaId, LocalDate dia) {
+    }
+
+    /**
+     * Bitmaps de compradores por categoría (incluye su subárbol)
+     */
+    private static final class Indice {
+
+        // categoría -> la categoría y sus ancestras
+        private final Map<Long, long[]> ancestras;
+        private final Map<Long, BitSet> historico = new HashMap<>();
+        private final Map<Long, NavigableMap<Long, BitSet>> porDia = new HashMap<>();
+
+        private Indice(Map<Long, long[]> ancestras) {
+            this.ancestras = ancestras;
+        }
+
+        private void agregar(Compra compra, long primerDia) {
+            int usuario = Math.toIntExact(compra.usuarioId());
+            long[] categorias = ancestras.getOrDefault(compra.categoriaId(), new long[]{compra.categoriaId()});
+            for (long categoria : categorias) {
+                historico.computeIfAbsent(categoria, k -> new BitSet()).set(usuario);
+                if (compra.dia() != null && compra.dia().toEpochDay() >= primerDia) {
+                    porDia.computeIfAbsent(categoria, k -> new TreeMap<>())
+                            .computeIfAbsent(compra.dia().toEpochDay(), k -> new BitSet())
+                            .set(usuario);
+                }
+            }
+        }
+
+        /**
+         * Compradores de la categoría desde el día indicado (null: siempre); copia modificable
+         */
+        private BitSet compradores(long categoria, Long desde) {
+            if (desde == null) {
+                BitSet todos = historico.get(categoria);
+                return todos == null ? new BitSet() : (BitSet) todos.clone();
+            }
+            BitSet resultado = new BitSet();
+            NavigableMap<Long, BitSet> dias = porDia.get(categoria);
+            if (dias != null) {
+                for (BitSet dia : dias.tailMap(desde, true).values()) {
+                    resultado.or(dia);
+                }
+            }
+            return resultado;
+        }
+    }
+
+    /**
+     * Cargar el índice al arrancar
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        reconstruir();
+    }
+
+    /**
+     * Reconstruir desde la base de datos y descartar los días fuera de la ventana
+     */
+    @Scheduled(cron = "${app.marketing.segmentos.reconstruccion-cron:0 30 3 * * *}")
+    public synchronized void reconstruir() {
+        long inicio = System.nanoTime();
+        candado.writeLock().lock();
+        try {
+            durante = new ArrayList<>();
+        } finally {
+            candado.writeLock().unlock();
+        }
+
+        Indice nuevo;
+        long primerDia = primerDia();
+        try {
+            nuevo = new Indice(cargarAncestras());
+            jdbcTemplate.query(SQL_HISTORICO, rs -> {
+                nuevo.agregar(new Compra(rs.getLong("usuario_id"), rs.getLong("categoria_id"), null), primerDia);
+            });
+            namedJdbcTemplate.query(SQL_POR_DIA,
+                    new MapSqlParameterSource("desde", Timestamp.valueOf(LocalDate.ofEpochDay(primerDia).atStartOfDay())),
+                    rs -> {
+                        nuevo.agregar(new Compra(rs.getLong("usuario_id"), rs.getLong("categoria_id"),
+                                rs.getDate("dia").toLocalDate()), primerDia);
+                    });
+        } catch (RuntimeException e) {
+            log.error("No se pudo reconstruir el índice de segmentación", e);
+            candado.writeLock().lock();
+            try {
+                durante = null;
+            } finally {
+                candado.writeLock().unlock();
+            }
+            return;
+        }
+
+        candado.writeLock().lock();
+        try {
+            durante.forEach(compra -> nuevo.agregar(compra, primerDia));
+            durante = null;
+            indice = nuevo;
+        } finally {
+            candado.writeLock().unlock();
+        }
+        log.info("Índice de segmentación reconstruido: {} categorías en {} ms",
+                nuevo.historico.size(), (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Agregar las compras de los tickets recién completados
+     * El worker publica el evento después de confirmar su transacción
+     */
+    @EventListener
+    public void alCompletarTickets(TicketsCompletadosEvent evento) {
+        try {
+            List<Compra> compras = namedJdbcTemplate.query(SQL_TICKETS,
+                    new MapSqlParameterSource("ids", evento.ticketIds()),
+                    (rs, i) -> new Compra(rs.getLong("usuario_id"), rs.getLong("categoria_id"),
+                            rs.getDate("dia").toLocalDate()));
+            if (compras.isEmpty()) {
+                return;
+            }
+
+            Map<Long, long[]> jerarquia = null;
+            candado.readLock().lock();
+            try {
+                for (Compra compra : compras) {
+                    if (!indice.ancestras.containsKey(compra.categoriaId())) {
+                        // Categoría creada después de la última carga
+                        jerarquia = Map.of();
+                        break;
+                    }
+                }
+            } finally {
+                candado.readLock().unlock();
+            }
+            if (jerarquia != null) {
+                jerarquia = cargarAncestras();
+            }
+
+            long primerDia = primerDia();
+            candado.writeLock().lock();
+            try {
+                if (jerarquia != null) {
+                    indice.ancestras.clear();
+                    indice.ancestras.putAll(jerarquia);
+                }
+                for (Compra compra : compras) {
+                    indice.agregar(compra, primerDia);
+                    if (durante != null) {
+                        durante.add(compra);
+                    }
+                }
+            } finally {
+                candado.writeLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            log.error("No se pudieron agregar los tickets completados a la segmentación", e);
+        }
+    }
+
+    /**
+     * Evaluar un segmento
+     *
+     * @param limite máximo de ids a devolver
+     */
+    public Segmento evaluar(Consulta consulta, int limite) {
+        List<Long> todas = consulta.todas() == null ? List.of() : consulta.todas();
+        List<Long> alguna = consulta.alguna() == null ? List.of() : consulta.alguna();
+        List<Long> ninguna = consulta.ninguna() == null ? List.of() : consulta.ninguna();
+        if (todas.isEmpty() && alguna.isEmpty()) {
+            throw new IllegalArgumentException("Debe indicar al menos una categoría a incluir");
+        }
+        if (consulta.dias() != null && (consulta.dias() < 1 || consulta.dias() > diasRetencion)) {
+            throw new IllegalArgumentException("La ventana debe estar entre 1 y " + diasRetencion + " días");
+        }
+        Long desde = consulta.dias() == null ? null : LocalDate.now().toEpochDay() - consulta.dias() + 1;
+
+        long inicio = System.nanoTime();
+        BitSet resultado;
+        candado.readLock().lock();
+        try {
+            resultado = null;
+            for (Long categoria : todas) {
+                BitSet compradores = indice.compradores(categoria, desde);
+                if (resultado == null) {
+                    resultado = compradores;
+                } else {
+                    resultado.and(compradores);
+                }
+            }
+            if (!alguna.isEmpty()) {
+                BitSet union = new BitSet();
+                for (Long categoria : alguna) {
+                    union.or(indice.compradores(categoria, desde));
+                }
+                if (resultado == null) {
+                    resultado = union;
+                } else {
+                    resultado.and(union);
+                }
+            }
+            for (Long categoria : ninguna) {
+                resultado.andNot(indice.compradores(categoria, desde));
+            }
+        } finally {
+            candado.readLock().unlock();
+        }
+        long microsegundos = (System.nanoTime() - inicio) / 1_000;
+
+        List<Long> ids = new ArrayList<>(Math.min(limite, resultado.cardinality()));
+        for (int usuario = resultado.nextSetBit(0); usuario >= 0 && ids.size() < limite;
+             usuario = resultado.nextSetBit(usuario + 1)) {
+            ids.add((long) usuario);
+        }
+        return new Segmento(resultado.cardinality(), ids, microsegundos);
+    }
+
+    private long primerDia() {
+        return LocalDate.now().toEpochDay() - diasRetencion + 1;
+    }
+
+    /**
+     * Cadena de ancestras de cada categoría (con protección contra ciclos)
+     */
+    private Map<Long, long[]> cargarAncestras() {
+        Map<Long, Long> padres = new HashMap<>();
+        jdbcTemplate.query(SQL_CATEGORIAS, rs -> {
+            long padre = rs.getLong("categoria_padre_id");
+            padres.put(rs.getLong("id"), rs.wasNull() ? null : padre);
+        });
+
+        Map<Long, long[]> ancestras = new HashMap<>();
+        for (Long categoria : padres.keySet()) {
+            List<Long> cadena = new ArrayList<>();
+            Set<Long> vistas = new HashSet<>();
+            for (Long actual = categoria; actual != null && vistas.add(actual); actual = padres.get(actual)) {
+                cadena.add(actual);
+            }
+            ancestras.put(categoria, cadena.stream().mapToLong(Long::longValue).toArray());
+        }
+        return ancestras;
+    }
+}
@@ -0,0 +1,254 @@
+package hackathon.team.service;
+
+import hackathon.team.dao.ImagenAliasRepository;
+import hackathon.team.dao.ImagenBlobRepository;
+import hackathon.team.model.ImagenAlias;
+import hackathon.team.model.ImagenBlob;
+import hackathon.team.util.CacheLruConcurrente;
+import hackathon.team.util.TipoImagen;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Almacén de imágenes direccionado por contenido
+ * Cada imagen se guarda una sola vez bajo su SHA-256 en un árbol de dos niveles
+ * (uploads/ab/cd/abcd...). Los nombres de archivo públicos se resuelven con la
+ * tabla imagen_alias y el número de referencias se lleva en imagen_blob.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class ShardedTicketImageStore implements TicketImageStore {
+
+    private static final int CANDADOS = 64;
+    private static final int TAMANIO_BUFFER = 64 * 1024;
+
+    private final ImagenBlobRepository imagenBlobRepository;
+    private final ImagenAliasRepository imagenAliasRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Path raiz;
+    private final Object[] candados = new Object[CANDADOS];
+    private final CacheLruConcurrente<String, ImagenAlmacenada> cache = new CacheLruConcurrente<>(4096);
+
+    public ShardedTicketImageStore(ImagenBlobRepository imagenBlobRepository,
+                                   ImagenAliasRepository imagenAliasRepository,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${app.upload.dir:uploads}") String uploadDir) {
+        this.imagenBlobRepository = imagenBlobRepository;
+        this.imagenAliasRepository = imagenAliasRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.raiz = Paths.get(uploadDir);
+        for (int i = 0; i < CANDADOS; i++) {
+            candados[i] = new Object();
+        }
+    }
+
+    @Override
+    public ImagenAlmacenada guardar(String nombreArchivo, Path archivoTemporal, String sha256) throws IOException {
+        String digest = sha256 != null ? sha256 : calcularSha256(archivoTemporal);
+        String contentType = TipoImagen.detectar(archivoTemporal);
+        long tamanio = Files.size(archivoTemporal);
+        Path destino = rutaDe(digest);
+
+        // El candado por digest evita que una liberación concurrente borre el archivo recién guardado
+        synchronized (candadoDe(digest)) {
+            boolean existia = Files.exists(destino);
+            if (!existia) {
+                Files.createDirectories(destino.getParent());
+                Files.move(archivoTemporal, destino, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    // Idempotente: una finalización repetida tras un reinicio no suma otra referencia
+                    if (!imagenAliasRepository.existsById(nombreArchivo)) {
+                        imagenBlobRepository.agregarReferencia(digest, tamanio, contentType);
+                        imagenAliasRepository.save(new ImagenAlias(nombreArchivo, digest));
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Sin fila el contenido quedaría huérfano: devolverlo a su ubicación original
+                if (!existia) {
+                    try {
+                        Files.move(destino, archivoTemporal, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (IOException deshacer) {
+                        e.addSuppressed(deshacer);
+                    }
+                }
+                throw e;
+            }
+
+            if (existia) {
+                Files.deleteIfExists(archivoTemporal);
+                log.info("Imagen duplicada {}: se reutiliza el contenido {}", nombreArchivo, digest);
+            }
+        }
+
+        ImagenAlmacenada almacenada = new ImagenAlmacenada(digest, destino, contentType, tamanio);
+        cache.put(nombreArchivo, almacenada);
+        return almacenada;
+    }
+
+    @Override
+    public Optional<ImagenAlmacenada> buscar(String nombreArchivo) {
+        ImagenAlmacenada enCache = cache.get(nombreArchivo);
+        if (enCache != null) {
+            return Optional.of(enCache);
+        }
+        Optional<ImagenAlmacenada> encontrada = imagenAliasRepository.findById(nombreArchivo)
+                .flatMap(alias -> imagenBlobRepository.findById(alias.getSha256()))
+                .map(this::convertir);
+        encontrada.ifPresent(imagen -> cache.put(nombreArchivo, imagen));
+        return encontrada;
+    }
+
+    @Override
+    @Transactional
+    public void liberar(String nombreArchivo) {
+        cache.remove(nombreArchivo);
+        Optional<ImagenAlias> alias = imagenAliasRepository.findById(nombreArchivo);
+        if (alias.isEmpty()) {
+            return;
+        }
+        String digest = alias.get().getSha256();
+        imagenAliasRepository.delete(alias.get());
+        imagenBlobRepository.quitarReferencia(digest);
+        if (imagenBlobRepository.eliminarSinReferencias(digest) > 0) {
+            eliminarContenidoAlConfirmar(digest);
+        }
+    }
+
+    /**
+     * Migrar imágenes del directorio plano anterior (uploads/ticket_*.jpg) al almacén
+     * Se ejecuta en segundo plano; mientras tanto las imágenes se siguen sirviendo
+     * desde su ubicación anterior. Se guarda una copia y el original solo se borra con
+     * la fila ya confirmada, así un fallo o un reinicio a la mitad no pierde la imagen.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrarArchivosPlanos() {
+        Thread.ofVirtual().name("migracion-imagenes").start(() -> {
+            int migradas = 0;
+            try (DirectoryStream<Path> archivos = Files.newDirectoryStream(raiz, "ticket_*")) {
+                for (Path archivo : archivos) {
+                    if (Files.isRegularFile(archivo)) {
+                        try {
+                            migrar(archivo);
+                            migradas++;
+                        } catch (IOException | RuntimeException e) {
+                            log.error("No se pudo migrar la imagen {} al almacén por contenido", archivo.getFileName(), e);
+                        }
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Error al migrar imágenes al almacén por contenido", e);
+            }
+            if (migradas > 0) {
+                log.info("Imágenes migradas al almacén por contenido: {}", migradas);
+            }
+        });
+    }
+
+    /**
+     * Copiar, registrar la copia y después borrar el original
+     */
+    private void migrar(Path archivo) throws IOException {
+        Path copia = Files.createTempFile(raiz, "migracion_", ".tmp");
+        try {
+            Files.copy(archivo, copia, StandardCopyOption.REPLACE_EXISTING);
+            guardar(archivo.getFileName().toString(), copia, null);
+            Files.delete(archivo);
+        } finally {
+            Files.deleteIfExists(copia);
+        }
+    }
+
+    /**
+     * Ruta del contenido: uploads/ab/cd/abcd...
+     */
+    private Path rutaDe(String sha256) {
+        return raiz.resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4)).resolve(sha256);
+    }
+
+    private Object candadoDe(String sha256) {
+        return candados[Integer.parseInt(sha256.substring(0, 2), 16) % CANDADOS];
+    }
+
+    private ImagenAlmacenada convertir(ImagenBlob blob) {
+        return new ImagenAlmacenada(blob.getSha256(), rutaDe(blob.getSha256()), blob.getContentType(), blob.getTamanio());
+    }
+
+    /**
+     * Borrar el archivo cuando la transacción se confirme, si nadie volvió a referenciarlo
+     */
+    private void eliminarContenidoAlConfirmar(String sha256) {
+        Runnable eliminar = () -> {
+            synchronized (candadoDe(sha256)) {
+                if (imagenBlobRepository.existsById(sha256)) {
+                    return;
+                }
+                try {
+                    Path ruta = rutaDe(sha256);
+                    Files.deleteIfExists(ruta);
+                    for (VarianteImagenService.Tamanio tamanio : VarianteImagenService.Tamanio.values()) {
+                        Files.deleteIfExists(VarianteImagenService.rutaVariante(ruta, tamanio));
+                    }
+                    log.info("Contenido de imagen eliminado: {}", sha256);
+                } catch (IOException e) {
+                    log.warn("No se pudo eliminar el contenido de imagen: {}", sha256, e);
+                }
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eliminar.run();
+                }
+            });
+        } else {
+            eliminar.run();
+        }
+    }
+
+    /**
+     * Calcular el SHA-256 de un archivo leyéndolo por bloques
+     */
+    static String calcularSha256(Path archivo) throws IOException {
+        MessageDigest digest = nuevoDigest();
+        try (InputStream entrada = new DigestInputStream(Files.newInputStream(archivo), digest)) {
+            byte[] buffer = new byte[TAMANIO_BUFFER];
+            while (entrada.read(buffer) != -1) {
+                // el digest se actualiza al leer
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    static MessageDigest nuevoDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
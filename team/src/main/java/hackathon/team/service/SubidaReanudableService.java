@@ -0,0 +1,279 @@
+package hackathon.team.service;
+
+import hackathon.team.util.TipoImagen;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Subidas reanudables de imágenes de tickets por fragmentos
+ * El cliente crea la subida indicando el tamaño total, envía fragmentos con su offset
+ * y, si la conexión se corta, consulta el offset confirmado y continúa desde ahí.
+ * Cada fragmento se escribe directo al archivo preasignado con un buffer fijo,
+ * así la memoria por subida no depende del tamaño de la imagen.
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class SubidaReanudableService {
+
+    private static final int TAMANIO_BUFFER = 64 * 1024;
+    private static final String DIRECTORIO_SUBIDAS = ".staging/subidas";
+    private static final String EXTENSION_SUBIDA = ".subida";
+    private static final Duration VIGENCIA = Duration.ofHours(24);
+
+    private final Path directorio;
+    private final long tamanioMaximo;
+    private final Map<String, Subida> subidas = new ConcurrentHashMap<>();
+
+    public SubidaReanudableService(@Value("${app.upload.dir:uploads}") String uploadDir,
+                                   @Value("${app.upload.reanudable.max-tamanio:50MB}") DataSize tamanioMaximo) {
+        this.directorio = Paths.get(uploadDir).resolve(DIRECTORIO_SUBIDAS);
+        this.tamanioMaximo = tamanioMaximo.toBytes();
+    }
+
+    /**
+     * Estado visible de una subida
+     */
+    public record EstadoSubida(String id, long offset, long tamanio, boolean completa) {
+    }
+
+    /**
+     * Subida terminada lista para adjuntarse a un ticket
+     */
+    public record SubidaCompleta(Path ruta, String extension, long tamanio, String sha256) {
+    }
+
+    /**
+     * El offset enviado por el cliente no coincide con el confirmado en el servidor
+     */
+    public static class OffsetInvalidoException extends RuntimeException {
+        private final long offsetActual;
+
+        public OffsetInvalidoException(long offsetActual) {
+            super("El offset no coincide con el de la subida: " + offsetActual);
+            this.offsetActual = offsetActual;
+        }
+
+        public long getOffsetActual() {
+            return offsetActual;
+        }
+    }
+
+    /**
+     * Estado interno; los campos mutables solo se tocan con el candado tomado
+     */
+    private static final class Subida {
+        private final String id;
+        private final String propietario;
+        private final Path ruta;
+        private final long tamanio;
+        private final String extension;
+        private final ReentrantLock candado = new ReentrantLock();
+        private final MessageDigest digest = ShardedTicketImageStore.nuevoDigest();
+        private volatile long offset;
+        private volatile Instant ultimaActividad = Instant.now();
+
+        private Subida(String id, String propietario, Path ruta, long tamanio, String extension) {
+            this.id = id;
+            this.propietario = propietario;
+            this.ruta = ruta;
+            this.tamanio = tamanio;
+            this.extension = extension;
+        }
+    }
+
+    /**
+     * Limpiar subidas de una ejecución anterior: su estado solo vive en memoria
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            Files.createDirectories(directorio);
+            try (DirectoryStream<Path> restos = Files.newDirectoryStream(directorio, "*" + EXTENSION_SUBIDA)) {
+                for (Path resto : restos) {
+                    Files.deleteIfExists(resto);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error al preparar el directorio de subidas reanudables", e);
+            throw new RuntimeException("No se pudo inicializar el directorio de subidas", e);
+        }
+    }
+
+    /**
+     * Crear una subida y preasignar el archivo completo en disco
+     */
+    public EstadoSubida crear(String propietario, long tamanio, String nombreOriginal) throws IOException {
+        if (tamanio <= 0) {
+            throw new IllegalArgumentException("El tamaño de la subida debe ser mayor a 0");
+        }
+        if (tamanio > tamanioMaximo) {
+            throw new IllegalArgumentException("El tamaño de la imagen no debe exceder " + DataSize.ofBytes(tamanioMaximo).toMegabytes() + "MB");
+        }
+        eliminarVencidas();
+
+        String id = UUID.randomUUID().toString();
+        Path ruta = directorio.resolve(id + EXTENSION_SUBIDA);
+        try (RandomAccessFile archivo = new RandomAccessFile(ruta.toFile(), "rw")) {
+            archivo.setLength(tamanio);
+        }
+        subidas.put(id, new Subida(id, propietario, ruta, tamanio, obtenerExtension(nombreOriginal)));
+        log.info("Subida reanudable creada: {} ({} bytes)", id, tamanio);
+        return new EstadoSubida(id, 0, tamanio, false);
+    }
+
+    /**
+     * Estado de una subida (offset confirmado)
+     */
+    public EstadoSubida estado(String id, String propietario) {
+        Subida subida = obtener(id, propietario);
+        subida.candado.lock();
+        try {
+            return estadoDe(subida);
+        } finally {
+            subida.candado.unlock();
+        }
+    }
+
+    /**
+     * Escribir un fragmento a partir del offset indicado
+     * Si la conexión se corta a mitad del fragmento, lo ya escrito queda confirmado
+     */
+    public EstadoSubida escribir(String id, String propietario, long offset, InputStream cuerpo) throws IOException {
+        Subida subida = obtener(id, propietario);
+        if (!subida.candado.tryLock()) {
+            throw new OffsetInvalidoException(subida.offset);
+        }
+        try {
+            if (offset != subida.offset) {
+                throw new OffsetInvalidoException(subida.offset);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(TAMANIO_BUFFER);
+            try (FileChannel canal = FileChannel.open(subida.ruta, StandardOpenOption.WRITE)) {
+                int leidos;
+                while ((leidos = cuerpo.read(buffer.array(), 0, buffer.capacity())) != -1) {
+                    if (subida.offset + leidos > subida.tamanio) {
+                        throw new IllegalArgumentException("El fragmento excede el tamaño declarado de la subida");
+                    }
+                    buffer.clear().limit(leidos);
+                    long posicion = subida.offset;
+                    while (buffer.hasRemaining()) {
+                        posicion += canal.write(buffer, posicion);
+                    }
+                    subida.digest.update(buffer.array(), 0, leidos);
+                    subida.offset = posicion;
+                    subida.ultimaActividad = Instant.now();
+                }
+            }
+            if (subida.offset == subida.tamanio) {
+                validarImagen(subida);
+            }
+            return estadoDe(subida);
+        } finally {
+            subida.candado.unlock();
+        }
+    }
+
+    /**
+     * Tomar una subida completa para adjuntarla a un ticket
+     * La subida deja de existir: el archivo pasa a manos de quien la toma
+     */
+    public SubidaCompleta tomar(String id, String propietario) {
+        Subida subida = obtener(id, propietario);
+        subida.candado.lock();
+        try {
+            if (subida.offset != subida.tamanio) {
+                throw new RuntimeException("La subida de la imagen no está completa");
+            }
+            subidas.remove(id);
+            String sha256 = HexFormat.of().formatHex(subida.digest.digest());
+            return new SubidaCompleta(subida.ruta, subida.extension, subida.tamanio, sha256);
+        } finally {
+            subida.candado.unlock();
+        }
+    }
+
+    /**
+     * Cancelar una subida y borrar su archivo
+     */
+    public void cancelar(String id, String propietario) {
+        Subida subida = obtener(id, propietario);
+        descartar(subida);
+    }
+
+    private Subida obtener(String id, String propietario) {
+        Subida subida = id != null ? subidas.get(id) : null;
+        if (subida == null || !Objects.equals(subida.propietario, propietario)) {
+            throw new RuntimeException("Subida no encontrada: " + id);
+        }
+        return subida;
+    }
+
+    private EstadoSubida estadoDe(Subida subida) {
+        return new EstadoSubida(subida.id, subida.offset, subida.tamanio, subida.offset == subida.tamanio);
+    }
+
+    /**
+     * La subida completa debe ser una imagen soportada; si no, se descarta
+     */
+    private void validarImagen(Subida subida) throws IOException {
+        if (!TipoImagen.detectar(subida.ruta).startsWith("image/")) {
+            descartar(subida);
+            throw new IllegalArgumentException("El archivo debe ser una imagen (JPG, PNG, GIF, WEBP)");
+        }
+    }
+
+    private void descartar(Subida subida) {
+        subidas.remove(subida.id);
+        try {
+            Files.deleteIfExists(subida.ruta);
+        } catch (IOException e) {
+            log.warn("No se pudo eliminar la subida: {}", subida.ruta, e);
+        }
+    }
+
+    /**
+     * Eliminar subidas abandonadas
+     */
+    private void eliminarVencidas() {
+        Instant limite = Instant.now().minus(VIGENCIA);
+        subidas.values().stream()
+                .filter(subida -> subida.ultimaActividad.isBefore(limite))
+                .toList()
+                .forEach(subida -> {
+                    log.info("Subida reanudable vencida: {}", subida.id);
+                    descartar(subida);
+                });
+    }
+
+    private String obtenerExtension(String nombreArchivo) {
+        if (nombreArchivo == null || !nombreArchivo.contains(".")) {
+            return ".jpg";
+        }
+        String extension = nombreArchivo.substring(nombreArchivo.lastIndexOf(".")).toLowerCase();
+        return extension.matches("\\.[a-z0-9]{1,5}") ? extension : ".jpg";
+    }
+}
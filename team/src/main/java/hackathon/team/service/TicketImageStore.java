@@ -0,0 +1,38 @@
+package hackathon.team.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Almacén de imágenes de tickets
+ * Las imágenes se identifican por un nombre de archivo público (el usado en
+ * /tickets/imagen/{nombreArchivo}) que apunta a un contenido almacenado.
+ * Conector Semántico - OneCard
+ */
+public interface TicketImageStore {
+
+    /**
+     * Imagen almacenada: contenido, ubicación y metadatos
+     */
+    record ImagenAlmacenada(String sha256, Path ruta, String contentType, long tamanio) {
+    }
+
+    /**
+     * Guardar el archivo temporal bajo el nombre indicado
+     * El archivo temporal se mueve o se elimina (si el contenido ya existía)
+     *
+     * @param sha256 digest calculado durante la copia, o null para calcularlo aquí
+     */
+    ImagenAlmacenada guardar(String nombreArchivo, Path archivoTemporal, String sha256) throws IOException;
+
+    /**
+     * Buscar una imagen por su nombre de archivo público
+     */
+    Optional<ImagenAlmacenada> buscar(String nombreArchivo);
+
+    /**
+     * Liberar el nombre de archivo; el contenido se elimina al quedar sin referencias
+     */
+    void liberar(String nombreArchivo);
+}
@@ -9,7 +9,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.Year;
 import java.util.List;
 
 /**
@@ -23,34 +22,21 @@ public class TicketService {
     @Autowired
     private TicketRepository ticketRepository;
 
+    @Autowired
+    private NumeroTicketService numeroTicketService;
+
+    @Autowired
+    private TicketImageStore ticketImageStore;
+
+    @Autowired
+    private DuplicadoTicketService duplicadoTicketService;
+
     /**
      * Generar número de ticket único
      * Formato: TICKET-2024-000001
      */
     public String generarNumeroTicket() {
-        int anioActual = Year.now().getValue();
-        String prefijo = "TICKET-" + anioActual + "-";
-        
-        // Obtener los últimos tickets del año
-        List<String> ultimosTickets = ticketRepository.findTicketsPorPrefijo(prefijo + "%");
-        
-        int siguienteNumero = 1;
-        
-        if (!ultimosTickets.isEmpty()) {
-            String ultimoTicket = ultimosTickets.get(0);
-            // Extraer el número del ticket (últimos 6 dígitos)
-            try {
-                String numeroStr = ultimoTicket.substring(ultimoTicket.lastIndexOf("-") + 1);
-                int ultimoNumero = Integer.parseInt(numeroStr);
-                siguienteNumero = ultimoNumero + 1;
-            } catch (Exception e) {
-                // Si hay error en el parsing, empezar desde 1
-                siguienteNumero = 1;
-            }
-        }
-        
-        // Formatear con 6 dígitos con ceros a la izquierda
-        return prefijo + String.format("%06d", siguienteNumero);
+        return numeroTicketService.siguienteNumero();
     }
 
     /**
@@ -159,6 +145,13 @@ public class TicketService {
      * Eliminar ticket
      */
     public void eliminar(Long id) {
-        ticketRepository.deleteById(id);
+        ticketRepository.findById(id).ifPresent(ticket -> {
+            ticketRepository.delete(ticket);
+            duplicadoTicketService.quitar(ticket);
+            // Liberar la imagen: el contenido se borra al quedar sin referencias
+            if (ticket.getImagenTicket() != null) {
+                ticketImageStore.liberar(ticket.getImagenTicket());
+            }
+        });
     }
 }
\ No newline at end of file
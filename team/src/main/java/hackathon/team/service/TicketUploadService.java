@@ -3,24 +3,16 @@ package hackathon.team.service;
 import hackathon.team.dtos.TicketUploadDTO;
 import hackathon.team.model.*;
 import hackathon.team.dao.*;
-import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.UUID;
 import java.util.Optional;
 
 /**
@@ -34,67 +26,92 @@ public class TicketUploadService {
 
     private final TicketRepository ticketRepository;
     private final UsuarioRepository usuarioRepository;
-    private final ProductoRepository productoRepository;
-    private final CategoriaRepository categoriaRepository;
-
-    @Value("${app.upload.dir:uploads}")
-    private String uploadDir;
-
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
-
-    /**
-     * Verificar y crear directorio de uploads si no existe
-     */
-    @PostConstruct
-    public void init() {
-        try {
-            Path uploadPath = Paths.get(uploadDir);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-                log.info("Directorio de uploads creado: {}", uploadPath.toAbsolutePath());
-            } else {
-                log.info("Directorio de uploads encontrado: {}", uploadPath.toAbsolutePath());
-            }
-        } catch (IOException e) {
-            log.error("Error al crear directorio de uploads", e);
-            throw new RuntimeException("No se pudo inicializar el directorio de uploads", e);
-        }
-    }
+    private final ProductoResolverService productoResolverService;
+    private final NumeroTicketService numeroTicketService;
+    private final PrecioProductoService precioProductoService;
+    private final HistorialPrecioService historialPrecioService;
+    private final MetricasUsoService metricasUsoService;
+    private final PoliticaGastoService politicaGastoService;
+
+    private final IngestaImagenService ingestaImagenService;
+    private final SubidaReanudableService subidaReanudableService;
+    private final DuplicadoTicketService duplicadoTicketService;
+    private final TransactionTemplate transactionTemplate;
 
     /**
      * Obtener todos los tickets ordenados por fecha (más recientes primero)
      */
     public List<Ticket> obtenerTodosLosTickets() {
-        return ticketRepository.findAll().stream()
-                .sorted((t1, t2) -> t2.getFechaHora().compareTo(t1.getFechaHora()))
-                .toList();
+        return ticketRepository.findParaLista();
     }
 
     /**
-     * Obtener ticket por ID
+     * Obtener ticket por ID con sus items, productos y categorías
      */
     public Optional<Ticket> obtenerTicketPorId(Long id) {
-        return ticketRepository.findById(id);
+        return ticketRepository.findDetalleById(id);
     }
 
     /**
      * Guardar ticket con imagen y productos
+     * La imagen se copia antes de abrir la transacción y se finaliza después del commit,
+     * así la conexión a la base de datos solo se ocupa mientras se insertan las filas.
+     * La imagen llega en el formulario o como subida reanudable (dto.subidaId) del propietario.
      */
-    @Transactional
-    public Ticket guardarTicket(TicketUploadDTO dto) throws IOException {
+    public Ticket guardarTicket(TicketUploadDTO dto, String propietario) throws IOException {
         log.info("Guardando ticket con imagen y {} productos", dto.getProductos().size());
 
+        // Etapa 1: imagen al área temporal (sin transacción)
+        IngestaImagenService.ImagenPreparada imagen = tieneSubida(dto)
+                ? ingestaImagenService.prepararSubida(subidaReanudableService.tomar(dto.getSubidaId(), propietario))
+                : ingestaImagenService.prepararImagen(dto.getImagenTicket());
+
+        // Etapa 2: filas del ticket en una transacción corta
+        Ticket guardado;
+        try {
+            guardado = ingestaImagenService.timerEtapa("persistencia")
+                    .record(() -> transactionTemplate.execute(status -> persistirTicket(dto, imagen.nombreArchivo(), null)));
+        } catch (RuntimeException e) {
+            ingestaImagenService.descartar(imagen);
+            throw e;
+        }
+
+        // Etapa 3: mover la imagen a su ubicación definitiva en segundo plano
+        ingestaImagenService.finalizar(imagen);
+
+        // Buscar posibles duplicados por hash perceptual (en segundo plano)
+        duplicadoTicketService.analizarEnSegundoPlano(guardado);
+
+        // Agregar los precios al historial por producto y a las métricas de uso
+        historialPrecioService.registrar(guardado);
+        metricasUsoService.registrarTicket(guardado);
+
+        return guardado;
+    }
+
+    /**
+     * Guardar un ticket leído de una factura CFDI (sin imagen)
+     * El UUID del timbre es único: la misma factura guardada dos veces falla con
+     * DataIntegrityViolationException.
+     */
+    public Ticket guardarTicketCfdi(TicketUploadDTO dto, String cfdiUuid) {
+        Ticket guardado = transactionTemplate.execute(status -> persistirTicket(dto, null, cfdiUuid));
+        historialPrecioService.registrar(guardado);
+        metricasUsoService.registrarTicket(guardado);
+        return guardado;
+    }
+
+    /**
+     * Crear el ticket y sus items (debe ejecutarse dentro de una transacción)
+     */
+    private Ticket persistirTicket(TicketUploadDTO dto, String nombreImagen, String cfdiUuid) {
         // Validar usuario
         Usuario usuario = usuarioRepository.findById(dto.getUsuarioId())
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + dto.getUsuarioId()));
 
-        // Guardar imagen
-        String rutaImagen = guardarImagen(dto.getImagenTicket());
-        log.info("Imagen guardada en: {}", rutaImagen);
-
         // Crear ticket
         Ticket ticket = new Ticket();
-        ticket.setNumeroTicket(generarNumeroTicket());
+        ticket.setNumeroTicket(numeroTicketService.siguienteNumero());
         ticket.setUsuario(usuario);
         ticket.setTotal(dto.getTotal());
         ticket.setSubtotal(dto.getSubtotal() != null ? dto.getSubtotal() : dto.getTotal());
@@ -104,16 +121,19 @@ public class TicketUploadService {
         ticket.setObservaciones(dto.getObservaciones());
         ticket.setEstado("pendiente_clasificacion");
 
-        ticket.setImagenTicket(rutaImagen); 
+        ticket.setImagenTicket(nombreImagen);
+        ticket.setCfdiUuid(cfdiUuid);
+
+        // Resolver todos los productos del ticket en una sola pasada
+        List<Producto> productos = productoResolverService.resolver(dto.getProductos());
 
         // Agregar productos
-        for (TicketUploadDTO.ProductoTicketDTO productoDTO : dto.getProductos()) {
-            // Buscar o crear producto
-            Producto producto = buscarOCrearProducto(productoDTO);
+        for (int i = 0; i < dto.getProductos().size(); i++) {
+            TicketUploadDTO.ProductoTicketDTO productoDTO = dto.getProductos().get(i);
 
             // Crear item del ticket
             TicketItem item = new TicketItem();
-            item.setProducto(producto);
+            item.setProducto(productos.get(i));
             item.setCantidad(productoDTO.getCantidad());
             item.setPrecioUnitario(productoDTO.getPrecioUnitario());
             item.setDescuento(productoDTO.getDescuento() != null ? productoDTO.getDescuento() : BigDecimal.ZERO);
@@ -122,109 +142,46 @@ public class TicketUploadService {
             ticket.agregarItem(item);
         }
 
+        // Marcar precios atípicos y actualizar las estadísticas de precio de cada producto
+        precioProductoService.registrar(ticket.getItems());
+
         // Guardar en base de datos
         Ticket guardado = ticketRepository.save(ticket);
         log.info("Ticket guardado exitosamente con ID: {} y número: {}", guardado.getId(), guardado.getNumeroTicket());
 
-        return guardado;
-    }
-
-    /**
-     * Guardar imagen en el sistema de archivos
-     */
-    private String guardarImagen(MultipartFile archivo) throws IOException {
-        // Crear directorio si no existe
-        Path uploadPath = Paths.get(uploadDir);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-            log.info("Directorio de uploads creado: {}", uploadPath.toAbsolutePath());
-        }
-
-        // Generar nombre único para el archivo
-        String timestamp = LocalDateTime.now().format(FORMATTER);
-        String extension = obtenerExtension(archivo.getOriginalFilename());
-        String nombreArchivo = "ticket_" + timestamp + "_" + UUID.randomUUID().toString().substring(0, 8) + extension;
-
-        // Guardar archivo
-        Path rutaDestino = uploadPath.resolve(nombreArchivo);
-        Files.copy(archivo.getInputStream(), rutaDestino, StandardCopyOption.REPLACE_EXISTING);
+        // Políticas de gasto: límites del usuario, categorías prohibidas y topes por item
+        politicaGastoService.evaluar(guardado);
 
-        log.info("Archivo guardado: {} (tamaño: {} bytes)", nombreArchivo, archivo.getSize());
-
-        return nombreArchivo;
+        return guardado;
     }
 
     /**
-     * Buscar o crear producto basado en el DTO
+     * Obtener ruta completa de la imagen
      */
-    private Producto buscarOCrearProducto(TicketUploadDTO.ProductoTicketDTO productoDTO) {
-        // Intentar buscar producto existente
-        String nombreCompleto = productoDTO.getNombreProducto() + 
-                               (productoDTO.getMarca() != null ? " - " + productoDTO.getMarca() : "");
-
-        List<Producto> productosExistentes = productoRepository.findByNombreIgnoreCase(nombreCompleto);
-        
-        Producto producto = null;
-        if (productosExistentes != null && !productosExistentes.isEmpty()) {
-            producto = productosExistentes.get(0);
-            log.info("Producto encontrado: {}", nombreCompleto);
-        }
-
-        if (producto == null) {
-            log.info("Creando nuevo producto: {}", nombreCompleto);
-
-            // Crear nuevo producto
-            producto = new Producto();
-            producto.setNombre(productoDTO.getNombreProducto());
-            producto.setMarca(productoDTO.getMarca());
-            producto.setPrecioReferencia(productoDTO.getPrecioUnitario());
-            producto.setActivo(true);
-
-            // Asignar categoría si se especificó
-            if (productoDTO.getCategoriaId() != null) {
-                Categoria categoria = categoriaRepository.findById(productoDTO.getCategoriaId())
-                        .orElseThrow(() -> new RuntimeException("Categoría no encontrada"));
-                producto.setCategoria(categoria);
-            } else {
-                // Asignar categoría por defecto o "Sin clasificar"
-                Categoria categoriaDefault = categoriaRepository.findByNombreIgnoreCase("Sin Clasificar")
-                        .orElseGet(() -> {
-                            Categoria nueva = new Categoria("Sin Clasificar", "sin clasificar, general, otros");
-                            return categoriaRepository.save(nueva);
-                        });
-                producto.setCategoria(categoriaDefault);
-            }
-
-            producto = productoRepository.save(producto);
-        }
-
-        return producto;
+    public Path obtenerRutaImagen(String nombreArchivo) {
+        return ingestaImagenService.obtenerRutaImagen(nombreArchivo);
     }
 
     /**
-     * Generar número único de ticket
+     * Obtener imagen con sus metadatos (contenido, tipo y tamaño)
      */
-    private String generarNumeroTicket() {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-        String random = UUID.randomUUID().toString().substring(0, 6).toUpperCase();
-        return "TKT-" + timestamp + "-" + random;
+    public Optional<TicketImageStore.ImagenAlmacenada> obtenerImagen(String nombreArchivo) {
+        return ingestaImagenService.obtenerImagen(nombreArchivo);
     }
 
     /**
-     * Obtener extensión del archivo
+     * Obtener una variante redimensionada de la imagen (miniatura o mediana)
      */
-    private String obtenerExtension(String nombreArchivo) {
-        if (nombreArchivo == null || !nombreArchivo.contains(".")) {
-            return ".jpg";
-        }
-        return nombreArchivo.substring(nombreArchivo.lastIndexOf("."));
+    public Optional<TicketImageStore.ImagenAlmacenada> obtenerVariante(String nombreArchivo,
+                                                                       VarianteImagenService.Tamanio tamanio) {
+        return ingestaImagenService.obtenerVariante(nombreArchivo, tamanio);
     }
 
     /**
-     * Obtener ruta completa de la imagen
+     * El ticket trae una subida reanudable en lugar del archivo del formulario
      */
-    public Path obtenerRutaImagen(String nombreArchivo) {
-        return Paths.get(uploadDir).resolve(nombreArchivo);
+    public boolean tieneSubida(TicketUploadDTO dto) {
+        return dto.getSubidaId() != null && !dto.getSubidaId().isBlank();
     }
 
     /**
@@ -0,0 +1,12 @@
+package hackathon.team.service;
+
+import java.util.List;
+
+/**
+ * Tickets que pasaron a 'completado' (publicado después de confirmar la transacción)
+ * Se entrega en el hilo del worker: cada listener captura y registra sus errores para no
+ * detener al worker ni a los demás; su índice se pone al día en la siguiente carga completa.
+ * Conector Semántico - OneCard
+ */
+public record TicketsCompletadosEvent(List<Long> ticketIds) {
+}
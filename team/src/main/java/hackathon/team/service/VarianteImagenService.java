@@ -0,0 +1,192 @@
+package hackathon.team.service;
+
+import hackathon.team.util.DecodificadorImagen;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Variantes redimensionadas de las imágenes de tickets (miniatura y mediana)
+ * Se generan en segundo plano al subir el ticket, o bajo demanda para imágenes
+ * anteriores, y se guardan junto al original (original.thumb.jpg, original.medium.jpg).
+ * Conector Semántico - OneCard
+ */
+@Service
+@Slf4j
+public class VarianteImagenService {
+
+    private static final float CALIDAD_JPEG = 0.82f;
+
+    private final Semaphore decodificaciones;
+    private final ThreadPoolExecutor executor;
+
+    public VarianteImagenService(@Value("${app.upload.variantes.max-decodificaciones:2}") int maxDecodificaciones,
+                                 @Value("${app.upload.variantes.cola:200}") int tamanioCola) {
+        this.decodificaciones = new Semaphore(maxDecodificaciones);
+        // Si la cola se llena la variante se descarta: se generará bajo demanda al pedirla
+        this.executor = new ThreadPoolExecutor(maxDecodificaciones, maxDecodificaciones, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(tamanioCola),
+                runnable -> {
+                    Thread hilo = new Thread(runnable, "variantes-imagen");
+                    hilo.setDaemon(true);
+                    return hilo;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Tamaños disponibles (lado mayor en píxeles)
+     */
+    public enum Tamanio {
+        THUMB(240),
+        MEDIUM(960);
+
+        private final int ladoMayor;
+
+        Tamanio(int ladoMayor) {
+            this.ladoMayor = ladoMayor;
+        }
+
+        public int getLadoMayor() {
+            return ladoMayor;
+        }
+
+        /**
+         * Tamaño a partir del parámetro ?size= (thumb, medium); vacío si no aplica
+         */
+        public static Optional<Tamanio> desdeParametro(String valor) {
+            if (valor == null || valor.isBlank()) {
+                return Optional.empty();
+            }
+            for (Tamanio tamanio : values()) {
+                if (tamanio.name().equalsIgnoreCase(valor.trim())) {
+                    return Optional.of(tamanio);
+                }
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Generar todas las variantes en segundo plano
+     */
+    public void generarEnSegundoPlano(Path original) {
+        executor.execute(() -> {
+            for (Tamanio tamanio : Tamanio.values()) {
+                try {
+                    obtenerVariante(original, tamanio);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("No se pudo generar la variante {} de {}", tamanio, original, e);
+                    return;
+                }
+            }
+        });
+    }
+
+    /**
+     * Ruta de la variante, generándola si aún no existe
+     * Devuelve el original si la imagen ya es más pequeña que la variante o no se puede decodificar
+     */
+    public Path obtenerVariante(Path original, Tamanio tamanio) throws IOException {
+        Path variante = rutaVariante(original, tamanio);
+        if (Files.exists(variante)) {
+            return variante;
+        }
+        // Una imagen que ya cabe en la variante se sirve tal cual: re-codificarla solo la degrada
+        int ladoMayor = DecodificadorImagen.ladoMayor(original);
+        if (ladoMayor <= tamanio.getLadoMayor()) {
+            return original;
+        }
+
+        decodificaciones.acquireUninterruptibly();
+        try {
+            // Otro hilo pudo generarla mientras esperábamos
+            if (Files.exists(variante)) {
+                return variante;
+            }
+            BufferedImage imagen = DecodificadorImagen.leer(original, tamanio.getLadoMayor());
+            if (imagen == null) {
+                return original;
+            }
+            BufferedImage redimensionada = redimensionar(imagen, tamanio.getLadoMayor());
+            escribirJpeg(redimensionada, variante);
+            log.debug("Variante {} generada: {}", tamanio, variante);
+            return variante;
+        } finally {
+            decodificaciones.release();
+        }
+    }
+
+    /**
+     * Ruta de una variante junto al original
+     */
+    public static Path rutaVariante(Path original, Tamanio tamanio) {
+        return original.resolveSibling(original.getFileName() + "." + tamanio.name().toLowerCase(Locale.ROOT) + ".jpg");
+    }
+
+    @PreDestroy
+    public void detener() {
+        executor.shutdownNow();
+    }
+
+    private static BufferedImage redimensionar(BufferedImage imagen, int ladoMayor) {
+        int ancho = imagen.getWidth();
+        int alto = imagen.getHeight();
+        double escala = Math.min(1.0, (double) ladoMayor / Math.max(ancho, alto));
+        int nuevoAncho = Math.max(1, (int) Math.round(ancho * escala));
+        int nuevoAlto = Math.max(1, (int) Math.round(alto * escala));
+
+        // JPEG no tiene transparencia: se pinta sobre fondo blanco
+        BufferedImage destino = new BufferedImage(nuevoAncho, nuevoAlto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = destino.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, nuevoAncho, nuevoAlto);
+            g.drawImage(imagen, 0, 0, nuevoAncho, nuevoAlto, null);
+        } finally {
+            g.dispose();
+        }
+        return destino;
+    }
+
+    /**
+     * Escribir a un archivo temporal y moverlo, para no servir variantes a medio escribir
+     */
+    private static void escribirJpeg(BufferedImage imagen, Path destino) throws IOException {
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        ImageWriter escritor = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream salida = ImageIO.createImageOutputStream(temporal.toFile())) {
+            ImageWriteParam parametros = escritor.getDefaultWriteParam();
+            parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            parametros.setCompressionQuality(CALIDAD_JPEG);
+            escritor.setOutput(salida);
+            escritor.write(null, new IIOImage(imagen, null, null), parametros);
+        } finally {
+            escritor.dispose();
+        }
+        Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,358 @@
+package hackathon.team.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serie de tiempo de precios por producto en un archivo mapeado en memoria, solo de agregado
+ * El archivo es una secuencia de bloques; cada bloque tiene los puntos (día, precio en
+ * centavos, cantidad) de un solo producto: el día con delta de delta, el precio con delta
+ * y todo en varint zigzag (2 a 4 bytes por punto en la práctica). El índice de bloques por
+ * producto se reconstruye al abrir leyendo solo los encabezados.
+ * Los bloques agregados quedan firmes al llamar confirmar(): al abrir se ignora lo escrito
+ * después de la última confirmación. No es seguro para hilos: quien lo usa debe excluir
+ * las escrituras de las lecturas.
+ * Conector Semántico - OneCard
+ */
+public final class AlmacenSeriePrecios implements Closeable {
+
+    public static final int MAX_PUNTOS_POR_BLOQUE = 1024;
+
+    private static final int MAGIA = 0x50524543;
+    private static final int VERSION = 1;
+    private static final int INICIO_DATOS = 64;
+    private static final int ENCABEZADO_BLOQUE = 32;
+    // día (5) + precio (10) + cantidad (5)
+    private static final int MAX_BYTES_POR_PUNTO = 20;
+    private static final int MAX_BYTES_BLOQUE = ENCABEZADO_BLOQUE + MAX_PUNTOS_POR_BLOQUE * MAX_BYTES_POR_PUNTO;
+
+    private final FileChannel canal;
+    private final int tamanioSegmento;
+    private final List<MappedByteBuffer> segmentos = new ArrayList<>();
+    private final Map<Long, Bloques> indice = new HashMap<>();
+    private final byte[] auxiliar = new byte[MAX_BYTES_BLOQUE];
+
+    // Fin de los datos (posición global) y del último estado confirmado
+    private long longitud;
+    private long desdeTicket;
+    private long puntos;
+    private int bloques;
+
+    /**
+     * Recorrido de puntos
+     */
+    @FunctionalInterface
+    public interface Consumidor {
+        void aceptar(int dia, long centavos, int cantidad);
+    }
+
+    /**
+     * Bloques de un producto en orden de escritura
+     */
+    private static final class Bloques {
+        private long[] posiciones = new long[4];
+        private int[] diasMin = new int[4];
+        private int[] diasMax = new int[4];
+        private int tamanio;
+        private long ultimoTicket;
+
+        private void agregar(long posicion, int diaMin, int diaMax, long ticket) {
+            if (tamanio == posiciones.length) {
+                posiciones = Arrays.copyOf(posiciones, tamanio * 2);
+                diasMin = Arrays.copyOf(diasMin, tamanio * 2);
+                diasMax = Arrays.copyOf(diasMax, tamanio * 2);
+            }
+            posiciones[tamanio] = posicion;
+            diasMin[tamanio] = diaMin;
+            diasMax[tamanio] = diaMax;
+            tamanio++;
+            ultimoTicket = Math.max(ultimoTicket, ticket);
+        }
+    }
+
+    private AlmacenSeriePrecios(FileChannel canal, int tamanioSegmento) {
+        this.canal = canal;
+        this.tamanioSegmento = tamanioSegmento;
+    }
+
+    /**
+     * Abrir (o crear) el archivo y reconstruir el índice de bloques
+     *
+     * @param tamanioSegmento bytes de cada región mapeada; solo se usa al crear el archivo
+     */
+    public static AlmacenSeriePrecios abrir(Path archivo, int tamanioSegmento) throws IOException {
+        if (tamanioSegmento < MAX_BYTES_BLOQUE + INICIO_DATOS) {
+            throw new IllegalArgumentException("El tamaño de segmento debe ser al menos " + (MAX_BYTES_BLOQUE + INICIO_DATOS));
+        }
+        if (archivo.getParent() != null) {
+            Files.createDirectories(archivo.getParent());
+        }
+        boolean nuevo = !Files.exists(archivo) || Files.size(archivo) < INICIO_DATOS;
+        FileChannel canal = FileChannel.open(archivo,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (nuevo) {
+                AlmacenSeriePrecios almacen = new AlmacenSeriePrecios(canal, tamanioSegmento);
+                almacen.segmento(0);
+                almacen.longitud = INICIO_DATOS;
+                almacen.escribirEncabezado();
+                return almacen;
+            }
+            ByteBuffer encabezado = ByteBuffer.allocate(32);
+            canal.read(encabezado, 0);
+            encabezado.flip();
+            if (encabezado.getInt() != MAGIA || encabezado.getInt() != VERSION) {
+                throw new IOException("Archivo de serie de precios no reconocido: " + archivo);
+            }
+            AlmacenSeriePrecios almacen = new AlmacenSeriePrecios(canal, encabezado.getInt());
+            encabezado.getInt();
+            almacen.longitud = encabezado.getLong();
+            almacen.desdeTicket = encabezado.getLong();
+            almacen.cargarIndice();
+            return almacen;
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Ticket desde el que hay que volver a leer la base de datos (confirmado en el último confirmar)
+     */
+    public long getDesdeTicket() {
+        return desdeTicket;
+    }
+
+    /**
+     * Mayor ticket guardado en bloques del producto (0 si no tiene)
+     */
+    public long ultimoTicket(long productoId) {
+        Bloques b = indice.get(productoId);
+        return b != null ? b.ultimoTicket : 0;
+    }
+
+    public long getBytesUsados() {
+        return longitud;
+    }
+
+    public long getPuntos() {
+        return puntos;
+    }
+
+    public int getBloques() {
+        return bloques;
+    }
+
+    /**
+     * Agregar un bloque con los primeros n puntos de los arreglos
+     *
+     * @param ultimoTicket mayor ticket de los puntos del bloque
+     */
+    public void agregarBloque(long productoId, long ultimoTicket, int[] dias, long[] centavos, int[] cantidades, int n)
+            throws IOException {
+        if (productoId == 0) {
+            throw new IllegalArgumentException("El producto 0 está reservado");
+        }
+        if (n <= 0 || n > MAX_PUNTOS_POR_BLOQUE) {
+            throw new IllegalArgumentException("Un bloque lleva entre 1 y " + MAX_PUNTOS_POR_BLOQUE + " puntos");
+        }
+        int diaMin = Integer.MAX_VALUE;
+        int diaMax = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            diaMin = Math.min(diaMin, dias[i]);
+            diaMax = Math.max(diaMax, dias[i]);
+        }
+        int bytes = codificar(dias, centavos, cantidades, n, diaMin, auxiliar);
+
+        // Un bloque no cruza segmentos: si no cabe se marca el resto como relleno
+        int resto = (int) (tamanioSegmento - longitud % tamanioSegmento);
+        if (resto < ENCABEZADO_BLOQUE + bytes) {
+            if (resto >= ENCABEZADO_BLOQUE) {
+                MappedByteBuffer actual = segmento((int) (longitud / tamanioSegmento));
+                int offset = (int) (longitud % tamanioSegmento);
+                actual.putLong(offset, 0L);
+                actual.putInt(offset + 24, 0);
+            }
+            longitud += resto;
+        }
+        MappedByteBuffer destino = segmento((int) (longitud / tamanioSegmento));
+        int offset = (int) (longitud % tamanioSegmento);
+        destino.putLong(offset, productoId);
+        destino.putLong(offset + 8, ultimoTicket);
+        destino.putInt(offset + 16, diaMin);
+        destino.putInt(offset + 20, diaMax);
+        destino.putInt(offset + 24, n);
+        destino.putInt(offset + 28, bytes);
+        destino.put(offset + ENCABEZADO_BLOQUE, auxiliar, 0, bytes);
+
+        indice.computeIfAbsent(productoId, id -> new Bloques()).agregar(longitud, diaMin, diaMax, ultimoTicket);
+        longitud += ENCABEZADO_BLOQUE + bytes;
+        puntos += n;
+        bloques++;
+    }
+
+    /**
+     * Bajar a disco los bloques agregados y confirmarlos
+     *
+     * @param desdeTicket tickets posteriores a este que todavía no están en bloques
+     */
+    public void confirmar(long desdeTicket) {
+        for (MappedByteBuffer segmento : segmentos) {
+            segmento.force();
+        }
+        this.desdeTicket = desdeTicket;
+        escribirEncabezado();
+        segmentos.get(0).force();
+    }
+
+    /**
+     * Recorrer los puntos del producto con día en [desde, hasta], en orden de escritura
+     */
+    public void recorrer(long productoId, int desde, int hasta, Consumidor consumidor) {
+        Bloques b = indice.get(productoId);
+        if (b == null) {
+            return;
+        }
+        for (int i = 0; i < b.tamanio; i++) {
+            if (b.diasMax[i] < desde || b.diasMin[i] > hasta) {
+                continue;
+            }
+            long posicion = b.posiciones[i];
+            MappedByteBuffer origen = segmentos.get((int) (posicion / tamanioSegmento));
+            decodificar(origen, (int) (posicion % tamanioSegmento), desde, hasta, consumidor);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    private void cargarIndice() throws IOException {
+        long tamanioArchivo = canal.size();
+        for (int s = 0; (long) s * tamanioSegmento < tamanioArchivo; s++) {
+            segmento(s);
+        }
+        long posicion = INICIO_DATOS;
+        while (posicion < longitud) {
+            int resto = (int) (tamanioSegmento - posicion % tamanioSegmento);
+            if (resto < ENCABEZADO_BLOQUE) {
+                posicion += resto;
+                continue;
+            }
+            MappedByteBuffer origen = segmentos.get((int) (posicion / tamanioSegmento));
+            int offset = (int) (posicion % tamanioSegmento);
+            long productoId = origen.getLong(offset);
+            int n = origen.getInt(offset + 24);
+            if (productoId == 0 && n == 0) {
+                posicion += resto;
+                continue;
+            }
+            indice.computeIfAbsent(productoId, id -> new Bloques())
+                    .agregar(posicion, origen.getInt(offset + 16), origen.getInt(offset + 20), origen.getLong(offset + 8));
+            posicion += ENCABEZADO_BLOQUE + origen.getInt(offset + 28);
+            puntos += n;
+            bloques++;
+        }
+    }
+
+    private void escribirEncabezado() {
+        MappedByteBuffer primero = segmentos.get(0);
+        primero.putInt(0, MAGIA);
+        primero.putInt(4, VERSION);
+        primero.putInt(8, tamanioSegmento);
+        primero.putLong(16, longitud);
+        primero.putLong(24, desdeTicket);
+    }
+
+    /**
+     * Segmento mapeado, creándolo (y agrandando el archivo) si todavía no existe
+     */
+    private MappedByteBuffer segmento(int numero) throws IOException {
+        while (segmentos.size() <= numero) {
+            segmentos.add(canal.map(FileChannel.MapMode.READ_WRITE,
+                    (long) segmentos.size() * tamanioSegmento, tamanioSegmento));
+        }
+        return segmentos.get(numero);
+    }
+
+    /**
+     * Codificar los puntos: día inicial relativo a diaMin, luego delta y delta de delta;
+     * precio inicial y después deltas; cantidad tal cual (todo zigzag + varint)
+     */
+    static int codificar(int[] dias, long[] centavos, int[] cantidades, int n, int diaMin, byte[] destino) {
+        int pos = 0;
+        long diaAnterior = diaMin;
+        long deltaAnterior = 0;
+        long precioAnterior = 0;
+        for (int i = 0; i < n; i++) {
+            long delta = dias[i] - diaAnterior;
+            pos = escribirVarint(destino, pos, zigzag(i < 2 ? delta : delta - deltaAnterior));
+            deltaAnterior = i == 0 ? 0 : delta;
+            diaAnterior = dias[i];
+            pos = escribirVarint(destino, pos, zigzag(centavos[i] - precioAnterior));
+            precioAnterior = centavos[i];
+            pos = escribirVarint(destino, pos, zigzag(cantidades[i]));
+        }
+        return pos;
+    }
+
+    private static void decodificar(MappedByteBuffer origen, int offset, int desde, int hasta, Consumidor consumidor) {
+        int n = origen.getInt(offset + 24);
+        long dia = origen.getInt(offset + 16);
+        long deltaAnterior = 0;
+        long precio = 0;
+        int[] pos = {offset + ENCABEZADO_BLOQUE};
+        for (int i = 0; i < n; i++) {
+            long valor = dezigzag(leerVarint(origen, pos));
+            long delta = i < 2 ? valor : deltaAnterior + valor;
+            deltaAnterior = i == 0 ? 0 : delta;
+            dia += delta;
+            precio += dezigzag(leerVarint(origen, pos));
+            int cantidad = (int) dezigzag(leerVarint(origen, pos));
+            if (dia >= desde && dia <= hasta) {
+                consumidor.aceptar((int) dia, precio, cantidad);
+            }
+        }
+    }
+
+    private static int escribirVarint(byte[] destino, int pos, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            destino[pos++] = (byte) ((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        destino[pos++] = (byte) valor;
+        return pos;
+    }
+
+    private static long leerVarint(ByteBuffer origen, int[] pos) {
+        long valor = 0;
+        int desplazamiento = 0;
+        byte b;
+        do {
+            b = origen.get(pos[0]++);
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            desplazamiento += 7;
+        } while (b < 0);
+        return valor;
+    }
+
+    private static long zigzag(long valor) {
+        return (valor << 1) ^ (valor >> 63);
+    }
+
+    private static long dezigzag(long valor) {
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+}
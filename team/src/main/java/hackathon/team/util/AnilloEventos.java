@@ -0,0 +1,128 @@
+package hackathon.team.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Anillo acotado sin bloqueos: varios productores, un solo consumidor
+ * Las ranuras se crean al inicio y se reutilizan; cada una guarda la secuencia que
+ * espera (el productor reclama con CAS sobre la cola, escribe la ranura y la publica;
+ * el consumidor la lee y la libera para la siguiente vuelta). Si el anillo está lleno
+ * el productor no espera: reclamar() devuelve -1 y se cuenta el descarte.
+ * Uso: long s = anillo.reclamar(); if (s >= 0) { llenar(anillo.ranura(s)); anillo.publicar(s); }
+ * Conector Semántico - OneCard
+ */
+public final class AnilloEventos<E> {
+
+    private final Object[] ranuras;
+    private final AtomicLongArray secuencias;
+    private final int mascara;
+    private final AtomicLong cola = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+    // Solo la escribe el hilo consumidor; volátil para leer pendientes() desde otros
+    private volatile long cabeza;
+
+    /**
+     * @param capacidad potencia de 2
+     * @param fabrica   crea cada ranura una sola vez
+     */
+    public AnilloEventos(int capacidad, Supplier<E> fabrica) {
+        if (capacidad < 2 || Integer.bitCount(capacidad) != 1) {
+            throw new IllegalArgumentException("La capacidad debe ser una potencia de 2");
+        }
+        this.ranuras = new Object[capacidad];
+        this.secuencias = new AtomicLongArray(capacidad);
+        this.mascara = capacidad - 1;
+        for (int i = 0; i < capacidad; i++) {
+            ranuras[i] = fabrica.get();
+            secuencias.set(i, i);
+        }
+    }
+
+    public int getCapacidad() {
+        return ranuras.length;
+    }
+
+    /**
+     * Entradas perdidas por anillo lleno desde el inicio
+     */
+    public long getDescartados() {
+        return descartados.get();
+    }
+
+    /**
+     * Entradas publicadas o reclamadas que el consumidor aún no procesa (aproximado)
+     */
+    public long pendientes() {
+        return Math.max(0, cola.get() - cabeza);
+    }
+
+    /**
+     * Reclamar la siguiente ranura para escribir
+     *
+     * @return secuencia reclamada, o -1 si el anillo está lleno (la entrada se descarta)
+     */
+    public long reclamar() {
+        long posicion = cola.get();
+        while (true) {
+            long diferencia = secuencias.get((int) posicion & mascara) - posicion;
+            if (diferencia == 0) {
+                if (cola.compareAndSet(posicion, posicion + 1)) {
+                    return posicion;
+                }
+                posicion = cola.get();
+            } else if (diferencia < 0) {
+                // La ranura sigue ocupada desde la vuelta anterior
+                descartados.incrementAndGet();
+                return -1;
+            } else {
+                // Otro productor avanzó la cola
+                posicion = cola.get();
+            }
+        }
+    }
+
+    /**
+     * Ranura de una secuencia reclamada (solo la escribe quien la reclamó, antes de publicar)
+     */
+    @SuppressWarnings("unchecked")
+    public E ranura(long secuencia) {
+        return (E) ranuras[(int) secuencia & mascara];
+    }
+
+    /**
+     * Hacer visible al consumidor una ranura ya escrita
+     */
+    public void publicar(long secuencia) {
+        secuencias.setRelease((int) secuencia & mascara, secuencia + 1);
+    }
+
+    /**
+     * Procesar en orden hasta 'maximo' entradas publicadas (solo desde el hilo consumidor)
+     * Se detiene en la primera ranura reclamada que aún no se publica. Tras el manejador
+     * la ranura vuelve a estar disponible: no conservar referencias a ella.
+     *
+     * @return entradas procesadas
+     */
+    public int drenar(Consumer<E> manejador, int maximo) {
+        int procesadas = 0;
+        while (procesadas < maximo) {
+            int indice = (int) cabeza & mascara;
+            if (secuencias.getAcquire(indice) != cabeza + 1) {
+                break;
+            }
+            @SuppressWarnings("unchecked")
+            E entrada = (E) ranuras[indice];
+            try {
+                manejador.accept(entrada);
+            } finally {
+                secuencias.setRelease(indice, cabeza + ranuras.length);
+                cabeza++;
+            }
+            procesadas++;
+        }
+        return procesadas;
+    }
+}
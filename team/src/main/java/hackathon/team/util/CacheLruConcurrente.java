@@ -0,0 +1,103 @@
+package hackathon.team.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache LRU acotada y segura para hilos
+ * Divide las entradas en segmentos independientes para reducir la contención:
+ * cada segmento es un LinkedHashMap en orden de acceso con su propio candado.
+ * Conector Semántico - OneCard
+ */
+public class CacheLruConcurrente<K, V> {
+
+    private static final int SEGMENTOS = 16;
+
+    private final Segmento<K, V>[] segmentos;
+
+    @SuppressWarnings("unchecked")
+    public CacheLruConcurrente(int capacidadMaxima) {
+        if (capacidadMaxima < SEGMENTOS) {
+            throw new IllegalArgumentException("La capacidad mínima de la cache es " + SEGMENTOS);
+        }
+        this.segmentos = new Segmento[SEGMENTOS];
+        for (int i = 0; i < SEGMENTOS; i++) {
+            segmentos[i] = new Segmento<>(capacidadMaxima / SEGMENTOS);
+        }
+    }
+
+    /**
+     * Obtener valor (null si no está en cache)
+     */
+    public V get(K clave) {
+        Segmento<K, V> segmento = segmentoDe(clave);
+        synchronized (segmento) {
+            return segmento.get(clave);
+        }
+    }
+
+    /**
+     * Guardar valor, desalojando la entrada menos usada del segmento si está lleno
+     */
+    public void put(K clave, V valor) {
+        Segmento<K, V> segmento = segmentoDe(clave);
+        synchronized (segmento) {
+            segmento.put(clave, valor);
+        }
+    }
+
+    /**
+     * Eliminar una entrada
+     */
+    public void remove(K clave) {
+        Segmento<K, V> segmento = segmentoDe(clave);
+        synchronized (segmento) {
+            segmento.remove(clave);
+        }
+    }
+
+    /**
+     * Vaciar la cache
+     */
+    public void clear() {
+        for (Segmento<K, V> segmento : segmentos) {
+            synchronized (segmento) {
+                segmento.clear();
+            }
+        }
+    }
+
+    /**
+     * Número aproximado de entradas
+     */
+    public int size() {
+        int total = 0;
+        for (Segmento<K, V> segmento : segmentos) {
+            synchronized (segmento) {
+                total += segmento.size();
+            }
+        }
+        return total;
+    }
+
+    private Segmento<K, V> segmentoDe(K clave) {
+        int h = clave.hashCode();
+        h ^= (h >>> 16);
+        return segmentos[h & (SEGMENTOS - 1)];
+    }
+
+    private static final class Segmento<K, V> extends LinkedHashMap<K, V> {
+
+        private final int capacidad;
+
+        Segmento(int capacidad) {
+            super(16, 0.75f, true);
+            this.capacidad = capacidad;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> mayor) {
+            return size() > capacidad;
+        }
+    }
+}
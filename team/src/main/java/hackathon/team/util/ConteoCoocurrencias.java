@@ -0,0 +1,117 @@
+package hackathon.team.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Conteo de pares de productos comprados en el mismo ticket
+ * Los tickets llegan en formato compacto (CSR): los productos del ticket t están en
+ * productos[inicio[t] .. inicio[t + 1]), ordenados y sin repetir. El rango de tickets
+ * se divide en fork-join; cada hoja cuenta en sus propios mapas primitivos y los
+ * resultados se suman al unir las tareas.
+ * Conector Semántico - OneCard
+ */
+public final class ConteoCoocurrencias {
+
+    // Tickets por hoja del fork-join
+    private static final int UMBRAL = 2048;
+
+    private ConteoCoocurrencias() {
+    }
+
+    /**
+     * Conteos: pares (clavePar) -> tickets, producto -> tickets, y total de tickets
+     */
+    public record Resultado(MapaLongEntero pares, MapaLongEntero productos, int tickets) {
+    }
+
+    /**
+     * Clave del par sin orden: el id menor en los 32 bits altos
+     */
+    public static long clavePar(int a, int b) {
+        int menor = Math.min(a, b);
+        int mayor = Math.max(a, b);
+        return ((long) menor << 32) | (mayor & 0xffffffffL);
+    }
+
+    public static int primero(long clavePar) {
+        return (int) (clavePar >>> 32);
+    }
+
+    public static int segundo(long clavePar) {
+        return (int) clavePar;
+    }
+
+    /**
+     * Contar en paralelo
+     *
+     * @param maxPorTicket tickets con más productos distintos no aportan pares (compras
+     *                     de mayoreo: n² pares sin relación entre sí), solo su conteo individual
+     */
+    public static Resultado contar(int[] inicio, int[] productos, int tickets, int maxPorTicket, ForkJoinPool pool) {
+        return pool.invoke(new Tarea(inicio, productos, 0, tickets, maxPorTicket));
+    }
+
+    /**
+     * Sumar los pares y productos de un ticket
+     */
+    public static void contarTicket(int[] productos, int desde, int hasta, int maxPorTicket,
+                                    MapaLongEntero pares, MapaLongEntero conteo) {
+        for (int i = desde; i < hasta; i++) {
+            conteo.sumar(productos[i], 1);
+        }
+        if (hasta - desde > maxPorTicket) {
+            return;
+        }
+        for (int i = desde; i < hasta; i++) {
+            for (int j = i + 1; j < hasta; j++) {
+                pares.sumar(clavePar(productos[i], productos[j]), 1);
+            }
+        }
+    }
+
+    private static final class Tarea extends RecursiveTask<Resultado> {
+
+        private final int[] inicio;
+        private final int[] productos;
+        private final int desde;
+        private final int hasta;
+        private final int maxPorTicket;
+
+        private Tarea(int[] inicio, int[] productos, int desde, int hasta, int maxPorTicket) {
+            this.inicio = inicio;
+            this.productos = productos;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.maxPorTicket = maxPorTicket;
+        }
+
+        @Override
+        protected Resultado compute() {
+            if (hasta - desde <= UMBRAL) {
+                MapaLongEntero pares = new MapaLongEntero(1024);
+                MapaLongEntero conteo = new MapaLongEntero(256);
+                for (int t = desde; t < hasta; t++) {
+                    contarTicket(productos, inicio[t], inicio[t + 1], maxPorTicket, pares, conteo);
+                }
+                return new Resultado(pares, conteo, hasta - desde);
+            }
+            int mitad = (desde + hasta) >>> 1;
+            Tarea izquierda = new Tarea(inicio, productos, desde, mitad, maxPorTicket);
+            izquierda.fork();
+            Resultado derecha = new Tarea(inicio, productos, mitad, hasta, maxPorTicket).compute();
+            return unir(izquierda.join(), derecha);
+        }
+
+        /**
+         * Sumar el mapa menor en el mayor
+         */
+        private static Resultado unir(Resultado a, Resultado b) {
+            MapaLongEntero pares = a.pares().tamanio() >= b.pares().tamanio() ? a.pares() : b.pares();
+            pares.sumarTodo(pares == a.pares() ? b.pares() : a.pares());
+            MapaLongEntero conteo = a.productos().tamanio() >= b.productos().tamanio() ? a.productos() : b.productos();
+            conteo.sumarTodo(conteo == a.productos() ? b.productos() : a.productos());
+            return new Resultado(pares, conteo, a.tickets() + b.tickets());
+        }
+    }
+}
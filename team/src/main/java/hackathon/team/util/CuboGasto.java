@@ -0,0 +1,261 @@
+package hackathon.team.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Cubo de gasto pre-agregado en columnas de primitivos
+ * Cada fila es una celda (día, usuario, categoría, método de pago) con el gasto en
+ * centavos, las unidades y las líneas de ticket. Usuario, categoría y método son índices
+ * densos que asigna quien llena el cubo. Las filas iniciales llegan ordenadas por día
+ * (búsqueda binaria del rango); las que se agregan después quedan en una cola que se
+ * recorre completa. Puede haber filas repetidas para la misma celda: las consultas suman.
+ * No es seguro para hilos: las consultas deben excluir las escrituras.
+ * Conector Semántico - OneCard
+ */
+public final class CuboGasto {
+
+    public static final int MAX_USUARIOS = 1 << 24;
+    public static final int MAX_CATEGORIAS = 1 << 16;
+    public static final int MAX_METODOS = 1 << 6;
+    public static final int MAX_DIA = (1 << 17) - 1;
+
+    // Filas por hoja del fork-join
+    private static final int UMBRAL = 1 << 16;
+
+    private int[] dias;
+    private int[] usuarios;
+    private int[] categorias;
+    private byte[] metodos;
+    private long[] gastos;
+    private long[] cantidades;
+    private int[] lineas;
+    private int tamanio;
+    // Filas [0, ordenadas) ordenadas por día
+    private int ordenadas;
+
+    public CuboGasto(int capacidadInicial) {
+        int capacidad = Math.max(16, capacidadInicial);
+        dias = new int[capacidad];
+        usuarios = new int[capacidad];
+        categorias = new int[capacidad];
+        metodos = new byte[capacidad];
+        gastos = new long[capacidad];
+        cantidades = new long[capacidad];
+        lineas = new int[capacidad];
+    }
+
+    /**
+     * Filtros y agrupación de una consulta
+     * Los filtros con valor -1 (o arreglo null) no aplican.
+     *
+     * @param categoriaIncluida   categorías que pasan el filtro (subárbol completo)
+     * @param categoriaDestino    categoría a la que se acumula cada categoría, null para no agrupar
+     * @param periodoDeDia        inicio del periodo de cada día desde diaDesde, null para no agrupar
+     */
+    public record Consulta(int diaDesde, int diaHasta, int usuario, int metodo,
+                           boolean[] categoriaIncluida,
+                           boolean agruparUsuario, int[] categoriaDestino, boolean agruparMetodo,
+                           int[] periodoDeDia) {
+    }
+
+    /**
+     * Grupos de la consulta: clave empacada y sumas en arreglos paralelos
+     */
+    public static final class Resultado {
+        private final MapaLongEntero indice = new MapaLongEntero(64);
+        private long[] claves = new long[16];
+        private long[] gastos = new long[16];
+        private long[] cantidades = new long[16];
+        private long[] lineas = new long[16];
+        private int tamanio;
+
+        public int tamanio() {
+            return tamanio;
+        }
+
+        public int periodo(int i) {
+            return (int) (claves[i] >>> 46) & MAX_DIA;
+        }
+
+        public int usuario(int i) {
+            return (int) (claves[i] >>> 22) & (MAX_USUARIOS - 1);
+        }
+
+        public int categoria(int i) {
+            return (int) (claves[i] >>> 6) & (MAX_CATEGORIAS - 1);
+        }
+
+        public int metodo(int i) {
+            return (int) claves[i] & (MAX_METODOS - 1);
+        }
+
+        public long gasto(int i) {
+            return gastos[i];
+        }
+
+        public long cantidad(int i) {
+            return cantidades[i];
+        }
+
+        public long lineas(int i) {
+            return lineas[i];
+        }
+
+        private void sumar(long clave, long gasto, long cantidad, long numLineas) {
+            int posicion = indice.get(clave) - 1;
+            if (posicion < 0) {
+                if (tamanio == claves.length) {
+                    claves = Arrays.copyOf(claves, tamanio * 2);
+                    gastos = Arrays.copyOf(gastos, tamanio * 2);
+                    cantidades = Arrays.copyOf(cantidades, tamanio * 2);
+                    lineas = Arrays.copyOf(lineas, tamanio * 2);
+                }
+                posicion = tamanio++;
+                claves[posicion] = clave;
+                indice.sumar(clave, posicion + 1);
+            }
+            gastos[posicion] = Math.addExact(gastos[posicion], gasto);
+            cantidades[posicion] += cantidad;
+            lineas[posicion] += numLineas;
+        }
+
+        private void sumarTodo(Resultado otro) {
+            for (int i = 0; i < otro.tamanio; i++) {
+                sumar(otro.claves[i], otro.gastos[i], otro.cantidades[i], otro.lineas[i]);
+            }
+        }
+    }
+
+    public int tamanio() {
+        return tamanio;
+    }
+
+    /**
+     * Marcar todas las filas actuales como ordenadas por día (después de la carga inicial)
+     */
+    public void marcarOrdenadas() {
+        for (int i = Math.max(1, ordenadas); i < tamanio; i++) {
+            if (dias[i] < dias[i - 1]) {
+                throw new IllegalStateException("Las filas no están ordenadas por día");
+            }
+        }
+        ordenadas = tamanio;
+    }
+
+    public void agregar(int dia, int usuario, int categoria, int metodo, long gasto, long cantidad, int numLineas) {
+        if (dia < 0 || dia > MAX_DIA || usuario < 0 || usuario >= MAX_USUARIOS
+                || categoria < 0 || categoria >= MAX_CATEGORIAS || metodo < 0 || metodo >= MAX_METODOS) {
+            throw new IllegalArgumentException("Celda fuera de los límites del cubo");
+        }
+        if (tamanio == dias.length) {
+            int capacidad = tamanio + (tamanio >> 1);
+            dias = Arrays.copyOf(dias, capacidad);
+            usuarios = Arrays.copyOf(usuarios, capacidad);
+            categorias = Arrays.copyOf(categorias, capacidad);
+            metodos = Arrays.copyOf(metodos, capacidad);
+            gastos = Arrays.copyOf(gastos, capacidad);
+            cantidades = Arrays.copyOf(cantidades, capacidad);
+            lineas = Arrays.copyOf(lineas, capacidad);
+        }
+        dias[tamanio] = dia;
+        usuarios[tamanio] = usuario;
+        categorias[tamanio] = categoria;
+        metodos[tamanio] = (byte) metodo;
+        gastos[tamanio] = gasto;
+        cantidades[tamanio] = cantidad;
+        lineas[tamanio] = numLineas;
+        tamanio++;
+    }
+
+    /**
+     * Recorrer en paralelo las filas del rango de días y agrupar
+     */
+    public Resultado consultar(Consulta consulta, ForkJoinPool pool) {
+        int desde = primeraConDiaDesde(consulta.diaDesde());
+        int hasta = primeraConDiaDesde(consulta.diaHasta() + 1);
+        Resultado resultado = pool.invoke(new Tarea(this, consulta, desde, hasta));
+        if (ordenadas < tamanio) {
+            resultado.sumarTodo(pool.invoke(new Tarea(this, consulta, ordenadas, tamanio)));
+        }
+        return resultado;
+    }
+
+    /**
+     * Primera fila ordenada con día >= dia
+     */
+    private int primeraConDiaDesde(int dia) {
+        int bajo = 0;
+        int alto = ordenadas;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (dias[medio] < dia) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    private static final class Tarea extends RecursiveTask<Resultado> {
+
+        private final CuboGasto cubo;
+        private final Consulta consulta;
+        private final int desde;
+        private final int hasta;
+
+        private Tarea(CuboGasto cubo, Consulta consulta, int desde, int hasta) {
+            this.cubo = cubo;
+            this.consulta = consulta;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected Resultado compute() {
+            if (hasta - desde <= UMBRAL) {
+                return recorrer();
+            }
+            int mitad = (desde + hasta) >>> 1;
+            Tarea izquierda = new Tarea(cubo, consulta, desde, mitad);
+            izquierda.fork();
+            Resultado derecha = new Tarea(cubo, consulta, mitad, hasta).compute();
+            Resultado otra = izquierda.join();
+            Resultado mayor = derecha.tamanio >= otra.tamanio ? derecha : otra;
+            mayor.sumarTodo(mayor == derecha ? otra : derecha);
+            return mayor;
+        }
+
+        private Resultado recorrer() {
+            Consulta c = consulta;
+            Resultado resultado = new Resultado();
+            for (int i = desde; i < hasta; i++) {
+                int dia = cubo.dias[i];
+                if (dia < c.diaDesde() || dia > c.diaHasta()
+                        || (c.usuario() >= 0 && cubo.usuarios[i] != c.usuario())
+                        || (c.metodo() >= 0 && cubo.metodos[i] != c.metodo())
+                        || (c.categoriaIncluida() != null && !c.categoriaIncluida()[cubo.categorias[i]])) {
+                    continue;
+                }
+                // Bit 63 encendido: la clave nunca es 0 (reservada en MapaLongEntero)
+                long clave = Long.MIN_VALUE;
+                if (c.periodoDeDia() != null) {
+                    clave |= (long) c.periodoDeDia()[dia - c.diaDesde()] << 46;
+                }
+                if (c.agruparUsuario()) {
+                    clave |= (long) cubo.usuarios[i] << 22;
+                }
+                if (c.categoriaDestino() != null) {
+                    clave |= (long) c.categoriaDestino()[cubo.categorias[i]] << 6;
+                }
+                if (c.agruparMetodo()) {
+                    clave |= cubo.metodos[i];
+                }
+                resultado.sumar(clave, cubo.gastos[i], cubo.cantidades[i], cubo.lineas[i]);
+            }
+            return resultado;
+        }
+    }
+}
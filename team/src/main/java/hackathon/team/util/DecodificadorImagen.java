@@ -0,0 +1,77 @@
+package hackathon.team.util;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Decodificación de imágenes con memoria acotada
+ * Se lee con submuestreo para no cargar la foto completa: una foto de 12 MP
+ * se decodifica a lo sumo al doble del lado pedido. Aplica la orientación EXIF.
+ * Conector Semántico - OneCard
+ */
+public final class DecodificadorImagen {
+
+    private DecodificadorImagen() {
+    }
+
+    /**
+     * Lado mayor de la imagen leído del encabezado, sin decodificarla
+     *
+     * @return el lado mayor en píxeles, o -1 si el formato no se puede decodificar
+     */
+    public static int ladoMayor(Path archivo) throws IOException {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(archivo.toFile())) {
+            if (entrada == null) {
+                return -1;
+            }
+            Iterator<ImageReader> lectores = ImageIO.getImageReaders(entrada);
+            if (!lectores.hasNext()) {
+                return -1;
+            }
+            ImageReader lector = lectores.next();
+            try {
+                lector.setInput(entrada, true, true);
+                return Math.max(lector.getWidth(0), lector.getHeight(0));
+            } finally {
+                lector.dispose();
+            }
+        }
+    }
+
+    /**
+     * Decodificar la imagen con su lado mayor cercano a ladoMayor (nunca menor)
+     *
+     * @return la imagen orientada, o null si el formato no se puede decodificar
+     */
+    public static BufferedImage leer(Path archivo, int ladoMayor) throws IOException {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(archivo.toFile())) {
+            if (entrada == null) {
+                return null;
+            }
+            Iterator<ImageReader> lectores = ImageIO.getImageReaders(entrada);
+            if (!lectores.hasNext()) {
+                return null;
+            }
+            ImageReader lector = lectores.next();
+            try {
+                lector.setInput(entrada, true, true);
+                int ancho = lector.getWidth(0);
+                int alto = lector.getHeight(0);
+                int submuestreo = Math.max(1, Math.max(ancho, alto) / (ladoMayor * 2));
+
+                ImageReadParam parametros = lector.getDefaultReadParam();
+                parametros.setSourceSubsampling(submuestreo, submuestreo, 0, 0);
+                BufferedImage imagen = lector.read(0, parametros);
+                return OrientacionExif.aplicar(imagen, OrientacionExif.leer(archivo));
+            } finally {
+                lector.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package hackathon.team.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Monto en centavos (long) para sumas y agregaciones
+ * Las entidades y la base de datos siguen usando BigDecimal / numeric(10,2): la conversión
+ * se hace una vez por valor y las operaciones se hacen sobre long sin crear objetos en
+ * cada suma. Toda operación que desborda lanza ArithmeticException. Los ciclos de
+ * agregación pueden trabajar directo con los métodos estáticos sobre long.
+ * Conector Semántico - OneCard
+ */
+public record Dinero(long centavos) implements Comparable<Dinero> {
+
+    public static final Dinero CERO = new Dinero(0);
+
+    /**
+     * Monto de un BigDecimal redondeado a centavos (null cuenta como cero)
+     */
+    public static Dinero de(BigDecimal monto) {
+        return monto == null ? CERO : new Dinero(centavos(monto));
+    }
+
+    /**
+     * Centavos de un BigDecimal, redondeando a dos decimales (null cuenta como cero)
+     */
+    public static long centavos(BigDecimal monto) {
+        if (monto == null) {
+            return 0;
+        }
+        return monto.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * BigDecimal con dos decimales a partir de centavos
+     */
+    public static BigDecimal aBigDecimal(long centavos) {
+        return BigDecimal.valueOf(centavos, 2);
+    }
+
+    /**
+     * Promedio de un total en centavos entre n, redondeado al centavo (cero si n es 0)
+     */
+    public static BigDecimal promedio(long totalCentavos, long n) {
+        if (n == 0) {
+            return aBigDecimal(0);
+        }
+        return BigDecimal.valueOf(totalCentavos).divide(BigDecimal.valueOf(n).movePointRight(2), 2, RoundingMode.HALF_UP);
+    }
+
+    public Dinero mas(Dinero otro) {
+        return new Dinero(Math.addExact(centavos, otro.centavos));
+    }
+
+    public Dinero menos(Dinero otro) {
+        return new Dinero(Math.subtractExact(centavos, otro.centavos));
+    }
+
+    public Dinero por(long cantidad) {
+        return new Dinero(Math.multiplyExact(centavos, cantidad));
+    }
+
+    public BigDecimal aBigDecimal() {
+        return aBigDecimal(centavos);
+    }
+
+    @Override
+    public int compareTo(Dinero otro) {
+        return Long.compare(centavos, otro.centavos);
+    }
+
+    @Override
+    public String toString() {
+        return aBigDecimal().toPlainString();
+    }
+}
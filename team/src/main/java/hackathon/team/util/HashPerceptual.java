@@ -0,0 +1,66 @@
+package hackathon.team.util;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+
+/**
+ * Hash perceptual de diferencias (dHash) de 64 bits
+ * La imagen se reduce a 9x8 en escala de grises y cada bit indica si un píxel es
+ * más claro que su vecino derecho. Dos fotos del mismo ticket (otra toma, otra
+ * compresión, otro tamaño) producen hashes a poca distancia de Hamming.
+ * Conector Semántico - OneCard
+ */
+public final class HashPerceptual {
+
+    private static final int ANCHO = 9;
+    private static final int ALTO = 8;
+    private static final int LADO_INTERMEDIO = 64;
+
+    private HashPerceptual() {
+    }
+
+    /**
+     * dHash de una imagen ya decodificada
+     */
+    public static long dHash(BufferedImage imagen) {
+        // Reducir por pasos evita que el bilineal ignore la mayoría de los píxeles
+        BufferedImage reducida = imagen;
+        while (Math.max(reducida.getWidth(), reducida.getHeight()) > LADO_INTERMEDIO * 2) {
+            reducida = escalar(reducida, Math.max(1, reducida.getWidth() / 2), Math.max(1, reducida.getHeight() / 2),
+                    BufferedImage.TYPE_INT_RGB);
+        }
+        Raster grises = escalar(reducida, ANCHO, ALTO, BufferedImage.TYPE_BYTE_GRAY).getRaster();
+
+        long hash = 0;
+        for (int y = 0; y < ALTO; y++) {
+            for (int x = 0; x < ANCHO - 1; x++) {
+                hash <<= 1;
+                if (grises.getSample(x, y, 0) > grises.getSample(x + 1, y, 0)) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Distancia de Hamming entre dos hashes (bits distintos)
+     */
+    public static int distancia(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private static BufferedImage escalar(BufferedImage imagen, int ancho, int alto, int tipo) {
+        BufferedImage destino = new BufferedImage(ancho, alto, tipo);
+        Graphics2D g = destino.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(imagen, 0, 0, ancho, alto, null);
+        } finally {
+            g.dispose();
+        }
+        return destino;
+    }
+}
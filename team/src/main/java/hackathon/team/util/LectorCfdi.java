@@ -0,0 +1,198 @@
+package hackathon.team.util;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lectura de comprobantes CFDI (3.3 y 4.0) con StAX
+ * Se recorre el XML una sola vez sin construir el árbol: del Comprobante se toman el
+ * tipo y los montos, del Emisor y el Receptor el RFC, de cada Concepto sus importes y del
+ * TimbreFiscalDigital el UUID. Los Impuestos que cuentan son los del Comprobante; los de
+ * cada Concepto se ignoran. Sin DTD ni entidades externas.
+ * Conector Semántico - OneCard
+ */
+public final class LectorCfdi {
+
+    private static final String NS_CFDI_33 = "http://www.sat.gob.mx/cfd/3";
+    private static final String NS_CFDI_40 = "http://www.sat.gob.mx/cfd/4";
+    private static final String NS_TIMBRE = "http://www.sat.gob.mx/TimbreFiscalDigital";
+
+    private static final XMLInputFactory FABRICA = crearFabrica();
+
+    private LectorCfdi() {
+    }
+
+    /**
+     * @param tipo TipoDeComprobante: I ingreso, E egreso, T traslado, N nómina, P pago
+     */
+    public record Comprobante(String version, String tipo, String uuid, LocalDateTime fecha, String serie, String folio,
+                              String formaPago, String moneda, String emisorRfc, String emisorNombre,
+                              String receptorRfc, BigDecimal subTotal, BigDecimal descuento, BigDecimal total,
+                              BigDecimal impuestosTrasladados, BigDecimal impuestosRetenidos,
+                              List<Concepto> conceptos) {
+    }
+
+    public record Concepto(String claveProdServ, String noIdentificacion, BigDecimal cantidad, String unidad,
+                           String descripcion, BigDecimal valorUnitario, BigDecimal importe, BigDecimal descuento) {
+    }
+
+    /**
+     * Leer un comprobante; IllegalArgumentException si el XML no es un CFDI válido
+     */
+    public static Comprobante leer(InputStream entrada) {
+        XMLStreamReader lector = null;
+        try {
+            lector = FABRICA.createXMLStreamReader(entrada);
+            return leer(lector);
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("XML mal formado: " + e.getMessage(), e);
+        } finally {
+            if (lector != null) {
+                try {
+                    lector.close();
+                } catch (XMLStreamException e) {
+                    // El flujo lo cierra quien lo abrió
+                }
+            }
+        }
+    }
+
+    private static Comprobante leer(XMLStreamReader lector) throws XMLStreamException {
+        while (lector.hasNext() && lector.next() != XMLStreamConstants.START_ELEMENT) {
+            // Saltar prólogo y comentarios
+        }
+        if (!lector.isStartElement() || !"Comprobante".equals(lector.getLocalName())) {
+            throw new IllegalArgumentException("El documento no es un CFDI (falta cfdi:Comprobante)");
+        }
+        String ns = lector.getNamespaceURI();
+        if (!NS_CFDI_40.equals(ns) && !NS_CFDI_33.equals(ns)) {
+            throw new IllegalArgumentException("Espacio de nombres de CFDI no soportado: " + ns);
+        }
+
+        String version = atributo(lector, "Version");
+        String tipo = obligatorio(lector, "TipoDeComprobante");
+        LocalDateTime fecha = fecha(obligatorio(lector, "Fecha"));
+        String serie = atributo(lector, "Serie");
+        String folio = atributo(lector, "Folio");
+        String formaPago = atributo(lector, "FormaPago");
+        String moneda = atributo(lector, "Moneda");
+        BigDecimal subTotal = monto(obligatorio(lector, "SubTotal"), "SubTotal");
+        BigDecimal descuento = montoOpcional(lector, "Descuento");
+        BigDecimal total = monto(obligatorio(lector, "Total"), "Total");
+
+        String emisorRfc = null;
+        String emisorNombre = null;
+        String receptorRfc = null;
+        String uuid = null;
+        BigDecimal trasladados = BigDecimal.ZERO;
+        BigDecimal retenidos = BigDecimal.ZERO;
+        List<Concepto> conceptos = new ArrayList<>();
+
+        // Profundidad relativa al Comprobante (1 = hijos directos)
+        int profundidad = 0;
+        while (lector.hasNext()) {
+            int evento = lector.next();
+            if (evento == XMLStreamConstants.END_ELEMENT) {
+                if (profundidad-- == 0) {
+                    break;
+                }
+                continue;
+            }
+            if (evento != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            profundidad++;
+            String nombre = lector.getLocalName();
+            String nsElemento = lector.getNamespaceURI();
+            if (profundidad == 1 && ns.equals(nsElemento)) {
+                switch (nombre) {
+                    case "Emisor" -> {
+                        emisorRfc = atributo(lector, "Rfc");
+                        emisorNombre = atributo(lector, "Nombre");
+                    }
+                    case "Receptor" -> receptorRfc = atributo(lector, "Rfc");
+                    case "Impuestos" -> {
+                        trasladados = montoOpcional(lector, "TotalImpuestosTrasladados");
+                        retenidos = montoOpcional(lector, "TotalImpuestosRetenidos");
+                    }
+                    default -> {
+                    }
+                }
+            } else if (profundidad == 2 && ns.equals(nsElemento) && "Concepto".equals(nombre)) {
+                conceptos.add(new Concepto(
+                        atributo(lector, "ClaveProdServ"),
+                        atributo(lector, "NoIdentificacion"),
+                        monto(obligatorio(lector, "Cantidad"), "Cantidad"),
+                        atributo(lector, "Unidad"),
+                        obligatorio(lector, "Descripcion").strip(),
+                        monto(obligatorio(lector, "ValorUnitario"), "ValorUnitario"),
+                        monto(obligatorio(lector, "Importe"), "Importe"),
+                        montoOpcional(lector, "Descuento")));
+            } else if (NS_TIMBRE.equals(nsElemento) && "TimbreFiscalDigital".equals(nombre)) {
+                uuid = atributo(lector, "UUID");
+            }
+        }
+
+        if (conceptos.isEmpty()) {
+            throw new IllegalArgumentException("El CFDI no tiene conceptos");
+        }
+        return new Comprobante(version, tipo, uuid != null ? uuid.toUpperCase() : null, fecha, serie, folio, formaPago,
+                moneda, emisorRfc, emisorNombre, receptorRfc, subTotal, descuento, total, trasladados, retenidos,
+                List.copyOf(conceptos));
+    }
+
+    private static String atributo(XMLStreamReader lector, String nombre) {
+        String valor = lector.getAttributeValue(null, nombre);
+        return valor == null || valor.isBlank() ? null : valor.strip();
+    }
+
+    private static String obligatorio(XMLStreamReader lector, String nombre) {
+        String valor = atributo(lector, nombre);
+        if (valor == null) {
+            throw new IllegalArgumentException("Falta el atributo " + nombre + " en " + lector.getLocalName());
+        }
+        return valor;
+    }
+
+    private static BigDecimal montoOpcional(XMLStreamReader lector, String nombre) {
+        String valor = atributo(lector, nombre);
+        return valor == null ? BigDecimal.ZERO : monto(valor, nombre);
+    }
+
+    private static BigDecimal monto(String valor, String nombre) {
+        try {
+            return new BigDecimal(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inválido en " + nombre + ": " + valor);
+        }
+    }
+
+    private static LocalDateTime fecha(String valor) {
+        try {
+            return LocalDateTime.parse(valor);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Fecha inválida: " + valor);
+        }
+    }
+
+    private static XMLInputFactory crearFabrica() {
+        XMLInputFactory fabrica = XMLInputFactory.newFactory();
+        fabrica.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        fabrica.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        fabrica.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        fabrica.setProperty(XMLInputFactory.IS_COALESCING, false);
+        if (fabrica.isPropertySupported(XMLConstants.ACCESS_EXTERNAL_DTD)) {
+            fabrica.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        }
+        return fabrica;
+    }
+}
@@ -0,0 +1,130 @@
+package hackathon.team.util;
+
+/**
+ * Mapa long -> int de direccionamiento abierto (sondeo lineal), sin objetos por entrada
+ * Pensado para contadores: una clave con valor 0 se considera ausente. La clave 0 está
+ * reservada como marca de celda vacía. No es seguro para hilos.
+ * Conector Semántico - OneCard
+ */
+public final class MapaLongEntero {
+
+    private static final float CARGA_MAXIMA = 0.6f;
+
+    private long[] claves;
+    private int[] valores;
+    private int tamanio;
+    private int umbral;
+
+    public MapaLongEntero() {
+        this(16);
+    }
+
+    public MapaLongEntero(int capacidadInicial) {
+        int capacidad = Integer.highestOneBit(Math.max(16, (int) (capacidadInicial / CARGA_MAXIMA)) - 1) << 1;
+        claves = new long[capacidad];
+        valores = new int[capacidad];
+        umbral = (int) (capacidad * CARGA_MAXIMA);
+    }
+
+    /**
+     * Recorrido de las entradas
+     */
+    @FunctionalInterface
+    public interface Consumidor {
+        void aceptar(long clave, int valor);
+    }
+
+    public int tamanio() {
+        return tamanio;
+    }
+
+    /**
+     * Valor de la clave, 0 si no existe
+     */
+    public int get(long clave) {
+        int mascara = claves.length - 1;
+        for (int i = indice(clave, mascara); ; i = (i + 1) & mascara) {
+            long actual = claves[i];
+            if (actual == clave) {
+                return valores[i];
+            }
+            if (actual == 0) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Sumar delta al valor de la clave (la crea si no existe)
+     */
+    public void sumar(long clave, int delta) {
+        if (clave == 0) {
+            throw new IllegalArgumentException("La clave 0 está reservada");
+        }
+        int mascara = claves.length - 1;
+        for (int i = indice(clave, mascara); ; i = (i + 1) & mascara) {
+            long actual = claves[i];
+            if (actual == clave) {
+                valores[i] += delta;
+                return;
+            }
+            if (actual == 0) {
+                claves[i] = clave;
+                valores[i] = delta;
+                if (++tamanio > umbral) {
+                    crecer();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sumar todas las entradas de otro mapa
+     */
+    public void sumarTodo(MapaLongEntero otro) {
+        otro.recorrer(this::sumar);
+    }
+
+    public void recorrer(Consumidor consumidor) {
+        for (int i = 0; i < claves.length; i++) {
+            if (claves[i] != 0) {
+                consumidor.aceptar(claves[i], valores[i]);
+            }
+        }
+    }
+
+    private void crecer() {
+        long[] clavesAnteriores = claves;
+        int[] valoresAnteriores = valores;
+        claves = new long[clavesAnteriores.length * 2];
+        valores = new int[clavesAnteriores.length * 2];
+        umbral = (int) (claves.length * CARGA_MAXIMA);
+        int mascara = claves.length - 1;
+        for (int j = 0; j < clavesAnteriores.length; j++) {
+            long clave = clavesAnteriores[j];
+            if (clave != 0) {
+                int i = indice(clave, mascara);
+                while (claves[i] != 0) {
+                    i = (i + 1) & mascara;
+                }
+                claves[i] = clave;
+                valores[i] = valoresAnteriores[j];
+            }
+        }
+    }
+
+    /**
+     * Mezcla de bits (finalizador de MurmurHash3): las claves de pares tienen los bits
+     * altos y bajos muy correlacionados
+     */
+    private static int indice(long clave, int mascara) {
+        long h = clave;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mascara;
+    }
+}
@@ -0,0 +1,169 @@
+package hackathon.team.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Elementos más frecuentes de un flujo con k contadores (algoritmo Space-Saving)
+ * Cuando llega un elemento sin contador y ya hay k, toma el contador del mínimo: la
+ * cuenta sobreestima como mucho en el error guardado. Los contadores viven en un
+ * montículo indexado, cada actualización cuesta O(log k). No es seguro para hilos.
+ * Conector Semántico - OneCard
+ */
+public final class MasFrecuentes<T> {
+
+    private final int capacidad;
+    private final Map<T, Contador<T>> contadores;
+    // Montículo de mínimos por cuenta
+    private final Contador<T>[] monticulo;
+    private int tamanio;
+
+    /**
+     * Elemento con su cuenta estimada y la sobreestimación máxima
+     */
+    public record Frecuencia<T>(T elemento, long cuenta, long error) {
+    }
+
+    private static final class Contador<T> {
+        private T elemento;
+        private long cuenta;
+        private long error;
+        private int posicion;
+    }
+
+    @SuppressWarnings("unchecked")
+    public MasFrecuentes(int capacidad) {
+        if (capacidad < 1) {
+            throw new IllegalArgumentException("La capacidad debe ser positiva");
+        }
+        this.capacidad = capacidad;
+        this.contadores = new HashMap<>(capacidad * 2);
+        this.monticulo = new Contador[capacidad];
+    }
+
+    public int getCapacidad() {
+        return capacidad;
+    }
+
+    /**
+     * Unir otro resumen en este
+     * Un elemento que falta en un resumen lleno puede tener ahí hasta su cuenta mínima: se
+     * suma a la cuenta y al error. Después se conservan los k de mayor cuenta.
+     */
+    public void unir(MasFrecuentes<T> otro) {
+        long minimoEste = tamanio == capacidad ? monticulo[0].cuenta : 0;
+        long minimoOtro = otro.tamanio == otro.capacidad ? otro.monticulo[0].cuenta : 0;
+        List<Contador<T>> union = new ArrayList<>(tamanio + otro.tamanio);
+        for (int i = 0; i < tamanio; i++) {
+            Contador<T> contador = monticulo[i];
+            Contador<T> delOtro = otro.contadores.get(contador.elemento);
+            contador.cuenta += delOtro != null ? delOtro.cuenta : minimoOtro;
+            contador.error += delOtro != null ? delOtro.error : minimoOtro;
+            union.add(contador);
+        }
+        for (int i = 0; i < otro.tamanio; i++) {
+            Contador<T> delOtro = otro.monticulo[i];
+            if (!contadores.containsKey(delOtro.elemento)) {
+                Contador<T> contador = new Contador<>();
+                contador.elemento = delOtro.elemento;
+                contador.cuenta = delOtro.cuenta + minimoEste;
+                contador.error = delOtro.error + minimoEste;
+                union.add(contador);
+            }
+        }
+        union.sort(Comparator.comparingLong((Contador<T> c) -> c.cuenta).reversed());
+
+        contadores.clear();
+        tamanio = 0;
+        for (int i = 0; i < union.size() && tamanio < capacidad; i++) {
+            Contador<T> contador = union.get(i);
+            contador.posicion = tamanio;
+            monticulo[tamanio++] = contador;
+            contadores.put(contador.elemento, contador);
+        }
+        // Ordenado de mayor a menor: invertir deja un montículo de mínimos válido
+        for (int i = 0, j = tamanio - 1; i < j; i++, j--) {
+            intercambiar(i, j);
+        }
+    }
+
+    /**
+     * Los n elementos con mayor cuenta, de mayor a menor
+     */
+    public List<Frecuencia<T>> mayores(int n) {
+        List<Frecuencia<T>> resultado = new ArrayList<>(tamanio);
+        for (int i = 0; i < tamanio; i++) {
+            resultado.add(new Frecuencia<>(monticulo[i].elemento, monticulo[i].cuenta, monticulo[i].error));
+        }
+        resultado.sort(Comparator.comparingLong((Frecuencia<T> f) -> f.cuenta()).reversed());
+        return resultado.size() > n ? new ArrayList<>(resultado.subList(0, n)) : resultado;
+    }
+
+    public void agregar(T elemento, long peso) {
+        Contador<T> contador = contadores.get(elemento);
+        if (contador != null) {
+            contador.cuenta += peso;
+            bajar(contador.posicion);
+            return;
+        }
+        if (tamanio < capacidad) {
+            contador = new Contador<>();
+            contador.elemento = elemento;
+            contador.cuenta = peso;
+            contador.posicion = tamanio;
+            monticulo[tamanio++] = contador;
+            contadores.put(elemento, contador);
+            subir(contador.posicion);
+            return;
+        }
+        // Reemplazar el mínimo: el nuevo hereda su cuenta como error
+        contador = monticulo[0];
+        contadores.remove(contador.elemento);
+        contador.elemento = elemento;
+        contador.error = contador.cuenta;
+        contador.cuenta += peso;
+        contadores.put(elemento, contador);
+        bajar(0);
+    }
+
+    private void subir(int i) {
+        while (i > 0) {
+            int padre = (i - 1) >>> 1;
+            if (monticulo[padre].cuenta <= monticulo[i].cuenta) {
+                return;
+            }
+            intercambiar(i, padre);
+            i = padre;
+        }
+    }
+
+    private void bajar(int i) {
+        while (true) {
+            int menor = i;
+            int izquierdo = 2 * i + 1;
+            int derecho = izquierdo + 1;
+            if (izquierdo < tamanio && monticulo[izquierdo].cuenta < monticulo[menor].cuenta) {
+                menor = izquierdo;
+            }
+            if (derecho < tamanio && monticulo[derecho].cuenta < monticulo[menor].cuenta) {
+                menor = derecho;
+            }
+            if (menor == i) {
+                return;
+            }
+            intercambiar(i, menor);
+            i = menor;
+        }
+    }
+
+    private void intercambiar(int a, int b) {
+        Contador<T> temporal = monticulo[a];
+        monticulo[a] = monticulo[b];
+        monticulo[b] = temporal;
+        monticulo[a].posicion = a;
+        monticulo[b].posicion = b;
+    }
+}
@@ -0,0 +1,37 @@
+package hackathon.team.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalización de nombres de productos para comparaciones
+ * Conector Semántico - OneCard
+ */
+public final class NormalizadorTexto {
+
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern NO_ALFANUMERICO = Pattern.compile("[^a-z0-9]+");
+
+    private NormalizadorTexto() {
+    }
+
+    /**
+     * Normalizar texto: sin acentos, minúsculas y espacios simples
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String sinAcentos = DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return NO_ALFANUMERICO.matcher(sinAcentos.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /**
+     * Clave única de producto a partir de nombre y marca
+     * Ej: "Coca-Cola  600ml", "FEMSA" -> "coca cola 600ml|femsa"
+     */
+    public static String claveProducto(String nombre, String marca) {
+        return normalizar(nombre) + "|" + normalizar(marca);
+    }
+}
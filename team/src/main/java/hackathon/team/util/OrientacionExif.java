@@ -0,0 +1,120 @@
+package hackathon.team.util;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.AffineTransformOp;
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Lectura y aplicación de la orientación EXIF de fotos JPEG
+ * Solo lee los segmentos de cabecera, no decodifica la imagen.
+ * Conector Semántico - OneCard
+ */
+public final class OrientacionExif {
+
+    public static final int NORMAL = 1;
+
+    private static final int TAG_ORIENTACION = 0x0112;
+    private static final int MAX_SEGMENTOS = 32;
+
+    private OrientacionExif() {
+    }
+
+    /**
+     * Orientación EXIF (1-8) del archivo; 1 si no es JPEG o no tiene EXIF
+     */
+    public static int leer(Path archivo) {
+        try (DataInputStream entrada = new DataInputStream(Files.newInputStream(archivo))) {
+            if (entrada.readUnsignedShort() != 0xFFD8) {
+                return NORMAL;
+            }
+            for (int i = 0; i < MAX_SEGMENTOS; i++) {
+                int marcador = entrada.readUnsignedShort();
+                if ((marcador & 0xFF00) != 0xFF00 || marcador == 0xFFDA || marcador == 0xFFD9) {
+                    return NORMAL;
+                }
+                int longitud = entrada.readUnsignedShort() - 2;
+                if (marcador == 0xFFE1) {
+                    byte[] datos = entrada.readNBytes(longitud);
+                    int orientacion = orientacionDeApp1(datos);
+                    if (orientacion != 0) {
+                        return orientacion;
+                    }
+                } else {
+                    saltar(entrada, longitud);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Cabecera dañada o truncada: se usa la orientación normal
+        }
+        return NORMAL;
+    }
+
+    /**
+     * Aplicar la orientación a una imagen ya decodificada
+     */
+    public static BufferedImage aplicar(BufferedImage imagen, int orientacion) {
+        if (orientacion <= NORMAL || orientacion > 8) {
+            return imagen;
+        }
+        int w = imagen.getWidth();
+        int h = imagen.getHeight();
+        AffineTransform t = new AffineTransform();
+        switch (orientacion) {
+            case 2 -> { t.translate(w, 0); t.scale(-1, 1); }
+            case 3 -> { t.translate(w, h); t.rotate(Math.PI); }
+            case 4 -> { t.translate(0, h); t.scale(1, -1); }
+            case 5 -> { t.rotate(-Math.PI / 2); t.scale(-1, 1); }
+            case 6 -> { t.translate(h, 0); t.rotate(Math.PI / 2); }
+            case 7 -> { t.scale(-1, 1); t.translate(-h, 0); t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+            case 8 -> { t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+            default -> { return imagen; }
+        }
+        boolean intercambia = orientacion >= 5;
+        BufferedImage destino = new BufferedImage(intercambia ? h : w, intercambia ? w : h, BufferedImage.TYPE_INT_RGB);
+        return new AffineTransformOp(t, AffineTransformOp.TYPE_NEAREST_NEIGHBOR).filter(imagen, destino);
+    }
+
+    /**
+     * Buscar la etiqueta de orientación en el IFD0 de un segmento APP1 "Exif"
+     */
+    private static int orientacionDeApp1(byte[] datos) {
+        if (datos.length < 14 || datos[0] != 'E' || datos[1] != 'x' || datos[2] != 'i' || datos[3] != 'f') {
+            return 0;
+        }
+        ByteBuffer tiff = ByteBuffer.wrap(datos, 6, datos.length - 6).slice();
+        if (tiff.get(0) == 'I' && tiff.get(1) == 'I') {
+            tiff.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (tiff.get(0) == 'M' && tiff.get(1) == 'M') {
+            tiff.order(ByteOrder.BIG_ENDIAN);
+        } else {
+            return 0;
+        }
+        int ifd0 = tiff.getInt(4);
+        int entradas = Short.toUnsignedInt(tiff.getShort(ifd0));
+        for (int i = 0; i < entradas; i++) {
+            int posicion = ifd0 + 2 + i * 12;
+            if (Short.toUnsignedInt(tiff.getShort(posicion)) == TAG_ORIENTACION) {
+                return Short.toUnsignedInt(tiff.getShort(posicion + 8));
+            }
+        }
+        return 0;
+    }
+
+    private static void saltar(InputStream entrada, long bytes) throws IOException {
+        long restantes = bytes;
+        while (restantes > 0) {
+            long saltados = entrada.skip(restantes);
+            if (saltados <= 0) {
+                throw new IOException("Fin de archivo en cabecera JPEG");
+            }
+            restantes -= saltados;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package hackathon.team.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Envío de archivos por HTTP sin cargarlos completos en memoria
+ * Soporta ETag / Last-Modified (respuestas 304), rangos de bytes (206) y
+ * sendfile de Tomcat. Si el contenedor no ofrece sendfile se copia por bloques con
+ * FileChannel.transferTo: el destino es el stream del servlet, no un socket, así que
+ * los bytes pasan por un buffer de la JVM.
+ * Conector Semántico - OneCard
+ */
+public final class RespuestaArchivoHttp {
+
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARCHIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+
+    private RespuestaArchivoHttp() {
+    }
+
+    /**
+     * Enviar un archivo
+     *
+     * @param etag         ETag fuerte (sin comillas) o null si el contenido puede cambiar
+     * @param cacheControl valor de Cache-Control a enviar
+     */
+    public static void enviar(HttpServletRequest request, HttpServletResponse response, Path archivo,
+                              String contentType, String etag, String cacheControl,
+                              String nombreDescarga) throws IOException {
+        long longitud = Files.size(archivo);
+        // Last-Modified tiene precisión de segundos
+        long ultimaModificacion = Files.getLastModifiedTime(archivo).toMillis() / 1000 * 1000;
+        String etagHeader = etag != null ? "\"" + etag + "\"" : null;
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, ultimaModificacion);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (etagHeader != null) {
+            response.setHeader(HttpHeaders.ETAG, etagHeader);
+        }
+
+        if (noModificado(request, etagHeader, ultimaModificacion)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long inicio = 0;
+        long fin = longitud - 1;
+        String rango = request.getHeader(HttpHeaders.RANGE);
+        if (rango != null && rangoAplicable(request, etagHeader, ultimaModificacion)) {
+            long[] limites = parsearRango(rango, longitud);
+            if (limites == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + longitud);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (limites.length == 2) {
+                inicio = limites[0];
+                fin = limites[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + inicio + "-" + fin + "/" + longitud);
+            }
+        }
+
+        long cantidad = fin - inicio + 1;
+        response.setContentType(contentType);
+        response.setContentLengthLong(cantidad);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(nombreDescarga, StandardCharsets.UTF_8).build().toString());
+
+        if ("HEAD".equalsIgnoreCase(request.getMethod()) || cantidad == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SOPORTADO))) {
+            // Tomcat envía el archivo con sendfile del sistema operativo al terminar la petición
+            request.setAttribute(SENDFILE_ARCHIVO, archivo.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_INICIO, inicio);
+            request.setAttribute(SENDFILE_FIN, fin + 1);
+            return;
+        }
+
+        // Sin sendfile: transferTo al canal del stream de respuesta copia por un buffer
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            WritableByteChannel salida = Channels.newChannel(response.getOutputStream());
+            long posicion = inicio;
+            long restante = cantidad;
+            while (restante > 0) {
+                long enviados = canal.transferTo(posicion, restante, salida);
+                if (enviados <= 0) {
+                    break;
+                }
+                posicion += enviados;
+                restante -= enviados;
+            }
+        }
+    }
+
+    /**
+     * Petición condicional satisfecha: If-None-Match tiene prioridad sobre If-Modified-Since
+     */
+    private static boolean noModificado(HttpServletRequest request, String etagHeader, long ultimaModificacion) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            if (etagHeader == null) {
+                return false;
+            }
+            for (String candidato : ifNoneMatch.split(",")) {
+                String valor = candidato.trim();
+                if (valor.equals("*") || valor.equals(etagHeader) || valor.equals("W/" + etagHeader)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = fechaHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && ultimaModificacion <= ifModifiedSince;
+    }
+
+    /**
+     * If-Range: el rango solo se respeta si el recurso no cambió
+     */
+    private static boolean rangoAplicable(HttpServletRequest request, String etagHeader, long ultimaModificacion) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return etagHeader != null && ifRange.equals(etagHeader);
+        }
+        long fecha = fechaHeader(request, HttpHeaders.IF_RANGE);
+        return fecha >= 0 && ultimaModificacion <= fecha;
+    }
+
+    /**
+     * Parsear "bytes=inicio-fin", "bytes=inicio-" o "bytes=-sufijo"
+     *
+     * @return {inicio, fin}; arreglo vacío si el rango se ignora (varios rangos o
+     * formato desconocido); null si el rango no es satisfacible
+     */
+    static long[] parsearRango(String rango, long longitud) {
+        if (!rango.startsWith("bytes=") || rango.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String especificacion = rango.substring("bytes=".length()).trim();
+        int guion = especificacion.indexOf('-');
+        if (guion < 0) {
+            return new long[0];
+        }
+        try {
+            String inicioTexto = especificacion.substring(0, guion).trim();
+            String finTexto = especificacion.substring(guion + 1).trim();
+            long inicio;
+            long fin;
+            if (inicioTexto.isEmpty()) {
+                long sufijo = Long.parseLong(finTexto);
+                if (sufijo <= 0) {
+                    return null;
+                }
+                inicio = Math.max(0, longitud - sufijo);
+                fin = longitud - 1;
+            } else {
+                inicio = Long.parseLong(inicioTexto);
+                fin = finTexto.isEmpty() ? longitud - 1 : Math.min(Long.parseLong(finTexto), longitud - 1);
+            }
+            if (inicio >= longitud || inicio > fin) {
+                return null;
+            }
+            return new long[]{inicio, fin};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    private static long fechaHeader(HttpServletRequest request, String header) {
+        try {
+            return request.getDateHeader(header);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
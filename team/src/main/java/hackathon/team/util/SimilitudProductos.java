@@ -0,0 +1,321 @@
+package hackathon.team.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Similitud coseno entre productos sobre la matriz usuario x producto (filtrado colaborativo)
+ * La matriz llega en formato compacto (CSR): los productos del usuario u están en
+ * productos[inicio[u] .. inicio[u + 1]) con su peso (retroalimentación implícita). Se
+ * transpone una vez y cada hoja del fork-join calcula, para su rango de productos, los
+ * productos escalares contra todos los demás con un acumulador denso propio; de cada
+ * producto se conservan los k vecinos más similares.
+ * Conector Semántico - OneCard
+ */
+public final class SimilitudProductos {
+
+    // Productos por hoja del fork-join
+    private static final int UMBRAL = 256;
+
+    private SimilitudProductos() {
+    }
+
+    /**
+     * Vecinos de cada producto (CSR), de mayor a menor similitud:
+     * los de p están en vecino[inicio[p] .. inicio[p + 1])
+     */
+    public record Vecinos(int[] inicio, int[] vecino, float[] similitud) {
+
+        public int productos() {
+            return inicio.length - 1;
+        }
+
+        public int pares() {
+            return inicio[inicio.length - 1];
+        }
+    }
+
+    /**
+     * Calcular en paralelo los k vecinos de cada producto
+     *
+     * @param maxPorUsuario usuarios con más productos distintos no aportan a la similitud
+     *                      (cuentas de compras generales: n² pares sin relación entre sí)
+     * @param minComunes    usuarios en común mínimos para considerar dos productos vecinos
+     */
+    public static Vecinos calcular(int[] inicio, int[] productos, float[] pesos, int usuarios, int totalProductos,
+                                   int k, int maxPorUsuario, int minComunes, ForkJoinPool pool) {
+        // Transponer: usuarios de cada producto
+        int[] inicioProducto = new int[totalProductos + 1];
+        for (int u = 0; u < usuarios; u++) {
+            if (inicio[u + 1] - inicio[u] <= maxPorUsuario) {
+                for (int i = inicio[u]; i < inicio[u + 1]; i++) {
+                    inicioProducto[productos[i] + 1]++;
+                }
+            }
+        }
+        for (int p = 0; p < totalProductos; p++) {
+            inicioProducto[p + 1] += inicioProducto[p];
+        }
+        int[] usuarioDe = new int[inicioProducto[totalProductos]];
+        float[] pesoDe = new float[usuarioDe.length];
+        int[] siguiente = Arrays.copyOf(inicioProducto, totalProductos);
+        double[] normas = new double[totalProductos];
+        for (int u = 0; u < usuarios; u++) {
+            if (inicio[u + 1] - inicio[u] <= maxPorUsuario) {
+                for (int i = inicio[u]; i < inicio[u + 1]; i++) {
+                    int p = productos[i];
+                    usuarioDe[siguiente[p]] = u;
+                    pesoDe[siguiente[p]++] = pesos[i];
+                    normas[p] += (double) pesos[i] * pesos[i];
+                }
+            }
+        }
+        for (int p = 0; p < totalProductos; p++) {
+            normas[p] = Math.sqrt(normas[p]);
+        }
+
+        // k vecinos por producto en ranuras fijas; se compactan al final
+        int[] vecinos = new int[Math.multiplyExact(totalProductos, k)];
+        float[] similitudes = new float[vecinos.length];
+        int[] cuantos = new int[totalProductos];
+        pool.invoke(new Tarea(new Datos(inicio, productos, pesos, inicioProducto, usuarioDe, pesoDe, normas,
+                k, maxPorUsuario, minComunes, vecinos, similitudes, cuantos), 0, totalProductos));
+
+        int[] inicioVecinos = new int[totalProductos + 1];
+        for (int p = 0; p < totalProductos; p++) {
+            inicioVecinos[p + 1] = inicioVecinos[p] + cuantos[p];
+        }
+        int[] vecino = new int[inicioVecinos[totalProductos]];
+        float[] similitud = new float[vecino.length];
+        for (int p = 0; p < totalProductos; p++) {
+            System.arraycopy(vecinos, p * k, vecino, inicioVecinos[p], cuantos[p]);
+            System.arraycopy(similitudes, p * k, similitud, inicioVecinos[p], cuantos[p]);
+        }
+        return new Vecinos(inicioVecinos, vecino, similitud);
+    }
+
+    private record Datos(int[] inicio, int[] productos, float[] pesos,
+                         int[] inicioProducto, int[] usuarioDe, float[] pesoDe, double[] normas,
+                         int k, int maxPorUsuario, int minComunes,
+                         int[] vecinos, float[] similitudes, int[] cuantos) {
+    }
+
+    private static final class Tarea extends RecursiveAction {
+
+        private final Datos datos;
+        private final int desde;
+        private final int hasta;
+
+        private Tarea(Datos datos, int desde, int hasta) {
+            this.datos = datos;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected void compute() {
+            if (hasta - desde > UMBRAL) {
+                int medio = (desde + hasta) >>> 1;
+                invokeAll(new Tarea(datos, desde, medio), new Tarea(datos, medio, hasta));
+                return;
+            }
+            int total = datos.normas.length;
+            double[] producto = new double[total];
+            int[] comunes = new int[total];
+            int[] tocados = new int[total];
+            Seleccion seleccion = new Seleccion(datos.k);
+            for (int p = desde; p < hasta; p++) {
+                if (datos.normas[p] == 0) {
+                    continue;
+                }
+                int cuantosTocados = 0;
+                for (int i = datos.inicioProducto[p]; i < datos.inicioProducto[p + 1]; i++) {
+                    int u = datos.usuarioDe[i];
+                    double peso = datos.pesoDe[i];
+                    for (int j = datos.inicio[u]; j < datos.inicio[u + 1]; j++) {
+                        int q = datos.productos[j];
+                        if (q == p) {
+                            continue;
+                        }
+                        if (comunes[q]++ == 0) {
+                            tocados[cuantosTocados++] = q;
+                        }
+                        producto[q] += peso * datos.pesos[j];
+                    }
+                }
+                seleccion.reiniciar();
+                for (int t = 0; t < cuantosTocados; t++) {
+                    int q = tocados[t];
+                    if (comunes[q] >= datos.minComunes) {
+                        seleccion.ofrecer(q, (float) (producto[q] / (datos.normas[p] * datos.normas[q])));
+                    }
+                    producto[q] = 0;
+                    comunes[q] = 0;
+                }
+                datos.cuantos[p] = seleccion.volcar(datos.vecinos, datos.similitudes, p * datos.k);
+            }
+        }
+    }
+
+    /**
+     * Puntajes de recomendación para un usuario: suma de la similitud de cada candidato con
+     * los productos del usuario, ponderada por su peso. Reutiliza sus arreglos entre
+     * usuarios; uno por hilo.
+     */
+    public static final class Acumulador {
+
+        private final float[] puntaje;
+        private final int[] tocados;
+        private final boolean[] propio;
+        private int cuantos;
+
+        public Acumulador(int productos) {
+            this.puntaje = new float[productos];
+            this.tocados = new int[productos];
+            this.propio = new boolean[productos];
+        }
+
+        /**
+         * Acumular los vecinos de los productos del usuario (excluye los que ya compró)
+         */
+        public void acumular(Vecinos vecinos, int[] productos, float[] pesos, int desde, int hasta) {
+            for (int t = 0; t < cuantos; t++) {
+                puntaje[tocados[t]] = 0;
+            }
+            cuantos = 0;
+            for (int i = desde; i < hasta; i++) {
+                propio[productos[i]] = true;
+            }
+            for (int i = desde; i < hasta; i++) {
+                int p = productos[i];
+                for (int v = vecinos.inicio[p]; v < vecinos.inicio[p + 1]; v++) {
+                    int q = vecinos.vecino[v];
+                    if (propio[q]) {
+                        continue;
+                    }
+                    if (puntaje[q] == 0) {
+                        tocados[cuantos++] = q;
+                    }
+                    puntaje[q] += pesos[i] * vecinos.similitud[v];
+                }
+            }
+            for (int i = desde; i < hasta; i++) {
+                propio[productos[i]] = false;
+            }
+        }
+
+        /**
+         * Candidatos con puntaje tras acumular()
+         */
+        public int candidatos() {
+            return cuantos;
+        }
+
+        public int candidato(int t) {
+            return tocados[t];
+        }
+
+        public float puntaje(int producto) {
+            return puntaje[producto];
+        }
+
+        /**
+         * Los n candidatos de mayor puntaje entre los recomendables, de mayor a menor
+         *
+         * @return cuántos se escribieron en salida / puntajes
+         */
+        public int mejores(int n, boolean[] recomendable, int[] salida, float[] puntajes) {
+            Seleccion seleccion = new Seleccion(n);
+            for (int t = 0; t < cuantos; t++) {
+                int q = tocados[t];
+                if (recomendable[q]) {
+                    seleccion.ofrecer(q, puntaje[q]);
+                }
+            }
+            return seleccion.volcar(salida, puntajes, 0);
+        }
+    }
+
+    /**
+     * Los k mayores de un flujo (montículo de mínimos sobre arreglos)
+     */
+    private static final class Seleccion {
+
+        private final int k;
+        private final int[] elemento;
+        private final float[] valor;
+        private int tamanio;
+
+        private Seleccion(int k) {
+            this.k = k;
+            this.elemento = new int[k];
+            this.valor = new float[k];
+        }
+
+        private void reiniciar() {
+            tamanio = 0;
+        }
+
+        private void ofrecer(int e, float v) {
+            if (k == 0 || !(v > 0)) {
+                return;
+            }
+            if (tamanio < k) {
+                int i = tamanio++;
+                while (i > 0) {
+                    int padre = (i - 1) >>> 1;
+                    if (valor[padre] <= v) {
+                        break;
+                    }
+                    elemento[i] = elemento[padre];
+                    valor[i] = valor[padre];
+                    i = padre;
+                }
+                elemento[i] = e;
+                valor[i] = v;
+            } else if (v > valor[0]) {
+                bajar(e, v, tamanio);
+            }
+        }
+
+        /**
+         * Reemplazar la raíz por (e, v) y hundirla
+         */
+        private void bajar(int e, float v, int limite) {
+            int i = 0;
+            while (true) {
+                int menor = 2 * i + 1;
+                if (menor >= limite) {
+                    break;
+                }
+                if (menor + 1 < limite && valor[menor + 1] < valor[menor]) {
+                    menor++;
+                }
+                if (valor[menor] >= v) {
+                    break;
+                }
+                elemento[i] = elemento[menor];
+                valor[i] = valor[menor];
+                i = menor;
+            }
+            elemento[i] = e;
+            valor[i] = v;
+        }
+
+        /**
+         * Escribir de mayor a menor desde 'desde' y vaciar
+         */
+        private int volcar(int[] elementos, float[] valores, int desde) {
+            int n = tamanio;
+            // Extraer el mínimo repetidamente llena el destino desde el final
+            for (int fin = n - 1; fin >= 0; fin--) {
+                elementos[desde + fin] = elemento[0];
+                valores[desde + fin] = valor[0];
+                bajar(elemento[fin], valor[fin], fin);
+            }
+            tamanio = 0;
+            return n;
+        }
+    }
+}
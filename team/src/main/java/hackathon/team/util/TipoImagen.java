@@ -0,0 +1,53 @@
+package hackathon.team.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Detección del tipo de imagen por sus primeros bytes (firma del formato)
+ * Conector Semántico - OneCard
+ */
+public final class TipoImagen {
+
+    /**
+     * Bytes necesarios para reconocer todos los formatos soportados
+     */
+    public static final int BYTES_FIRMA = 12;
+
+    private TipoImagen() {
+    }
+
+    /**
+     * Content type de la imagen o application/octet-stream si no se reconoce
+     */
+    public static String detectar(byte[] cabecera, int longitud) {
+        if (longitud >= 3 && (cabecera[0] & 0xFF) == 0xFF && (cabecera[1] & 0xFF) == 0xD8 && (cabecera[2] & 0xFF) == 0xFF) {
+            return "image/jpeg";
+        }
+        if (longitud >= 4 && (cabecera[0] & 0xFF) == 0x89 && cabecera[1] == 'P' && cabecera[2] == 'N' && cabecera[3] == 'G') {
+            return "image/png";
+        }
+        if (longitud >= 4 && cabecera[0] == 'G' && cabecera[1] == 'I' && cabecera[2] == 'F' && cabecera[3] == '8') {
+            return "image/gif";
+        }
+        if (longitud >= 12 && cabecera[0] == 'R' && cabecera[1] == 'I' && cabecera[2] == 'F' && cabecera[3] == 'F'
+                && cabecera[8] == 'W' && cabecera[9] == 'E' && cabecera[10] == 'B' && cabecera[11] == 'P') {
+            return "image/webp";
+        }
+        return "application/octet-stream";
+    }
+
+    /**
+     * Content type de un archivo leyendo solo su cabecera
+     */
+    public static String detectar(Path archivo) throws IOException {
+        byte[] cabecera = new byte[BYTES_FIRMA];
+        int leidos;
+        try (InputStream entrada = Files.newInputStream(archivo)) {
+            leidos = entrada.readNBytes(cabecera, 0, cabecera.length);
+        }
+        return detectar(cabecera, leidos);
+    }
+}
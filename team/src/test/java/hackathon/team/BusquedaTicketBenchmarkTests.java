@@ -0,0 +1,136 @@
+package hackathon.team;
+
+import hackathon.team.service.BusquedaTicketService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark de la búsqueda de tickets (no corre en el build normal)
+ * Usar una base de datos dedicada, los datos de prueba quedan cargados:
+ * mvn test -Dtest=BusquedaTicketBenchmarkTests -Dbenchmark.busqueda=true
+ *          -Dspring.datasource.url=jdbc:postgresql://localhost:5432/onecard_bench
+ * La primera corrida carga benchmark.busqueda.tickets tickets (10 millones por omisión)
+ * con un item cada uno y espera a que se creen los índices.
+ * Conector Semántico - OneCard
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "app.clasificacion.habilitada=false"
+})
+@EnabledIfSystemProperty(named = "benchmark.busqueda", matches = "true")
+@Slf4j
+class BusquedaTicketBenchmarkTests {
+
+    private static final int USUARIOS = 10_000;
+    private static final int PRODUCTOS = 5_000;
+    private static final int REPETICIONES = 50;
+    private static final double P95_MAXIMO_MS = 50;
+
+    @Autowired
+    private BusquedaTicketService busquedaTicketService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void cargarDatos() {
+        long objetivo = Long.getLong("benchmark.busqueda.tickets", 10_000_000L);
+        Long existentes = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ticket WHERE numero_ticket LIKE 'BENCH-%'", Long.class);
+        if (existentes != null && existentes >= objetivo) {
+            return;
+        }
+
+        jdbcTemplate.update("INSERT INTO rol (nombre, activo, fecha_creacion) VALUES ('BENCH', true, now()) " +
+                "ON CONFLICT (nombre) DO NOTHING");
+        jdbcTemplate.update("INSERT INTO usuarios (nombre, email, password, rol_id, activo, fecha_registro) " +
+                "SELECT 'Bench ' || g, 'bench' || g || '@bench.local', 'x', (SELECT id FROM rol WHERE nombre = 'BENCH'), true, now() " +
+                "FROM generate_series(1, ?) g ON CONFLICT (email) DO NOTHING", USUARIOS);
+        jdbcTemplate.update("INSERT INTO categoria (nombre, nivel, activa, fecha_creacion) " +
+                "SELECT 'Bench ' || g, 1, true, now() FROM generate_series(1, 50) g ON CONFLICT (nombre) DO NOTHING");
+        jdbcTemplate.update("INSERT INTO productos (nombre, categoria_id, activo, fecha_creacion) " +
+                "SELECT 'Producto bench ' || md5(g::text), " +
+                "       (SELECT MIN(id) FROM categoria WHERE nombre LIKE 'Bench %') + g % 50, true, now() " +
+                "FROM generate_series(1, ?) g " +
+                "WHERE NOT EXISTS (SELECT 1 FROM productos WHERE nombre LIKE 'Producto bench %')", PRODUCTOS);
+
+        // Tickets de dos años repartidos entre usuarios, métodos de pago y estados
+        jdbcTemplate.update("INSERT INTO ticket (numero_ticket, usuario_id, fecha_hora, total, subtotal, impuestos, descuentos, metodo_pago, estado) " +
+                "SELECT 'BENCH-' || g, u.primero + g % ?, " +
+                "       now() - (g % 730) * interval '1 day' - (g % 86400) * interval '1 second', " +
+                "       (g % 500000) / 100.0, (g % 500000) / 100.0, 0, 0, " +
+                "       (ARRAY['efectivo', 'tarjeta', 'transferencia', 'vales'])[1 + g % 4], " +
+                "       (ARRAY['completado', 'completado', 'completado', 'pendiente_clasificacion'])[1 + g % 4] " +
+                "FROM generate_series(? + 1, ?) g, " +
+                "     (SELECT MIN(id) AS primero FROM usuarios WHERE email LIKE 'bench%@bench.local') u",
+                USUARIOS, existentes, objetivo);
+        jdbcTemplate.update("INSERT INTO ticket_items (ticket_id, producto_id, cantidad, precio_unitario, subtotal, descuento) " +
+                "SELECT t.id, p.primero + t.id % ?, 1, t.total, t.total, 0 FROM ticket t, " +
+                "     (SELECT MIN(id) AS primero FROM productos WHERE nombre LIKE 'Producto bench %') p " +
+                "WHERE t.numero_ticket LIKE 'BENCH-%' AND NOT EXISTS (SELECT 1 FROM ticket_items i WHERE i.ticket_id = t.id)",
+                PRODUCTOS);
+        jdbcTemplate.execute("ANALYZE ticket");
+        jdbcTemplate.execute("ANALYZE ticket_items");
+        jdbcTemplate.execute("ANALYZE productos");
+    }
+
+    @Test
+    void busquedasRepresentativasBajo50ms() {
+        Long usuario = jdbcTemplate.queryForObject("SELECT MIN(id) + 17 FROM usuarios WHERE email LIKE 'bench%@bench.local'", Long.class);
+        Long categoria = jdbcTemplate.queryForObject("SELECT MIN(id) + 3 FROM categoria WHERE nombre LIKE 'Bench %'", Long.class);
+        LocalDate hoy = LocalDate.now();
+
+        Map<String, BusquedaTicketService.Criterios> casos = new LinkedHashMap<>();
+        casos.put("sin filtros", BusquedaTicketService.Criterios.builder().build());
+        casos.put("último mes", BusquedaTicketService.Criterios.builder()
+                .desde(hoy.minusMonths(1)).hasta(hoy).build());
+        casos.put("usuario", BusquedaTicketService.Criterios.builder()
+                .usuarioId(usuario).build());
+        casos.put("usuario y año", BusquedaTicketService.Criterios.builder()
+                .desde(hoy.minusYears(1)).hasta(hoy).usuarioId(usuario).build());
+        casos.put("método y monto", BusquedaTicketService.Criterios.builder()
+                .desde(hoy.minusMonths(3)).hasta(hoy)
+                .totalMinimo(new BigDecimal("1000")).totalMaximo(new BigDecimal("1200"))
+                .metodoPago("vales").build());
+        casos.put("estado pendiente", BusquedaTicketService.Criterios.builder()
+                .estado("pendiente_clasificacion").build());
+        casos.put("texto de producto", BusquedaTicketService.Criterios.builder()
+                .desde(hoy.minusMonths(1)).hasta(hoy).producto("a1b").build());
+        casos.put("categoría", BusquedaTicketService.Criterios.builder()
+                .desde(hoy.minusWeeks(1)).hasta(hoy).categoriaId(categoria).build());
+
+        StringBuilder reporte = new StringBuilder();
+        boolean dentroDelLimite = true;
+        for (Map.Entry<String, BusquedaTicketService.Criterios> caso : casos.entrySet()) {
+            // Calentamiento: JIT, planes y caché de PostgreSQL
+            for (int i = 0; i < 5; i++) {
+                busquedaTicketService.buscar(caso.getValue(), 0, 20);
+            }
+            double[] tiempos = new double[REPETICIONES];
+            for (int i = 0; i < REPETICIONES; i++) {
+                long inicio = System.nanoTime();
+                busquedaTicketService.buscar(caso.getValue(), i % 5, 20);
+                tiempos[i] = (System.nanoTime() - inicio) / 1_000_000.0;
+            }
+            Arrays.sort(tiempos);
+            double mediana = tiempos[REPETICIONES / 2];
+            double p95 = tiempos[(int) Math.ceil(REPETICIONES * 0.95) - 1];
+            reporte.append(String.format("%-20s mediana %6.1f ms   p95 %6.1f ms%n", caso.getKey(), mediana, p95));
+            dentroDelLimite &= p95 < P95_MAXIMO_MS;
+        }
+        log.info("Búsqueda de tickets:\n{}", reporte);
+        assertTrue(dentroDelLimite, "Alguna búsqueda superó " + P95_MAXIMO_MS + " ms en p95:\n" + reporte);
+    }
+}
@@ -0,0 +1,89 @@
+package hackathon.team;
+
+import hackathon.team.util.Dinero;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark JMH: sumar precio * cantidad de 10 millones de items (no corre en el build normal)
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) hackathon.team.SumaDineroBenchmark
+ * Compara BigDecimal, Dinero convirtiendo cada BigDecimal y centavos ya convertidos
+ * (como los guardan los agregados en memoria).
+ * Conector Semántico - OneCard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SumaDineroBenchmark {
+
+    @Param("10000000")
+    private int items;
+
+    private BigDecimal[] precios;
+    private long[] centavos;
+    private int[] cantidades;
+
+    @Setup
+    public void preparar() {
+        Random random = new Random(42);
+        precios = new BigDecimal[items];
+        centavos = new long[items];
+        cantidades = new int[items];
+        for (int i = 0; i < items; i++) {
+            centavos[i] = 100 + random.nextInt(50_000);
+            precios[i] = BigDecimal.valueOf(centavos[i], 2);
+            cantidades[i] = 1 + random.nextInt(5);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < items; i++) {
+            total = total.add(precios[i].multiply(BigDecimal.valueOf(cantidades[i])));
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long dineroDesdeBigDecimal() {
+        long total = 0;
+        for (int i = 0; i < items; i++) {
+            total = Math.addExact(total, Math.multiplyExact(Dinero.centavos(precios[i]), cantidades[i]));
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long dineroCentavos() {
+        long total = 0;
+        for (int i = 0; i < items; i++) {
+            total = Math.addExact(total, Math.multiplyExact(centavos[i], cantidades[i]));
+        }
+        return total;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SumaDineroBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,173 @@
+package hackathon.team;
+
+import hackathon.team.dao.CategoriaRepository;
+import hackathon.team.dao.ProductoRepository;
+import hackathon.team.dao.RolRepository;
+import hackathon.team.dao.TicketRepository;
+import hackathon.team.dao.UsuarioRepository;
+import hackathon.team.model.*;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Las vistas se renderizan sin sesión abierta (open-in-view desactivado) y con un
+ * número acotado de consultas, sin importar cuántos tickets o items haya.
+ * No es transaccional a propósito: un acceso perezoso fuera del servicio debe fallar.
+ * Conector Semántico - OneCard
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@WithMockUser(roles = "ADMINISTRADOR")
+class VistasConsultasTests {
+
+    private static final int TICKETS = 5;
+    private static final int ITEMS_POR_TICKET = 4;
+    private static final long MAX_CONSULTAS_POR_VISTA = 8;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private RolRepository rolRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private TicketRepository ticketRepository;
+
+    private final List<Ticket> tickets = new ArrayList<>();
+    private final List<Producto> productos = new ArrayList<>();
+    private Rol rol;
+    private Usuario usuario;
+    private Categoria padre;
+    private Categoria categoria;
+
+    @BeforeEach
+    void crearDatos() {
+        String sufijo = UUID.randomUUID().toString().substring(0, 8);
+
+        rol = new Rol();
+        rol.setNombre("PRUEBA_" + sufijo);
+        rol = rolRepository.save(rol);
+
+        usuario = new Usuario();
+        usuario.setNombre("Prueba");
+        usuario.setEmail("vistas-" + sufijo + "@prueba.local");
+        usuario.setPassword("x");
+        usuario.setRol(rol);
+        usuario = usuarioRepository.save(usuario);
+
+        padre = new Categoria();
+        padre.setNombre("Padre " + sufijo);
+        padre = categoriaRepository.save(padre);
+
+        categoria = new Categoria();
+        categoria.setNombre("Hija " + sufijo);
+        categoria.setCategoriaPadre(padre);
+        categoria.setNivel(2);
+        categoria = categoriaRepository.save(categoria);
+
+        for (int i = 0; i < ITEMS_POR_TICKET; i++) {
+            Producto producto = new Producto();
+            producto.setNombre("Producto " + i + " " + sufijo);
+            producto.setCategoria(categoria);
+            productos.add(productoRepository.save(producto));
+        }
+
+        for (int t = 0; t < TICKETS; t++) {
+            Ticket ticket = new Ticket();
+            ticket.setNumeroTicket("VISTA-" + sufijo + "-" + t);
+            ticket.setUsuario(usuario);
+            ticket.setTotal(BigDecimal.TEN);
+            ticket.setSubtotal(BigDecimal.TEN);
+            for (Producto producto : productos) {
+                TicketItem item = new TicketItem();
+                item.setTicket(ticket);
+                item.setProducto(producto);
+                item.setCantidad(1);
+                item.setPrecioUnitario(BigDecimal.ONE);
+                item.setSubtotal(BigDecimal.ONE);
+                ticket.getItems().add(item);
+            }
+            tickets.add(ticketRepository.save(ticket));
+        }
+    }
+
+    @AfterEach
+    void borrarDatos() {
+        ticketRepository.deleteAll(tickets);
+        productoRepository.deleteAll(productos);
+        categoriaRepository.delete(categoria);
+        categoriaRepository.delete(padre);
+        usuarioRepository.delete(usuario);
+        rolRepository.delete(rol);
+    }
+
+    @Test
+    void listaDeTickets() throws Exception {
+        assertConsultasAcotadas("/tickets/lista");
+    }
+
+    @Test
+    void detalleDeTicket() throws Exception {
+        assertConsultasAcotadas("/tickets/detalle/" + tickets.get(0).getId());
+    }
+
+    @Test
+    void listaDeProductos() throws Exception {
+        assertConsultasAcotadas("/productos");
+    }
+
+    @Test
+    void listaDeCategorias() throws Exception {
+        assertConsultasAcotadas("/categorias");
+    }
+
+    @Test
+    void detalleDeCategoria() throws Exception {
+        assertConsultasAcotadas("/categorias/detalle/" + categoria.getId());
+    }
+
+    private void assertConsultasAcotadas(String url) throws Exception {
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+
+        // Los controllers atrapan la excepción y devuelven la vista "error" con 200
+        mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(model().attributeDoesNotExist("error"));
+
+        long consultas = estadisticas.getPrepareStatementCount();
+        assertTrue(consultas <= MAX_CONSULTAS_POR_VISTA,
+                url + " ejecutó " + consultas + " consultas (máximo " + MAX_CONSULTAS_POR_VISTA + ")");
+    }
+}
@@ -0,0 +1,66 @@
+package hackathon.team.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Lectura de las líneas del estado de cuenta: campos CSV, montos y fechas
+ * Conector Semántico - OneCard
+ */
+class ConciliacionServiceTests {
+
+    @Test
+    void camposConComillasYSeparadorDentro() {
+        assertEquals(List.of("2024-01-05", "ana@onecard.mx", "1,234.50", "ref \"A\""),
+                ConciliacionService.campos("2024-01-05,ana@onecard.mx,\"1,234.50\",\"ref \"\"A\"\"\"", ','));
+        assertEquals(List.of("a", "", "c", ""), ConciliacionService.campos("a;;c;", ';'));
+    }
+
+    @Test
+    void montoConPuntoDecimal() {
+        assertEquals(new BigDecimal("1234.56"), ConciliacionService.monto("$1,234.56", ','));
+        assertEquals(new BigDecimal("150.00"), ConciliacionService.monto(" 150.00 ", ','));
+        assertEquals(new BigDecimal("-20"), ConciliacionService.monto("-20", ','));
+        assertEquals(new BigDecimal("1234567.8"), ConciliacionService.monto("1,234,567.8", ';'));
+    }
+
+    @Test
+    void montoConComaDecimalSoloConPuntoYComa() {
+        assertEquals(new BigDecimal("1234.56"), ConciliacionService.monto("1.234,56", ';'));
+        assertEquals(new BigDecimal("12.50"), ConciliacionService.monto("$ 12,50", ';'));
+        assertEquals(new BigDecimal("1234567"), ConciliacionService.monto("1.234.567", ';'));
+        assertNull(ConciliacionService.monto("1.234,56", ','));
+    }
+
+    @Test
+    void montoAmbiguoOMalFormadoEsInvalido() {
+        assertNull(ConciliacionService.monto("1.234", ';'));
+        assertNull(ConciliacionService.monto("1,234", ';'));
+        assertNull(ConciliacionService.monto("12,34,5", ','));
+        assertNull(ConciliacionService.monto("1.2.3", ','));
+        assertNull(ConciliacionService.monto("abc", ','));
+        assertNull(ConciliacionService.monto("", ','));
+        assertNull(ConciliacionService.monto("2000000000", ','));
+    }
+
+    @Test
+    void fechaEnLosFormatosAceptados() {
+        assertEquals(LocalDateTime.of(2024, 3, 9, 0, 0), ConciliacionService.fecha("09/03/2024"));
+        assertEquals(LocalDateTime.of(2024, 3, 9, 14, 5), ConciliacionService.fecha("09/03/2024 14:05"));
+        assertEquals(LocalDateTime.of(2024, 3, 9, 14, 5, 30), ConciliacionService.fecha("2024-03-09 14:05:30"));
+        assertEquals(LocalDateTime.of(2024, 3, 9, 14, 5), ConciliacionService.fecha("2024-03-09T14:05"));
+        assertEquals(LocalDateTime.of(2024, 3, 9, 0, 0), ConciliacionService.fecha("2024-03-09"));
+    }
+
+    @Test
+    void fechaInvalida() {
+        assertNull(ConciliacionService.fecha("32/01/2024"));
+        assertNull(ConciliacionService.fecha("2024/03/09"));
+        assertNull(ConciliacionService.fecha(""));
+    }
+}
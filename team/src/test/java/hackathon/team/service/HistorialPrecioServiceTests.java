@@ -0,0 +1,140 @@
+package hackathon.team.service;
+
+import hackathon.team.model.Producto;
+import hackathon.team.model.Ticket;
+import hackathon.team.model.TicketItem;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Historial de precios: la lectura al arrancar conserva las líneas repetidas de un producto
+ * en un ticket y, tras reiniciar, no repite lo que ya está en bloques ni lo recibido mientras
+ * tanto que el cursor también leyó
+ * Conector Semántico - OneCard
+ */
+class HistorialPrecioServiceTests {
+
+    private static final LocalDate HOY = LocalDate.now();
+
+    @TempDir
+    Path directorio;
+
+    /**
+     * Fila de ticket_items: ticket, producto, precio unitario y cantidad
+     */
+    private record Item(long ticketId, long productoId, String precio, int cantidad) {
+    }
+
+    @Test
+    void lineasRepetidasDeUnProductoSobrevivenAlReinicio() throws Exception {
+        List<Item> items = new ArrayList<>(List.of(
+                new Item(1, 10, "10.00", 1),
+                new Item(1, 10, "12.00", 2),
+                new Item(1, 11, "5.00", 1),
+                new Item(2, 10, "9.00", 1),
+                new Item(2, 10, "9.00", 3),
+                new Item(3, 10, "11.00", 1)));
+
+        HistorialPrecioService primero = servicio(items);
+        primero.abrir();
+        primero.leerFaltantes();
+        List<HistorialPrecioService.Resumen> esperado = primero.resumir(10L, HOY, HOY, HistorialPrecioService.Resolucion.DIA);
+        assertEquals(1, esperado.size());
+        assertEquals(5, esperado.get(0).compras());
+        assertEquals(8, esperado.get(0).cantidad());
+        assertEquals(new BigDecimal("9.00"), esperado.get(0).minimo());
+        assertEquals(new BigDecimal("12.00"), esperado.get(0).maximo());
+        primero.cerrar();
+
+        // Al reiniciar llegan dos tickets mientras se lee: el 4 ya lo ve el cursor, el 5 no
+        items.add(new Item(4, 10, "8.00", 1));
+        HistorialPrecioService segundo = servicio(items);
+        segundo.abrir();
+        segundo.registrar(ticket(4, new Item(4, 10, "8.00", 1)));
+        segundo.registrar(ticket(5, new Item(5, 10, "13.00", 1), new Item(5, 10, "13.00", 1)));
+        segundo.leerFaltantes();
+
+        HistorialPrecioService.Resumen resumen = segundo.resumir(10L, HOY, HOY, HistorialPrecioService.Resolucion.DIA).get(0);
+        assertEquals(8, resumen.compras());
+        assertEquals(11, resumen.cantidad());
+        assertEquals(new BigDecimal("8.00"), resumen.minimo());
+        assertEquals(new BigDecimal("13.00"), resumen.maximo());
+        assertEquals(1, segundo.resumir(11L, HOY, HOY, HistorialPrecioService.Resolucion.DIA).get(0).compras());
+        segundo.cerrar();
+    }
+
+    /**
+     * Servicio con bloques de 2 puntos sobre una base de datos simulada que devuelve los
+     * items con ticket posterior al parámetro, en orden
+     */
+    private HistorialPrecioService servicio(List<Item> items) throws SQLException {
+        List<Item> filas = List.copyOf(items);
+        DataSource dataSource = mock(DataSource.class);
+        Connection conexion = mock(Connection.class);
+        PreparedStatement sentencia = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(conexion);
+        when(conexion.prepareStatement(anyString())).thenReturn(sentencia);
+        long[] desde = {0};
+        doAnswer(i -> desde[0] = ((Number) i.getArgument(1)).longValue()).when(sentencia).setObject(anyInt(), any());
+        doAnswer(i -> desde[0] = i.getArgument(1)).when(sentencia).setLong(anyInt(), anyLong());
+        when(sentencia.executeQuery()).thenAnswer(i -> resultado(filas.stream().filter(f -> f.ticketId() > desde[0]).toList()));
+
+        PlatformTransactionManager transacciones = mock(PlatformTransactionManager.class);
+        when(transacciones.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        return new HistorialPrecioService(dataSource, transacciones, directorio.resolve("precios.dat").toString(), 1, 2, 7);
+    }
+
+    private static ResultSet resultado(List<Item> filas) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        int[] actual = {-1};
+        when(rs.next()).thenAnswer(i -> ++actual[0] < filas.size());
+        when(rs.getLong(1)).thenAnswer(i -> filas.get(actual[0]).ticketId());
+        when(rs.getLong(2)).thenAnswer(i -> filas.get(actual[0]).productoId());
+        when(rs.getTimestamp(3)).thenAnswer(i -> Timestamp.valueOf(HOY.atTime(12, 0)));
+        when(rs.getBigDecimal(4)).thenAnswer(i -> new BigDecimal(filas.get(actual[0]).precio()));
+        when(rs.getInt(5)).thenAnswer(i -> filas.get(actual[0]).cantidad());
+        return rs;
+    }
+
+    private static Ticket ticket(long id, Item... items) {
+        Ticket ticket = new Ticket();
+        ticket.setId(id);
+        ticket.setFechaHora(LocalDateTime.of(HOY, LocalTime.NOON));
+        for (Item item : items) {
+            Producto producto = new Producto();
+            producto.setId(item.productoId());
+            TicketItem ticketItem = new TicketItem();
+            ticketItem.setProducto(producto);
+            ticketItem.setPrecioUnitario(new BigDecimal(item.precio()));
+            ticketItem.setCantidad(item.cantidad());
+            ticket.getItems().add(ticketItem);
+        }
+        return ticket;
+    }
+}
@@ -0,0 +1,133 @@
+package hackathon.team.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Serie de precios: los puntos se leen como se escribieron (también al reabrir) y lo no
+ * confirmado se descarta al abrir después de una caída
+ * Conector Semántico - OneCard
+ */
+class AlmacenSeriePreciosTests {
+
+    // El mínimo permitido: obliga a cruzar segmentos con pocos bloques
+    private static final int SEGMENTO = 64 + 32 + AlmacenSeriePrecios.MAX_PUNTOS_POR_BLOQUE * 20;
+
+    @TempDir
+    Path directorio;
+
+    private record Punto(int dia, long centavos, int cantidad) {
+    }
+
+    @Test
+    void codificarYLeerPuntosIrregulares() throws IOException {
+        Random random = new Random(11);
+        List<Punto> esperados = new ArrayList<>();
+        try (AlmacenSeriePrecios almacen = AlmacenSeriePrecios.abrir(directorio.resolve("precios.bin"), SEGMENTO)) {
+            for (int b = 0; b < 40; b++) {
+                int n = 1 + random.nextInt(AlmacenSeriePrecios.MAX_PUNTOS_POR_BLOQUE);
+                int[] dias = new int[n];
+                long[] centavos = new long[n];
+                int[] cantidades = new int[n];
+                int dia = 19_000 + random.nextInt(500);
+                for (int i = 0; i < n; i++) {
+                    // Días repetidos, saltos y algún retroceso; precios que suben y bajan
+                    dia += random.nextInt(10) == 0 ? -random.nextInt(30) : random.nextInt(3);
+                    dias[i] = dia;
+                    centavos[i] = random.nextInt(20) == 0 ? 9_999_999_999L : random.nextInt(100_000);
+                    cantidades[i] = random.nextInt(10) == 0 ? -1 : 1 + random.nextInt(1000);
+                    esperados.add(new Punto(dias[i], centavos[i], cantidades[i]));
+                }
+                almacen.agregarBloque(7, b + 1, dias, centavos, cantidades, n);
+            }
+
+            assertEquals(esperados, leer(almacen, 7, Integer.MIN_VALUE, Integer.MAX_VALUE));
+            assertEquals(esperados.stream().filter(p -> p.dia() >= 19_200 && p.dia() <= 19_300).toList(),
+                    leer(almacen, 7, 19_200, 19_300));
+            assertEquals(List.of(), leer(almacen, 8, Integer.MIN_VALUE, Integer.MAX_VALUE));
+            assertTrue(almacen.getBytesUsados() > SEGMENTO, "Los bloques deben ocupar más de un segmento");
+        }
+    }
+
+    @Test
+    void reabrirConservaLosBloquesConfirmados() throws IOException {
+        Path archivo = directorio.resolve("precios.bin");
+        try (AlmacenSeriePrecios almacen = AlmacenSeriePrecios.abrir(archivo, SEGMENTO)) {
+            almacen.agregarBloque(1, 10, new int[]{100, 101, 103}, new long[]{1500, 1450, 1600}, new int[]{1, 2, 1}, 3);
+            almacen.agregarBloque(2, 12, new int[]{100}, new long[]{99}, new int[]{5}, 1);
+            almacen.agregarBloque(1, 15, new int[]{110, 110}, new long[]{1700, 1699}, new int[]{3, 4}, 2);
+            almacen.confirmar(15);
+        }
+
+        try (AlmacenSeriePrecios almacen = AlmacenSeriePrecios.abrir(archivo, SEGMENTO)) {
+            assertEquals(15, almacen.getDesdeTicket());
+            assertEquals(3, almacen.getBloques());
+            assertEquals(6, almacen.getPuntos());
+            assertEquals(15, almacen.ultimoTicket(1));
+            assertEquals(12, almacen.ultimoTicket(2));
+            assertEquals(0, almacen.ultimoTicket(3));
+            assertEquals(List.of(new Punto(100, 1500, 1), new Punto(101, 1450, 2), new Punto(103, 1600, 1),
+                    new Punto(110, 1700, 3), new Punto(110, 1699, 4)), leer(almacen, 1, 0, 200));
+            assertEquals(List.of(new Punto(110, 1700, 3), new Punto(110, 1699, 4)), leer(almacen, 1, 105, 200));
+        }
+    }
+
+    @Test
+    void alAbrirSeDescartaLoNoConfirmado() throws IOException {
+        Path archivo = directorio.resolve("precios.bin");
+        long bytesConfirmados;
+        try (AlmacenSeriePrecios almacen = AlmacenSeriePrecios.abrir(archivo, SEGMENTO)) {
+            almacen.agregarBloque(1, 10, new int[]{100, 101}, new long[]{1500, 1450}, new int[]{1, 2}, 2);
+            almacen.confirmar(10);
+            bytesConfirmados = almacen.getBytesUsados();
+            // Caída después de escribir bloques sin confirmarlos
+            almacen.agregarBloque(1, 20, new int[]{102}, new long[]{1400}, new int[]{1}, 1);
+            almacen.agregarBloque(2, 21, new int[]{102}, new long[]{300}, new int[]{1}, 1);
+        }
+
+        try (AlmacenSeriePrecios almacen = AlmacenSeriePrecios.abrir(archivo, SEGMENTO)) {
+            assertEquals(10, almacen.getDesdeTicket());
+            assertEquals(bytesConfirmados, almacen.getBytesUsados());
+            assertEquals(1, almacen.getBloques());
+            assertEquals(10, almacen.ultimoTicket(1));
+            assertEquals(0, almacen.ultimoTicket(2));
+            assertEquals(List.of(new Punto(100, 1500, 1), new Punto(101, 1450, 2)), leer(almacen, 1, 0, 200));
+
+            // Lo nuevo se escribe sobre lo descartado
+            almacen.agregarBloque(2, 22, new int[]{105}, new long[]{310}, new int[]{2}, 1);
+            almacen.confirmar(22);
+        }
+
+        try (AlmacenSeriePrecios almacen = AlmacenSeriePrecios.abrir(archivo, SEGMENTO)) {
+            assertEquals(2, almacen.getBloques());
+            assertEquals(List.of(new Punto(105, 310, 2)), leer(almacen, 2, 0, 200));
+            assertEquals(2, leer(almacen, 1, 0, 200).size());
+        }
+    }
+
+    @Test
+    void rechazarBloquesInvalidos() throws IOException {
+        try (AlmacenSeriePrecios almacen = AlmacenSeriePrecios.abrir(directorio.resolve("precios.bin"), SEGMENTO)) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> almacen.agregarBloque(0, 1, new int[]{1}, new long[]{1}, new int[]{1}, 1));
+            assertThrows(IllegalArgumentException.class,
+                    () -> almacen.agregarBloque(1, 1, new int[0], new long[0], new int[0], 0));
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> AlmacenSeriePrecios.abrir(directorio.resolve("otro.bin"), 1024));
+    }
+
+    private static List<Punto> leer(AlmacenSeriePrecios almacen, long productoId, int desde, int hasta) {
+        List<Punto> puntos = new ArrayList<>();
+        almacen.recorrer(productoId, desde, hasta, (dia, centavos, cantidad) -> puntos.add(new Punto(dia, centavos, cantidad)));
+        return puntos;
+    }
+}
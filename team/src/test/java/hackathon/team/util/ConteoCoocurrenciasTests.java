@@ -0,0 +1,96 @@
+package hackathon.team.util;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Conteo de pares: la suma en paralelo coincide con el conteo directo
+ * Conector Semántico - OneCard
+ */
+class ConteoCoocurrenciasTests {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterAll
+    static void detener() {
+        POOL.shutdownNow();
+    }
+
+    @Test
+    void claveParSinOrden() {
+        long clave = ConteoCoocurrencias.clavePar(9, 3);
+        assertEquals(clave, ConteoCoocurrencias.clavePar(3, 9));
+        assertEquals(3, ConteoCoocurrencias.primero(clave));
+        assertEquals(9, ConteoCoocurrencias.segundo(clave));
+
+        long grande = ConteoCoocurrencias.clavePar(Integer.MAX_VALUE, 1);
+        assertEquals(1, ConteoCoocurrencias.primero(grande));
+        assertEquals(Integer.MAX_VALUE, ConteoCoocurrencias.segundo(grande));
+    }
+
+    @Test
+    void contarEnParaleloComoElConteoDirecto() {
+        Random random = new Random(7);
+        int tickets = 10_000;
+        int maxPorTicket = 6;
+        int[] inicio = new int[tickets + 1];
+        int[] productos = new int[tickets * 10];
+        Map<Long, Integer> paresEsperados = new HashMap<>();
+        Map<Long, Integer> productosEsperados = new HashMap<>();
+        int n = 0;
+        for (int t = 0; t < tickets; t++) {
+            TreeSet<Integer> ticket = new TreeSet<>();
+            int tamanio = 1 + random.nextInt(9);
+            while (ticket.size() < tamanio) {
+                ticket.add(1 + random.nextInt(300));
+            }
+            inicio[t] = n;
+            for (int producto : ticket) {
+                productos[n++] = producto;
+                productosEsperados.merge((long) producto, 1, Integer::sum);
+            }
+            if (ticket.size() <= maxPorTicket) {
+                for (int a : ticket) {
+                    for (int b : ticket.tailSet(a, false)) {
+                        paresEsperados.merge(ConteoCoocurrencias.clavePar(a, b), 1, Integer::sum);
+                    }
+                }
+            }
+        }
+        inicio[tickets] = n;
+
+        ConteoCoocurrencias.Resultado resultado = ConteoCoocurrencias.contar(inicio, productos, tickets, maxPorTicket, POOL);
+
+        assertEquals(tickets, resultado.tickets());
+        assertEquals(paresEsperados, aMapa(resultado.pares()));
+        assertEquals(productosEsperados, aMapa(resultado.productos()));
+    }
+
+    @Test
+    void ticketsGrandesSoloCuentanProductos() {
+        MapaLongEntero pares = new MapaLongEntero();
+        MapaLongEntero conteo = new MapaLongEntero();
+        ConteoCoocurrencias.contarTicket(new int[]{1, 2, 3, 4}, 0, 4, 3, pares, conteo);
+        assertEquals(0, pares.tamanio());
+        assertEquals(4, conteo.tamanio());
+
+        ConteoCoocurrencias.contarTicket(new int[]{1, 2, 3}, 0, 3, 3, pares, conteo);
+        assertEquals(3, pares.tamanio());
+        assertEquals(1, pares.get(ConteoCoocurrencias.clavePar(1, 3)));
+        assertEquals(2, conteo.get(1));
+    }
+
+    private static Map<Long, Integer> aMapa(MapaLongEntero mapa) {
+        Map<Long, Integer> resultado = new HashMap<>();
+        mapa.recorrer(resultado::put);
+        return resultado;
+    }
+}
@@ -0,0 +1,97 @@
+package hackathon.team.util;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cubo de gasto: la clave empacada de cada grupo conserva las dimensiones en sus límites
+ * y las filas ordenadas y las agregadas después suman igual
+ * Conector Semántico - OneCard
+ */
+class CuboGastoTests {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(2);
+
+    @AfterAll
+    static void detener() {
+        POOL.shutdownNow();
+    }
+
+    @Test
+    void clavesEnLosLimitesDeCadaDimension() {
+        CuboGasto cubo = new CuboGasto(4);
+        cubo.agregar(0, 0, 0, 0, 100, 1, 1);
+        cubo.agregar(77, 12345, 321, 5, 40, 4, 1);
+        cubo.agregar(CuboGasto.MAX_DIA, CuboGasto.MAX_USUARIOS - 1, CuboGasto.MAX_CATEGORIAS - 1,
+                CuboGasto.MAX_METODOS - 1, 250, 2, 3);
+        cubo.marcarOrdenadas();
+
+        int[] identidad = new int[CuboGasto.MAX_CATEGORIAS];
+        for (int c = 0; c < identidad.length; c++) {
+            identidad[c] = c;
+        }
+        int[] periodoDeDia = new int[CuboGasto.MAX_DIA + 1];
+        for (int d = 0; d < periodoDeDia.length; d++) {
+            periodoDeDia[d] = d;
+        }
+        CuboGasto.Resultado resultado = cubo.consultar(new CuboGasto.Consulta(0, CuboGasto.MAX_DIA, -1, -1, null,
+                true, identidad, true, periodoDeDia), POOL);
+
+        assertEquals(Map.of(
+                List.of(0, 0, 0, 0), List.of(100L, 1L, 1L),
+                List.of(CuboGasto.MAX_DIA, CuboGasto.MAX_USUARIOS - 1, CuboGasto.MAX_CATEGORIAS - 1, CuboGasto.MAX_METODOS - 1),
+                List.of(250L, 2L, 3L),
+                List.of(77, 12345, 321, 5), List.of(40L, 4L, 1L)), grupos(resultado));
+    }
+
+    @Test
+    void filtrarYAgruparConFilasAgregadasDespues() {
+        CuboGasto cubo = new CuboGasto(16);
+        cubo.agregar(10, 1, 0, 0, 100, 1, 1);
+        cubo.agregar(11, 2, 1, 1, 200, 1, 1);
+        cubo.agregar(20, 1, 2, 0, 300, 2, 1);
+        cubo.marcarOrdenadas();
+        // Fuera de orden: van a la cola que se recorre completa
+        cubo.agregar(5, 1, 1, 0, 1000, 1, 1);
+        cubo.agregar(11, 1, 0, 0, 50, 1, 1);
+
+        // Usuario 1, días 10 a 20, categorías 0 y 2 acumuladas en la 0, sin agrupar método
+        CuboGasto.Resultado resultado = cubo.consultar(new CuboGasto.Consulta(10, 20, 1, -1,
+                new boolean[]{true, false, true}, false, new int[]{0, 1, 0}, false, null), POOL);
+
+        assertEquals(Map.of(List.of(0, 0, 0, 0), List.of(450L, 4L, 3L)), grupos(resultado));
+    }
+
+    @Test
+    void rechazarCeldasFueraDeLimitesYFilasDesordenadas() {
+        CuboGasto cubo = new CuboGasto(16);
+        assertThrows(IllegalArgumentException.class, () -> cubo.agregar(CuboGasto.MAX_DIA + 1, 0, 0, 0, 1, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> cubo.agregar(0, CuboGasto.MAX_USUARIOS, 0, 0, 1, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> cubo.agregar(0, 0, CuboGasto.MAX_CATEGORIAS, 0, 1, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> cubo.agregar(0, 0, 0, CuboGasto.MAX_METODOS, 1, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> cubo.agregar(-1, 0, 0, 0, 1, 1, 1));
+
+        cubo.agregar(5, 0, 0, 0, 1, 1, 1);
+        cubo.agregar(4, 0, 0, 0, 1, 1, 1);
+        assertThrows(IllegalStateException.class, cubo::marcarOrdenadas);
+    }
+
+    /**
+     * (periodo, usuario, categoría, método) -> (gasto, cantidad, líneas)
+     */
+    private static Map<List<Integer>, List<Long>> grupos(CuboGasto.Resultado resultado) {
+        Map<List<Integer>, List<Long>> grupos = new HashMap<>();
+        for (int i = 0; i < resultado.tamanio(); i++) {
+            grupos.put(List.of(resultado.periodo(i), resultado.usuario(i), resultado.categoria(i), resultado.metodo(i)),
+                    List.of(resultado.gasto(i), resultado.cantidad(i), resultado.lineas(i)));
+        }
+        return grupos;
+    }
+}
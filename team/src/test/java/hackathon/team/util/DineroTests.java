@@ -0,0 +1,82 @@
+package hackathon.team.util;
+
+import hackathon.team.model.Ticket;
+import hackathon.team.model.TicketItem;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Dinero: redondeo a centavos, desbordamiento, montos negativos y promedios; y el redondeo
+ * del precio antes de multiplicar en los subtotales de los tickets
+ * Conector Semántico - OneCard
+ */
+class DineroTests {
+
+    @Test
+    void redondearACentavosHalfUp() {
+        assertEquals(101, Dinero.centavos(new BigDecimal("1.005")));
+        assertEquals(100, Dinero.centavos(new BigDecimal("1.0049")));
+        assertEquals(-101, Dinero.centavos(new BigDecimal("-1.005")));
+        assertEquals(1500, Dinero.centavos(new BigDecimal("15")));
+        assertEquals(0, Dinero.centavos(null));
+        assertEquals(Dinero.CERO, Dinero.de(null));
+        assertEquals(new BigDecimal("12.30"), Dinero.de(new BigDecimal("12.3")).aBigDecimal());
+    }
+
+    @Test
+    void montosNegativos() {
+        Dinero abono = Dinero.de(new BigDecimal("-20.50"));
+        assertEquals(-2050, abono.centavos());
+        assertEquals(new BigDecimal("-20.50"), abono.aBigDecimal());
+        assertEquals("-20.50", abono.toString());
+        assertEquals(new Dinero(-1050), abono.mas(Dinero.de(BigDecimal.TEN)));
+        assertEquals(new Dinero(-3050), abono.menos(Dinero.de(BigDecimal.TEN)));
+        assertEquals(new Dinero(-6150), abono.por(3));
+        assertTrue(abono.compareTo(Dinero.CERO) < 0);
+    }
+
+    @Test
+    void desbordarLanzaArithmeticException() {
+        Dinero maximo = new Dinero(Long.MAX_VALUE);
+        assertThrows(ArithmeticException.class, () -> maximo.mas(new Dinero(1)));
+        assertThrows(ArithmeticException.class, () -> new Dinero(Long.MIN_VALUE).menos(new Dinero(1)));
+        assertThrows(ArithmeticException.class, () -> maximo.por(2));
+        assertThrows(ArithmeticException.class, () -> Dinero.centavos(new BigDecimal("1e18")));
+    }
+
+    @Test
+    void promedioRedondeadoYDeConjuntoVacio() {
+        assertEquals(new BigDecimal("0.00"), Dinero.promedio(0, 0));
+        assertEquals(new BigDecimal("0.00"), Dinero.promedio(12_345, 0));
+        assertEquals(new BigDecimal("3.33"), Dinero.promedio(1000, 3));
+        assertEquals(new BigDecimal("0.67"), Dinero.promedio(200, 3));
+        assertEquals(new BigDecimal("-0.67"), Dinero.promedio(-200, 3));
+    }
+
+    @Test
+    void elPrecioSeRedondeaAntesDeMultiplicar() {
+        TicketItem item = new TicketItem();
+        item.setPrecioUnitario(new BigDecimal("1.005"));
+        item.setCantidad(3);
+        item.setDescuento(new BigDecimal("0.10"));
+        item.calcularSubtotal();
+        // 1.01 * 3 - 0.10 (multiplicar primero daría 3.015 - 0.10 = 2.92)
+        assertEquals(new BigDecimal("2.93"), item.getSubtotal());
+
+        Ticket ticket = new Ticket();
+        ticket.getItems().add(item);
+        TicketItem otro = new TicketItem();
+        otro.setPrecioUnitario(new BigDecimal("19.99"));
+        otro.setCantidad(2);
+        otro.calcularSubtotal();
+        ticket.getItems().add(otro);
+        ticket.setImpuestos(new BigDecimal("6.40"));
+        ticket.setDescuentos(new BigDecimal("1.00"));
+        ticket.calcularTotal();
+        assertEquals(new BigDecimal("42.91"), ticket.getSubtotal());
+        assertEquals(new BigDecimal("48.31"), ticket.getTotal());
+    }
+}
@@ -0,0 +1,58 @@
+package hackathon.team.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HyperLogLog: estimación dentro del error esperado, repetidos que no cuentan y unión
+ * igual a agregar todo en un solo conteo
+ * Conector Semántico - OneCard
+ */
+class HyperLogLogTests {
+
+    @Test
+    void estimarDentroDelErrorEsperado() {
+        for (int distintos : new int[]{0, 10, 1_000, 50_000, 500_000}) {
+            HyperLogLog conteo = new HyperLogLog(14);
+            for (long i = 0; i < distintos; i++) {
+                conteo.agregar(HyperLogLog.hash(i));
+            }
+            // 0.8% de error típico: 4 desviaciones de margen
+            assertEquals(distintos, conteo.estimar(), Math.max(1, distintos * 0.033), "distintos = " + distintos);
+        }
+    }
+
+    @Test
+    void losRepetidosNoCuentan() {
+        HyperLogLog conteo = new HyperLogLog(12);
+        for (int vuelta = 0; vuelta < 5; vuelta++) {
+            for (int i = 0; i < 2_000; i++) {
+                conteo.agregar(HyperLogLog.hash("producto-" + i));
+            }
+        }
+        assertEquals(2_000, conteo.estimar(), 2_000 * 0.07);
+    }
+
+    @Test
+    void unirEsComoAgregarTodo() {
+        HyperLogLog a = new HyperLogLog(10);
+        HyperLogLog b = new HyperLogLog(10);
+        HyperLogLog todo = new HyperLogLog(10);
+        for (long i = 0; i < 30_000; i++) {
+            long hash = HyperLogLog.hash(i);
+            (i % 3 == 0 ? a : b).agregar(hash);
+            todo.agregar(hash);
+        }
+        a.unir(b);
+        assertEquals(todo.estimar(), a.estimar());
+
+        assertThrows(IllegalArgumentException.class, () -> a.unir(new HyperLogLog(11)));
+    }
+
+    @Test
+    void precisionFueraDeRango() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(3));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(19));
+    }
+}
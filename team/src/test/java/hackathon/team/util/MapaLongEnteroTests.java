@@ -0,0 +1,61 @@
+package hackathon.team.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Mapa long -> int: mismos conteos que un HashMap al crecer y al sumar mapas
+ * Conector Semántico - OneCard
+ */
+class MapaLongEnteroTests {
+
+    @Test
+    void sumarYCrecerComoUnHashMap() {
+        Random random = new Random(42);
+        MapaLongEntero mapa = new MapaLongEntero(4);
+        Map<Long, Integer> esperado = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            long clave = random.nextInt(20_000) + 1L + ((long) random.nextInt(4) << 32);
+            int delta = random.nextInt(5) + 1;
+            mapa.sumar(clave, delta);
+            esperado.merge(clave, delta, Integer::sum);
+        }
+
+        assertEquals(esperado.size(), mapa.tamanio());
+        esperado.forEach((clave, valor) -> assertEquals(valor, mapa.get(clave)));
+        assertEquals(0, mapa.get(-1L));
+
+        Map<Long, Integer> recorrido = new HashMap<>();
+        mapa.recorrer((clave, valor) -> assertNull(recorrido.put(clave, valor)));
+        assertEquals(esperado, recorrido);
+    }
+
+    @Test
+    void sumarTodoAcumulaLasEntradas() {
+        MapaLongEntero a = new MapaLongEntero();
+        MapaLongEntero b = new MapaLongEntero();
+        a.sumar(1, 2);
+        a.sumar(Long.MIN_VALUE, 1);
+        b.sumar(1, 3);
+        b.sumar(7, 1);
+
+        a.sumarTodo(b);
+
+        assertEquals(3, a.tamanio());
+        assertEquals(5, a.get(1));
+        assertEquals(1, a.get(7));
+        assertEquals(1, a.get(Long.MIN_VALUE));
+    }
+
+    @Test
+    void laClaveCeroEstaReservada() {
+        MapaLongEntero mapa = new MapaLongEntero();
+        assertThrows(IllegalArgumentException.class, () -> mapa.sumar(0, 1));
+        assertEquals(0, mapa.get(0));
+    }
+}
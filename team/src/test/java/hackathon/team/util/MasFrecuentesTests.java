@@ -0,0 +1,92 @@
+package hackathon.team.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Space-Saving: la cuenta real queda entre cuenta - error y cuenta, y los elementos con
+ * más de N/k apariciones no se pierden (también al unir resúmenes)
+ * Conector Semántico - OneCard
+ */
+class MasFrecuentesTests {
+
+    private static final int K = 20;
+
+    @Test
+    void exactoMientrasCabenLosContadores() {
+        MasFrecuentes<String> frecuentes = new MasFrecuentes<>(3);
+        frecuentes.agregar("a", 1);
+        frecuentes.agregar("b", 5);
+        frecuentes.agregar("a", 2);
+        frecuentes.agregar("c", 4);
+
+        assertEquals(List.of(new MasFrecuentes.Frecuencia<>("b", 5, 0), new MasFrecuentes.Frecuencia<>("c", 4, 0)),
+                frecuentes.mayores(2));
+        assertEquals(3, frecuentes.mayores(10).size());
+    }
+
+    @Test
+    void cotasDeLaCuentaEnUnFlujoSesgado() {
+        Random random = new Random(3);
+        MasFrecuentes<Integer> frecuentes = new MasFrecuentes<>(K);
+        Map<Integer, Long> reales = new HashMap<>();
+        long total = llenar(frecuentes, reales, random, 100_000);
+
+        verificar(frecuentes, reales, total);
+    }
+
+    @Test
+    void unirConservaLasCotas() {
+        Random random = new Random(5);
+        MasFrecuentes<Integer> a = new MasFrecuentes<>(K);
+        MasFrecuentes<Integer> b = new MasFrecuentes<>(K);
+        Map<Integer, Long> reales = new HashMap<>();
+        long total = llenar(a, reales, random, 60_000) + llenar(b, reales, random, 40_000);
+
+        a.unir(b);
+
+        verificar(a, reales, total);
+    }
+
+    @Test
+    void capacidadPositiva() {
+        assertThrows(IllegalArgumentException.class, () -> new MasFrecuentes<String>(0));
+    }
+
+    /**
+     * Elementos con frecuencia de Zipf: unos pocos dominan y la cola es larga
+     */
+    private static long llenar(MasFrecuentes<Integer> frecuentes, Map<Integer, Long> reales, Random random, int n) {
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            int elemento = (int) Math.floor(Math.pow(10_000, random.nextDouble())) - 1;
+            long peso = 1 + random.nextInt(3);
+            frecuentes.agregar(elemento, peso);
+            reales.merge(elemento, peso, Long::sum);
+            total += peso;
+        }
+        return total;
+    }
+
+    private static void verificar(MasFrecuentes<Integer> frecuentes, Map<Integer, Long> reales, long total) {
+        List<MasFrecuentes.Frecuencia<Integer>> mayores = frecuentes.mayores(K);
+        assertEquals(K, mayores.size());
+        for (MasFrecuentes.Frecuencia<Integer> f : mayores) {
+            long real = reales.getOrDefault(f.elemento(), 0L);
+            assertTrue(real <= f.cuenta() && real >= f.cuenta() - f.error(),
+                    f + " con cuenta real " + real);
+        }
+        reales.forEach((elemento, real) -> {
+            if (real > total / K) {
+                assertTrue(mayores.stream().anyMatch(f -> f.elemento().equals(elemento)),
+                        "Falta el elemento " + elemento + " con " + real + " de " + total);
+            }
+        });
+    }
+}
@@ -0,0 +1,141 @@
+package hackathon.team.util;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Similitud de productos: los k vecinos coinciden con el coseno calculado directamente y
+ * el acumulador suma las similitudes sin recomendar lo ya comprado
+ * Conector Semántico - OneCard
+ */
+class SimilitudProductosTests {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterAll
+    static void detener() {
+        POOL.shutdownNow();
+    }
+
+    @Test
+    void vecinosComoElCosenoDirecto() {
+        Random random = new Random(17);
+        int usuarios = 400;
+        int productos = 700;
+        int k = 5;
+        int maxPorUsuario = 25;
+        int minComunes = 2;
+        int[] inicio = new int[usuarios + 1];
+        List<Integer> listaProductos = new ArrayList<>();
+        List<Float> listaPesos = new ArrayList<>();
+        for (int u = 0; u < usuarios; u++) {
+            inicio[u] = listaProductos.size();
+            TreeSet<Integer> compras = new TreeSet<>();
+            int tamanio = u % 50 == 0 ? 40 : 1 + random.nextInt(15);
+            while (compras.size() < tamanio) {
+                // Productos de la primera mitad más frecuentes: hay usuarios en común
+                compras.add(random.nextBoolean() ? random.nextInt(60) : random.nextInt(productos));
+            }
+            for (int p : compras) {
+                listaProductos.add(p);
+                listaPesos.add(1 + random.nextInt(4) / 2f);
+            }
+        }
+        inicio[usuarios] = listaProductos.size();
+        int[] arregloProductos = listaProductos.stream().mapToInt(Integer::intValue).toArray();
+        float[] pesos = new float[listaPesos.size()];
+        for (int i = 0; i < pesos.length; i++) {
+            pesos[i] = listaPesos.get(i);
+        }
+
+        SimilitudProductos.Vecinos vecinos = SimilitudProductos.calcular(inicio, arregloProductos, pesos, usuarios,
+                productos, k, maxPorUsuario, minComunes, POOL);
+
+        double[][] matriz = new double[usuarios][productos];
+        for (int u = 0; u < usuarios; u++) {
+            if (inicio[u + 1] - inicio[u] <= maxPorUsuario) {
+                for (int i = inicio[u]; i < inicio[u + 1]; i++) {
+                    matriz[u][arregloProductos[i]] = pesos[i];
+                }
+            }
+        }
+        assertEquals(productos, vecinos.productos());
+        assertTrue(vecinos.pares() > 0);
+        for (int p = 0; p < productos; p++) {
+            List<Double> esperadas = new ArrayList<>();
+            double[] coseno = new double[productos];
+            for (int q = 0; q < productos; q++) {
+                if (q != p && comunes(matriz, p, q) >= minComunes) {
+                    coseno[q] = coseno(matriz, p, q);
+                    esperadas.add(coseno[q]);
+                }
+            }
+            esperadas.sort((a, b) -> Double.compare(b, a));
+            int n = vecinos.inicio()[p + 1] - vecinos.inicio()[p];
+            assertEquals(Math.min(k, esperadas.size()), n, "producto " + p);
+            for (int v = 0; v < n; v++) {
+                int posicion = vecinos.inicio()[p] + v;
+                assertEquals(esperadas.get(v), vecinos.similitud()[posicion], 1e-5, "producto " + p);
+                assertEquals(coseno[vecinos.vecino()[posicion]], vecinos.similitud()[posicion], 1e-5);
+            }
+        }
+    }
+
+    @Test
+    void acumularSinRecomendarLoComprado() {
+        // 0 ~ 1 (0.9), 0 ~ 2 (0.5), 1 ~ 2 (0.3), 3 sin vecinos
+        SimilitudProductos.Vecinos vecinos = new SimilitudProductos.Vecinos(
+                new int[]{0, 2, 4, 6, 6},
+                new int[]{1, 2, 0, 2, 0, 1},
+                new float[]{0.9f, 0.5f, 0.9f, 0.3f, 0.5f, 0.3f});
+        SimilitudProductos.Acumulador acumulador = new SimilitudProductos.Acumulador(4);
+
+        acumulador.acumular(vecinos, new int[]{0, 1}, new float[]{2f, 1f}, 0, 2);
+        assertEquals(1, acumulador.candidatos());
+        assertEquals(2, acumulador.candidato(0));
+        assertEquals(2 * 0.5f + 0.3f, acumulador.puntaje(2), 1e-6);
+
+        // Otro usuario: los puntajes anteriores se limpian
+        acumulador.acumular(vecinos, new int[]{2}, new float[]{1f}, 0, 1);
+        int[] salida = new int[3];
+        float[] puntajes = new float[3];
+        int n = acumulador.mejores(3, new boolean[]{true, true, true, true}, salida, puntajes);
+        assertEquals(2, n);
+        assertArrayEquals(new int[]{0, 1}, new int[]{salida[0], salida[1]});
+        assertArrayEquals(new float[]{0.5f, 0.3f}, new float[]{puntajes[0], puntajes[1]});
+
+        n = acumulador.mejores(3, new boolean[]{false, true, true, true}, salida, puntajes);
+        assertEquals(1, n);
+        assertEquals(1, salida[0]);
+    }
+
+    private static int comunes(double[][] matriz, int p, int q) {
+        int comunes = 0;
+        for (double[] fila : matriz) {
+            if (fila[p] != 0 && fila[q] != 0) {
+                comunes++;
+            }
+        }
+        return comunes;
+    }
+
+    private static double coseno(double[][] matriz, int p, int q) {
+        double producto = 0;
+        double normaP = 0;
+        double normaQ = 0;
+        for (double[] fila : matriz) {
+            producto += fila[p] * fila[q];
+            normaP += fila[p] * fila[p];
+            normaQ += fila[q] * fila[q];
+        }
+        return producto / Math.sqrt(normaP * normaQ);
+    }
+}